@@ -21,6 +21,7 @@ import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.api.dml.ConstantColumnSelector;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
 
 public class IndexKeyRange
 {
@@ -28,6 +29,9 @@ public class IndexKeyRange
     {
         StringBuilder buffer = new StringBuilder();
         buffer.append('(');
+        if (skipColumns > 0) {
+            buffer.append("skip ").append(skipColumns).append(": ");
+        }
         if (lo != null && boundColumns > 0) {
             buffer.append(loInclusive() ? ">=" : ">");
             buffer.append(lo.toString());
@@ -37,6 +41,12 @@ public class IndexKeyRange
             buffer.append(hiInclusive() ? "<=" : "<");
             buffer.append(hi.toString());
         }
+        if (predicate != null) {
+            buffer.append(", where ").append(predicate);
+        }
+        if (limit >= 0) {
+            buffer.append(", limit ").append(limit);
+        }
         buffer.append(')');
         return buffer.toString();
     }
@@ -209,6 +219,37 @@ public class IndexKeyRange
         return new IndexKeyRange(indexRowType, lo, loInclusive, hi, hiInclusive, IndexKind.LEXICOGRAPHIC);
     }
 
+    /**
+     * Describes a skip scan: for each distinct value of the first skipColumns columns of the index, the keys
+     * between lo and hi in the remaining columns. lo and hi must select the skipped columns as well as at least
+     * one more; the values they give for the skipped columns are ignored and replaced by each distinct
+     * prefix in turn. Otherwise, the constraints are those of {@link #bounded}.
+     *
+     * @param indexRowType The row type of index keys.
+     * @param skipColumns  Number of leading columns of the index that are not restricted.
+     * @param lo           Lower bound of the range.
+     * @param loInclusive  True if the lower bound is inclusive, false if exclusive.
+     * @param hi           Upper bound of the range.
+     * @param hiInclusive  True if the upper bound is inclusive, false if exclusive.
+     * @return IndexKeyRange covering, under each distinct prefix, the keys lying between lo and hi.
+     */
+    public static IndexKeyRange skipScan(IndexRowType indexRowType,
+                                         int skipColumns,
+                                         IndexBound lo,
+                                         boolean loInclusive,
+                                         IndexBound hi,
+                                         boolean hiInclusive)
+    {
+        IndexKeyRange keyRange = bounded(indexRowType, lo, loInclusive, hi, hiInclusive);
+        if (skipColumns <= 0 || skipColumns >= keyRange.boundColumns) {
+            throw new IllegalArgumentException(
+                String.format("Skip scan of index %s must skip between 1 and %s columns: %s",
+                              indexRowType, keyRange.boundColumns - 1, skipColumns));
+        }
+        keyRange.skipColumns = skipColumns;
+        return keyRange;
+    }
+
     public boolean lexicographic()
     {
         return indexKind == IndexKind.LEXICOGRAPHIC;
@@ -219,6 +260,57 @@ public class IndexKeyRange
         return indexKind == IndexKind.SPATIAL;
     }
 
+    public boolean skipScan()
+    {
+        return skipColumns > 0;
+    }
+
+    public int skipColumns()
+    {
+        return skipColumns;
+    }
+
+    /**
+     * Describes the same keys as this range, of which only those whose index row satisfies predicate are wanted,
+     * and no more than limit of those. The index cursor checks each entry as it traverses the index, so that an
+     * entry that is rejected is never handed up as a row, and stops once it has found limit rows.
+     * A limit counts index entries, so it should only be given where each entry is an output row, that is, for a
+     * table index or a group index scanned with LEFT JOIN semantics throughout.
+     *
+     * @param predicate A condition on the fields of the index row, or null if all keys in the range qualify.
+     * @param limit     The largest number of rows to return, or -1 for no limit.
+     * @return IndexKeyRange covering the keys in this range that satisfy predicate, up to limit of them.
+     */
+    public IndexKeyRange filtered(TPreparedExpression predicate, int limit)
+    {
+        if (indexKind == IndexKind.SPATIAL) {
+            throw new IllegalArgumentException(
+                String.format("Scan of spatial index %s cannot be filtered", indexRowType));
+        }
+        if (limit < -1) {
+            throw new IllegalArgumentException(String.format("Index scan limit must be -1 or more: %s", limit));
+        }
+        IndexKeyRange filtered = new IndexKeyRange(this);
+        filtered.predicate = predicate;
+        filtered.limit = limit;
+        return filtered;
+    }
+
+    public boolean filtered()
+    {
+        return (predicate != null) || (limit >= 0);
+    }
+
+    public TPreparedExpression predicate()
+    {
+        return predicate;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
     public IndexKeyRange resetLo(IndexBound newLo)
     {
         IndexKeyRange restart = new IndexKeyRange(this);
@@ -267,6 +359,9 @@ public class IndexKeyRange
         this.hi = indexKeyRange.hi;
         this.hiInclusive = indexKeyRange.hiInclusive;
         this.indexKind = indexKeyRange.indexKind;
+        this.skipColumns = indexKeyRange.skipColumns;
+        this.predicate = indexKeyRange.predicate;
+        this.limit = indexKeyRange.limit;
     }
 
     private static int boundColumns(IndexRowType indexRowType, IndexBound lo, IndexBound hi)
@@ -331,6 +426,9 @@ public class IndexKeyRange
     private IndexBound hi;
     private boolean hiInclusive;
     private final IndexKind indexKind;
+    private int skipColumns;
+    private TPreparedExpression predicate;
+    private int limit = -1;
 
     // A CONVENTIONAL (SQL Layer) index scan normally allows a range for only the last specified part of the bound. E.g.,
     // (1, 10, 800) - (1, 10, 888) is legal, but (1, 10, 800) - (1, 20, 888) is not, because there are two ranges,
@@ -50,6 +50,17 @@ public class API
         return new Aggregate_Partial(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
     }
 
+    public static Operator aggregate_Hashed(Operator inputOperator,
+                                            RowType rowType,
+                                            int inputsIndex,
+                                            List<? extends TAggregator> aggregatorFactories,
+                                            List<? extends TInstance> aggregatorTypes,
+                                            List<Object> options,
+                                            List<AkCollator> collators)
+    {
+        return new Aggregate_Hashed(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options, collators);
+    }
+
     // Project
 
     public static Operator project_DefaultTest(Operator inputOperator,
@@ -76,6 +87,14 @@ public class API
         return new Project_Default(inputOperator, rowType, pExpressions);
     }
     
+    public static Operator project_Default(Operator inputOperator,
+                                           RowType rowType,
+                                           List<? extends TPreparedExpression> pExpressions,
+                                           boolean reuseRows)
+    {
+        return new Project_Default(inputOperator, rowType, pExpressions, reuseRows);
+    }
+
     public static Operator project_Default(Operator inputOperator, 
                                             List<ExpressionGenerator> expressionGenerators,
                                             RowType rowType) 
@@ -145,6 +164,11 @@ public class API
                 new GroupScan_Default.PositionalGroupCursorCreator(group, hKeyBindingPosition, deep, hKeyType, shortenUntil));
     }
 
+    public static Operator groupScan_Parallel(Group group, int nThreads)
+    {
+        return new GroupScan_Parallel(group, nThreads);
+    }
+
     // ValuesScan
 
     public static Operator valuesScan_Default (Collection<? extends BindableRow> rows, RowType rowType)
@@ -413,7 +437,17 @@ public class API
                                              IndexScanSelector indexScanSelector,
                                              int lookaheadQuantum)
     {
-        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum);
+        return indexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, false);
+    }
+
+    public static Operator indexScan_Default(IndexRowType indexType,
+                                             IndexKeyRange indexKeyRange,
+                                             Ordering ordering,
+                                             IndexScanSelector indexScanSelector,
+                                             int lookaheadQuantum,
+                                             boolean batchProbes)
+    {
+        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, batchProbes);
     }
 
     // Select
@@ -524,6 +558,18 @@ public class API
         return new Distinct_Partial(input, distinctType, collators);
     }
 
+    public static Operator distinct_Hashed(Operator input, RowType distinctType)
+    {
+        return new Distinct_Hashed(input, distinctType, null);
+    }
+
+    public static Operator distinct_Hashed(Operator input,
+                                           RowType distinctType,
+                                           List<AkCollator> collators)
+    {
+        return new Distinct_Hashed(input, distinctType, collators);
+    }
+
     // Map
 
     public static Operator map_NestedLoops(Operator outerInput,
@@ -620,6 +666,44 @@ public class API
                                  ascending, outputEqual);
     }
 
+    public static Operator union_Ordered(List<? extends Operator> inputs,
+                                         List<? extends RowType> inputRowTypes,
+                                         int orderingFields,
+                                         boolean[] ascending,
+                                         boolean outputEqual)
+    {
+        return new MultiUnion_Ordered(inputs, inputRowTypes,
+                                      orderingFields,
+                                      ascending, outputEqual);
+    }
+
+    // MergeJoin
+
+    public static Operator mergeJoin_Ordered(Operator leftInput, Operator rightInput,
+                                             RowType leftRowType, RowType rightRowType,
+                                             int[] leftJoinFields,
+                                             int[] rightJoinFields,
+                                             boolean[] ascending,
+                                             JoinType joinType)
+    {
+        return new MergeJoin_Ordered(leftInput, rightInput,
+                                     leftRowType, rightRowType,
+                                     leftJoinFields, rightJoinFields,
+                                     ascending, joinType, false);
+    }
+
+    public static Operator semiJoin_Ordered(Operator leftInput, Operator rightInput,
+                                            RowType leftRowType, RowType rightRowType,
+                                            int[] leftJoinFields,
+                                            int[] rightJoinFields,
+                                            boolean[] ascending)
+    {
+        return new MergeJoin_Ordered(leftInput, rightInput,
+                                     leftRowType, rightRowType,
+                                     leftJoinFields, rightJoinFields,
+                                     ascending, JoinType.INNER_JOIN, true);
+    }
+
     // HKeyUnion
 
     public static Operator hKeyUnion_Ordered(Operator leftInput, Operator rightInput,
@@ -723,6 +807,72 @@ public class API
                 depth);
     }
 
+    // Using_HashTable
+
+    public static Operator using_HashTable(Operator hashInput,
+                                           RowType hashedRowType,
+                                           List<? extends TPreparedExpression> comparisonFields,
+                                           int tableBindingPosition,
+                                           Operator joinedInput,
+                                           List<AkCollator> collators)
+    {
+        return new Using_HashTable(hashInput,
+                                   hashedRowType,
+                                   comparisonFields,
+                                   tableBindingPosition,
+                                   joinedInput,
+                                   collators);
+    }
+
+    // HashTableLookup_Default
+
+    public static Operator hashTableLookup_Default(RowType hashedRowType,
+                                                   List<? extends TPreparedExpression> outerComparisonFields,
+                                                   int tableBindingPosition,
+                                                   List<AkCollator> collators)
+    {
+        return new HashTableLookup_Default(hashedRowType,
+                                           outerComparisonFields,
+                                           tableBindingPosition,
+                                           collators);
+    }
+
+    // HashTablePartition_Default
+
+    public static Operator hashTablePartition_Default(Operator inputOperator,
+                                                      RowType rowType,
+                                                      List<? extends TPreparedExpression> comparisonFields,
+                                                      int tableBindingPosition,
+                                                      List<AkCollator> collators)
+    {
+        return new HashTablePartition_Default(inputOperator,
+                                              rowType,
+                                              comparisonFields,
+                                              tableBindingPosition,
+                                              collators);
+    }
+
+    // SemiJoin_Hashed
+
+    public static Operator semiJoin_Hashed(Operator input,
+                                           Operator subquery,
+                                           List<? extends TPreparedExpression> outerExpressions,
+                                           List<? extends TPreparedExpression> innerExpressions,
+                                           List<AkCollator> collators)
+    {
+        return new SemiJoin_Hashed(input, subquery, outerExpressions, innerExpressions, collators, false, false);
+    }
+
+    public static Operator antiJoin_Hashed(Operator input,
+                                           Operator subquery,
+                                           List<? extends TPreparedExpression> outerExpressions,
+                                           List<? extends TPreparedExpression> innerExpressions,
+                                           List<AkCollator> collators,
+                                           boolean nullAware)
+    {
+        return new SemiJoin_Hashed(input, subquery, outerExpressions, innerExpressions, collators, true, nullAware);
+    }
+
     // EmitBoundRow_Nested
 
     public static Operator emitBoundRow_Nested(Operator input,
@@ -818,7 +968,8 @@ public class API
     public static enum FlattenOption {
         KEEP_PARENT,
         KEEP_CHILD,
-        LEFT_JOIN_SHORTENS_HKEY
+        LEFT_JOIN_SHORTENS_HKEY,
+        REUSE_ROWS
     }
 
     // Lookup flags
@@ -0,0 +1,481 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashSpillPartitions;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+
+ <h1>Overview</h1>
+
+ Aggregate_Hashed applies a full aggregation to rows that need not be
+ sorted by their GROUP BY columns. Aggregation state for each distinct
+ combination of GROUP BY values is kept in a hash table until the input
+ is exhausted.
+
+ <h1>Arguments</h1>
+
+ <ul>
+
+ <li><b>input:</b> the input operator
+
+ <li><b>inputRowType:</b> the type of the rows to be aggregated
+
+ <li><b>inputsIndex:</b> the first index of the input rows that
+ represents an input; indexes before this are GROUP BY
+ fields. Required: <i>0 <= inputsIndex < input.rowType().nFields()</i>
+
+ <li><b>aggregatorFactories:</b> the aggregator functions, one per input.
+ Required: <i>inputsIndex + aggregatorFactories.size() ==
+ input.rowType().nFields()</i>
+
+ <li><b>aggregatorTypes:</b> the types of the aggregator states
+
+ <li><b>options:</b> an option for each aggregator (e.g., GROUP_CONCAT separator)
+
+ <li><b>collators:</b> collators for the GROUP BY fields, or null
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ Input rows are interpreted as for Aggregate_Partial: a GROUP BY
+ section followed by an inputs section. Each input row of
+ type <i>inputRowType</i> is applied to the aggregators of its
+ group. When the input cursor is finished, one row is output for each
+ group, in the order in which the groups were first seen.
+
+ As for Aggregate_Partial, if there are no input rows and there is no
+ GROUP BY, a single row of empty aggregate values is output.
+
+ <h1>Output</h1>
+
+ Output rows are as for Aggregate_Partial. All rows from the incoming
+ operator with a type other than <i>inputRowType</i> are passed through
+ unchanged, ahead of any aggregated rows.
+
+ <h1>Assumptions</h1>
+
+ GROUP BY fields that compare equal also hash equal, which holds as
+ long as string fields are given a collator consistent with their
+ comparison.
+
+ <h1>Performance</h1>
+
+ One hash table probe per input row, rather than a sort of the entire
+ input.
+
+ <h1>Memory requirements</h1>
+
+ One set of GROUP BY values and aggregator states per group, up to
+ the <code>fdbsql.hash.memory</code> budget. Once that is reached,
+ groups already in memory continue to aggregate, but input rows for
+ any other group are written to one of several temporary files
+ according to the hash of their GROUP BY values. Each file is then
+ aggregated in turn after the in-memory groups are output, spilling
+ again by a different hash partitioning if necessary. Output order is
+ then no longer the order in which groups were first seen.
+
+ */
+
+final class Aggregate_Hashed extends Operator
+{
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes) {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(outputType);
+    }
+
+    @Override
+    public List<Operator> getInputOperators() {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public RowType rowType() {
+        return outputType;
+    }
+
+    // Aggregate_Hashed interface
+
+    public Aggregate_Hashed(Operator inputOperator,
+                            RowType inputRowType,
+                            int inputsIndex,
+                            List<? extends TAggregator> aggregatorFactories,
+                            List<? extends TInstance> aggregatorTypes,
+                            List<Object> options,
+                            List<AkCollator> collators) {
+        ArgumentValidation.notNull("inputOperator", inputOperator);
+        ArgumentValidation.notNull("inputRowType", inputRowType);
+        ArgumentValidation.isBetween("inputsIndex", 0, inputsIndex, inputRowType.nFields()+1);
+        ArgumentValidation.isEQ("aggregator types", aggregatorTypes.size(), 
+                                "aggregators", aggregatorFactories.size());
+        ArgumentValidation.isEQ("inputsIndex + aggregators", inputsIndex + aggregatorFactories.size(), 
+                                "input fields", inputRowType.nFields());
+        if (collators != null)
+            ArgumentValidation.isEQ("collators", collators.size(), 
+                                    "inputsIndex", inputsIndex);
+        this.inputOperator = inputOperator;
+        this.inputRowType = inputRowType;
+        this.inputsIndex = inputsIndex;
+        this.outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, aggregatorTypes);
+        this.aggregators = aggregatorFactories;
+        this.aggregatorTypes = aggregatorTypes;
+        this.options = options;
+        this.collators = collators;
+    }
+
+    // Object interface
+
+    @Override
+    public String toString() {
+        return String.format("%s(GROUP BY %d fields, then: %s)", getClass().getSimpleName(), inputsIndex, aggregators);
+    }
+
+    // Plannable interface
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (TAggregator agg : aggregators)
+            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance(agg.displayName().toUpperCase()));
+        atts.put(Label.GROUPING_OPTION, PrimitiveExplainer.getInstance(inputsIndex));
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        atts.put(Label.INPUT_TYPE, inputRowType.getExplainer(context));
+        atts.put(Label.OUTPUT_TYPE, outputType.getExplainer(context));
+        return new CompoundExplainer(Type.AGGREGATE, atts);
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hashed open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hashed next");
+    private static final Logger LOG = LoggerFactory.getLogger(Aggregate_Hashed.class);
+
+    // Object state
+
+    private final Operator inputOperator;
+    private final RowType inputRowType;
+    private final AggregatedRowType outputType;
+    private final int inputsIndex;
+    private final List<? extends TAggregator> aggregators;
+    private final List<? extends TInstance> aggregatorTypes;
+    private final List<Object> options;
+    private final List<AkCollator> collators;
+
+    // Inner classes
+
+    private enum State { CLOSED, FILLING, EMPTYING, DESTROYED }
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                input.open();
+                groups = new LinkedHashMap<>();
+                memoryUsed = 0;
+                level = 0;
+                state = State.FILLING;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row output;
+                switch (state) {
+                case FILLING:
+                    {
+                        Row row;
+                        while ((row = input.next()) != null) {
+                            if (row.rowType() != inputRowType) {
+                                if (LOG_EXECUTION) {
+                                    LOG.debug("Aggregate_Hashed: yield {}", row);
+                                }
+                                return row; // pass through
+                            }
+                            aggregate(row);
+                        }
+                        iterator = groups.entrySet().iterator();
+                        state = State.EMPTYING;
+                        if (groups.isEmpty() && (inputsIndex == 0)) {
+                            output = createEmptyOutput();
+                            if (LOG_EXECUTION) {
+                                LOG.debug("Aggregate_Hashed: yield {}", output);
+                            }
+                            return output;
+                        }
+                    }
+                    /* falls through */
+                case EMPTYING:
+                    while (!iterator.hasNext() && aggregateSpilledPartition()) {
+                        // Partition may have been empty.
+                    }
+                    if (iterator.hasNext()) {
+                        output = createOutput(iterator.next());
+                        iterator.remove();
+                    }
+                    else {
+                        close();
+                        output = null;
+                    }
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Hashed: yield {}", output);
+                    }
+                    return output;
+                case DESTROYED:
+                    assert false;
+                    // Fall through
+                case CLOSED:
+                default:
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Hashed: yield null");
+                    }
+                    return null;
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            input.close();
+            groups = null;
+            iterator = null;
+            closeSpills();
+            state = State.CLOSED;
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            state = State.DESTROYED;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return state == State.CLOSED;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return state == State.FILLING || state == State.EMPTYING;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return state == State.DESTROYED;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context, inputOperator.cursor(context, bindingsCursor));
+            keyEvaluations = new ArrayList<>(inputsIndex);
+            for (int i = 0; i < inputsIndex; i++) {
+                keyEvaluations.add(new TPreparedField(inputRowType.typeAt(i), i).build());
+            }
+            memoryBudget = HashSpillPartitions.memoryBudget(context);
+        }
+
+        // For use by this class
+
+        private void aggregate(Row row)
+        {
+            KeyWrapper key = new KeyWrapper(row, keyEvaluations, collators);
+            Value[] states = groups.get(key);
+            if (states == null) {
+                if (memoryUsed >= memoryBudget) {
+                    if (spill == null) {
+                        spill = new HashSpillPartitions(context, inputRowType);
+                        spills.add(spill);
+                    }
+                    spill.write(HashSpillPartitions.partition(key.hashCode(), level), row);
+                    return;
+                }
+                memoryUsed += HashSpillPartitions.estimateSize(row);
+                states = new Value[aggregators.size()];
+                for (int i = 0; i < states.length; i++) {
+                    states[i] = new Value(aggregatorTypes.get(i));
+                }
+                groups.put(key, states);
+            }
+            for (int i = 0; i < states.length; i++) {
+                int inputIndex = i + inputsIndex;
+                TInstance inputType = row.rowType().typeAt(inputIndex);
+                ValueSource inputSource = row.value(inputIndex);
+                aggregators.get(i).input(inputType, inputSource, aggregatorTypes.get(i), states[i], options.get(i));
+            }
+        }
+
+        /** Queue any partitions spilled during the pass just completed
+         * and then aggregate the next pending partition into a fresh set
+         * of groups, one level deeper. */
+        private boolean aggregateSpilledPartition()
+        {
+            if (spill != null) {
+                for (int i = 0; i < HashSpillPartitions.NPARTITIONS; i++) {
+                    if (spill.isSpilled(i)) {
+                        pending.add(new SpilledPartition(spill, i, level));
+                    }
+                }
+                spill = null;
+            }
+            SpilledPartition partition = pending.poll();
+            if (partition == null) {
+                return false;
+            }
+            groups = new LinkedHashMap<>();
+            memoryUsed = 0;
+            level = partition.level + 1;
+            HashSpillPartitions.Reader reader = partition.spill.read(partition.partition);
+            try {
+                Row row;
+                while ((row = reader.next()) != null) {
+                    checkQueryCancelation();
+                    aggregate(row);
+                }
+            }
+            finally {
+                reader.close();
+            }
+            iterator = groups.entrySet().iterator();
+            return true;
+        }
+
+        private void closeSpills()
+        {
+            for (HashSpillPartitions spilled : spills) {
+                spilled.close();
+            }
+            spills.clear();
+            pending.clear();
+            spill = null;
+        }
+
+        private Row createOutput(Map.Entry<KeyWrapper,Value[]> group)
+        {
+            ValuesHolderRow outputRow = new ValuesHolderRow(outputType);
+            List<Value> keyValues = group.getKey().getValues();
+            for (int i = 0; i < inputsIndex; i++) {
+                ValueTargets.copyFrom(keyValues.get(i), outputRow.valueAt(i));
+            }
+            Value[] states = group.getValue();
+            for (int i = 0; i < states.length; i++) {
+                Value value = outputRow.valueAt(inputsIndex + i);
+                if (states[i].hasAnyValue())
+                    ValueTargets.copyFrom(states[i], value);
+                else
+                    aggregators.get(i).emptyValue(value);
+            }
+            return outputRow;
+        }
+
+        private Row createEmptyOutput()
+        {
+            ValuesHolderRow outputRow = new ValuesHolderRow(outputType);
+            for (int i = 0; i < outputRow.rowType().nFields(); i++) {
+                aggregators.get(i).emptyValue(outputRow.valueAt(i));
+            }
+            return outputRow;
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> keyEvaluations;
+        private State state = State.CLOSED;
+        private Map<KeyWrapper,Value[]> groups;
+        private Iterator<Map.Entry<KeyWrapper,Value[]>> iterator;
+        private final long memoryBudget;
+        private long memoryUsed;
+        private int level;
+        private HashSpillPartitions spill;
+        private final List<HashSpillPartitions> spills = new ArrayList<>();
+        private final Deque<SpilledPartition> pending = new ArrayDeque<>();
+    }
+
+    private static class SpilledPartition
+    {
+        SpilledPartition(HashSpillPartitions spill, int partition, int level)
+        {
+            this.spill = spill;
+            this.partition = partition;
+            this.level = level;
+        }
+
+        final HashSpillPartitions spill;
+        final int partition;
+        final int level;
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.foundationdb.qp.operator;
 
+import com.foundationdb.qp.row.ImmutableRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.AggregatedRowType;
@@ -145,11 +146,13 @@ import java.util.*;
  <h1>Performance</h1>
 
  Partially dictated by aggregators, though expected to be
- minimal. Comparison of GROUP BY columns is O(N).
+ minimal. Comparison of GROUP BY columns is O(N). Input is read
+ a {@link RowBatch} at a time, so that operators below with a
+ native batch implementation avoid per-row dispatch.
 
  <h1>Memory requirements</h1>
 
- One row and one set of grouping column values.
+ One batch of input rows and one set of grouping column values.
 
  */
 
@@ -290,6 +293,7 @@ final class Aggregate_Partial extends Operator
                 if (cursorState != CursorState.CLOSED)
                     throw new IllegalStateException("can't open cursor: already open");
                 inputCursor.open();
+                inputExhausted = false;
                 cursorState = CursorState.OPENING;
             } finally {
                 TAP_OPEN.out();
@@ -306,53 +310,32 @@ final class Aggregate_Partial extends Operator
                 checkQueryCancelation();
                 if (cursorState == CursorState.CLOSED)
                     throw new IllegalStateException("cursor not open");
-                if (cursorState == CursorState.CLOSING) {
-                    close();
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Aggregate_Partial null");
-                    }
-                    return null;
+                return nextOutput();
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
                 }
+            }
+        }
 
-                assert cursorState == CursorState.OPENING || cursorState == CursorState.RUNNING : cursorState;
-                while (true) {
-                    Row input = nextInput();
-                    Row output;
-                    if (input == null) {
-                        if (everSawInput) {
-                            cursorState = CursorState.CLOSING;
-                            output = createOutput();
-                        }
-                        else if (noGroupBy()) {
-                            cursorState = CursorState.CLOSING;
-                            output = createEmptyOutput();
-                        }
-                        else {
-                            close();
-                            output = null;
-                        }
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", output);
-                        }
-                        return output;
-                    }
-                    if (!input.rowType().equals(inputRowType)) {
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", input);
-                        }
-                        return input; // pass through
-                    }
-                    everSawInput = true;
-                    if (outputNeeded(input)) {
-                        saveInput(input); // save this input for the next time this method is invoked
-                        output = createOutput();
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", output);
-                        }
-                        return output;
+        @Override
+        public boolean nextBatch(RowBatch batch) {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (cursorState == CursorState.CLOSED)
+                    throw new IllegalStateException("cursor not open");
+                while (!batch.isFull()) {
+                    Row output = nextOutput();
+                    if (output == null) {
+                        return false;
                     }
-                    aggregate(input);
+                    // A passed through row may be reused once the input batch is refilled.
+                    batch.add(ImmutableRow.ifTransient(output));
                 }
+                return true;
             } finally {
                 if (TAP_NEXT_ENABLED) {
                     TAP_NEXT.out();
@@ -365,6 +348,8 @@ final class Aggregate_Partial extends Operator
             CursorLifecycle.checkIdleOrActive(this);
             if (cursorState != CursorState.CLOSED) {
                 holder = null;
+                inputBatch.clear();
+                inputPosition = 0;
                 inputCursor.close();
                 cursorState = CursorState.CLOSED;
             }
@@ -415,11 +400,63 @@ final class Aggregate_Partial extends Operator
         @Override
         public void cancelBindings(QueryBindings bindings) {
             inputCursor.cancelBindings(bindings);
+            inputBatch.clear();
+            inputPosition = 0;
             cursorState = CursorState.CLOSED;
         }
 
         // for use in this class
 
+        private Row nextOutput() {
+            if (cursorState == CursorState.CLOSING) {
+                close();
+                if (LOG_EXECUTION) {
+                    LOG.debug("Aggregate_Partial null");
+                }
+                return null;
+            }
+
+            assert cursorState == CursorState.OPENING || cursorState == CursorState.RUNNING : cursorState;
+            while (true) {
+                Row input = nextInput();
+                Row output;
+                if (input == null) {
+                    if (everSawInput) {
+                        cursorState = CursorState.CLOSING;
+                        output = createOutput();
+                    }
+                    else if (noGroupBy()) {
+                        cursorState = CursorState.CLOSING;
+                        output = createEmptyOutput();
+                    }
+                    else {
+                        close();
+                        output = null;
+                    }
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", output);
+                    }
+                    return output;
+                }
+                if (!input.rowType().equals(inputRowType)) {
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", input);
+                    }
+                    return input; // pass through
+                }
+                everSawInput = true;
+                if (outputNeeded(input)) {
+                    saveInput(input); // save this input for the next time this method is invoked
+                    output = createOutput();
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", output);
+                    }
+                    return output;
+                }
+                aggregate(input);
+            }
+        }
+
         private void aggregate(Row input) {
             for (int i=0; i < pAggrs.size(); ++i) {
                 TAggregator aggregator = pAggrs.get(i);
@@ -500,8 +537,17 @@ final class Aggregate_Partial extends Operator
                 result = holder;
                 holder = null;
             }
+            else if (inputPosition < inputBatch.size()) {
+                result = inputBatch.get(inputPosition++);
+            }
+            else if (inputExhausted) {
+                result = null;
+            }
             else {
-                result = inputCursor.next();
+                inputBatch.clear();
+                inputPosition = 0;
+                inputExhausted = !inputCursor.nextBatch(inputBatch);
+                result = inputBatch.isEmpty() ? nextInput() : inputBatch.get(inputPosition++);
             }
             return result;
         }
@@ -521,6 +567,7 @@ final class Aggregate_Partial extends Operator
         private AggregateCursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
             super(context);
             this.inputCursor = inputOperator.cursor(context, bindingsCursor);
+            this.inputBatch = new RowBatch();
             keyValues = new ArrayList<>(inputsIndex);
             for (int i = 0; i < inputsIndex; ++i) {
                 keyValues.add(new Value(outputType.typeAt(i)));
@@ -542,6 +589,10 @@ final class Aggregate_Partial extends Operator
         private Row holder;
         private CursorState cursorState = CursorState.CLOSED;
         private boolean everSawInput = false;
+        // Input is always read ahead a batch at a time.
+        private final RowBatch inputBatch;
+        private int inputPosition;
+        private boolean inputExhausted;
     }
 
     private enum CursorState {
@@ -71,8 +71,9 @@ import java.util.*;
  <li><b>int inputBindingPosition:</b> Indicates input row's position in the query context. The hkey
  of this row will be used to locate ancestors.
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in bindings stream.
+ <li><b>int lookaheadQuantum:</b> Largest number of cursors to keep open by looking
+  ahead in bindings stream. Starts at one and adapts to how quickly
+  the output is consumed.
 
  </ul>
 
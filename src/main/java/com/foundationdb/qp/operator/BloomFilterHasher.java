@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.value.ValueHasher;
+import com.foundationdb.server.types.value.ValueSource;
+
+/**
+ * Computes the 64-bit hash of a list of values by which Using_BloomFilter
+ * loads a {@link com.foundationdb.util.BlockedBloomFilter} and
+ * Select_BloomFilter probes it, combining each value's {@link ValueHasher}
+ * hash.
+ */
+class BloomFilterHasher
+{
+    public void reset()
+    {
+        hash = SEED;
+    }
+
+    public void append(ValueSource value, AkCollator collator)
+    {
+        long valueHash = value.isNull() ? 0 : ValueHasher.hash(value, collator);
+        hash = Long.rotateLeft((hash ^ valueHash) * MULTIPLIER, 31);
+    }
+
+    public long hash()
+    {
+        // So that both halves of the hash are well mixed
+        return ValueHasher.mix(hash);
+    }
+
+    // Class state
+
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+    private static final long MULTIPLIER = 0x87c37b91114253d5L;
+
+    // Object state
+
+    private long hash = SEED;
+}
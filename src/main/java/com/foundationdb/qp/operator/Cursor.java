@@ -28,4 +28,13 @@ public interface Cursor extends RowCursor, QueryBindingsCursor
      * bindings and close cursor and bindings.
      */
     public void closeTopLevel();
+
+    /** Append rows to <code>batch</code> until it is full or this
+     * cursor is exhausted. Equivalent to calling {@link #next} that
+     * many times, but lets an operator amortize its per-row overhead.
+     * @return <code>false</code> if the cursor is now exhausted, in
+     * which case the batch may still have had rows added, and no
+     * further calls should be made until the cursor is reopened.
+     */
+    public boolean nextBatch(RowBatch batch);
 }
@@ -0,0 +1,473 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.storeadapter.PersistitKeyHasher;
+import com.foundationdb.qp.util.HashSpillPartitions;
+import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.error.StorageKeySizeExceededException;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.explain.std.DistinctExplainer;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import com.persistit.Key;
+import com.persistit.exception.KeyTooLongException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+
+ <h1>Overview</h1>
+
+ Distinct_Hashed eliminates duplicate rows from an input stream in any
+ order, by remembering the rows already seen in a hash table.
+
+ <h1>Arguments</h1>
+
+ <ul>
+
+ <li><b>Operator input:</b> the input operator
+
+ <li><b>RowType distinctType:</b> Specifies the type of rows from the input stream.
+
+ <li><b>List<AkCollator> collators:</b> collators for the fields, or null to use
+ those of the field types.
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ Each input row of type distinctType is written to output the first time
+ that a row matching it in all columns is seen, and discarded after that.
+ Rows of any other type are passed through.
+
+ <h1>Output</h1>
+
+ A subset of the input rows, in which no two rows match in all columns. As
+ long as the rows seen fit in memory, they are in input order and each is
+ output as soon as it is read, so the operator does not block and
+ a following Limit_Default can stop it early.
+
+ <h1>Assumptions</h1>
+
+ None.
+
+ <h1>Performance</h1>
+
+ This operator performs no IO unless it spills. For each row, all the
+ columns are encoded into a Persistit key, which is hashed and looked up.
+ Only rows not seen before are copied.
+
+ <h1>Memory requirements</h1>
+
+ The key encoding of each distinct row, up to the
+ <code>fdbsql.hash.memory</code> budget. Once that is reached, rows not
+ already seen are written to one of several temporary files according to
+ their hash instead of being output. After the input is exhausted, each
+ file is read in turn, with a new hash table, spilling again by a
+ different partitioning if necessary, and its distinct rows are output.
+
+ */
+
+class Distinct_Hashed extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s)", getClass().getSimpleName(), distinctType);
+    }
+
+    // Operator interface
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return distinctType;
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(distinctType);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return describePlan(inputOperator);
+    }
+
+    // Distinct_Hashed interface
+
+    public Distinct_Hashed(Operator inputOperator, RowType distinctType, List<AkCollator> collators)
+    {
+        ArgumentValidation.notNull("inputOperator", inputOperator);
+        ArgumentValidation.notNull("distinctType", distinctType);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators", collators.size(), "fields", distinctType.nFields());
+        this.inputOperator = inputOperator;
+        this.distinctType = distinctType;
+        this.collators = collators;
+    }
+
+    // Class state
+    
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Distinct_Hashed open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Distinct_Hashed next");
+    private static final Logger LOG = LoggerFactory.getLogger(Distinct_Hashed.class);
+    // HashSet entry, key object and array headers.
+    private static final int ENTRY_OVERHEAD = 64;
+
+    // Object state
+
+    private final Operator inputOperator;
+    private final RowType distinctType;
+    private final List<AkCollator> collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        return new DistinctExplainer(getName(), distinctType, inputOperator, context);
+    }
+
+    // Inner classes
+
+    private enum State { CLOSED, FILLING, EMPTYING, DESTROYED }
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                input.open();
+                seen = new HashSet<>();
+                memoryUsed = 0;
+                level = 0;
+                state = State.FILLING;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row;
+                switch (state) {
+                case FILLING:
+                    while ((row = input.next()) != null) {
+                        if ((row.rowType() != distinctType) || isDistinct(row)) {
+                            if (LOG_EXECUTION) {
+                                LOG.debug("Distinct_Hashed: yield {}", row);
+                            }
+                            return row;
+                        }
+                    }
+                    state = State.EMPTYING;
+                    /* falls through */
+                case EMPTYING:
+                    row = null;
+                    while (true) {
+                        if (reader == null) {
+                            if (!readSpilledPartition())
+                                break;
+                        }
+                        row = reader.next();
+                        if (row == null) {
+                            reader.close();
+                            reader = null;
+                        }
+                        else {
+                            checkQueryCancelation();
+                            if (isDistinct(row))
+                                break;
+                        }
+                    }
+                    if (row == null) {
+                        close();
+                    }
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Distinct_Hashed: yield {}", row);
+                    }
+                    return row;
+                case DESTROYED:
+                    assert false;
+                    // Fall through
+                case CLOSED:
+                default:
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Distinct_Hashed: yield null");
+                    }
+                    return null;
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            input.close();
+            seen = null;
+            closeSpills();
+            state = State.CLOSED;
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            state = State.DESTROYED;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return state == State.CLOSED;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return state == State.FILLING || state == State.EMPTYING;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return state == State.DESTROYED;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            key = adapter().createKey();
+            keyTarget = new PersistitKeyValueTarget(Distinct_Hashed.class.getSimpleName());
+            keyTarget.attach(key);
+            memoryBudget = HashSpillPartitions.memoryBudget(context);
+        }
+
+        // For use by this class
+
+        /** Whether <code>row</code> is the first of its value, in which case
+         * it is remembered, unless over budget, when it is spilled. */
+        private boolean isDistinct(Row row)
+        {
+            encode(row);
+            probe.set(key.getEncodedBytes(), key.getEncodedSize(), hasher.hash(key));
+            if (seen.contains(probe)) {
+                return false;
+            }
+            if (memoryUsed >= memoryBudget) {
+                if (spill == null) {
+                    spill = new HashSpillPartitions(context, distinctType);
+                    spills.add(spill);
+                }
+                spill.write(HashSpillPartitions.partition(probe.hashCode(), level), row);
+                return false;
+            }
+            EncodedRow entry = probe.copy();
+            seen.add(entry);
+            memoryUsed += entry.bytes.length + ENTRY_OVERHEAD;
+            return true;
+        }
+
+        private void encode(Row row)
+        {
+            // Loop for key growth
+            while (true) {
+                try {
+                    key.clear();
+                    for (int i = 0; i < distinctType.nFields(); i++) {
+                        ValueSource value = row.value(i);
+                        AkCollator collator = (collators == null) ? null : collators.get(i);
+                        if ((collator != null) && !value.isNull() &&
+                            (value.getType().typeClass() instanceof TString)) {
+                            collator.append(key, AkCollator.getString(value, collator));
+                        }
+                        else {
+                            value.getType().writeCollating(value, keyTarget);
+                        }
+                    }
+                    return;
+                } catch (KeyTooLongException | StorageKeySizeExceededException e) {
+                    if (key.getMaximumSize() == Key.MAX_KEY_LENGTH_UPPER_BOUND) {
+                        throw e;
+                    }
+                    key.setMaximumSize(Math.min(key.getMaximumSize() * 2, Key.MAX_KEY_LENGTH_UPPER_BOUND));
+                }
+            }
+        }
+
+        /** Queue any partitions spilled during the pass just completed
+         * and then start reading the next pending partition with a fresh
+         * hash table, one level deeper. */
+        private boolean readSpilledPartition()
+        {
+            if (spill != null) {
+                for (int i = 0; i < HashSpillPartitions.NPARTITIONS; i++) {
+                    if (spill.isSpilled(i)) {
+                        pending.add(new SpilledPartition(spill, i, level));
+                    }
+                }
+                spill = null;
+            }
+            SpilledPartition partition = pending.poll();
+            if (partition == null) {
+                return false;
+            }
+            seen = new HashSet<>();
+            memoryUsed = 0;
+            level = partition.level + 1;
+            reader = partition.spill.read(partition.partition);
+            return true;
+        }
+
+        private void closeSpills()
+        {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            for (HashSpillPartitions spilled : spills) {
+                spilled.close();
+            }
+            spills.clear();
+            pending.clear();
+            spill = null;
+        }
+
+        // Object state
+
+        private final Key key;
+        private final PersistitKeyValueTarget keyTarget;
+        private final PersistitKeyHasher hasher = new PersistitKeyHasher();
+        private final EncodedRow probe = new EncodedRow();
+        private State state = State.CLOSED;
+        private Set<EncodedRow> seen;
+        private final long memoryBudget;
+        private long memoryUsed;
+        private int level;
+        private HashSpillPartitions spill;
+        private HashSpillPartitions.Reader reader;
+        private final List<HashSpillPartitions> spills = new ArrayList<>();
+        private final Deque<SpilledPartition> pending = new ArrayDeque<>();
+    }
+
+    /** The key encoding of a row. The probe instance refers to the key's
+     * own buffer, so that only rows not seen before are copied. */
+    private static class EncodedRow
+    {
+        void set(byte[] bytes, int length, long hash)
+        {
+            this.bytes = bytes;
+            this.length = length;
+            this.hash = (int)(hash ^ (hash >>> 32));
+        }
+
+        EncodedRow copy()
+        {
+            EncodedRow copy = new EncodedRow();
+            copy.bytes = Arrays.copyOf(bytes, length);
+            copy.length = length;
+            copy.hash = hash;
+            return copy;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof EncodedRow))
+                return false;
+            EncodedRow other = (EncodedRow)o;
+            if ((hash != other.hash) || (length != other.length))
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other.bytes[i])
+                    return false;
+            }
+            return true;
+        }
+
+        byte[] bytes;
+        int length;
+        int hash;
+    }
+
+    private static class SpilledPartition
+    {
+        SpilledPartition(HashSpillPartitions spill, int partition, int level)
+        {
+            this.spill = spill;
+            this.partition = partition;
+            this.level = level;
+        }
+
+        final HashSpillPartitions spill;
+        final int partition;
+        final int level;
+    }
+}
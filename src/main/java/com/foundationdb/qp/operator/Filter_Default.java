@@ -180,6 +180,45 @@ class Filter_Default extends Operator
             }
         }
 
+        @Override
+        public boolean nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                int start = batch.size();
+                boolean more;
+                do {
+                    more = input.nextBatch(batch);
+                    int kept = start;
+                    for (int i = start; i < batch.size(); i++) {
+                        Row row = batch.get(i);
+                        if (keepTypes.contains(row.rowType())) {
+                            batch.set(kept++, row);
+                        }
+                    }
+                    batch.truncate(kept);
+                    start = kept;
+                } while (more && !batch.isFull());
+                if (!more) {
+                    close();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Filter_Default: yield {}", batch);
+                }
+                return more;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -38,6 +38,7 @@ import java.util.Set;
 
 import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_CHILD;
 import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_PARENT;
+import static com.foundationdb.qp.operator.API.FlattenOption.REUSE_ROWS;
 
 /**
 
@@ -76,6 +77,7 @@ import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_PARENT;
  <li>KEEP_PARENT: Copy parent rows to output.
  <li>KEEP_CHILD: Copy child rows to output.
  <li>LEFT_JOIN_SHORTENS_HKEY: If doing a left join, any generated row will have the hkey of its left row
+ <li>REUSE_ROWS: Recycle flattened row objects once the consumer has moved on to the next row.
  </ul>
 
  These options can be used individually or together.
@@ -116,6 +118,10 @@ import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_PARENT;
  all the fields of the childType. For left and right joins, the fields
  of the missing type are null.
 
+ With REUSE_ROWS, flattened rows are transient: a returned row is only
+ valid until the next call to next(), after which the same object may
+ be filled in with a different parent and child.
+
  When a parentType row and childType row are flattened, the hkey of the
  flattened row is the same as that of the child, with nulls provided as
  necessary in outerjoin cases. There is one exception to this: for a
@@ -132,6 +138,10 @@ import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_PARENT;
  another Customer appears in the input), but does not require any
  ordering among Customers.
 
+ Rows of parentType are held while their children are processed, so
+ they must not be transient. In particular, the output of a Flatten
+ with REUSE_ROWS cannot be the parent input of another Flatten.
+
  h2. Performance
 
  Flatten_HKeyOrdered does no IO. For each input row, the type is
@@ -143,7 +153,8 @@ import static com.foundationdb.qp.operator.API.FlattenOption.KEEP_PARENT;
  Rows are combined by creating a wrapper of input parent and child
  rows, so while memory is consumed, there is no copying of fields from
  one row to another. The operator stores up to three input rows at a
- time.
+ time. With REUSE_ROWS, the wrappers (and the hkeys of left join rows)
+ are recycled, so that no memory is allocated for each output row.
 
  */
 
@@ -233,6 +244,7 @@ class Flatten_HKeyOrdered extends Operator
         this.rightJoin = fullJoin || joinType.equals(API.JoinType.RIGHT_JOIN);
         this.keepParent = options.contains(KEEP_PARENT);
         this.keepChild = options.contains(KEEP_CHILD);
+        this.reuseRows = options.contains(REUSE_ROWS);
         List<HKeySegment> childHKeySegments = childType.hKey().segments();
         HKeySegment lastChildHKeySegment = childHKeySegments.get(childHKeySegments.size() - 1);
         RowDef childRowDef = lastChildHKeySegment.table().rowDef();
@@ -258,6 +270,7 @@ class Flatten_HKeyOrdered extends Operator
     private final boolean rightJoin;
     private final boolean keepParent;
     private final boolean keepChild;
+    private final boolean reuseRows;
     // For constructing a left-join hkey
     private final int childOrdinal;
     private final int nChildHKeySegmentFields;
@@ -375,6 +388,18 @@ class Flatten_HKeyOrdered extends Operator
             }
         }
 
+        @Override
+        public boolean nextBatch(RowBatch batch)
+        {
+            // Batched rows are all live at once, so cannot share row objects.
+            batching = true;
+            try {
+                return super.nextBatch(batch);
+            } finally {
+                batching = false;
+            }
+        }
+
         @Override
         public void close()
         {
@@ -409,6 +434,14 @@ class Flatten_HKeyOrdered extends Operator
         {
             super(context, input);
             this.leftJoinHKey = adapter().newHKey(childType.hKey());
+            if (reuseRows) {
+                // Enough for any pending rows plus the one last returned.
+                reusedRows = new FlattenedRow[MAX_PENDING + 1];
+                reusedHKeys = new HKey[MAX_PENDING + 1];
+            } else {
+                reusedRows = null;
+                reusedHKeys = null;
+            }
         }
 
         // For use by this class
@@ -417,7 +450,7 @@ class Flatten_HKeyOrdered extends Operator
         {
             assert parent != null;
             assert child != null;
-            pending.add(new FlattenedRow(flattenType, parent, child, child.hKey()));
+            pending.add(flattenedRow(parent, child, child.hKey()));
         }
 
         private void generateLeftJoinRow(Row parent)
@@ -431,9 +464,9 @@ class Flatten_HKeyOrdered extends Operator
                                       this, parent.hKey()));
                 }
                 // Copy leftJoinHKey to avoid aliasing problems. (leftJoinHKey changes on each parent row.)
-                HKey hKey = adapter().newHKey(childType.hKey());
+                HKey hKey = leftJoinRowHKey();
                 leftJoinHKey.copyTo(hKey);
-                pending.add(new FlattenedRow(flattenType, parent, null, hKey));
+                pending.add(flattenedRow(parent, null, hKey));
                 // Prevent generation of another left join row for the same parent
                 childlessParent = false;
             }
@@ -443,8 +476,38 @@ class Flatten_HKeyOrdered extends Operator
         {
             assert child != null;
             if (rightJoin) {
-                pending.add(new FlattenedRow(flattenType, null, child, child.hKey()));
+                pending.add(flattenedRow(null, child, child.hKey()));
+            }
+        }
+
+        private FlattenedRow flattenedRow(Row parent, Row child, HKey hKey)
+        {
+            if (!reuseRows || batching) {
+                return new FlattenedRow(flattenType, parent, child, hKey);
+            }
+            FlattenedRow row = reusedRows[nextReused];
+            if (row == null) {
+                row = new FlattenedRow(flattenType, parent, child, hKey, true);
+                reusedRows[nextReused] = row;
+            } else {
+                row.reset(parent, child, hKey);
+            }
+            nextReused = (nextReused + 1) % reusedRows.length;
+            return row;
+        }
+
+        // The hkey to go with the row that flattenedRow will return next.
+        private HKey leftJoinRowHKey()
+        {
+            if (!reuseRows || batching) {
+                return adapter().newHKey(childType.hKey());
+            }
+            HKey hKey = reusedHKeys[nextReused];
+            if (hKey == null) {
+                hKey = adapter().newHKey(childType.hKey());
+                reusedHKeys[nextReused] = hKey;
             }
+            return hKey;
         }
 
         private void addToPending(Row row)
@@ -502,5 +565,9 @@ class Flatten_HKeyOrdered extends Operator
         private final HKey leftJoinHKey;
         private boolean childlessParent;
         private boolean idle = true;
+        private final FlattenedRow[] reusedRows;
+        private final HKey[] reusedHKeys;
+        private int nextReused;
+        private boolean batching;
     }
 }
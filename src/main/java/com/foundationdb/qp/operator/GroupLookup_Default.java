@@ -68,8 +68,9 @@ import static java.lang.Math.min;
  will be preserved in the output stream (flag = KEEP_INPUT), or
  discarded (flag = DISCARD_INPUT).
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in input stream, possibly across multiple outer loops.
+ <li><b>int lookaheadQuantum:</b> Largest number of cursors to keep open by looking
+  ahead in input stream, possibly across multiple outer loops. Starts at
+  one input row and adapts to how quickly the output is consumed.
 
  </ul>
 
@@ -562,7 +563,8 @@ class GroupLookup_Default extends Operator
                     // Get some more input rows, crossing bindings boundaries as
                     // necessary, and open cursors for them.
                     pipeline:
-                    while (!bindingsExhausted && inputRows[nextIndex] == null) {
+                    while (!bindingsExhausted && inputRows[nextIndex] == null &&
+                           nloaded < lookahead.current()) {
                         if (nextBindings == null) {
                             if (newBindings) {
                                 nextBindings = currentBindings;
@@ -608,6 +610,7 @@ class GroupLookup_Default extends Operator
                                 cursors[index].open();
                             }
                             nextIndex = (nextIndex + 1) % quantum;
+                            nloaded++;
                         }                        
                     }
                     // Now take ancestor rows from the front of those.
@@ -622,7 +625,9 @@ class GroupLookup_Default extends Operator
                         inputRows[currentIndex] = null;
                         inputRowBindings[currentIndex] = null;
                         currentIndex = (currentIndex + 1) % quantum;
+                        nloaded--;
                         cursorIndex = 0;
+                        lookahead.consumed();
                     }
                     else if (cursorIndex == keepInputCursorIndex) {
                         outputRow = inputRows[currentIndex];
@@ -668,6 +673,7 @@ class GroupLookup_Default extends Operator
             CursorLifecycle.checkIdleOrActive(this);
             if (!closed) {
                 // Any rows for the current bindings being closed need to be discarded.
+                boolean abandoned = false;
                 while (currentBindings == inputRowBindings[currentIndex]) {
                     inputRows[currentIndex] = null;
                     inputRowBindings[currentIndex] = null;
@@ -678,6 +684,11 @@ class GroupLookup_Default extends Operator
                         lookupHKeys[index] = null;
                     }
                     currentIndex = (currentIndex + 1) % quantum;
+                    nloaded--;
+                    abandoned = true;
+                }
+                if (abandoned) {
+                    lookahead.abandoned();
                 }
                 closed = true;
             }
@@ -685,6 +696,7 @@ class GroupLookup_Default extends Operator
 
         @Override
         public void destroy() {
+            lookahead.report();
             pendingBindings.clear();
             Arrays.fill(inputRowBindings, null);
             Arrays.fill(inputRows, null);
@@ -747,6 +759,7 @@ class GroupLookup_Default extends Operator
                 if (!pending.isAncestor(bindings)) break;
                 pendingBindings.remove();
             }
+            boolean abandoned = false;
             while ((inputRowBindings[currentIndex] != null) &&
                    inputRowBindings[currentIndex].isAncestor(bindings)) {
                 inputRows[currentIndex] = null;
@@ -758,6 +771,11 @@ class GroupLookup_Default extends Operator
                     lookupHKeys[index] = null;
                 }
                 currentIndex = (currentIndex + 1) % quantum;
+                nloaded--;
+                abandoned = true;
+            }
+            if (abandoned) {
+                lookahead.abandoned();
             }
             currentBindings = null;
             newBindings = false;
@@ -793,6 +811,7 @@ class GroupLookup_Default extends Operator
             // Convert from number of cursors to number of input rows, rounding up.
             quantum = (quantum + ncursors - 1) / ncursors;
             this.quantum = quantum;
+            this.lookahead = new LookaheadQuantum(quantum);
             this.inputRows = new Row[quantum];
             this.inputRowBindings = new QueryBindings[quantum];
             this.ncursors = nindex;
@@ -815,6 +834,10 @@ class GroupLookup_Default extends Operator
             if (nextBindings != null) {
                 input.close();  // Starting over.
             }
+            if (nloaded > 0) {
+                lookahead.abandoned();
+                nloaded = 0;
+            }
             Arrays.fill(inputRows, null);
             pendingBindings.clear();
             Arrays.fill(inputRowBindings, null);
@@ -826,12 +849,13 @@ class GroupLookup_Default extends Operator
         private final Cursor input;
         private final Queue<QueryBindings> pendingBindings;
         private final int quantum;
+        private final LookaheadQuantum lookahead;
         private final Row[] inputRows;
         private final QueryBindings[] inputRowBindings;
         private final int ncursors, keepInputCursorIndex, branchCursorIndex;
         private final GroupCursor[] cursors;
         private final HKey[] lookupHKeys;
-        private int currentIndex, nextIndex, cursorIndex;
+        private int currentIndex, nextIndex, cursorIndex, nloaded;
         private QueryBindings currentBindings, nextBindings;
         private boolean bindingsExhausted, closed = true, newBindings;
     }
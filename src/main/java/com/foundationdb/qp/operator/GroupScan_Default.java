@@ -167,6 +167,35 @@ class GroupScan_Default extends Operator
             }
         }
 
+        @Override
+        public boolean nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                boolean more = true;
+                while (!batch.isFull()) {
+                    Row row = cursor.next();
+                    if (row == null) {
+                        close();
+                        more = false;
+                        break;
+                    }
+                    batch.add(row);
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("GroupScan_Default: yield {}", batch);
+                }
+                return more;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
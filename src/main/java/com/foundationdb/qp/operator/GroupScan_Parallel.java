@@ -0,0 +1,528 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.PrimaryKey;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.error.AkibanInternalException;
+import com.foundationdb.server.error.QueryCanceledException;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.service.ServiceManager;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.store.Store;
+import com.foundationdb.server.store.statistics.Histogram;
+import com.foundationdb.server.store.statistics.HistogramEntry;
+import com.foundationdb.server.store.statistics.IndexStatistics;
+import com.foundationdb.server.store.statistics.IndexStatisticsService;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+
+ <h1>Overview</h1>
+
+ GroupScan_Parallel scans a group using several threads, each
+ scanning a different range of hkeys.
+
+ <h1>Arguments</h1>
+
+ <ul>
+
+ <li><b>Group group:</b> The group to be scanned.
+
+ <li><b>int nThreads:</b> The maximum number of threads to scan with.
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ The hkey space is divided at values of the leading column of the root
+ table's primary key, taken from that index's histogram so that ranges
+ have similar row counts. The ranges are dealt out to up to nThreads
+ worker threads. If there are no statistics, there is a single range,
+ which is still read ahead by a worker.
+
+ A store cannot share the query's transaction between threads, so each
+ worker creates its own session and store adapter and reads its ranges
+ in a read-only transaction of its own, begun on the worker thread. No
+ worker reads a row until all of them have begun, so the scan sees the
+ rows committed as it opens. It cannot see changes that the query's own
+ transaction has not committed, so if the client began that
+ transaction explicitly, the group is instead scanned on the query
+ thread within it, as by GroupScan_Default.
+
+ <h1>Output</h1>
+
+ Ranges are returned one after another, so the rows of the group are
+ returned in hkey order, as for GroupScan_Default.
+
+ <h1>Assumptions</h1>
+
+ The plan does not write to the group.
+
+ <h1>Performance</h1>
+
+ Reading and decoding rows is spread over as many as nThreads cores.
+ There is a fixed cost of starting the threads, so it is only worth
+ using on large groups.
+
+ <h1>Memory Requirements</h1>
+
+ A bounded number of chunks of rows per range.
+
+ */
+
+class GroupScan_Parallel extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s, %d threads)", getClass().getSimpleName(), group.getRoot().getName(), nThreads);
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    // GroupScan_Parallel interface
+
+    public GroupScan_Parallel(Group group, int nThreads)
+    {
+        ArgumentValidation.notNull("group", group);
+        ArgumentValidation.isGT("nThreads", nThreads, 0);
+        this.group = group;
+        this.nThreads = nThreads;
+    }
+
+    // For use by this class
+
+    /** Choose up to <code>nRanges - 1</code> keys from the root primary key histogram,
+     * evenly spaced by row count. */
+    private List<byte[]> splitKeys(QueryContext context, int nRanges)
+    {
+        PrimaryKey primaryKey = group.getRoot().getPrimaryKeyIncludingInternal();
+        if ((nRanges <= 1) || (primaryKey == null)) {
+            return Collections.emptyList();
+        }
+        Index index = primaryKey.getIndex();
+        IndexStatisticsService statisticsService = context.getServiceManager().getServiceByClass(IndexStatisticsService.class);
+        IndexStatistics statistics = statisticsService.getIndexStatistics(context.getSession(), index);
+        if (statistics == null) {
+            return Collections.emptyList();
+        }
+        Histogram histogram = statistics.getHistogram(0, 1);
+        if (histogram == null) {
+            return Collections.emptyList();
+        }
+        long total = 0;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            total += entry.getLessCount() + entry.getEqualCount();
+        }
+        List<byte[]> splitKeys = new ArrayList<>(nRanges - 1);
+        long count = 0;
+        int nextSplit = 1;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            if (nextSplit >= nRanges) break;
+            count += entry.getLessCount();
+            if ((count >= total * nextSplit / nRanges) && (entry.getKeyBytes() != null)) {
+                splitKeys.add(entry.getKeyBytes());
+                nextSplit++;
+            }
+            count += entry.getEqualCount();
+        }
+        return splitKeys;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: GroupScan_Parallel open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: GroupScan_Parallel next");
+    private static final Logger LOG = LoggerFactory.getLogger(GroupScan_Parallel.class);
+    // Ranges per thread, dealt out in turn, so that uneven ranges even out across threads.
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_RANGE = 4;
+    private static final long POLL_MILLIS = 100;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    // Object state
+
+    private final Group group;
+    private final int nThreads;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes att = new Attributes();
+        
+        att.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        att.put(Label.SCAN_OPTION, PrimitiveExplainer.getInstance(String.format("parallel %d threads", nThreads)));
+        TableName rootName = group.getRoot().getName();
+        att.put(Label.TABLE_SCHEMA, PrimitiveExplainer.getInstance(rootName.getSchemaName()));
+        att.put(Label.TABLE_NAME, PrimitiveExplainer.getInstance(rootName.getTableName()));
+        return new CompoundExplainer(Type.SCAN_OPERATOR, att);
+    }
+
+    // Inner classes
+
+    /** What a worker puts on its queue after its last chunk. */
+    private static final List<Row> END_OF_RANGE = Collections.emptyList();
+
+    private class Execution extends LeafCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                StoreAdapter adapter = context.getStore(group.getRoot());
+                if (context.isTransactionExplicit()) {
+                    // Workers would not see what this transaction has written.
+                    sequential = adapter.newGroupCursor(group);
+                    sequential.open();
+                }
+                else {
+                    List<byte[]> splitKeys = splitKeys(context, nThreads * RANGES_PER_THREAD);
+                    int nRanges = adapter.countGroupRanges(group, splitKeys);
+                    int nWorkers = Math.min(nThreads, nRanges);
+                    queues = new ArrayList<>(nRanges);
+                    for (int i = 0; i < nRanges; i++) {
+                        queues.add(new ArrayBlockingQueue<>(CHUNKS_PER_RANGE));
+                    }
+                    cancelled = false;
+                    CountDownLatch started = new CountDownLatch(nWorkers);
+                    executor = Executors.newFixedThreadPool(nWorkers, threadFactory);
+                    for (int i = 0; i < nWorkers; i++) {
+                        executor.execute(new Worker(adapter, splitKeys, i, nWorkers, started, queues));
+                    }
+                    executor.shutdown();
+                    rangesRemaining = nRanges;
+                    chunk = null;
+                }
+                idle = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                while (!idle) {
+                    if (sequential != null) {
+                        row = sequential.next();
+                        if (row == null) {
+                            close();
+                        }
+                        break;
+                    }
+                    if ((chunk != null) && (chunkPosition < chunk.size())) {
+                        row = chunk.get(chunkPosition++);
+                        break;
+                    }
+                    chunk = takeChunk();
+                    chunkPosition = 0;
+                    if (chunk == END_OF_RANGE) {
+                        chunk = null;
+                        if (--rangesRemaining == 0) {
+                            close();
+                        }
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("GroupScan_Parallel: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (!idle) {
+                if (sequential != null) {
+                    sequential.close();
+                    sequential.destroy();
+                    sequential = null;
+                }
+                else {
+                    cancelled = true;
+                    boolean interrupted = false;
+                    while (true) {
+                        try {
+                            if (executor.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) break;
+                        }
+                        catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                    executor = null;
+                    queues = null;
+                    chunk = null;
+                }
+                idle = true;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !destroyed && idle;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !destroyed && !idle;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return destroyed;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context, bindingsCursor);
+            final String threadName = "GroupScan_Parallel-" + context.getSessionId() + "-";
+            this.threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, threadName + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+        }
+
+        // For use by this class
+
+        @SuppressWarnings("unchecked")
+        private List<Row> takeChunk()
+        {
+            BlockingQueue<Object> queue = queues.get(queues.size() - rangesRemaining);
+            Object item;
+            try {
+                while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    checkQueryCancelation();
+                }
+            }
+            catch (InterruptedException ex) {
+                close();
+                throw new QueryCanceledException(context.getSession());
+            }
+            if (item instanceof Throwable) {
+                close();
+                if (item instanceof RuntimeException) {
+                    throw (RuntimeException)item;
+                }
+                if (item instanceof Error) {
+                    throw (Error)item;
+                }
+                throw new AkibanInternalException("Parallel group scan failed", (Throwable)item);
+            }
+            return (List<Row>)item;
+        }
+
+        // Object state
+
+        private final ThreadFactory threadFactory;
+        private GroupCursor sequential;
+        private List<BlockingQueue<Object>> queues;
+        private ExecutorService executor;
+        private volatile boolean cancelled;
+        private int rangesRemaining;
+        private List<Row> chunk;
+        private int chunkPosition;
+        private boolean idle = true;
+        private boolean destroyed = false;
+
+        /** Scans every <code>nWorkers</code>'th range, starting with
+         * <code>range</code>, each into its own queue of chunks,
+         * through a session, adapter, transaction and cursor that only
+         * this thread uses. */
+        private class Worker implements Runnable
+        {
+            @Override
+            public void run()
+            {
+                Session session = null;
+                try {
+                    StoreAdapter adapter;
+                    try {
+                        session = serviceManager.getSessionService().createSession();
+                        adapter = store.createAdapter(session, schema);
+                        txnService.beginTransaction(session);
+                    }
+                    finally {
+                        // Even on failure, so that the other workers are not left waiting.
+                        started.countDown();
+                    }
+                    try {
+                        if (!awaitStarted()) return;
+                        for (; range < queues.size(); range += nWorkers) {
+                            if (!scan(adapter.newGroupCursor(group, splitKeys, range))) return;
+                        }
+                    }
+                    finally {
+                        // Only read, so there is nothing to commit.
+                        txnService.rollbackTransactionIfOpen(session);
+                    }
+                }
+                catch (Throwable ex) {
+                    put(ex);
+                }
+                finally {
+                    if (session != null) {
+                        session.close();
+                    }
+                }
+            }
+
+            Worker(StoreAdapter queryAdapter, List<byte[]> splitKeys, int range, int nWorkers,
+                   CountDownLatch started, List<BlockingQueue<Object>> queues)
+            {
+                this.serviceManager = context.getServiceManager();
+                this.txnService = serviceManager.getServiceByClass(TransactionService.class);
+                this.store = queryAdapter.getUnderlyingStore();
+                this.schema = queryAdapter.schema();
+                this.splitKeys = splitKeys;
+                this.range = range;
+                this.nWorkers = nWorkers;
+                this.started = started;
+                this.queues = queues;
+            }
+
+            /** Wait until every worker has begun its transaction, so that
+             * none of them sees a row committed after the scan opened,
+             * returning false if the scan was closed. */
+            private boolean awaitStarted() throws InterruptedException
+            {
+                while (!cancelled) {
+                    if (started.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            /** Put the range's rows on its queue, returning false if the scan was closed. */
+            private boolean scan(GroupCursor cursor)
+            {
+                cursor.open();
+                try {
+                    List<Row> rows = new ArrayList<>(CHUNK_SIZE);
+                    Row row;
+                    while (!cancelled && ((row = cursor.next()) != null)) {
+                        rows.add(row);
+                        if (rows.size() == CHUNK_SIZE) {
+                            if (!put(rows)) return false;
+                            rows = new ArrayList<>(CHUNK_SIZE);
+                        }
+                    }
+                    return (rows.isEmpty() || put(rows)) && put(END_OF_RANGE);
+                }
+                finally {
+                    cursor.close();
+                    cursor.destroy();
+                }
+            }
+
+            /** Wait for room in the current range's queue unless the scan is closed. */
+            private boolean put(Object item)
+            {
+                BlockingQueue<Object> queue = queues.get(range);
+                try {
+                    while (!cancelled) {
+                        if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return true;
+                        }
+                    }
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+
+            private final ServiceManager serviceManager;
+            private final TransactionService txnService;
+            private final Store store;
+            private final Schema schema;
+            private final List<byte[]> splitKeys;
+            private final int nWorkers;
+            private final CountDownLatch started;
+            private final List<BlockingQueue<Object>> queues;
+            private int range;
+        }
+    }
+}
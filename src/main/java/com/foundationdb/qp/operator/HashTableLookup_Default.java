@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * HashTableLookup_Default is the probe side of a hash join. It finds the rows in a hash table
+ * loaded by Using_HashTable whose key matches the value of a list of expressions, which
+ * will typically refer to an outer row bound by Map_NestedLoops.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>RowType hashedRowType:</b></li> Type of rows in the hash table
+ * <li><b>List<TPreparedExpression> outerComparisonFields:</b></li> Expressions giving the key to look up
+ * <li><b>int tableBindingPosition:</b></li> Position in the query context of the hash table
+ * <li><b>List<AkCollator> collators:</b></li> Collators for the key fields, or null
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * When the cursor is opened, the outerComparisonFields are evaluated against the current bindings
+ * and the resulting key is looked up in the hash table. A key containing a null matches nothing.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * The hashed rows with a matching key, in the order in which they were loaded.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * The hash table has been loaded by an enclosing Using_HashTable with the same
+ * tableBindingPosition and compatible comparison fields.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * No IO. One hash probe per open.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * None beyond the hash table.
+ */
+
+class HashTableLookup_Default extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s)", getClass().getSimpleName(), hashedRowType);
+    }
+
+    // Operator interface
+
+    @Override
+    public RowType rowType()
+    {
+        return hashedRowType;
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    // HashTableLookup_Default interface
+
+    public HashTableLookup_Default(RowType hashedRowType,
+                                   List<? extends TPreparedExpression> outerComparisonFields,
+                                   int tableBindingPosition,
+                                   List<AkCollator> collators)
+    {
+        ArgumentValidation.notNull("hashedRowType", hashedRowType);
+        ArgumentValidation.notEmpty("outerComparisonFields", outerComparisonFields);
+        ArgumentValidation.isGTE("tableBindingPosition", tableBindingPosition, 0);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), outerComparisonFields.size());
+        this.hashedRowType = hashedRowType;
+        this.outerComparisonFields = outerComparisonFields;
+        this.tableBindingPosition = tableBindingPosition;
+        this.collators = collators;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: HashTableLookup_Default open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: HashTableLookup_Default next");
+    private static final Logger LOG = LoggerFactory.getLogger(HashTableLookup_Default.class);
+
+    // Object state
+
+    private final RowType hashedRowType;
+    private final List<? extends TPreparedExpression> outerComparisonFields;
+    private final int tableBindingPosition;
+    private final List<AkCollator> collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        for (TPreparedExpression field : outerComparisonFields) {
+            atts.put(Label.EXPRESSIONS, field.getExplainer(context));
+        }
+        return new CompoundExplainer(Type.HASH_JOIN, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends LeafCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                HashTable hashTable = bindings.getHashTable(tableBindingPosition);
+                for (TEvaluatableExpression evaluation : evaluations) {
+                    evaluation.with(bindings);
+                }
+                KeyWrapper key = new KeyWrapper(null, evaluations, collators);
+                matchingRows = hashTable.getMatchingRows(key).iterator();
+                idle = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                if (!idle) {
+                    if (matchingRows.hasNext()) {
+                        row = matchingRows.next();
+                    }
+                    else {
+                        close();
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("HashTableLookup_Default: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (!idle) {
+                matchingRows = null;
+                idle = true;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !destroyed && idle;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !destroyed && !idle;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return destroyed;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context, bindingsCursor);
+            this.evaluations = ProjectedRow.createTEvaluatableExpressions(outerComparisonFields);
+            for (TEvaluatableExpression evaluation : evaluations) {
+                evaluation.with(context);
+            }
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> evaluations;
+        private Iterator<Row> matchingRows;
+        private boolean idle = true;
+        private boolean destroyed = false;
+    }
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashSpillPartitions;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * HashTablePartition_Default groups the probe side of a hash join by the spilled partitions of
+ * the hash table, so that each spilled partition is read back just once, as in a hybrid hash join.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>Operator input:</b></li> Stream of outer rows that will probe the hash table
+ * <li><b>RowType rowType:</b></li> Type of the probing rows; rows of other types are passed through
+ * <li><b>List<TPreparedExpression> comparisonFields:</b></li> Expressions applied to an input row to obtain the key it will look up
+ * <li><b>int tableBindingPosition:</b></li> Position in the query context of the hash table
+ * <li><b>List<AkCollator> collators:</b></li> Collators for the key fields, or null
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * An input row whose key belongs to a partition of the hash table held in memory is passed on
+ * immediately. Otherwise, it is written to a temporary file for that partition. When the input is
+ * exhausted, the rows written for each partition are passed on, one partition after another.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * Input rows, but those for spilled partitions are deferred and lose their order. Deferred rows are
+ * copies holding just the field values.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * The hash table has been completely loaded by an enclosing Using_HashTable with the same
+ * tableBindingPosition and compatible comparison fields, and this is the outer input of the
+ * Map_NestedLoops whose inner side probes it with HashTableLookup_Default.
+ * <p/>
+ * Nothing depends on the order of the input.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * One hash per input row. When the hash table has spilled, the deferred rows are written and read
+ * once.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * None.
+ */
+
+class HashTablePartition_Default extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s)", getClass().getSimpleName(), rowType);
+    }
+
+    // Operator interface
+
+    @Override
+    public RowType rowType()
+    {
+        return inputOperator.rowType();
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        inputOperator.findDerivedTypes(derivedTypes);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return describePlan(inputOperator);
+    }
+
+    // HashTablePartition_Default interface
+
+    public HashTablePartition_Default(Operator inputOperator,
+                                      RowType rowType,
+                                      List<? extends TPreparedExpression> comparisonFields,
+                                      int tableBindingPosition,
+                                      List<AkCollator> collators)
+    {
+        ArgumentValidation.notNull("inputOperator", inputOperator);
+        ArgumentValidation.notNull("rowType", rowType);
+        ArgumentValidation.notEmpty("comparisonFields", comparisonFields);
+        ArgumentValidation.isGTE("tableBindingPosition", tableBindingPosition, 0);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), comparisonFields.size());
+        this.inputOperator = inputOperator;
+        this.rowType = rowType;
+        this.comparisonFields = comparisonFields;
+        this.tableBindingPosition = tableBindingPosition;
+        this.collators = collators;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: HashTablePartition_Default open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: HashTablePartition_Default next");
+    private static final Logger LOG = LoggerFactory.getLogger(HashTablePartition_Default.class);
+
+    // Object state
+
+    private final Operator inputOperator;
+    private final RowType rowType;
+    private final List<? extends TPreparedExpression> comparisonFields;
+    private final int tableBindingPosition;
+    private final List<AkCollator> collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        for (TPreparedExpression field : comparisonFields) {
+            atts.put(Label.EXPRESSIONS, field.getExplainer(context));
+        }
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        return new CompoundExplainer(Type.HASH_JOIN, atts);
+    }
+
+    // Inner classes
+
+    private enum State { CLOSED, PARTITIONING, DEFERRED, DESTROYED }
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                hashTable = bindings.getHashTable(tableBindingPosition);
+                for (TEvaluatableExpression evaluation : evaluations) {
+                    evaluation.with(bindings);
+                }
+                input.open();
+                state = State.PARTITIONING;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row output = null;
+                switch (state) {
+                case PARTITIONING:
+                    while ((output = input.next()) != null) {
+                        if (output.rowType() != rowType) {
+                            break;
+                        }
+                        KeyWrapper key = new KeyWrapper(output, evaluations, collators);
+                        int partition = hashTable.spilledPartition(key);
+                        if (partition < 0) {
+                            break;
+                        }
+                        if (deferred == null) {
+                            deferred = new HashSpillPartitions(context, rowType, hashTable.spilledPartitionCount());
+                        }
+                        deferred.write(partition, output);
+                    }
+                    if (output != null) {
+                        break;
+                    }
+                    input.close();
+                    state = State.DEFERRED;
+                    /* falls through */
+                case DEFERRED:
+                    while (true) {
+                        if (reader != null) {
+                            output = reader.next();
+                            if (output != null) {
+                                break;
+                            }
+                            reader.close();
+                            reader = null;
+                        }
+                        while ((deferred != null) &&
+                               (nextPartition < deferred.getPartitionCount()) &&
+                               !deferred.isSpilled(nextPartition)) {
+                            nextPartition++;
+                        }
+                        if ((deferred == null) || (nextPartition == deferred.getPartitionCount())) {
+                            close();
+                            break;
+                        }
+                        reader = deferred.read(nextPartition++);
+                    }
+                    break;
+                case DESTROYED:
+                    assert false;
+                    // Fall through
+                case CLOSED:
+                default:
+                    break;
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("HashTablePartition_Default: yield {}", output);
+                }
+                return output;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (state == State.PARTITIONING) {
+                input.close();
+            }
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+            if (deferred != null) {
+                deferred.close();
+                deferred = null;
+            }
+            nextPartition = 0;
+            hashTable = null;
+            state = State.CLOSED;
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            state = State.DESTROYED;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return state == State.CLOSED;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return state == State.PARTITIONING || state == State.DEFERRED;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return state == State.DESTROYED;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            this.evaluations = ProjectedRow.createTEvaluatableExpressions(comparisonFields);
+            for (TEvaluatableExpression evaluation : evaluations) {
+                evaluation.with(context);
+            }
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> evaluations;
+        private State state = State.CLOSED;
+        private HashTable hashTable;
+        private HashSpillPartitions deferred;
+        private HashSpillPartitions.Reader reader;
+        private int nextPartition;
+    }
+}
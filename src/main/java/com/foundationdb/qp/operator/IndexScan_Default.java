@@ -21,17 +21,27 @@ import com.foundationdb.ais.model.Column;
 import com.foundationdb.ais.model.Index;
 import com.foundationdb.ais.model.IndexColumn;
 import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.expression.IndexBound;
 import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueRecord;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
 
 /**
 
@@ -58,8 +68,14 @@ import java.util.List;
  <li><b>IndexScanSelector scanSelector:</b> On a group index, specify which
   tables must be present for OUTER JOIN semantics.
 
- <li><b>int lookaheadQuantum:</b> Number of cursors to try to keep open by looking
-  ahead in bindings stream.
+ <li><b>int lookaheadQuantum:</b> Largest number of cursors to keep open by looking
+  ahead in bindings stream. Starts at one and adapts to how quickly
+  the output is consumed.
+
+ <li><b>boolean batchProbes:</b> If true and lookaheadQuantum > 1, probe
+  for up to that many bindings at a time, in key order, with a single
+  cursor. A range filtered by a predicate is always probed for one
+  binding at a time.
 
  </ul>
 
@@ -73,6 +89,10 @@ import java.util.List;
  If reverse = true, the initial probe is with the high end of the
  indexKeyRange, and records are visited in descending key order.
 
+ If the indexKeyRange is filtered, records inside it whose index row
+ does not satisfy its predicate are skipped as the index is traversed,
+ and the scan is closed once its limit of records has been written.
+
  innerJoinUntilRowType is the table until which a group index is
  treated with INNER JOIN semantics (inclusive). For instance, let's say
  you had a COI schema with group index (customer.name,
@@ -135,9 +155,17 @@ import java.util.List;
 
  IndexScan_Default does one random access followed by as many sequential accesses as are required to cover the indexKeyRange.
 
+ With batchProbes, the bindings read ahead are sorted by their key
+ range and probed in that order, reusing the store's position in the
+ index, so that nearby keys are found without starting over from the
+ root. Bindings with identical key ranges are probed only once. A
+ jump discards the probed rows for the current bindings and streams
+ the rest of the range instead.
+
  <h1>Memory Requirements</h1>
 
- None.
+ With batchProbes, the rows for all the bindings in a batch are held
+ until they are output. Otherwise none.
 
  */
 
@@ -167,6 +195,11 @@ class IndexScan_Default extends Operator
         if (lookaheadQuantum <= 1) {
             return new Execution(context, bindingsCursor);
         }
+        else if (batchProbes && batchable()) {
+            return new BatchedExecution(context, bindingsCursor,
+                                        context.getStore(index.rootMostTable()),
+                                        lookaheadQuantum);
+        }
         else {
             return new LookaheadExecution(context, bindingsCursor, 
                                           context.getStore(index.rootMostTable()),
@@ -180,15 +213,35 @@ class IndexScan_Default extends Operator
                              IndexKeyRange indexKeyRange,
                              API.Ordering ordering,
                              IndexScanSelector scanSelector,
-                             int lookaheadQuantum)
+                             int lookaheadQuantum,
+                             boolean batchProbes)
     {
         ArgumentValidation.notNull("indexType", indexType);
+        if (indexKeyRange != null && indexKeyRange.limit() >= 0) {
+            // The cursor counts entries before the selector has rejected any.
+            ArgumentValidation.isTrue("index.isTableIndex() || scanSelector.matchesAll()",
+                                      indexType.index().isTableIndex() || scanSelector.matchesAll());
+        }
         this.indexType = indexType;
         this.index = indexType.index();
         this.ordering = ordering;
         this.indexKeyRange = indexKeyRange;
         this.scanSelector = scanSelector;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.batchProbes = batchProbes;
+    }
+
+    // For use by this class
+
+    private boolean batchable()
+    {
+        // Only ordinary ranges have keys that can be sorted. Probes with
+        // equal keys share rows, which a predicate on bindings could tell apart.
+        return ((indexKeyRange != null) &&
+                !indexKeyRange.unbounded() &&
+                !indexKeyRange.spatial() &&
+                !indexKeyRange.lexicographic() &&
+                (indexKeyRange.predicate() == null));
     }
 
     // Class state
@@ -205,6 +258,7 @@ class IndexScan_Default extends Operator
     private final IndexKeyRange indexKeyRange;
     private final IndexScanSelector scanSelector;
     private final int lookaheadQuantum;
+    private final boolean batchProbes;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -271,12 +325,20 @@ class IndexScan_Default extends Operator
                         }
                     }
                 }
+                if (indexKeyRange.skipScan())
+                    atts.put(Label.NUM_SKIP, PrimitiveExplainer.getInstance(indexKeyRange.skipColumns()));
             }
         }
+        if (indexKeyRange.predicate() != null)
+            atts.put(Label.PREDICATE, indexKeyRange.predicate().getExplainer(context));
+        if (indexKeyRange.limit() >= 0)
+            atts.put(Label.LIMIT, PrimitiveExplainer.getInstance(indexKeyRange.limit()));
         for (int i = 0; i < ordering.sortColumns(); i++) {
             atts.put(Label.ORDERING, PrimitiveExplainer.getInstance(ordering.ascending(i) ? "ASC" : "DESC"));
         }
         atts.put(Label.PIPELINE, PrimitiveExplainer.getInstance(lookaheadQuantum));
+        if (batchProbes)
+            atts.put(Label.PIPELINE, PrimitiveExplainer.getInstance("BATCHED"));
         if (context.hasExtraInfo(this))
             atts.putAll(context.getExtraInfo(this).get()); 
         return new CompoundExplainer(Type.SCAN_OPERATOR, atts);
@@ -328,6 +390,35 @@ class IndexScan_Default extends Operator
             cursor.jump(row, columnSelector);
         }
 
+        @Override
+        public boolean nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                boolean more = true;
+                while (!batch.isFull()) {
+                    Row row = cursor.next();
+                    if (row == null) {
+                        close();
+                        more = false;
+                        break;
+                    }
+                    batch.add(row);
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("IndexScan: yield {}", batch);
+                }
+                return more;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -434,4 +525,331 @@ class IndexScan_Default extends Operator
             super(context, bindingsCursor, adapter, quantum);
         }
     }
+
+    private class BatchedExecution extends OperatorCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                if (streaming) {
+                    cursor.open();  // Again.
+                }
+                else if (currentRows == null) {
+                    probeBatch();
+                }
+                rowIndex = 0;
+                idle = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                if (!idle) {
+                    if (streaming) {
+                        row = cursor.next();
+                    }
+                    else if (rowIndex < currentRows.size()) {
+                        row = currentRows.get(rowIndex++);
+                    }
+                    if (row == null) {
+                        idle = true;
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("IndexScan: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector)
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (!streaming) {
+                // Probed rows cannot be repositioned within, so
+                // stream the rest of this range from the index.
+                if (cursor == null) {
+                    cursor = newCursor();
+                }
+                cursor.rebind(currentBindings);
+                cursor.open();
+                currentRows = null;
+                streaming = true;
+            }
+            cursor.jump(row, columnSelector);
+            idle = false;
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (streaming && cursor.isActive()) {
+                cursor.close();
+            }
+            idle = true;
+        }
+
+        @Override
+        public void destroy()
+        {
+            if (cursor != null) {
+                cursor.destroy();
+                cursor = null;
+            }
+            pending.clear();
+            currentRows = null;
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !destroyed && idle;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !destroyed && !idle;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return destroyed;
+        }
+
+        @Override
+        public void openBindings()
+        {
+            pending.clear();
+            bindingsCursor.openBindings();
+            bindingsExhausted = false;
+            currentBindings = null;
+            currentRows = null;
+            streaming = false;
+        }
+
+        @Override
+        public QueryBindings nextBindings()
+        {
+            CursorLifecycle.checkIdle(this);
+            streaming = false;
+            Probe probe = pending.poll();
+            if (probe != null) {
+                currentBindings = probe.bindings;
+                currentRows = probe.rows;
+            }
+            else {
+                currentBindings = bindingsCursor.nextBindings();
+                currentRows = null;
+                if (currentBindings == null) {
+                    bindingsExhausted = true;
+                }
+            }
+            return currentBindings;
+        }
+
+        @Override
+        public void closeBindings()
+        {
+            bindingsCursor.closeBindings();
+            pending.clear();
+            currentRows = null;
+        }
+
+        @Override
+        public void cancelBindings(QueryBindings bindings)
+        {
+            if ((currentBindings != null) && currentBindings.isAncestor(bindings)) {
+                if (streaming && cursor.isActive()) {
+                    cursor.close();
+                }
+                streaming = false;
+                currentBindings = null;
+                currentRows = null;
+                idle = true;
+            }
+            while (true) {
+                Probe probe = pending.peek();
+                if (probe == null) break;
+                if (!probe.bindings.isAncestor(bindings)) break;
+                pending.remove();
+            }
+            bindingsCursor.cancelBindings(bindings);
+        }
+
+        // BatchedExecution interface
+
+        BatchedExecution(QueryContext context, QueryBindingsCursor bindingsCursor,
+                         StoreAdapter adapter, int quantum)
+        {
+            super(context);
+            this.bindingsCursor = bindingsCursor;
+            this.adapter = adapter;
+            this.quantum = quantum;
+            this.pending = new ArrayDeque<>(quantum);
+        }
+
+        // For use by this class
+
+        private void probeBatch()
+        {
+            if (cursor == null) {
+                cursor = newCursor();
+            }
+            // Read ahead for more bindings like these.
+            List<Probe> batch = new ArrayList<>(quantum);
+            int depth = currentBindings.getDepth();
+            while (!bindingsExhausted && (batch.size() + 1 < quantum)) {
+                QueryBindings bindings = bindingsCursor.nextBindings();
+                if (bindings == null) {
+                    bindingsExhausted = true;
+                    break;
+                }
+                Probe probe = new Probe(bindings);
+                pending.add(probe);
+                if (bindings.getDepth() == depth) {
+                    batch.add(probe);
+                }
+            }
+            if (batch.isEmpty()) {
+                // Nothing to batch with; no need to hold onto the rows.
+                streaming = true;
+                cursor.rebind(currentBindings);
+                cursor.open();
+                return;
+            }
+            Probe current = new Probe(currentBindings);
+            batch.add(current);
+            for (Probe probe : batch) {
+                probe.evaluateKey(context);
+            }
+            Collections.sort(batch);
+            Probe previous = null;
+            for (Probe probe : batch) {
+                if ((previous != null) && (previous.compareTo(probe) == 0)) {
+                    probe.rows = previous.rows;
+                }
+                else {
+                    probe.rows = new ArrayList<>();
+                    cursor.rebind(probe.bindings);
+                    cursor.open();
+                    while (true) {
+                        Row row = cursor.next();
+                        if (row == null) break;
+                        probe.rows.add(row);
+                    }
+                }
+                previous = probe;
+            }
+            if (LOG_EXECUTION) {
+                LOG.debug("IndexScan: probed {} bindings", batch.size());
+            }
+            currentRows = current.rows;
+        }
+
+        private BindingsAwareCursor newCursor()
+        {
+            return (BindingsAwareCursor)adapter.newBatchedIndexCursor(context, index, indexKeyRange, ordering, scanSelector);
+        }
+
+        // Object state
+
+        private final QueryBindingsCursor bindingsCursor;
+        private final StoreAdapter adapter;
+        private final int quantum;
+        private final Queue<Probe> pending;
+        private BindingsAwareCursor cursor;
+        private QueryBindings currentBindings;
+        private List<Row> currentRows;
+        private int rowIndex;
+        private boolean streaming, bindingsExhausted, idle = true, destroyed;
+    }
+
+    // One set of bindings read ahead, with its key range and, once
+    // probed, the rows in it.
+    private class Probe implements Comparable<Probe>
+    {
+        @Override
+        public int compareTo(Probe other)
+        {
+            int c = compareValues(lo, other.lo);
+            if (c == 0) {
+                c = compareValues(hi, other.hi);
+            }
+            return c;
+        }
+
+        public void evaluateKey(QueryContext context)
+        {
+            lo = boundValues(context, indexKeyRange.lo());
+            hi = boundValues(context, indexKeyRange.hi());
+        }
+
+        private Value[] boundValues(QueryContext context, IndexBound bound)
+        {
+            if (bound == null) {
+                return new Value[0];
+            }
+            ValueRecord record = bound.boundExpressions(context, bindings);
+            ColumnSelector selector = bound.columnSelector();
+            int n = 0;
+            while ((n < indexKeyRange.boundColumns()) && selector.includesColumn(n)) {
+                n++;
+            }
+            Value[] values = new Value[n];
+            for (int i = 0; i < n; i++) {
+                ValueSource source = record.value(i);
+                values[i] = new Value(source.getType());
+                ValueTargets.copyFrom(source, values[i]);
+            }
+            return values;
+        }
+
+        private int compareValues(Value[] values, Value[] otherValues)
+        {
+            int n = Math.min(values.length, otherValues.length);
+            for (int i = 0; i < n; i++) {
+                int c = TClass.compare(values[i].getType(), values[i],
+                                       otherValues[i].getType(), otherValues[i]);
+                if (c != 0) {
+                    return ordering.ascending(i) ? c : -c;
+                }
+            }
+            return values.length - otherValues.length;
+        }
+
+        Probe(QueryBindings bindings)
+        {
+            this.bindings = bindings;
+        }
+
+        private final QueryBindings bindings;
+        private Value[] lo, hi;
+        private List<Row> rows;
+    }
 }
@@ -26,6 +26,8 @@ import java.util.Queue;
 
 /** An {@link OperatorCursor} that opens a single {@link BindingsAwareCursor}
 * for each {@link QueryBindings} with lookahead.
+* The number of cursors kept open ahead adapts to how the output is
+* consumed, up to the given quantum; see {@link LookaheadQuantum}.
 */
 public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends OperatorCursor
 {
@@ -45,7 +47,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             // At the very beginning, the pipeline isn't started.
             currentCursor = openACursor(currentBindings, false);
         }
-        while (!cursorPool.isEmpty() && !bindingsExhausted) {
+        while ((nopen < quantum.current()) && !bindingsExhausted) {
             QueryBindings bindings = bindingsCursor.nextBindings();
             if (bindings == null) {
                 bindingsExhausted = true;
@@ -65,6 +67,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
         Row row = currentCursor.next();
         if (row == null) {
             currentCursor.close();
+            quantum.consumed();
         }
         return row;
     }
@@ -98,6 +101,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             if (cursor == null) break;
             cursor.destroy();
         }
+        quantum.report();
         destroyed = true;
     }
 
@@ -127,13 +131,14 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     @Override
     public QueryBindings nextBindings() {
         if (currentCursor != null) {
-            cursorPool.add(currentCursor);
+            releaseCursor(currentCursor);
             currentCursor = null;
         }
         if (pendingCursor != null) {
             pendingCursor.close(); // Abandoning lookahead.
-            cursorPool.add(pendingCursor);
+            releaseCursor(pendingCursor);
             pendingCursor = null;
+            quantum.abandoned();
         }
         BindingsAndCursor<C> bandc = pendingBindings.poll();
         if (bandc != null) {
@@ -156,16 +161,18 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
 
     @Override
     public void cancelBindings(QueryBindings bindings) {
+        boolean abandoned = false;
         if ((currentBindings != null) && currentBindings.isAncestor(bindings)) {
             if (currentCursor != null) {
                 currentCursor.close();
-                cursorPool.add(currentCursor);
+                releaseCursor(currentCursor);
                 currentCursor = null;
             }
             if (pendingCursor != null) {
                 pendingCursor.close();
-                cursorPool.add(pendingCursor);
+                releaseCursor(pendingCursor);
                 pendingCursor = null;
+                abandoned = true;
             }
             currentBindings = null;
         }
@@ -176,9 +183,13 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             bandc = pendingBindings.remove();
             if (bandc.cursor != null) {
                 bandc.cursor.close();
-                cursorPool.add(bandc.cursor);
+                releaseCursor(bandc.cursor);
+                abandoned = true;
             }
         }
+        if (abandoned) {
+            quantum.abandoned();
+        }
         bindingsCursor.cancelBindings(bindings);
     }
 
@@ -188,12 +199,11 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
                         StoreAdapter adapter, int quantum) {
         super(context);
         this.bindingsCursor = bindingsCursor;
+        this.adapter = adapter;
+        this.quantum = new LookaheadQuantum(quantum);
         this.pendingBindings = new ArrayDeque<>(quantum+1);
+        // Cursors are only created as the quantum grows to need them.
         this.cursorPool = new ArrayDeque<>(quantum);
-        for (int i = 0; i < quantum; i++) {
-            C cursor = newCursor(context, adapter);
-            cursorPool.add(cursor);
-        }
     }
 
     // Implemented by subclass
@@ -215,29 +225,46 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     // For use by this class
 
     protected void recyclePending() {
+        boolean abandoned = false;
         while (true) {
             BindingsAndCursor<C> bandc = pendingBindings.poll();
             if (bandc == null) break;
             if (bandc.cursor != null) {
                 bandc.cursor.close();
-                cursorPool.add(bandc.cursor);
+                releaseCursor(bandc.cursor);
+                abandoned = true;
             }
         }
+        if (abandoned) {
+            quantum.abandoned();
+        }
     }
 
     protected C openACursor(QueryBindings bindings, boolean lookahead) {
-        C cursor = cursorPool.remove();
+        C cursor = cursorPool.poll();
+        if (cursor == null) {
+            cursor = newCursor(context, adapter);
+        }
+        nopen++;
         cursor.rebind(bindings);
         cursor.open();
         return cursor;
     }
 
+    protected void releaseCursor(C cursor) {
+        cursorPool.add(cursor);
+        nopen--;
+    }
+
     // Object state
 
     protected final QueryBindingsCursor bindingsCursor;
+    protected final StoreAdapter adapter;
+    protected final LookaheadQuantum quantum;
     protected final Queue<BindingsAndCursor<C>> pendingBindings;
     protected final Queue<C> cursorPool;
     protected QueryBindings currentBindings;
     protected C pendingCursor, currentCursor;
+    protected int nopen;
     protected boolean bindingsExhausted, destroyed;
 }
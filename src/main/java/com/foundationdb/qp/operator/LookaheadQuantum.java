@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+/**
+ * The number of units of work (cursors or input rows) that a lookahead
+ * execution keeps outstanding, adjusted as it runs, between one and the
+ * configured lookahead quantum. It starts at one, so that a point query
+ * does no more work than without lookahead, and doubles each time that
+ * many units have been consumed in full. It halves whenever work done
+ * ahead is thrown away, as when a LIMIT or semi-join stops early.
+ * <p/>
+ * Taps count the changes and, when an execution is destroyed, the
+ * largest quantum it reached, rounded down to a power of two.
+ */
+class LookaheadQuantum
+{
+    public int current()
+    {
+        return current;
+    }
+
+    public int maximum()
+    {
+        return maximum;
+    }
+
+    /** One unit of lookahead work was used completely. */
+    public void consumed()
+    {
+        if (current < maximum) {
+            if (++consumed >= current) {
+                current = Math.min(current * 2, maximum);
+                consumed = 0;
+                if (current > reached) {
+                    reached = current;
+                }
+                TAP_GROW.hit();
+            }
+        }
+    }
+
+    /** Some lookahead work was discarded without being used. */
+    public void abandoned()
+    {
+        consumed = 0;
+        if (current > 1) {
+            current = current / 2;
+            TAP_SHRINK.hit();
+        }
+    }
+
+    /** Report the largest quantum used by this execution. */
+    public void report()
+    {
+        int bucket = 31 - Integer.numberOfLeadingZeros(reached);
+        TAP_REACHED[Math.min(bucket, TAP_REACHED.length - 1)].hit();
+    }
+
+    public LookaheadQuantum(int maximum)
+    {
+        this.maximum = Math.max(maximum, 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d of %d", current, maximum);
+    }
+
+    // Class state
+
+    private static final PointTap TAP_GROW = Tap.createCount("lookahead: grow");
+    private static final PointTap TAP_SHRINK = Tap.createCount("lookahead: shrink");
+    private static final PointTap[] TAP_REACHED = new PointTap[8];
+    static {
+        for (int i = 0; i < TAP_REACHED.length; i++) {
+            TAP_REACHED[i] = Tap.createCount("lookahead: quantum " + (1 << i));
+        }
+    }
+
+    // Object state
+
+    private final int maximum;
+    private int current = 1, reached = 1, consumed;
+}
@@ -0,0 +1,485 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.CompoundRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.JoinedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static com.foundationdb.qp.operator.API.JoinType;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * MergeJoin_Ordered joins two input streams that are both ordered on their join fields, by
+ * merging them, rather than looking up the right side for each left row.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>Operator left:</b> Operator providing left input stream.
+ * <li><b>Operator right:</b> Operator providing right input stream.
+ * <li><b>RowType leftRowType:</b> Type of rows from left input stream.
+ * <li><b>RowType rightRowType:</b> Type of rows from right input stream.
+ * <li><b>int[] leftJoinFields:</b> Positions of the join fields in left rows.
+ * <li><b>int[] rightJoinFields:</b> Positions of the join fields in right rows, paired with leftJoinFields.
+ * <li><b>boolean[] ascending:</b> ascending[i] is true if both streams are ordered ascending on the
+ * ith pair of join fields, false if descending.
+ * <li><b>JoinType joinType:</b>
+ * <ul>
+ * <li>INNER_JOIN: Output a row for each matching pair.
+ * <li>LEFT_JOIN: Also output an unmatched left row, with nulls for the right row.
+ * </ul>
+ * <li><b>boolean semiJoin:</b> If true, output each left row that has at least one match,
+ * once, instead of joined rows. Requires INNER_JOIN.
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * The two streams are advanced together. For each left row, right rows with smaller keys
+ * are skipped, and those with an equal key are collected. Each following left row with the
+ * same key is matched against the same collected rows, so that duplicates on both sides
+ * produce every pair. A null in any join field never matches.
+ * <p/>
+ * Rows of types other than leftRowType and rightRowType are ignored.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * For an inner or left join, rows of a {@link JoinedRowType} made of the left row followed by the
+ * right row, in the order of the left input. For a semi-join, the matching left rows.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * Each input stream is ordered on its join fields, consistent with <tt>ascending</tt>, with
+ * nulls low, as an index scan gives them. Corresponding join fields have the same type and
+ * collation.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * This operator does no IO. Each input is read once.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * The right rows that match the current left key.
+ */
+
+class MergeJoin_Ordered extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s = %s, %s%s)",
+                             getClass().getSimpleName(),
+                             Arrays.toString(leftJoinFields), Arrays.toString(rightJoinFields),
+                             joinType, semiJoin ? ", SEMI" : "");
+    }
+
+    // Operator interface
+
+    @Override
+    public RowType rowType()
+    {
+        return semiJoin ? leftRowType : joinedRowType;
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        right.findDerivedTypes(derivedTypes);
+        left.findDerivedTypes(derivedTypes);
+        if (joinedRowType != null) {
+            derivedTypes.add(joinedRowType);
+        }
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        List<Operator> result = new ArrayList<>(2);
+        result.add(left);
+        result.add(right);
+        return result;
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return String.format("%s\n%s", describePlan(left), describePlan(right));
+    }
+
+    // MergeJoin_Ordered interface
+
+    public MergeJoin_Ordered(Operator left,
+                             Operator right,
+                             RowType leftRowType,
+                             RowType rightRowType,
+                             int[] leftJoinFields,
+                             int[] rightJoinFields,
+                             boolean[] ascending,
+                             JoinType joinType,
+                             boolean semiJoin)
+    {
+        ArgumentValidation.notNull("left", left);
+        ArgumentValidation.notNull("right", right);
+        ArgumentValidation.notNull("leftRowType", leftRowType);
+        ArgumentValidation.notNull("rightRowType", rightRowType);
+        ArgumentValidation.notNull("leftJoinFields", leftJoinFields);
+        ArgumentValidation.notNull("rightJoinFields", rightJoinFields);
+        ArgumentValidation.notNull("ascending", ascending);
+        ArgumentValidation.notNull("joinType", joinType);
+        ArgumentValidation.isGT("leftJoinFields.length", leftJoinFields.length, 0);
+        ArgumentValidation.isEQ("leftJoinFields.length", leftJoinFields.length,
+                                "rightJoinFields.length", rightJoinFields.length);
+        ArgumentValidation.isEQ("leftJoinFields.length", leftJoinFields.length,
+                                "ascending.length", ascending.length);
+        ArgumentValidation.isTrue("joinType is INNER_JOIN or LEFT_JOIN",
+                                  joinType == JoinType.INNER_JOIN || joinType == JoinType.LEFT_JOIN);
+        ArgumentValidation.isTrue("semiJoin only with INNER_JOIN",
+                                  !semiJoin || joinType == JoinType.INNER_JOIN);
+        this.leftTypes = new TInstance[leftJoinFields.length];
+        this.rightTypes = new TInstance[rightJoinFields.length];
+        for (int i = 0; i < leftJoinFields.length; i++) {
+            ArgumentValidation.isNotNegative("leftJoinFields", leftJoinFields[i]);
+            ArgumentValidation.isLT("leftJoinFields", leftJoinFields[i], leftRowType.nFields());
+            ArgumentValidation.isNotNegative("rightJoinFields", rightJoinFields[i]);
+            ArgumentValidation.isLT("rightJoinFields", rightJoinFields[i], rightRowType.nFields());
+            leftTypes[i] = leftRowType.typeAt(leftJoinFields[i]);
+            rightTypes[i] = rightRowType.typeAt(rightJoinFields[i]);
+            ArgumentValidation.isTrue("join fields comparable without casting",
+                                      !TClass.comparisonNeedsCasting(leftTypes[i], rightTypes[i]));
+        }
+        this.left = left;
+        this.right = right;
+        this.leftRowType = leftRowType;
+        this.rightRowType = rightRowType;
+        this.leftJoinFields = Arrays.copyOf(leftJoinFields, leftJoinFields.length);
+        this.rightJoinFields = Arrays.copyOf(rightJoinFields, rightJoinFields.length);
+        this.ascending = Arrays.copyOf(ascending, ascending.length);
+        this.joinType = joinType;
+        this.semiJoin = semiJoin;
+        this.keepUnmatchedLeft = joinType == JoinType.LEFT_JOIN;
+        this.joinedRowType = semiJoin ? null : leftRowType.schema().newJoinedType(leftRowType, rightRowType);
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: MergeJoin_Ordered open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: MergeJoin_Ordered next");
+    private static final Logger LOG = LoggerFactory.getLogger(MergeJoin_Ordered.class);
+
+    // Object state
+
+    private final Operator left;
+    private final Operator right;
+    private final RowType leftRowType;
+    private final RowType rightRowType;
+    private final JoinedRowType joinedRowType;
+    private final int[] leftJoinFields;
+    private final int[] rightJoinFields;
+    private final TInstance[] leftTypes;
+    private final TInstance[] rightTypes;
+    private final boolean[] ascending;
+    private final JoinType joinType;
+    private final boolean semiJoin;
+    private final boolean keepUnmatchedLeft;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.NUM_COMPARE, PrimitiveExplainer.getInstance(leftJoinFields.length));
+        atts.put(Label.JOIN_OPTION, PrimitiveExplainer.getInstance(semiJoin ? "SEMI" : joinType.name().replace("_JOIN", "")));
+        atts.put(Label.INPUT_OPERATOR, left.getExplainer(context));
+        atts.put(Label.INPUT_OPERATOR, right.getExplainer(context));
+        return new CompoundExplainer(Type.ORDERED, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends OperatorCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                leftInput.open();
+                rightInput.open();
+                nextRightRow();
+                matches.clear();
+                closed = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                Row next = null;
+                while (!closed && next == null) {
+                    if (leftRow != null) {
+                        // Pair the current left row with each of its matches.
+                        if (matchPosition < matches.size()) {
+                            next = new CompoundRow(joinedRowType, leftRow, matches.get(matchPosition++));
+                            continue;
+                        }
+                        leftRow = null;
+                    }
+                    Row row = nextLeftRow();
+                    if (row == null) {
+                        close();
+                        break;
+                    }
+                    if (!findMatches(row)) {
+                        if (keepUnmatchedLeft) {
+                            next = new CompoundRow(joinedRowType, row, null);
+                        }
+                        else if ((rightRow == null) && matches.isEmpty()) {
+                            // Nothing more can match.
+                            close();
+                        }
+                    }
+                    else if (semiJoin) {
+                        next = row;
+                    }
+                    else {
+                        leftRow = row;
+                        matchPosition = 0;
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("MergeJoin_Ordered: yield {}", next);
+                }
+                return next;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (!closed) {
+                leftRow = null;
+                rightRow = null;
+                matches.clear();
+                leftInput.close();
+                rightInput.close();
+                closed = true;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            leftInput.destroy();
+            rightInput.destroy();
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return closed;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !closed;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            assert leftInput.isDestroyed() == rightInput.isDestroyed();
+            return leftInput.isDestroyed();
+        }
+
+        @Override
+        public void openBindings() {
+            bindingsCursor.openBindings();
+            leftInput.openBindings();
+            rightInput.openBindings();
+        }
+
+        @Override
+        public QueryBindings nextBindings() {
+            QueryBindings bindings = bindingsCursor.nextBindings();
+            QueryBindings other = leftInput.nextBindings();
+            assert (bindings == other);
+            other = rightInput.nextBindings();
+            assert (bindings == other);
+            return bindings;
+        }
+
+        @Override
+        public void closeBindings() {
+            bindingsCursor.closeBindings();
+            leftInput.closeBindings();
+            rightInput.closeBindings();
+        }
+
+        @Override
+        public void cancelBindings(QueryBindings bindings) {
+            leftInput.cancelBindings(bindings);
+            rightInput.cancelBindings(bindings);
+            bindingsCursor.cancelBindings(bindings);
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context);
+            MultipleQueryBindingsCursor multiple = new MultipleQueryBindingsCursor(bindingsCursor);
+            this.bindingsCursor = multiple;
+            this.leftInput = left.cursor(context, multiple.newCursor());
+            this.rightInput = right.cursor(context, multiple.newCursor());
+        }
+
+        // For use by this class
+
+        private Row nextLeftRow()
+        {
+            Row row;
+            do {
+                row = leftInput.next();
+            } while ((row != null) && (row.rowType() != leftRowType));
+            if (LOG_EXECUTION) {
+                LOG.debug("MergeJoin_Ordered: left {}", row);
+            }
+            return row;
+        }
+
+        private void nextRightRow()
+        {
+            Row row;
+            do {
+                row = rightInput.next();
+            } while ((row != null) && (row.rowType() != rightRowType));
+            rightRow = row;
+            if (LOG_EXECUTION) {
+                LOG.debug("MergeJoin_Ordered: right {}", row);
+            }
+        }
+
+        /** Make <code>matches</code> the right rows whose key
+         * equals that of <code>row</code>, if there are any. The
+         * previous matches are kept when the key is the same.
+         */
+        private boolean findMatches(Row row)
+        {
+            if (hasNullKey(row, leftJoinFields)) {
+                return false;
+            }
+            if (!matches.isEmpty()) {
+                if (compareKeys(row, matches.get(0)) == 0) {
+                    return true;
+                }
+                matches.clear();
+            }
+            while (rightRow != null) {
+                if (hasNullKey(rightRow, rightJoinFields)) {
+                    nextRightRow();
+                    continue;
+                }
+                int c = compareKeys(row, rightRow);
+                if (c < 0) {
+                    break;
+                }
+                if (c == 0) {
+                    matches.add(rightRow);
+                }
+                nextRightRow();
+            }
+            return !matches.isEmpty();
+        }
+
+        private int compareKeys(Row leftRow, Row rightRow)
+        {
+            for (int i = 0; i < leftJoinFields.length; i++) {
+                int c = TClass.compare(leftTypes[i], leftRow.value(leftJoinFields[i]),
+                                       rightTypes[i], rightRow.value(rightJoinFields[i]));
+                if (c != 0) {
+                    return ascending[i] ? c : -c;
+                }
+            }
+            return 0;
+        }
+
+        private boolean hasNullKey(Row row, int[] joinFields)
+        {
+            for (int field : joinFields) {
+                ValueSource value = row.value(field);
+                if (value.isNull()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Object state
+
+        private boolean closed = true;
+        private final QueryBindingsCursor bindingsCursor;
+        private final Cursor leftInput;
+        private final Cursor rightInput;
+        // Left row being paired with matches.
+        private Row leftRow;
+        // Next right row not yet compared.
+        private Row rightRow;
+        // Right rows with the same key, matching the most recent left key.
+        private final List<Row> matches = new ArrayList<>();
+        private int matchPosition;
+    }
+}
@@ -0,0 +1,542 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.OverlayingRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.server.error.SetWrongNumColumns;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.Strings;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.Math.abs;
+
+/**
+ <h1>Overview</h1>
+
+ MultiUnion_Ordered combines rows from any number of input streams,
+ like a tree of {@link Union_Ordered} operators, but in a single
+ merge. The input streams must be based on the same index. Duplicate
+ rows are suppressed.
+
+ <h1>Arguments</h1>
+
+<li><b>List<Operator> inputs:</b> Operators providing the input streams.
+<li><b>List<RowType> inputRowTypes:</b> Types of rows from each input stream.
+<li><b>int orderingFields:</b> Number of trailing fields of input rows to be used for ordering and matching rows.
+<li><b>boolean[] ascending:</b> The length of this arrays specifies the number of fields to be compared in the merge,
+ (<= orderingFields). ascending[i] is true if the ith such field is ascending, false
+ if it is descending.
+<li><b>boolean outputEqual:</b> Whether to output all of the rows that
+ match from different input streams, or just one.
+
+ <h1>Behavior</h1>
+
+ The current row of each input stream is kept in a heap ordered by
+ the ordering fields, ties going to the earlier input. The smallest is
+ output and its stream advanced. Unless outputEqual, the streams
+ whose current rows match it are advanced too.
+
+ <h1>Output</h1>
+
+ The same rows, in the same order, as a left-deep tree of
+ Union_Ordered operators over the same inputs.
+
+ <h1>Assumptions</h1>
+
+ Each input stream is ordered by its ordering columns.
+
+ <h1>Performance</h1>
+
+ This operator does no IO. Each output row takes O(log n) comparisons
+ for n input streams, rather than the O(n) of a chain of binary
+ unions.
+
+ <h1>Memory Requirements</h1>
+
+ One input row from each stream.
+
+ */
+
+class MultiUnion_Ordered extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%d inputs, skip %d, compare %d)",
+                             getClass().getSimpleName(), inputs.size(), fixedFields, fieldsToCompare);
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return outputRowType;
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.unmodifiableList(inputs);
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        for (Operator input : inputs) {
+            input.findDerivedTypes(derivedTypes);
+        }
+    }
+
+    @Override
+    public String describePlan()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, end = inputs.size(); i < end; ++i) {
+            sb.append(inputs.get(i));
+            if (i + 1 < end)
+                sb.append(Strings.nl()).append("UNION").append(Strings.nl());
+        }
+        return sb.toString();
+    }
+
+    // MultiUnion_Ordered interface
+
+    public MultiUnion_Ordered(List<? extends Operator> inputs,
+                              List<? extends RowType> inputRowTypes,
+                              int orderingFields,
+                              boolean[] ascending,
+                              boolean outputEqual)
+    {
+        ArgumentValidation.notNull("inputs", inputs);
+        ArgumentValidation.notNull("inputRowTypes", inputRowTypes);
+        ArgumentValidation.isGTE("inputs.size", inputs.size(), 2);
+        ArgumentValidation.isEQ("inputs.size", inputs.size(), "inputRowTypes.size", inputRowTypes.size());
+        RowType rowType = inputRowTypes.get(0);
+        for (int i = 1; i < inputRowTypes.size(); i++) {
+            RowType inputRowType = inputRowTypes.get(i);
+            ArgumentValidation.notNull("inputRowType", inputRowType);
+            if (rowType.nFields() != inputRowType.nFields()) {
+                throw new SetWrongNumColumns(rowType.nFields(), inputRowType.nFields());
+            }
+            rowType = UnionBase.rowType(rowType, inputRowType);
+        }
+        ArgumentValidation.isGTE("orderingFields", orderingFields, 0);
+        ArgumentValidation.isLTE("orderingFields", orderingFields, rowType.nFields());
+        ArgumentValidation.isLTE("ascending.length()", ascending.length, orderingFields);
+        this.inputs = new ArrayList<>(inputs);
+        this.inputRowTypes = new ArrayList<>(inputRowTypes);
+        this.outputRowType = rowType;
+        this.overlayRow = new boolean[inputs.size()];
+        for (int i = 0; i < overlayRow.length; i++) {
+            overlayRow[i] = (inputRowTypes.get(i) != outputRowType);
+        }
+        this.fixedFields = rowType.nFields() - orderingFields;
+        this.fieldsToCompare = orderingFields;
+        this.ascending = Arrays.copyOf(ascending, ascending.length);
+        this.outputEqual = outputEqual;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: MultiUnion_Ordered open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: MultiUnion_Ordered next");
+    private static final Logger LOG = LoggerFactory.getLogger(MultiUnion_Ordered.class);
+
+    // Object state
+
+    private final List<Operator> inputs;
+    private final List<RowType> inputRowTypes;
+    private final RowType outputRowType;
+    private final boolean[] overlayRow;
+    private final int fixedFields;
+    private final int fieldsToCompare;
+    private final boolean[] ascending;
+    private final boolean outputEqual;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+
+        atts.put(Label.NUM_SKIP, PrimitiveExplainer.getInstance(fixedFields));
+        atts.put(Label.NUM_COMPARE, PrimitiveExplainer.getInstance(fieldsToCompare));
+
+        for (Operator op : inputs)
+            atts.put(Label.INPUT_OPERATOR, op.getExplainer(context));
+        for (RowType type : inputRowTypes)
+            atts.put(Label.INPUT_TYPE, type.getExplainer(context));
+        if (outputEqual)
+            atts.put(Label.UNION_OPTION, PrimitiveExplainer.getInstance("ALL"));
+        atts.put(Label.OUTPUT_TYPE, rowType().getExplainer(context));
+
+        return new CompoundExplainer(Type.ORDERED, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends OperatorCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                heapSize = 0;
+                for (int i = 0; i < cursors.length; i++) {
+                    cursors[i].open();
+                    skipRowFixed[i] = false; // Fixed fields are per iteration.
+                    nextRow(i);
+                    if (rows[i] != null) {
+                        heap[heapSize++] = i;
+                    }
+                }
+                for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+                closed = false;
+                if (heapSize == 0) {
+                    close();
+                }
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                Row next = null;
+                if (isActive()) {
+                    assert heapSize > 0;
+                    int input = heap[0];
+                    next = rows[input];
+                    if (overlayRow[input]) {
+                        next = new OverlayingRow(next, outputRowType);
+                    }
+                    if (outputEqual) {
+                        nextRow(input);
+                        replaceTop();
+                    }
+                    else {
+                        // Advance every stream whose row matches, each
+                        // only once, the same as the binary union does.
+                        int nadvanced = 0;
+                        while (true) {
+                            advanced[nadvanced++] = heap[0];
+                            removeTop();
+                            if ((heapSize == 0) ||
+                                (compareRows(heap[0], rows[input]) != 0))
+                                break;
+                        }
+                        for (int i = 0; i < nadvanced; i++) {
+                            int advance = advanced[i];
+                            nextRow(advance);
+                            if (rows[advance] != null) {
+                                heap[heapSize] = advance;
+                                siftUp(heapSize++);
+                            }
+                        }
+                    }
+                    if (heapSize == 0) {
+                        close();
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("MultiUnion_Ordered: yield {}", next);
+                }
+                return next;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void jump(Row jumpRow, ColumnSelector jumpRowColumnSelector)
+        {
+            heapSize = 0;
+            for (int i = 0; i < cursors.length; i++) {
+                if (rows[i] != null) {
+                    int c = rows[i].compareTo(jumpRow, fixedFields, fixedFields, fieldsToCompare);
+                    c = adjustComparison(c);
+                    if (c < 0) {
+                        ValuesHolderRow skipRow = skipRow(i);
+                        for (int f = 0; f < fieldsToCompare; f++) {
+                            ValueTargets.copyFrom(jumpRow.value(fixedFields + f),
+                                                  skipRow.valueAt(fixedFields + f));
+                        }
+                        cursors[i].jump(skipRow, jumpRowColumnSelector);
+                        rows[i] = cursors[i].next();
+                    }
+                    if (rows[i] != null) {
+                        heap[heapSize++] = i;
+                    }
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            if (heapSize == 0) {
+                close();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (!closed) {
+                Arrays.fill(rows, null);
+                heapSize = 0;
+                for (Cursor cursor : cursors) {
+                    cursor.close();
+                }
+                closed = true;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            for (Cursor cursor : cursors) {
+                cursor.destroy();
+            }
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return closed;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !closed;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return cursors[0].isDestroyed();
+        }
+
+        @Override
+        public void openBindings() {
+            bindingsCursor.openBindings();
+            for (Cursor cursor : cursors) {
+                cursor.openBindings();
+            }
+        }
+
+        @Override
+        public QueryBindings nextBindings() {
+            QueryBindings bindings = bindingsCursor.nextBindings();
+            for (Cursor cursor : cursors) {
+                QueryBindings other = cursor.nextBindings();
+                assert (bindings == other);
+            }
+            return bindings;
+        }
+
+        @Override
+        public void closeBindings() {
+            bindingsCursor.closeBindings();
+            for (Cursor cursor : cursors) {
+                cursor.closeBindings();
+            }
+        }
+
+        @Override
+        public void cancelBindings(QueryBindings bindings) {
+            for (Cursor cursor : cursors) {
+                cursor.cancelBindings(bindings);
+            }
+            bindingsCursor.cancelBindings(bindings);
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context);
+            MultipleQueryBindingsCursor multiple = new MultipleQueryBindingsCursor(bindingsCursor);
+            this.bindingsCursor = multiple;
+            int n = inputs.size();
+            this.cursors = new Cursor[n];
+            for (int i = 0; i < n; i++) {
+                cursors[i] = inputs.get(i).cursor(context, multiple.newCursor());
+            }
+            this.rows = new Row[n];
+            this.heap = new int[n];
+            this.advanced = new int[n];
+            this.skipRows = new ValuesHolderRow[n];
+            this.skipRowFixed = new boolean[n];
+        }
+
+        // For use by this class
+
+        private void nextRow(int input)
+        {
+            Row row = cursors[input].next();
+            rows[input] = row;
+            if (LOG_EXECUTION) {
+                LOG.debug("MultiUnion_Ordered: input {}: {}", input, row);
+            }
+        }
+
+        private int compareRows(int input, Row row)
+        {
+            int c = rows[input].compareTo(row, fixedFields, fixedFields, fieldsToCompare);
+            return adjustComparison(c);
+        }
+
+        // Is the heap entry at i ahead of the one at j?
+        private boolean before(int i, int j)
+        {
+            int c = compareRows(heap[i], rows[heap[j]]);
+            return (c < 0) || ((c == 0) && (heap[i] < heap[j]));
+        }
+
+        private void removeTop()
+        {
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+        }
+
+        private void replaceTop()
+        {
+            if (rows[heap[0]] == null) {
+                removeTop();
+            }
+            else {
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i)
+        {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!before(i, parent)) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i)
+        {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if ((child + 1 < heapSize) && before(child + 1, child)) {
+                    child++;
+                }
+                if (!before(child, i)) break;
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j)
+        {
+            int t = heap[i];
+            heap[i] = heap[j];
+            heap[j] = t;
+        }
+
+        private int adjustComparison(int c)
+        {
+            if (c != 0) {
+                int fieldThatDiffers = abs(c) - 1;
+                if (!ascending[fieldThatDiffers]) {
+                    c = -c;
+                }
+            }
+            return c;
+        }
+
+        private ValuesHolderRow skipRow(int input)
+        {
+            if (!skipRowFixed[input]) {
+                ValuesHolderRow skipRow = skipRows[input];
+                if (skipRow == null) {
+                    skipRow = skipRows[input] = new ValuesHolderRow(outputRowType);
+                }
+                assert rows[input] != null;
+                int f = 0;
+                while (f < fixedFields) {
+                    ValueTargets.copyFrom(rows[input].value(f), skipRow.valueAt(f));
+                    f++;
+                }
+                while (f < outputRowType.nFields()) {
+                    skipRow.valueAt(f++).putNull();
+                }
+                skipRowFixed[input] = true;
+            }
+            return skipRows[input];
+        }
+
+        // Object state
+
+        private boolean closed = true;
+        private final QueryBindingsCursor bindingsCursor;
+        private final Cursor[] cursors;
+        private final Row[] rows;
+        private final int[] heap; // Indexes of inputs with a current row.
+        private final int[] advanced;
+        private final ValuesHolderRow[] skipRows;
+        private final boolean[] skipRowFixed;
+        private int heapSize;
+    }
+}
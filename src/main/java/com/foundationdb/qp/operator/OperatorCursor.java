@@ -17,6 +17,9 @@
 
 package com.foundationdb.qp.operator;
 
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.Row;
+
 public abstract class OperatorCursor extends OperatorExecutionBase implements Cursor
 {
     protected OperatorCursor(QueryContext context) {
@@ -39,4 +42,20 @@ public abstract class OperatorCursor extends OperatorExecutionBase implements Cu
         assert (bindings == null);
         closeBindings();
     }
+
+    /**
+     * Row-at-a-time adapter for operators without a native batch implementation.
+     * A {@link Row#isTransient transient} row is copied, since it would change on the next call.
+     */
+    @Override
+    public boolean nextBatch(RowBatch batch) {
+        while (!batch.isFull()) {
+            Row row = next();
+            if (row == null) {
+                return false;
+            }
+            batch.add(ImmutableRow.ifTransient(row));
+        }
+        return true;
+    }
 }
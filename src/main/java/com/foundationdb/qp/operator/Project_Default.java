@@ -19,6 +19,7 @@ package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.ProjectedRowType;
 import com.foundationdb.qp.rowtype.ProjectedTableRowType;
 import com.foundationdb.qp.rowtype.RowType;
@@ -26,6 +27,7 @@ import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
 import org.slf4j.Logger;
@@ -44,6 +46,7 @@ import java.util.*;
 
  <li><b>RowType rowType:</b> Type of rows to be projected. Must be non-null.
  <li><b>List<Expression> projections:</b> Expressions computing fields of output rows. Must be non-null and non-empty.
+ <li><b>boolean reuseRows:</b> Whether to reuse a single output row object for all projected rows.
 
  <h1>Behavior</h1>
 
@@ -54,7 +57,13 @@ import java.util.*;
 
  <h1>Output</h1>
 
-  A projected row has a null hkey.
+  A projected row has a null hkey. A projected row is transient: its values are evaluated on demand and
+  are only valid until the next row is requested. With reuseRows, the same row object is also returned
+  each time, rebound to the next input row.
+
+  Rows returned by nextBatch are evaluated eagerly into value holders. When the batch is filled from its
+  start, the holders used for that slot last time are reused, so these rows are also transient: they are
+  valid until the batch is next filled.
 
   <h1>Assumptions</h1>
 
@@ -66,7 +75,10 @@ import java.util.*;
 
   <h1>Memory Requirements</h1>
 
-    None.
+    None. Without reuseRows, one small row object is allocated for each projected row. With reuseRows,
+    no per-row objects are allocated, which is useful for large results that are consumed one row at a
+    time, but a consumer that holds onto rows must copy them. Batched projection keeps one value holder
+    row per batch slot.
  */
 
 
@@ -120,6 +132,12 @@ class Project_Default extends Operator
     // Project_Default interface
 
     public Project_Default(Operator inputOperator, RowType rowType, List<? extends TPreparedExpression> pExpressions)
+    {
+        this(inputOperator, rowType, pExpressions, false);
+    }
+
+    public Project_Default(Operator inputOperator, RowType rowType, List<? extends TPreparedExpression> pExpressions,
+                           boolean reuseRows)
     {
         ArgumentValidation.notNull("rowType", rowType);
         ArgumentValidation.notEmpty("new projections", pExpressions);
@@ -129,6 +147,7 @@ class Project_Default extends Operator
         this.pExpressions = pExpressions;
         this.tInstances = TInstance.createTInstances(pExpressions);
         this.projectType = rowType.schema().newProjectType(pExpressions);
+        this.reuseRows = reuseRows;
     }
 
     // Project_Default constructor, returns ProjectedTableRowType rows
@@ -148,6 +167,7 @@ class Project_Default extends Operator
                                                     pExpressions);
         this.pExpressions = pExpressions; // TODO defensively copy once the old expressions are gone (until then, this may NPE)
         this.tInstances = TInstance.createTInstances(pExpressions);
+        this.reuseRows = false;
     }
 
 
@@ -164,6 +184,7 @@ class Project_Default extends Operator
     private final List<? extends TPreparedExpression> pExpressions;
     private final List<? extends TInstance> tInstances;
     protected ProjectedRowType projectType;
+    private final boolean reuseRows;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -217,7 +238,7 @@ class Project_Default extends Operator
                 if ((inputRow = input.next()) != null) {
                     projectedRow =
                         inputRow.rowType() == rowType
-                        ? new ProjectedRow(projectType, inputRow, context, bindings, pEvalExpr, tInstances)
+                        ? projectRow(inputRow)
                         : inputRow;
                 }
                 if (projectedRow == null) {
@@ -234,6 +255,39 @@ class Project_Default extends Operator
             }
         }
 
+        @Override
+        public boolean nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                int start = batch.size();
+                boolean more = input.nextBatch(batch);
+                for (int i = start; i < batch.size(); i++) {
+                    Row inputRow = batch.get(i);
+                    if (inputRow.rowType() == rowType) {
+                        batch.set(i, projectBatchRow(inputRow, batch, i, start == 0));
+                    }
+                }
+                if (!more) {
+                    close();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Project_Default: yield {}", batch);
+                }
+                return more;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -250,6 +304,8 @@ class Project_Default extends Operator
             close();
             input.destroy();
             pEvalExpr = null;
+            reusedRow = null;
+            batchRows = null;
         }
 
         @Override
@@ -270,6 +326,50 @@ class Project_Default extends Operator
             return input.isDestroyed();
         }
 
+        // For use by this class
+
+        private ProjectedRow projectRow(Row inputRow)
+        {
+            if (!reuseRows) {
+                return new ProjectedRow(projectType, inputRow, context, bindings, pEvalExpr, tInstances);
+            }
+            if (reusedRow == null) {
+                reusedRow = new ProjectedRow(projectType, inputRow, context, bindings, pEvalExpr, tInstances);
+            } else {
+                reusedRow.reset(inputRow, context, bindings);
+            }
+            return reusedRow;
+        }
+
+        // Batched rows are all live at once, so cannot share the evaluations lazily. A batch being
+        // filled from its start has been consumed, so the holder for that slot can be reused.
+        private ValuesHolderRow projectBatchRow(Row inputRow, RowBatch batch, int index, boolean reuse)
+        {
+            ValuesHolderRow row;
+            if (reuse) {
+                if ((batchRows == null) || (batchRows.length < batch.capacity())) {
+                    batchRows = new ValuesHolderRow[batch.capacity()];
+                }
+                row = batchRows[index];
+                if (row == null) {
+                    row = new BatchRow(projectType);
+                    batchRows[index] = row;
+                }
+            }
+            else {
+                row = new ValuesHolderRow(projectType);
+            }
+            for (int i = 0; i < pEvalExpr.size(); i++) {
+                TEvaluatableExpression eval = pEvalExpr.get(i);
+                eval.with(context);
+                eval.with(bindings);
+                eval.with(inputRow);
+                eval.evaluate();
+                ValueTargets.copyFrom(eval.resultValue(), row.valueAt(i));
+            }
+            return row;
+        }
+
         // Execution interface
 
         Execution(QueryContext context, Cursor input)
@@ -285,5 +385,21 @@ class Project_Default extends Operator
         // Object state
         private boolean idle = true;
         private List<TEvaluatableExpression> pEvalExpr = null;
+        private ProjectedRow reusedRow;
+        private ValuesHolderRow[] batchRows;
+    }
+
+    private static class BatchRow extends ValuesHolderRow
+    {
+        @Override
+        public boolean isTransient()
+        {
+            return true;
+        }
+
+        BatchRow(RowType rowType)
+        {
+            super(rowType);
+        }
     }
 }
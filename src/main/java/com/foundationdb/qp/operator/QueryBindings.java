@@ -19,8 +19,9 @@ package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.HKey;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.util.HashTable;
 import com.foundationdb.server.types.value.ValueSource;
-import com.foundationdb.util.BloomFilter;
+import com.foundationdb.util.BlockedBloomFilter;
 
 /** The bindings associated with the execution of a query.
  * This includes query parameters (? markers) as well as current values for iteration.
@@ -69,14 +70,29 @@ public interface QueryBindings
      * @return the bloom filter at that index
      * @throws BindingNotSetException if the given index wasn't set
      */
-    public BloomFilter getBloomFilter(int index);
+    public BlockedBloomFilter getBloomFilter(int index);
 
     /**
      * Bind a bloom filter to the given index.
      * @param index the index to set
      * @param filter the bloom filter to assign
      */
-    public void setBloomFilter(int index, BloomFilter filter);
+    public void setBloomFilter(int index, BlockedBloomFilter filter);
+
+    /**
+     * Gets the hash table bound to the given index.
+     * @param index the index to look up
+     * @return the hash table at that index
+     * @throws BindingNotSetException if the given index wasn't set
+     */
+    public HashTable getHashTable(int index);
+
+    /**
+     * Bind a hash table to the given index.
+     * @param index the index to set
+     * @param hashTable the hash table to assign
+     */
+    public void setHashTable(int index, HashTable hashTable);
 
     /**
      * Clear all bindings.
@@ -125,6 +125,10 @@ public interface QueryContext
     /** Does this context commit periodically? */
     public boolean isTransactionPeriodicallyCommit();
 
+    /** Is the query running in a transaction that the client began,
+     * rather than one just for this statement? */
+    public boolean isTransactionExplicit();
+
     /**
      * Create a new empty set of bindings.
      */
@@ -82,6 +82,11 @@ public abstract class QueryContextBase implements QueryContext
         return false;
     }
 
+    @Override
+    public boolean isTransactionExplicit() {
+        return false;
+    }
+
     @Override
     public QueryBindings createBindings() {
         return new SparseArrayQueryBindings();
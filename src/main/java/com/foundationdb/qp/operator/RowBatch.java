@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.util.ArgumentValidation;
+
+/** A reusable buffer of rows passed to {@link Cursor#nextBatch}.
+ * <p/>
+ * Rows in a batch must remain valid until the batch is next filled from
+ * its start, so operators filling a batch must not hand out rows whose
+ * values change on a later call within that time (like a lazily evaluated
+ * <code>ProjectedRow</code> sharing its expressions). An operator may
+ * reuse its row objects once the batch has been cleared and is filled again;
+ * such rows are {@link Row#isTransient transient} and a consumer holding
+ * onto them longer must copy them.
+ */
+public class RowBatch
+{
+    public static final int DEFAULT_CAPACITY = 512;
+
+    public RowBatch()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RowBatch(int capacity)
+    {
+        ArgumentValidation.isGT("capacity", capacity, 0);
+        this.rows = new Row[capacity];
+    }
+
+    public int capacity()
+    {
+        return rows.length;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return (size == 0);
+    }
+
+    public boolean isFull()
+    {
+        return (size == rows.length);
+    }
+
+    public Row get(int index)
+    {
+        assert index < size : index;
+        return rows[index];
+    }
+
+    public void set(int index, Row row)
+    {
+        assert index < size : index;
+        rows[index] = row;
+    }
+
+    public void add(Row row)
+    {
+        assert row != null;
+        rows[size++] = row;
+    }
+
+    /** Keep only the first <code>size</code> rows. */
+    public void truncate(int size)
+    {
+        assert size <= this.size : size;
+        for (int i = size; i < this.size; i++) {
+            rows[i] = null;
+        }
+        this.size = size;
+    }
+
+    public void clear()
+    {
+        truncate(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("RowBatch(%d/%d)", size, rows.length);
+    }
+
+    // Object state
+
+    private final Row[] rows;
+    private int size;
+}
@@ -21,12 +21,14 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.explain.*;
-import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.ArgumentValidation;
-import com.foundationdb.util.BloomFilter;
+import com.foundationdb.util.BlockedBloomFilter;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +66,10 @@ import java.util.*;
  * is used to locate the matching row. If a row is located then the input row (not the row from onPositive)
  * is returned, otherwise null is returned.
  * <p/>
+ * The filter only pays off if it rejects a reasonable fraction of the input. Its pass rate is measured over
+ * successive windows of probes, and if it passes nearly every row of a window, it is no longer consulted: every
+ * input row goes straight to onPositive until the filter is reloaded.
+ * <p/>
  * <h1>Output</h1>
  * <p/>
  * A subset of rows from the input stream.
@@ -166,7 +172,14 @@ class Select_BloomFilter extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter next");
     private static final InOutTap TAP_CHECK = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter check");
+    private static final PointTap TAP_PROBE = Tap.createCount("operator: Select_BloomFilter probe");
+    private static final PointTap TAP_PASS = Tap.createCount("operator: Select_BloomFilter pass");
+    private static final PointTap TAP_DISABLE = Tap.createCount("operator: Select_BloomFilter disable");
     private static final Logger LOG = LoggerFactory.getLogger(Select_BloomFilter.class);
+    // A probe costs a hash of the row, while a false positive costs a lookup in onPositive, so the filter is
+    // worth consulting unless it lets through nearly everything.
+    private static final int PASS_RATE_WINDOW = 4096;
+    private static final double MAX_PASS_RATE = 0.95;
 
     // Object state
 
@@ -194,7 +207,7 @@ class Select_BloomFilter extends Operator
 
     private interface ExpressionAdapter<EXPR,EVAL> {
         EVAL evaluate(EXPR expression, QueryContext contex);
-        int hash(StoreAdapter adapter, EVAL evaluation, Row row, AkCollator collator);
+        ValueSource value(EVAL evaluation, Row row);
     }
 
     private static ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> newExpressionsAdapter
@@ -207,10 +220,10 @@ class Select_BloomFilter extends Operator
         }
 
         @Override
-        public int hash(StoreAdapter adapter, TEvaluatableExpression evaluation, Row row, AkCollator collator) {
+        public ValueSource value(TEvaluatableExpression evaluation, Row row) {
             evaluation.with(row);
             evaluation.evaluate();
-            return ValueSources.hash(evaluation.resultValue(), collator);
+            return evaluation.resultValue();
         }
     };
 
@@ -226,6 +239,7 @@ class Select_BloomFilter extends Operator
                 CursorLifecycle.checkIdle(this);
                 filter = bindings.getBloomFilter(bindingPosition);
                 bindings.setBloomFilter(bindingPosition, null);
+                filterCheck.reset();
                 inputCursor.open();
                 idle = false;
             } finally {
@@ -248,7 +262,7 @@ class Select_BloomFilter extends Operator
                     row = inputCursor.next();
                     if (row == null) {
                         close();
-                    } else if (!filter.maybePresent(hashProjectedRow(row)) || !rowReallyHasMatch(row)) {
+                    } else if (!maybePresent(row) || !rowReallyHasMatch(row)) {
                         row = null;
                     }
                 } while (!idle && row == null);
@@ -335,6 +349,7 @@ class Select_BloomFilter extends Operator
             this.onPositiveBindingsCursor = new SingletonQueryBindingsCursor(null);
             this.onPositiveCursor = onPositive.cursor(context, onPositiveBindingsCursor);
             this.adapter = adapter;
+            this.hasher = new BloomFilterHasher();
             for (EXPR field : expressions) {
                 E eval = adapter.evaluate(field, context);
                 fieldEvals.add(eval);
@@ -343,14 +358,19 @@ class Select_BloomFilter extends Operator
 
         // For use by this class
 
-        private int hashProjectedRow(Row row)
+        private boolean maybePresent(Row row)
         {
-            int hash = 0;
+            return !filterCheck.isEnabled() || filterCheck.record(filter.maybePresent(hashProjectedRow(row)));
+        }
+
+        private long hashProjectedRow(Row row)
+        {
+            hasher.reset();
             for (int f = 0; f < fieldEvals.size(); f++) {
                 E fieldEval = fieldEvals.get(f);
-                hash = hash ^ adapter.hash(adapter(), fieldEval, row, collator(f));
+                hasher.append(adapter.value(fieldEval, row), collator(f));
             }
-            return hash;
+            return hasher.hash();
         }
 
         private boolean rowReallyHasMatch(Row row)
@@ -386,9 +406,11 @@ class Select_BloomFilter extends Operator
         private final Cursor onPositiveCursor;
         private final SingletonQueryBindingsCursor onPositiveBindingsCursor;
         private QueryBindings bindings;
-        private BloomFilter filter;
+        private BlockedBloomFilter filter;
         private final List<E> fieldEvals = new ArrayList<>();
         private final ExpressionAdapter<?, E> adapter;
+        private final BloomFilterHasher hasher;
+        private final FilterCheck filterCheck = new FilterCheck();
         private boolean idle = true;
         private boolean destroyed = false;
     }
@@ -396,7 +418,9 @@ class Select_BloomFilter extends Operator
     // Turn input rows that match the filter into bindings for the onPositive plan.
     private class FilterBindingsCursor extends Map_NestedLoops.RowToBindingsCursor
     {
-        private final StoreAdapter storeAdapter;
+        private final BloomFilterHasher hasher;
+        private final FilterCheck filterCheck = new FilterCheck();
+        private BlockedBloomFilter lastFilter;
         private final List<TEvaluatableExpression> fieldEvals = new ArrayList<>();
         private final ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> expressionAdapter;
 
@@ -404,7 +428,7 @@ class Select_BloomFilter extends Operator
                                     int bindingPosition, int depth,
                                     List<? extends TPreparedExpression> expressions, ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> expressionAdapter) {
             super(input, bindingPosition, depth);
-            this.storeAdapter = context.getStore();
+            this.hasher = new BloomFilterHasher();
             this.expressionAdapter = expressionAdapter;
             for (TPreparedExpression field : expressions) {
                 TEvaluatableExpression eval = expressionAdapter.evaluate(field, context);
@@ -414,13 +438,18 @@ class Select_BloomFilter extends Operator
 
         @Override
         protected Row nextInputRow() {
-            BloomFilter filter = baseBindings.getBloomFilter(bindingPosition);
+            BlockedBloomFilter filter = baseBindings.getBloomFilter(bindingPosition);
+            if (filter != lastFilter) {
+                lastFilter = filter;
+                filterCheck.reset();
+            }
             while (true) {
                 Row row = input.next();
                 if (row == null) {
                     return row;
                 }
-                if (filter.maybePresent(hashProjectedRow(row))) {
+                if (!filterCheck.isEnabled() ||
+                    filterCheck.record(filter.maybePresent(hashProjectedRow(row)))) {
                     if (ExecutionBase.LOG_EXECUTION) {
                         LOG.debug("Select_BloomFilter: candidate {}", row);
                     }
@@ -429,15 +458,54 @@ class Select_BloomFilter extends Operator
             }
         }
 
-        private int hashProjectedRow(Row row)
+        private long hashProjectedRow(Row row)
         {
-            int hash = 0;
+            hasher.reset();
             for (int f = 0; f < fieldEvals.size(); f++) {
                 TEvaluatableExpression fieldEval = fieldEvals.get(f);
-                hash = hash ^ expressionAdapter.hash(storeAdapter, fieldEval, row, collator(f));
+                hasher.append(expressionAdapter.value(fieldEval, row), collator(f));
+            }
+            return hasher.hash();
+        }
+    }
+
+    // Measures the filter's pass rate and decides whether it is still worth consulting.
+    private static class FilterCheck
+    {
+        public boolean isEnabled()
+        {
+            return enabled;
+        }
+
+        public boolean record(boolean passed)
+        {
+            TAP_PROBE.hit();
+            if (passed) {
+                TAP_PASS.hit();
+                passes++;
+            }
+            if (++probes == PASS_RATE_WINDOW) {
+                if (passes > probes * MAX_PASS_RATE) {
+                    TAP_DISABLE.hit();
+                    LOG.debug("Select_BloomFilter: filter passed {} of {} rows, no longer consulting it", passes, probes);
+                    enabled = false;
+                }
+                probes = 0;
+                passes = 0;
             }
-            return hash;
+            return passed;
         }
+
+        public void reset()
+        {
+            enabled = true;
+            probes = 0;
+            passes = 0;
+        }
+
+        private boolean enabled = true;
+        private int probes;
+        private int passes;
     }
 
     // If any context at our depth has a non-empty rowset from
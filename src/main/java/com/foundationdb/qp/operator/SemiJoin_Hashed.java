@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * SemiJoin_Hashed keeps the input rows that have (semi-join) or do not have (anti-join) a matching row
+ * from an uncorrelated subquery, evaluating the subquery once into a hash set rather than once per input row.
+ * It implements <code>IN</code>, <code>EXISTS</code>, <code>NOT IN</code> and <code>NOT EXISTS</code>.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>Operator input:</b></li> Stream of rows to be filtered
+ * <li><b>Operator subquery:</b></li> Stream of rows to be matched against
+ * <li><b>List<TPreparedExpression> outerExpressions:</b></li> Expressions applied to an input row to obtain its key
+ * <li><b>List<TPreparedExpression> innerExpressions:</b></li> Expressions applied to a subquery row to obtain its
+ * key
+ * <li><b>List<AkCollator> collators:</b></li> Collators for the key fields, or null
+ * <li><b>boolean anti:</b></li> Whether to keep the input rows without a match, rather than those with one
+ * <li><b>boolean nullAware:</b></li> For an anti-join, whether to follow the <code>NOT IN</code> rules for
+ * <code>NULL</code>, rather than those of <code>NOT EXISTS</code>
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * When a SemiJoin_Hashed cursor is opened, all rows from the subquery operator are consumed and their keys are
+ * added to a hash set. Each input row's key is then looked up in the set. Two keys match if they are equal and
+ * neither contains <code>NULL</code>. A semi-join keeps the input rows with a match, and an anti-join those
+ * without one.
+ * <p/>
+ * A null-aware anti-join keeps an input row only if its <code>NOT IN</code> is <code>TRUE</code>, not
+ * <code>UNKNOWN</code>: that is, if the subquery is empty, or if no subquery key agrees with the row's key in all
+ * of the fields where neither is <code>NULL</code>.
+ * <p/>
+ * With no key expressions, every subquery row matches every input row, as for an uncorrelated
+ * <code>EXISTS</code>.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * A subset of rows from the input stream.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * The subquery does not depend on any bindings set by input, nor on the input row. The two sides' key expressions
+ * are of the same types.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * The subquery will be consumed completely each time this operator's cursor is opened. Each input row costs one
+ * hash lookup, plus, for a null-aware anti-join, a scan of the subquery keys containing <code>NULL</code>.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * The distinct keys of the subquery rows are held in memory.
+ */
+
+class SemiJoin_Hashed extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s)", getClass().getSimpleName(), joinOption());
+    }
+
+    // Operator interface
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        input.findDerivedTypes(derivedTypes);
+        subquery.findDerivedTypes(derivedTypes);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, input.cursor(context, bindingsCursor));
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Arrays.asList(input, subquery);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return String.format("%s\n%s", describePlan(input), describePlan(subquery));
+    }
+
+    // SemiJoin_Hashed interface
+
+    public SemiJoin_Hashed(Operator input,
+                           Operator subquery,
+                           List<? extends TPreparedExpression> outerExpressions,
+                           List<? extends TPreparedExpression> innerExpressions,
+                           List<AkCollator> collators,
+                           boolean anti,
+                           boolean nullAware)
+    {
+        ArgumentValidation.notNull("input", input);
+        ArgumentValidation.notNull("subquery", subquery);
+        ArgumentValidation.notNull("outerExpressions", outerExpressions);
+        ArgumentValidation.notNull("innerExpressions", innerExpressions);
+        ArgumentValidation.isEQ("outerExpressions.size()", outerExpressions.size(),
+                                "innerExpressions.size()", innerExpressions.size());
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), outerExpressions.size());
+        if (nullAware)
+            ArgumentValidation.isTrue("nullAware requires anti", anti);
+        this.input = input;
+        this.subquery = subquery;
+        this.outerExpressions = outerExpressions;
+        this.innerExpressions = innerExpressions;
+        this.collators = collators;
+        this.anti = anti;
+        this.nullAware = nullAware;
+    }
+
+    // For use by this class
+
+    private String joinOption()
+    {
+        return nullAware ? "NOT IN" : anti ? "ANTI" : "SEMI";
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: SemiJoin_Hashed open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: SemiJoin_Hashed next");
+    private static final Logger LOG = LoggerFactory.getLogger(SemiJoin_Hashed.class);
+
+    // Object state
+
+    private final Operator input;
+    private final Operator subquery;
+    private final List<? extends TPreparedExpression> outerExpressions;
+    private final List<? extends TPreparedExpression> innerExpressions;
+    private final List<AkCollator> collators;
+    private final boolean anti;
+    private final boolean nullAware;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.JOIN_OPTION, PrimitiveExplainer.getInstance(joinOption()));
+        for (TPreparedExpression expression : outerExpressions) {
+            atts.put(Label.EXPRESSIONS, expression.getExplainer(context));
+        }
+        atts.put(Label.INPUT_OPERATOR, input.getExplainer(context));
+        atts.put(Label.INPUT_OPERATOR, subquery.getExplainer(context));
+        return new CompoundExplainer(Type.HASH_JOIN, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                loadKeys();
+                for (TEvaluatableExpression evaluation : outerEvaluations) {
+                    evaluation.with(bindings);
+                }
+                input.open();
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                Row row;
+                while ((row = input.next()) != null) {
+                    if (keep(row)) {
+                        break;
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("SemiJoin_Hashed: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            super.close();
+            keys.clear();
+            nullKeys.clear();
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            this.outerEvaluations = ProjectedRow.createTEvaluatableExpressions(outerExpressions);
+            this.innerEvaluations = ProjectedRow.createTEvaluatableExpressions(innerExpressions);
+            for (TEvaluatableExpression evaluation : outerEvaluations) {
+                evaluation.with(context);
+            }
+            for (TEvaluatableExpression evaluation : innerEvaluations) {
+                evaluation.with(context);
+            }
+        }
+
+        // For use by this class
+
+        private void loadKeys()
+        {
+            keys.clear();
+            nullKeys.clear();
+            subqueryEmpty = true;
+            for (TEvaluatableExpression evaluation : innerEvaluations) {
+                evaluation.with(bindings);
+            }
+            QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
+            Cursor subqueryCursor = subquery.cursor(context, bindingsCursor);
+            subqueryCursor.openTopLevel();
+            try {
+                Row row;
+                while ((row = subqueryCursor.next()) != null) {
+                    subqueryEmpty = false;
+                    KeyWrapper key = new KeyWrapper(row, innerEvaluations, collators);
+                    if (!key.containsNull()) {
+                        keys.add(key);
+                    }
+                    else if (nullAware) {
+                        nullKeys.add(key);
+                    }
+                    if (innerEvaluations.isEmpty()) {
+                        // One row decides any EXISTS.
+                        break;
+                    }
+                }
+            } finally {
+                subqueryCursor.destroy();
+            }
+            if (LOG_EXECUTION) {
+                LOG.debug("SemiJoin_Hashed: loaded {} keys, {} with nulls", keys.size(), nullKeys.size());
+            }
+        }
+
+        private boolean keep(Row row)
+        {
+            if (subqueryEmpty) {
+                return anti;
+            }
+            KeyWrapper key = new KeyWrapper(row, outerEvaluations, collators);
+            if (!key.containsNull() && keys.contains(key)) {
+                return !anti;
+            }
+            if (!nullAware) {
+                return anti;
+            }
+            // NOT IN is UNKNOWN, and so not kept, if any subquery key might equal this one.
+            if (key.containsNull()) {
+                for (KeyWrapper other : keys) {
+                    if (key.mayEqual(other)) {
+                        return false;
+                    }
+                }
+            }
+            for (KeyWrapper other : nullKeys) {
+                if (key.mayEqual(other)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> outerEvaluations;
+        private final List<TEvaluatableExpression> innerEvaluations;
+        private final Set<KeyWrapper> keys = new HashSet<>();
+        private final List<KeyWrapper> nullKeys = new ArrayList<>();
+        private boolean subqueryEmpty;
+    }
+}
@@ -18,7 +18,6 @@
 package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.ImmutableRow;
-import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.*;
@@ -69,8 +68,10 @@ import java.util.*;
 
  <h1>Performance</h1>
 
- Sort_InsertionLimited does no IO. For each row, a sorted set of rows is maintained, requiring O(log(limit)) comparisons
- per row.
+ Sort_InsertionLimited does no IO. The rows kept so far are in a heap, with the greatest at the root. Each new row is
+ first compared with that one, evaluating sort expressions only as far as needed, and rejected at once if it is not
+ less, which once the heap is full is the usual case. Otherwise it replaces the root, requiring O(log(limit))
+ comparisons. The kept rows are heap sorted in place at the end.
 
  <h1>Memory Requirements</h1>
 
@@ -146,6 +147,8 @@ class Sort_InsertionLimited extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited next");
     private static final Logger LOG = LoggerFactory.getLogger(Sort_InsertionLimited.class);
+    // The heap grows as needed up to the limit, in case there are far fewer rows.
+    private static final int INITIAL_HEAP_SIZE = 256;
 
     // Object state
     private final API.SortOption sortOption;
@@ -187,7 +190,11 @@ class Sort_InsertionLimited extends Operator
                         eval.with(context);
                         eval.with(bindings);
                     }
-                    sorted = new TreeSet<>();
+                    heap = new Holder[Math.min(limit, INITIAL_HEAP_SIZE)];
+                    heapSize = 0;
+                    if (!preserveDuplicates) {
+                        distinct = new TreeSet<>();
+                    }
                 }
             } finally {
                 TAP_OPEN.out();
@@ -210,51 +217,62 @@ class Sort_InsertionLimited extends Operator
                     {
                         // If duplicates are preserved, the label is different for each row. Otherwise, it stays at 0.
                         int label = 0;
+                        Holder holder = new Holder();
                         Row row;
                         while ((row = input.next()) != null) {
                             assert row.rowType() == sortType : row;
-                            Holder holder;
-                            holder = new Holder(label, row, tEvaluations);
+                            holder.load(label, row);
                             if (preserveDuplicates) {
                                 label++;
                             }
-                            if (sorted.size() < limit) {
-                                // Still room: add it in.
+                            if (heapSize < limit) {
+                                // Still room: add it in unless it's
+                                // already in there (in suppress dups case).
+                                if ((distinct != null) && !distinct.add(holder)) {
+                                    continue;
+                                }
                                 holder.freeze();
-                                boolean added = sorted.add(holder);
-                                assert !preserveDuplicates || added;
+                                insert(holder);
+                                holder = new Holder();
                             }
-                            else {
-                                // Current greatest element.
-                                Holder last = sorted.last();
-                                if (last.compareTo(holder) > 0) {
-                                    // New row is less, so keep it
-                                    // instead unless it's already in
-                                    // there (in suppress dups case).
-                                    boolean added = sorted.add(holder);
-                                    if (added) {
-                                        sorted.remove(last);
-                                        last.empty();
-                                        holder.freeze();
-                                    }
-                                    else {
-                                        assert !preserveDuplicates;
-                                    }
+                            else if (holder.compareTo(heap[0]) < 0) {
+                                // New row is less than the current
+                                // greatest, so keep it instead.
+                                if ((distinct != null) && !distinct.add(holder)) {
+                                    continue;
                                 }
-                                else {
-                                    // Will not be using new row.
-                                    holder.empty();
+                                holder.freeze();
+                                Holder last = heap[0];
+                                heap[0] = holder;
+                                siftDown(0, heapSize);
+                                if (distinct != null) {
+                                    distinct.remove(last);
                                 }
+                                // Reuse the one pushed out for the next row.
+                                last.empty();
+                                holder = last;
                             }
+                            // Otherwise will not be using new row, which
+                            // was only evaluated as far as needed to tell.
+                        }
+                        holder.empty();
+                        distinct = null;
+                        // Heap sort in place, greatest last.
+                        for (int end = heapSize - 1; end > 0; end--) {
+                            Holder greatest = heap[0];
+                            heap[0] = heap[end];
+                            heap[end] = greatest;
+                            siftDown(0, end);
                         }
-                        iterator = sorted.iterator();
+                        position = 0;
                         state = State.EMPTYING;
                     }
                     /* falls through */
                 case EMPTYING:
                     Row output;
-                    if (iterator.hasNext()) {
-                        Holder holder = iterator.next();
+                    if (position < heapSize) {
+                        Holder holder = heap[position];
+                        heap[position++] = null;
                         output = holder.empty();
                     }
                     else {
@@ -287,15 +305,9 @@ class Sort_InsertionLimited extends Operator
         {
             CursorLifecycle.checkIdleOrActive(this);
             input.close();
-            if (sorted != null) {
-                if (iterator == null)
-                    iterator = sorted.iterator();
-                while (iterator.hasNext()) {
-                    iterator.next().empty();
-                }
-                iterator = null;
-                sorted = null;
-            }
+            heap = null;
+            heapSize = 0;
+            distinct = null;
             state = State.CLOSED;
         }
 
@@ -339,123 +351,180 @@ class Sort_InsertionLimited extends Operator
             }
         }
 
-        // Object state
+        // For use by this class
 
-        private final List<TEvaluatableExpression> tEvaluations;
-        private State state = State.CLOSED;
-        private SortedSet<Holder> sorted;
-        private Iterator<Holder> iterator;
-    }
+        // The heap has the greatest row at the root, so it is the one
+        // that a better row replaces.
 
-    // Sortable row holder.
-
-    // Since a SortedSet cannot have two elements that compare as 0,
-    // we never return that, instead ordering things that sort the
-    // same based on their arrival order. For the same reason, we do
-    // not need to overload equals().
-    private class Holder implements Comparable<Holder> {
-        private int index;
-        private Row row;
-        private Comparable<Holder>[] values;
-
-        public Holder(int index, Row arow, List<TEvaluatableExpression> evaluations) {
-            this.index = index;
-            this.row = arow;
-
-            values = new Comparable[ordering.sortColumns()];
-            for (int i = 0; i < values.length; i++) {
-                TEvaluatableExpression evaluation = evaluations.get(i);
-                evaluation.with(arow);
-                evaluation.evaluate();
-                values[i] = toObject(evaluation.resultValue());
+        private void insert(Holder holder)
+        {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, (int)Math.min((long)heapSize * 2, limit));
+            }
+            int child = heapSize++;
+            while (child > 0) {
+                int parent = (child - 1) / 2;
+                if (heap[parent].compareTo(holder) >= 0) {
+                    break;
+                }
+                heap[child] = heap[parent];
+                child = parent;
             }
+            heap[child] = holder;
         }
 
-        public Row empty() {
-            Row result = row;
-            row = null;
-            return result;
+        private void siftDown(int parent, int size)
+        {
+            Holder holder = heap[parent];
+            while (true) {
+                int child = parent * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if ((child + 1 < size) && (heap[child + 1].compareTo(heap[child]) > 0)) {
+                    child++;
+                }
+                if (heap[child].compareTo(holder) <= 0) {
+                    break;
+                }
+                heap[parent] = heap[child];
+                parent = child;
+            }
+            heap[parent] = holder;
         }
 
-        // Make sure the Row we save doesn't depend on bindings that may change.
-        public void freeze() {
-            if (row instanceof ProjectedRow)
-            {
-                row = new ImmutableRow((ProjectedRow)row);
+        // Object state
+
+        private final List<TEvaluatableExpression> tEvaluations;
+        private State state = State.CLOSED;
+        private Holder[] heap;
+        private int heapSize;
+        private int position;
+        // Rows in the heap, to find duplicates when suppressing them.
+        private SortedSet<Holder> distinct;
+
+        // Sortable row holder.
+
+        // Since the heap and set cannot have two elements that compare
+        // as 0, we never return that, instead ordering things that sort
+        // the same based on their arrival order. For the same reason, we
+        // do not need to overload equals().
+        // Sort values are evaluated only as far as a comparison needs
+        // them, so most rows that miss the limit are rejected after
+        // evaluating just the leading sort column.
+        private class Holder implements Comparable<Holder> {
+            private int index;
+            private Row row;
+            private final Comparable[] values = new Comparable[ordering.sortColumns()];
+            private int nvalues;
+
+            public void load(int index, Row arow) {
+                this.index = index;
+                this.row = arow;
+                this.nvalues = 0;
             }
-        }
 
-        public int compareTo(Holder other) {
-            for (int i = 0; i < values.length; i++) {
-                Comparable v1 = values[i];
-                Comparable v2 = other.values[i];
-                int less, greater;
-                if (ordering.ascending(i)) {
-                    less = -1;
-                    greater = +1;
-                }
-                else {
-                    less = +1;
-                    greater = -1;
+            public Row empty() {
+                Row result = row;
+                row = null;
+                return result;
+            }
+
+            // Make sure the Row we save doesn't depend on bindings that
+            // may change, and that its sort values are all known.
+            public void freeze() {
+                while (nvalues < values.length) {
+                    evaluate();
                 }
-                if (v1 == null) {
-                    if (v2 == null) {
-                        continue;
+                row = ImmutableRow.ifTransient(row);
+            }
+
+            public int compareTo(Holder other) {
+                for (int i = 0; i < values.length; i++) {
+                    Comparable v1 = value(i);
+                    Comparable v2 = other.value(i);
+                    int less, greater;
+                    if (ordering.ascending(i)) {
+                        less = -1;
+                        greater = +1;
                     }
                     else {
-                        return less;
+                        less = +1;
+                        greater = -1;
                     }
-                }
-                else if (v2 == null) {
-                    return greater;
-                }
-                int comp;
-                if (ordering.collator(i) == null) {
-                    comp = v1.compareTo(v2);
-                }
-                else {
-                    comp = ordering.collator(i).compare(v1.toString(), v2.toString());
-                }
-                if (comp != 0) {
-                    if (comp < 0)
-                        return less;
-                    else
+                    if (v1 == null) {
+                        if (v2 == null) {
+                            continue;
+                        }
+                        else {
+                            return less;
+                        }
+                    }
+                    else if (v2 == null) {
                         return greater;
+                    }
+                    int comp;
+                    if (ordering.collator(i) == null) {
+                        comp = v1.compareTo(v2);
+                    }
+                    else {
+                        comp = ordering.collator(i).compare(v1.toString(), v2.toString());
+                    }
+                    if (comp != 0) {
+                        if (comp < 0)
+                            return less;
+                        else
+                            return greater;
+                    }
                 }
+                return index - other.index;
             }
-            return index - other.index;
-        }
 
-        public String toString() {
-            return row.toString();
-        }
+            public String toString() {
+                return String.valueOf(row);
+            }
+
+            private Comparable value(int i) {
+                while (nvalues <= i) {
+                    evaluate();
+                }
+                return values[i];
+            }
 
-        private Comparable toObject(ValueSource valueSource) {
-            if (valueSource.isNull())
-                return null;
-            switch (ValueSources.underlyingType(valueSource)) {
-            case BOOL:
-                return valueSource.getBoolean();
-            case INT_8:
-                return valueSource.getInt8();
-            case INT_16:
-                return valueSource.getInt16();
-            case UINT_16:
-                return valueSource.getUInt16();
-            case INT_32:
-                return valueSource.getInt32();
-            case INT_64:
-                return valueSource.getInt64();
-            case FLOAT:
-                return valueSource.getFloat();
-            case DOUBLE:
-                return valueSource.getDouble();
-            case BYTES:
-                return new WrappingByteSource(valueSource.getBytes());
-            case STRING:
-                return valueSource.getString();
-            default:
-                throw new AssertionError(valueSource.getType());
+            private void evaluate() {
+                TEvaluatableExpression evaluation = tEvaluations.get(nvalues);
+                evaluation.with(row);
+                evaluation.evaluate();
+                values[nvalues++] = toObject(evaluation.resultValue());
+            }
+
+            private Comparable toObject(ValueSource valueSource) {
+                if (valueSource.isNull())
+                    return null;
+                switch (ValueSources.underlyingType(valueSource)) {
+                case BOOL:
+                    return valueSource.getBoolean();
+                case INT_8:
+                    return valueSource.getInt8();
+                case INT_16:
+                    return valueSource.getInt16();
+                case UINT_16:
+                    return valueSource.getUInt16();
+                case INT_32:
+                    return valueSource.getInt32();
+                case INT_64:
+                    return valueSource.getInt64();
+                case FLOAT:
+                    return valueSource.getFloat();
+                case DOUBLE:
+                    return valueSource.getDouble();
+                case BYTES:
+                    return new WrappingByteSource(valueSource.getBytes());
+                case STRING:
+                    return valueSource.getString();
+                default:
+                    throw new AssertionError(valueSource.getType());
+                }
             }
         }
     }
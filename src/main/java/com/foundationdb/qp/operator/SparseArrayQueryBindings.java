@@ -19,10 +19,11 @@ package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.HKey;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.util.HashTable;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueTargets;
-import com.foundationdb.util.BloomFilter;
+import com.foundationdb.util.BlockedBloomFilter;
 import com.foundationdb.util.SparseArray;
 
 public class SparseArrayQueryBindings implements QueryBindings
@@ -132,9 +133,9 @@ public class SparseArrayQueryBindings implements QueryBindings
     }
 
     @Override
-    public BloomFilter getBloomFilter(int index) {
+    public BlockedBloomFilter getBloomFilter(int index) {
         if (bindings.isDefined(index)) {
-            return (BloomFilter)bindings.get(index);
+            return (BlockedBloomFilter)bindings.get(index);
         }
         else if (parent != null) {
             return parent.getBloomFilter(index);
@@ -145,10 +146,28 @@ public class SparseArrayQueryBindings implements QueryBindings
     }
 
     @Override
-    public void setBloomFilter(int index, BloomFilter filter) {
+    public void setBloomFilter(int index, BlockedBloomFilter filter) {
         bindings.set(index, filter);
     }
 
+    @Override
+    public HashTable getHashTable(int index) {
+        if (bindings.isDefined(index)) {
+            return (HashTable)bindings.get(index);
+        }
+        else if (parent != null) {
+            return parent.getHashTable(index);
+        }
+        else {
+            throw new BindingNotSetException(index);
+        }
+    }
+
+    @Override
+    public void setHashTable(int index, HashTable hashTable) {
+        bindings.set(index, hashTable);
+    }
+
     @Override
     public void clear() {
         bindings.clear();
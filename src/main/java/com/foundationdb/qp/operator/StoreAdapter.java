@@ -47,6 +47,8 @@ import com.foundationdb.server.store.Store;
 import com.foundationdb.util.tap.InOutTap;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class StoreAdapter implements KeyCreator
@@ -59,6 +61,34 @@ public abstract class StoreAdapter implements KeyCreator
         return newGroupCursor(group);
     }
 
+    /** Create cursors that together scan the whole group, each over a
+     * disjoint range of hkeys, in hkey order. <code>splitKeys</code> are
+     * encoded keys of the root table's primary key index (such as
+     * from its histogram) at which to divide the ranges; a store that
+     * cannot use them returns a single full scan.
+     * <p/>
+     * The cursors belong to the thread that owns this adapter.
+     */
+    public List<GroupCursor> newGroupCursors(Group group, List<byte[]> splitKeys) {
+        return Collections.singletonList(newGroupCursor(group));
+    }
+
+    /** The number of cursors that {@link #newGroupCursors} would
+     * create for these <code>splitKeys</code>. */
+    public int countGroupRanges(Group group, List<byte[]> splitKeys) {
+        return 1;
+    }
+
+    /** Create just the cursor over the <code>range</code>'th of the
+     * ranges of {@link #newGroupCursors}. Any adapter for the same
+     * store divides the group the same way, so each range can be
+     * scanned through an adapter of its own on its own thread.
+     */
+    public GroupCursor newGroupCursor(Group group, List<byte[]> splitKeys, int range) {
+        assert range == 0 : range;
+        return newGroupCursor(group);
+    }
+
     public abstract RowCursor newIndexCursor(QueryContext context,
                                              Index index,
                                              IndexKeyRange keyRange,
@@ -66,6 +96,19 @@ public abstract class StoreAdapter implements KeyCreator
                                              IndexScanSelector scanSelector,
                                              boolean openAllSubCursors);
 
+    /** Create a cursor over <code>index</code> that will be rebound and
+     * opened for a batch of probes in key order. A store that can
+     * keeps its position in the index from one probe to the next, so
+     * that a nearby key need not be searched for again from the root.
+     */
+    public RowCursor newBatchedIndexCursor(QueryContext context,
+                                           Index index,
+                                           IndexKeyRange keyRange,
+                                           API.Ordering ordering,
+                                           IndexScanSelector scanSelector) {
+        return newIndexCursor(context, index, keyRange, ordering, scanSelector, true);
+    }
+
     public abstract <HKEY extends com.foundationdb.qp.row.HKey> HKEY newHKey(HKey hKeyMetadata);
 
     public final Schema schema()
@@ -348,6 +348,11 @@ final class UnionAll_Default extends UnionBase {
             return delegate.subRow(subRowType);
         }
 
+        @Override
+        public boolean isTransient() {
+            return delegate.isTransient();
+        }
+
         @Override
         public ValueSource value(int index) {
             return delegate.value(index);
@@ -21,11 +21,11 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.explain.*;
-import com.foundationdb.server.types.value.ValueSource;
-import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.util.ArgumentValidation;
-import com.foundationdb.util.BloomFilter;
+import com.foundationdb.util.BlockedBloomFilter;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,7 +69,8 @@ import java.util.Set;
  * <p/>
  * <h1>Memory Requirements</h1>
  * <p/>
- * The bloom filter uses memory proportional to the number of rows scanned from filterInput, typically 2-4 bytes.
+ * The bloom filter uses memory proportional to the number of rows scanned from filterInput, typically 3-6 bytes
+ * per row, rounded up to a power of two.
  */
 
 class Using_BloomFilter extends Operator
@@ -145,8 +146,11 @@ class Using_BloomFilter extends Operator
 
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_BloomFilter open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_BloomFilter next");
+    private static final InOutTap TAP_LOAD = OPERATOR_TAP.createSubsidiaryTap("operator: Using_BloomFilter load");
+    // Hit once per kilobyte of each filter loaded
+    private static final PointTap TAP_FILTER_KB = Tap.createCount("operator: Using_BloomFilter filter kB");
     private static final Logger LOG = LoggerFactory.getLogger(Using_BloomFilter.class);
-    private static final double ERROR_RATE = 0.0001; // Bloom filter will use 19.17 bits per key
+    private static final double ERROR_RATE = 0.0001; // Bloom filter will use about 24 bits per key, before rounding up
 
     // Object state
 
@@ -178,7 +182,7 @@ class Using_BloomFilter extends Operator
         {
             TAP_OPEN.in();
             try {
-                BloomFilter filter = loadBloomFilter();
+                BlockedBloomFilter filter = loadBloomFilter();
                 bindings.setBloomFilter(filterBindingPosition, filter);
                 input.open();
             } finally {
@@ -224,33 +228,42 @@ class Using_BloomFilter extends Operator
 
         // For use by this class
 
-        private BloomFilter loadBloomFilter()
+        private BlockedBloomFilter loadBloomFilter()
         {
-            BloomFilter filter = new BloomFilter(estimatedRowCount, ERROR_RATE);
-            long rows = loadBloomFilter(filter);
-            if (rows > estimatedRowCount) {
-                // Do it again, but size the filter based on the actual row count
-                filter = new BloomFilter(rows, ERROR_RATE);
-                loadBloomFilter(filter);
+            TAP_LOAD.in();
+            try {
+                BlockedBloomFilter filter = new BlockedBloomFilter(estimatedRowCount, ERROR_RATE);
+                long rows = loadBloomFilter(filter);
+                if (rows > estimatedRowCount) {
+                    // Do it again, but size the filter based on the actual row count
+                    filter = new BlockedBloomFilter(rows, ERROR_RATE);
+                    loadBloomFilter(filter);
+                }
+                TAP_FILTER_KB.hit(filter.sizeInBytes() / 1024);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Using_BloomFilter: loaded {} rows into {} bytes", rows, filter.sizeInBytes());
+                }
+                return filter;
+            } finally {
+                TAP_LOAD.out();
             }
-            return filter;
         }
 
-        private long loadBloomFilter(BloomFilter filter)
+        private long loadBloomFilter(BlockedBloomFilter filter)
         {
             int fields = filterRowType.nFields();
             int rows = 0;
+            BloomFilterHasher hasher = new BloomFilterHasher();
             QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
             Cursor loadCursor = filterInput.cursor(context, bindingsCursor);
             loadCursor.openTopLevel();
             Row row;
             while ((row = loadCursor.next()) != null) {
-                int h = 0;
+                hasher.reset();
                 for (int f = 0; f < fields; f++) {
-                    ValueSource valueSource = row.value(f);
-                    h = h ^ ValueSources.hash(valueSource, collator(f));
+                    hasher.append(row.value(f), collator(f));
                 }
-                filter.add(h);
+                filter.add(hasher.hash());
                 rows++;
             }
             loadCursor.destroy();
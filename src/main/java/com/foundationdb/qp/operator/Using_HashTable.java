@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * Using_HashTable loads a hash table for use by HashTableLookup_Default, the build side of a hash join.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>Operator hashInput:</b></li> Stream of rows used to load the hash table
+ * <li><b>RowType hashedRowType:</b></li> Type of rows to be loaded; rows of other types are ignored
+ * <li><b>List<TPreparedExpression> comparisonFields:</b></li> Expressions applied to a hashInput row to obtain its key
+ * <li><b>int tableBindingPosition:</b></li> Position in the query context that will contain the hash table
+ * <li><b>Operator joinedInput:</b></li> Stream of rows, including the probing HashTableLookup_Default
+ * <li><b>List<AkCollator> collators:</b></li> Collators for the key fields, or null
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * When a Using_HashTable cursor is opened, all rows from the hashInput operator will be consumed and
+ * added to a hash table keyed by the comparisonFields. Rows with a null key can never match a join
+ * condition and are not loaded.
+ * <p/>
+ * Besides loading the hash table, all operations on a Using_HashTable cursor are delegated to the joinedInput's
+ * cursor.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * Output from the joinedInput cursor is passed on.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * hashInput does not depend on any bindings set by joinedInput.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * The hashInput stream will be consumed completely each time this operator's cursor is opened.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * Rows of hashedRowType from hashInput are held in memory, up to the
+ * <code>fdbsql.hash.memory</code> budget. Beyond that, whole hash
+ * partitions are written to temporary files and one spilled partition
+ * at a time is read back as probes need it. A HashTablePartition_Default
+ * on the probing side groups probes so that each is read back once.
+ */
+
+class Using_HashTable extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+
+    // Operator interface
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        hashInput.findDerivedTypes(derivedTypes);
+        joinedInput.findDerivedTypes(derivedTypes);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, joinedInput.cursor(context, bindingsCursor));
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Arrays.asList(hashInput, joinedInput);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return String.format("%s\n%s", describePlan(hashInput), describePlan(joinedInput));
+    }
+
+    // Using_HashTable interface
+
+    public Using_HashTable(Operator hashInput,
+                           RowType hashedRowType,
+                           List<? extends TPreparedExpression> comparisonFields,
+                           int tableBindingPosition,
+                           Operator joinedInput,
+                           List<AkCollator> collators)
+    {
+        ArgumentValidation.notNull("hashInput", hashInput);
+        ArgumentValidation.notNull("hashedRowType", hashedRowType);
+        ArgumentValidation.notEmpty("comparisonFields", comparisonFields);
+        ArgumentValidation.isGTE("tableBindingPosition", tableBindingPosition, 0);
+        ArgumentValidation.notNull("joinedInput", joinedInput);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), comparisonFields.size());
+        this.hashInput = hashInput;
+        this.hashedRowType = hashedRowType;
+        this.comparisonFields = comparisonFields;
+        this.tableBindingPosition = tableBindingPosition;
+        this.joinedInput = joinedInput;
+        this.collators = collators;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable next");
+    private static final Logger LOG = LoggerFactory.getLogger(Using_HashTable.class);
+
+    // Object state
+
+    private final Operator hashInput;
+    private final RowType hashedRowType;
+    private final List<? extends TPreparedExpression> comparisonFields;
+    private final int tableBindingPosition;
+    private final Operator joinedInput;
+    private final List<AkCollator> collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        for (TPreparedExpression field : comparisonFields) {
+            atts.put(Label.EXPRESSIONS, field.getExplainer(context));
+        }
+        atts.put(Label.INPUT_OPERATOR, hashInput.getExplainer(context));
+        atts.put(Label.INPUT_OPERATOR, joinedInput.getExplainer(context));
+        return new CompoundExplainer(Type.HASH_JOIN, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                hashTable = loadHashTable();
+                bindings.setHashTable(tableBindingPosition, hashTable);
+                input.open();
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                Row output = input.next();
+                if (LOG_EXECUTION) {
+                    LOG.debug("Using_HashTable: yield {}", output);
+                }
+                return output;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            super.close();
+            if (hashTable != null) {
+                hashTable.clear();
+                hashTable = null;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            if (bindings != null) {
+                bindings.setHashTable(tableBindingPosition, null);
+            }
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            this.evaluations = ProjectedRow.createTEvaluatableExpressions(comparisonFields);
+            for (TEvaluatableExpression evaluation : evaluations) {
+                evaluation.with(context);
+            }
+        }
+
+        // For use by this class
+
+        private HashTable loadHashTable()
+        {
+            HashTable hashTable = new HashTable(hashedRowType, context, evaluations, collators);
+            QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
+            Cursor loadCursor = hashInput.cursor(context, bindingsCursor);
+            loadCursor.openTopLevel();
+            try {
+                Row row;
+                while ((row = loadCursor.next()) != null) {
+                    if (row.rowType() != hashedRowType) {
+                        continue;
+                    }
+                    for (TEvaluatableExpression evaluation : evaluations) {
+                        evaluation.with(bindings);
+                    }
+                    KeyWrapper key = new KeyWrapper(row, evaluations, collators);
+                    if (!key.containsNull()) {
+                        hashTable.put(key, row);
+                    }
+                }
+            } finally {
+                loadCursor.destroy();
+            }
+            if (LOG_EXECUTION) {
+                LOG.debug("Using_HashTable: loaded {}", hashTable);
+            }
+            return hashTable;
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> evaluations;
+        private HashTable hashTable;
+    }
+}
@@ -90,6 +90,12 @@ public abstract class AbstractRow implements Row
         return rowType() == subRowType ? this : null;
     }
 
+    @Override
+    public boolean isTransient()
+    {
+        return false;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
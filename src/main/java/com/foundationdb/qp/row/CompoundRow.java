@@ -76,6 +76,11 @@ public class CompoundRow extends AbstractRow {
         return firstRowFields;
     }
     
+    protected void reset(Row firstRow, Row secondRow) {
+        this.firstRow = firstRow;
+        this.secondRow = secondRow;
+    }
+
     public CompoundRow (CompoundRowType type, Row firstRow, Row secondRow)
     {
         this.rowType = type;
@@ -92,8 +97,8 @@ public class CompoundRow extends AbstractRow {
     // Object state
 
     private final CompoundRowType rowType;
-    private final Row firstRow;
-    private final Row secondRow;
+    private Row firstRow;
+    private Row secondRow;
     private final int firstRowFields;
     protected int rowOffset; 
 
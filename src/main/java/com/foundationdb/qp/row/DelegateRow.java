@@ -66,6 +66,11 @@ public class DelegateRow implements Row {
         return delegate.subRow(subRowType);
     }
 
+    @Override
+    public boolean isTransient() {
+        return delegate.isTransient();
+    }
+
     @Override
     public int compareTo(Row row, int leftStartIndex, int rightStartIndex, int fieldCount) {
         return delegate.compareTo(row, leftStartIndex, rightStartIndex, fieldCount);
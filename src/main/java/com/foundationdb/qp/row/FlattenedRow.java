@@ -48,15 +48,46 @@ public class FlattenedRow extends CompoundRow
             ;
     }
 
+    @Override
+    public boolean isTransient()
+    {
+        return transientRow;
+    }
+
     // FlattenedRow interface
 
     public FlattenedRow(FlattenedRowType rowType, Row parent, Row child, HKey hKey)
+    {
+        this(rowType, parent, child, hKey, false);
+    }
+
+    /**
+     * A <code>transientRow</code> is one that its creator will {@link #reset} for another
+     * parent and child once the consumer has moved on to the next row.
+     */
+    public FlattenedRow(FlattenedRowType rowType, Row parent, Row child, HKey hKey, boolean transientRow)
     {
         super (rowType, parent, child);
         this.hKey = hKey;
+        this.transientRow = transientRow;
         if (parent != null && child != null) {
             // assert parent.runId() == child.runId();
         }
+        checkParentType(parent);
+    }
+
+    public void reset(Row parent, Row child, HKey hKey)
+    {
+        checkParentType(parent);
+        reset(parent, child);
+        this.hKey = hKey;
+    }
+
+    // For use by this class
+
+    private void checkParentType(Row parent)
+    {
+        FlattenedRowType rowType = (FlattenedRowType) rowType();
         if (parent != null && !rowType.parentType().equals(parent.rowType())) {
             throw new IllegalArgumentException("mismatched type between " +rowType+ " and parent " + parent.rowType());
         }
@@ -64,5 +95,6 @@ public class FlattenedRow extends CompoundRow
 
     // Object state
 
-    private final HKey hKey;
+    private HKey hKey;
+    private final boolean transientRow;
 }
@@ -20,7 +20,9 @@ package com.foundationdb.qp.row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.types.value.ValueSource;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 public final class ImmutableRow extends AbstractValuesHolderRow
 {
@@ -32,4 +34,24 @@ public final class ImmutableRow extends AbstractValuesHolderRow
     {
         super(rowType, false, initialValues);
     }
+
+    /**
+     * Return <code>row</code> if it can be held onto, or else an immutable copy of its
+     * values if it is {@link Row#isTransient transient}. The copy has no hkey.
+     */
+    public static Row ifTransient(Row row)
+    {
+        if (!row.isTransient()) {
+            return row;
+        }
+        if (row instanceof ProjectedRow) {
+            return new ImmutableRow((ProjectedRow)row);
+        }
+        int nfields = row.rowType().nFields();
+        List<ValueSource> values = new ArrayList<>(nfields);
+        for (int i = 0; i < nfields; i++) {
+            values.add(row.value(i));
+        }
+        return new ImmutableRow(row.rowType(), values.iterator());
+    }
 }
@@ -28,6 +28,7 @@ import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.AkibanAppender;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -83,6 +84,17 @@ public class ProjectedRow extends AbstractRow
         return null;
     }
 
+    /**
+     * The evaluations are shared by all the rows of a projection and are only
+     * computed on demand, so a projected row's values can change once the next
+     * row is projected, even when the row object itself is not reused.
+     */
+    @Override
+    public boolean isTransient()
+    {
+        return true;
+    }
+
     // ProjectedRow interface
 
     public ProjectedRow(ProjectedRowType rowType,
@@ -104,6 +116,17 @@ public class ProjectedRow extends AbstractRow
         this.types = types;
     }
 
+    /** Reuse this row object to project <code>row</code>, discarding any values already evaluated. */
+    public void reset(Row row, QueryContext context, QueryBindings bindings)
+    {
+        this.row = row;
+        this.context = context;
+        this.bindings = bindings;
+        if (evaluated != null) {
+            Arrays.fill(evaluated, false);
+        }
+    }
+
     public Iterator<ValueSource> getValueSources()
     {
         if (pEvaluatableExpressions == null)
@@ -137,10 +160,10 @@ public class ProjectedRow extends AbstractRow
 
     // Object state
 
-    private final QueryContext context;
-    private final QueryBindings bindings;
+    private QueryContext context;
+    private QueryBindings bindings;
     private final ProjectedRowType rowType;
-    private final Row row;
+    private Row row;
     private final List<TEvaluatableExpression> pEvaluatableExpressions;
     private final boolean[] evaluated;
     private final List<? extends TInstance> types;
@@ -30,6 +30,14 @@ public interface Row extends ValueRecord
     boolean containsRealRowOf(Table table);
     Row subRow(RowType subRowType);
 
+    /**
+     * Whether this row's contents are only valid until the next call to <code>next()</code>
+     * on the cursor that returned it. A transient row object may be reused by its operator for
+     * the next output row, so a consumer that holds onto rows, such as a buffer or a sorter, must
+     * copy it first, e.g. into an {@link ImmutableRow}.
+     */
+    boolean isTransient();
+
     /**
      * Compares two rows and indicates if and where they differ.
      * @param row The row to be compared to this row.
@@ -48,6 +48,11 @@ public class DerivedTypesSchema {
         return new FlattenedRowType(this, nextTypeId(), parent, child);
     }
 
+    public synchronized JoinedRowType newJoinedType(RowType leftType, RowType rightType)
+    {
+        return new JoinedRowType(this, nextTypeId(), leftType, rightType);
+    }
+
     public synchronized ProjectedRowType newProjectType(List<? extends TPreparedExpression> tExprs)
     {
         return new ProjectedRowType(this, nextTypeId(), tExprs);
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.rowtype;
+
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.explain.Label;
+
+/** A row from each of two unrelated streams, side by side, as
+ * produced by a join that does not follow group structure. */
+public class JoinedRowType extends CompoundRowType
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("join(%s, %s)", first(), second());
+    }
+
+    // RowType interface
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        CompoundExplainer explainer = super.getExplainer(context);
+        explainer.addAttribute(Label.LEFT_TYPE, first().getExplainer(context));
+        explainer.addAttribute(Label.RIGHT_TYPE, second().getExplainer(context));
+        return explainer;
+    }
+
+    // JoinedRowType interface
+
+    public RowType leftType()
+    {
+        return first();
+    }
+
+    public RowType rightType()
+    {
+        return second();
+    }
+
+    public JoinedRowType(DerivedTypesSchema schema, int typeId, RowType leftType, RowType rightType)
+    {
+        super(schema, typeId, leftType, rightType);
+    }
+}
@@ -78,6 +78,12 @@ public class NewRowBackedIndexRow implements Row
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean isTransient()
+    {
+        return false;
+    }
+
     @Override
     public ValueSource value(int i) {
         FieldDef fieldDef = index.getAllColumns().get(i).getColumn().getFieldDef();
@@ -22,6 +22,7 @@ import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.operator.*;
 import com.foundationdb.qp.storeadapter.indexcursor.IterationHelper;
 import com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter;
+import com.foundationdb.qp.storeadapter.indexcursor.ParallelSorter;
 import com.foundationdb.qp.storeadapter.indexrow.PersistitIndexRow;
 import com.foundationdb.qp.storeadapter.indexrow.PersistitIndexRowPool;
 import com.foundationdb.qp.row.HKey;
@@ -34,6 +35,7 @@ import com.foundationdb.server.rowdata.RowData;
 import com.foundationdb.server.rowdata.RowDef;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.sort.SortPoolService;
 import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.service.tree.TreeService;
 import com.foundationdb.server.store.PersistitStore;
@@ -49,7 +51,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class PersistitAdapter extends StoreAdapter implements KeyCreator
 {
@@ -69,6 +75,29 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
         return cursor;
     }
 
+    @Override
+    public List<GroupCursor> newGroupCursors(Group group, List<byte[]> splitKeys)
+    {
+        List<Key> bounds = groupRangeBounds(group, splitKeys);
+        List<GroupCursor> cursors = new ArrayList<>(bounds.size() + 1);
+        for (int range = 0; range <= bounds.size(); range++) {
+            cursors.add(newRangeCursor(group, bounds, range));
+        }
+        return cursors;
+    }
+
+    @Override
+    public int countGroupRanges(Group group, List<byte[]> splitKeys)
+    {
+        return groupRangeBounds(group, splitKeys).size() + 1;
+    }
+
+    @Override
+    public GroupCursor newGroupCursor(Group group, List<byte[]> splitKeys, int range)
+    {
+        return newRangeCursor(group, groupRangeBounds(group, splitKeys), range);
+    }
+
     @Override
     public RowCursor newIndexCursor(QueryContext context, Index index, IndexKeyRange keyRange, API.Ordering ordering,
                                     IndexScanSelector selector, boolean openAllSubCursors)
@@ -81,6 +110,19 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
                                         openAllSubCursors);
     }
 
+    @Override
+    public RowCursor newBatchedIndexCursor(QueryContext context, Index index, IndexKeyRange keyRange, API.Ordering ordering,
+                                           IndexScanSelector selector)
+    {
+        IndexRowType indexRowType = schema.indexRowType(index);
+        return new PersistitIndexCursor(context,
+                                        indexRowType,
+                                        keyRange,
+                                        ordering,
+                                        selector,
+                                        new PersistitIterationHelper(this, indexRowType, true));
+    }
+
     @Override
     public Sorter createSorter(QueryContext context,
                                QueryBindings bindings,
@@ -91,6 +133,10 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
                                InOutTap loadTap)
     {
         //return new PersistitSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
+        ForkJoinPool sortPool = context.getServiceManager().getServiceByClass(SortPoolService.class).getPool();
+        if (sortPool != null) {
+            return new ParallelSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, sortPool);
+        }
         return new MergeJoinSorter(context, bindings, input, rowType, ordering, sortOption, loadTap);
     }
 
@@ -269,6 +315,45 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
     }
 
     // For use by this class
+
+    /** The distinct hkeys, in order, at which to divide <code>group</code> for <code>splitKeys</code>. */
+    private List<Key> groupRangeBounds(Group group, List<byte[]> splitKeys)
+    {
+        // An hkey starts with the root ordinal and then its primary key, so the leading
+        // segment of a primary key index key extends that to an hkey prefix.
+        int rootOrdinal = group.getRoot().getOrdinal();
+        Key indexKey = newKey();
+        List<Key> bounds = new ArrayList<>(splitKeys.size());
+        for (byte[] splitKey : splitKeys) {
+            if (splitKey.length > indexKey.getMaximumSize()) continue;
+            System.arraycopy(splitKey, 0, indexKey.getEncodedBytes(), 0, splitKey.length);
+            indexKey.setEncodedSize(splitKey.length);
+            if (indexKey.getDepth() == 0) continue;
+            indexKey.indexTo(0);
+            Key bound = newKey();
+            bound.append(rootOrdinal);
+            bound.appendKeySegment(indexKey);
+            bounds.add(bound);
+        }
+        Collections.sort(bounds);
+        List<Key> distinct = new ArrayList<>(bounds.size());
+        for (Key bound : bounds) {
+            if (distinct.isEmpty() || (distinct.get(distinct.size() - 1).compareTo(bound) != 0)) {
+                distinct.add(bound);
+            }
+        }
+        return distinct;
+    }
+
+    private GroupCursor newRangeCursor(Group group, List<Key> bounds, int range)
+    {
+        assert (range >= 0) && (range <= bounds.size()) : range;
+        PersistitGroupCursor cursor = (PersistitGroupCursor)newGroupCursor(group);
+        cursor.bindRange((range > 0) ? bounds.get(range - 1) : null,
+                         (range < bounds.size()) ? bounds.get(range) : null);
+        return cursor;
+    }
+
     private void rollbackIfNeeded(Exception e) {
         if((e instanceof DuplicateKeyException) ||
            (e instanceof PersistitException) ||
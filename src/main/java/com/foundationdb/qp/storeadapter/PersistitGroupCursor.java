@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
  * 1) Scan the entire group: This occurs when there is no binding before open().
  * 2) For a given hkey, find the row and its descendents: This occurs when rebind(HKey, true) is called.
  * 3) For a given hkey, find the row without its descendents: This occurs when rebind(HKey, false) is called.
+ * 4) Scan a range of hkeys: This occurs when bindRange(Key, Key) is called before open().
  */
 
 
@@ -63,8 +64,9 @@ class PersistitGroupCursor implements GroupCursor
             CursorLifecycle.checkIdle(this);
             this.exchange = adapter.takeExchange(group);
             exchange.clear();
+            rangeFinished = false;
             groupScan =
-                hKey == null ? new FullScan() :
+                hKey == null ? ((rangeStart == null && rangeEnd == null) ? new FullScan() : new HKeyRangeScan()) :
                 hKeyDeep ? new HKeyAndDescendentsScan(hKey) : new HKeyWithoutDescendentsScan(hKey);
             idle = false;
         } catch (PersistitException e) {
@@ -77,11 +79,11 @@ class PersistitGroupCursor implements GroupCursor
     {
         try {
             CursorLifecycle.checkIdleOrActive(this);
-            boolean next = !idle;
+            boolean next = !idle && !rangeFinished;
             PersistitGroupRow row = null;
             if (next) {
                 groupScan.advance();
-                next = !idle;
+                next = !idle && !rangeFinished;
                 if (next) {
                     row = adapter.newGroupRow();
                     row.copyFromExchange(exchange);
@@ -143,6 +145,17 @@ class PersistitGroupCursor implements GroupCursor
 
     // For use by this package
 
+    /** Restrict a full scan to hkeys <code>&gt;= start</code> and <code>&lt; end</code>. Either may be null.
+     * A range scan does not give up its exchange when exhausted, so
+     * that it can be advanced from another thread; it must be closed
+     * explicitly. */
+    void bindRange(Key start, Key end)
+    {
+        CursorLifecycle.checkIdle(this);
+        this.rangeStart = start;
+        this.rangeEnd = end;
+    }
+
     PersistitGroupCursor(PersistitAdapter adapter, Group group)
         throws PersistitException
     {
@@ -167,6 +180,8 @@ class PersistitGroupCursor implements GroupCursor
      *
      * 3) Scan one hkey without descendents: The key is copied to the exchange.
      *
+     * 4) Scan a range of hkeys: Like a full scan, but starting at rangeStart and ending before rangeEnd.
+     *
      *  General:
      *  - exchange == null iff this cursor is idle
      */
@@ -177,6 +192,9 @@ class PersistitGroupCursor implements GroupCursor
     private Key controllingHKey;
     private PersistitHKey hKey;
     private boolean hKeyDeep;
+    private Key rangeStart;
+    private Key rangeEnd;
+    private boolean rangeFinished;
     private GroupScan groupScan;
     private boolean idle;
     private boolean destroyed = false;
@@ -217,6 +235,34 @@ class PersistitGroupCursor implements GroupCursor
         private final Key.Direction direction;
     }
 
+    private class HKeyRangeScan implements GroupScan
+    {
+        @Override
+        public void advance() throws PersistitException, InvalidOperationException
+        {
+            TRAVERSE_COUNT.hit();
+            if (!exchange.traverse(direction, true) ||
+                (rangeEnd != null && exchange.getKey().compareTo(rangeEnd) >= 0)) {
+                rangeFinished = true;
+            }
+            direction = Key.GT;
+        }
+
+        HKeyRangeScan() throws PersistitException
+        {
+            if (rangeStart == null) {
+                exchange.getKey().append(Key.BEFORE);
+                direction = Key.GT;
+            }
+            else {
+                rangeStart.copyTo(exchange.getKey());
+                direction = Key.GTEQ;
+            }
+        }
+
+        private Key.Direction direction;
+    }
+
     private class HKeyAndDescendentsScan implements GroupScan
     {
         @Override
@@ -82,6 +82,9 @@ class PersistitIndexCursor implements BindingsAwareCursor
     {
         destroyed = true;
         indexCursor.destroy();
+        if (keptRowState != null) {
+            keptRowState.releaseExchange();
+        }
     }
 
     @Override
@@ -125,9 +128,29 @@ class PersistitIndexCursor implements BindingsAwareCursor
         this.selector = selector;
         this.idle = true;
         this.rowState = context.getStore().createIterationHelper(indexRowType);
+        this.keptRowState = null;
         this.indexCursor = IndexCursor.create(context, keyRange, ordering, rowState,  openAllSubCursors);
     }
 
+    PersistitIndexCursor(QueryContext context,
+                         IndexRowType indexRowType,
+                         IndexKeyRange keyRange,
+                         API.Ordering ordering,
+                         IndexScanSelector selector,
+                         PersistitIterationHelper keptRowState)
+    {
+        this.keyRange = keyRange;
+        this.ordering = ordering;
+        this.context = context;
+        this.indexRowType = indexRowType;
+        this.isTableIndex = indexRowType.index().isTableIndex();
+        this.selector = selector;
+        this.idle = true;
+        this.rowState = keptRowState;
+        this.keptRowState = keptRowState;
+        this.indexCursor = IndexCursor.create(context, keyRange, ordering, rowState, true);
+    }
+
     // For use by this class
 
     // Object state
@@ -138,6 +161,7 @@ class PersistitIndexCursor implements BindingsAwareCursor
     private final API.Ordering ordering;
     private final boolean isTableIndex;
     private final IterationHelper rowState;
+    private final PersistitIterationHelper keptRowState; // Keeps its Exchange between openings.
     private IndexCursor indexCursor;
     private final IndexScanSelector selector;
     private boolean idle;
@@ -49,7 +49,7 @@ public class PersistitIterationHelper implements IterationHelper
     public void closeIteration()
     {
         // adapter.returnIndexRow(row);
-        if (exchange != null) {
+        if ((exchange != null) && !keepExchange) {
             adapter.returnExchange(exchange);
             exchange = null;
         }
@@ -104,14 +104,34 @@ public class PersistitIterationHelper implements IterationHelper
     // PersistitIterationHelper interface
 
     public PersistitIterationHelper(PersistitAdapter adapter, IndexRowType indexRowType)
+    {
+        this(adapter, indexRowType, false);
+    }
+
+    /** If <code>keepExchange</code>, the same <code>Exchange</code> is
+     * used for every iteration, so that it is still positioned near
+     * the last key when the next iteration starts, until {@link
+     * #releaseExchange} is called.
+     */
+    public PersistitIterationHelper(PersistitAdapter adapter, IndexRowType indexRowType, boolean keepExchange)
     {
         this.adapter = adapter;
         this.indexRowType = indexRowType.physicalRowType(); // In case we have a spatial index
+        this.keepExchange = keepExchange;
+    }
+
+    public void releaseExchange()
+    {
+        if (exchange != null) {
+            adapter.returnExchange(exchange);
+            exchange = null;
+        }
     }
 
     // Object state
 
     private final PersistitAdapter adapter;
     private final IndexRowType indexRowType;
+    private final boolean keepExchange;
     private Exchange exchange;
 }
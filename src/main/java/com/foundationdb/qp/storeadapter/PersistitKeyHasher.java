@@ -21,7 +21,7 @@ import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.persistit.Key;
 
-class PersistitKeyHasher
+public class PersistitKeyHasher
 {
     // For hashing a single-segment key
 
@@ -34,6 +34,13 @@ class PersistitKeyHasher
         return hashFunction.hashBytes(key.getEncodedBytes(), startPosition, endPosition - startPosition).asLong();
     }
 
+    // For hashing a whole key
+
+    public long hash(Key key)
+    {
+        return hashFunction.hashBytes(key.getEncodedBytes(), 0, key.getEncodedSize()).asLong();
+    }
+
     // Object state
 
     private final HashFunction hashFunction = Hashing.goodFastHash(64); // Because we're returning longs
@@ -136,6 +136,8 @@ public abstract class IndexCursor implements BindingsAwareCursor
             ? keyRange.hi() == null
                 ? IndexCursorSpatial_NearPoint.create(context, iterationHelper, keyRange)
                 : IndexCursorSpatial_InBox.create(context, iterationHelper, keyRange, openAllSubCursors)
+            : keyRange != null && keyRange.skipScan()
+            ? IndexCursorSkipScan.create(context, iterationHelper, keyRange, ordering, adapter)
             : ordering.allAscending() || ordering.allDescending()
                 ? (keyRange != null && keyRange.lexicographic()
                     ? IndexCursorUnidirectionalLexicographic.create(context, iterationHelper, keyRange, ordering, adapter)
@@ -182,6 +182,9 @@ class IndexCursorMixedOrder<S,E> extends IndexCursor
                                               API.Ordering ordering,
                                               SortKeyAdapter<S, E> sortKeyAdapter)
     {
+        if (keyRange != null && keyRange.filtered()) {
+            throw new IllegalArgumentException("Mixed order scan cannot be filtered: " + keyRange);
+        }
         return new IndexCursorMixedOrder<>(context, iterationHelper, keyRange, ordering, sortKeyAdapter);
     }
 
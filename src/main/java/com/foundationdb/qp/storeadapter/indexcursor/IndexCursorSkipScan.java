@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.expression.UnboundExpressions;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.storeadapter.indexrow.PersistitIndexRow;
+import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueRecord;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.persistit.Key;
+
+// For a skip scan: an index scan restricting columns after the first skipColumns, which are unrestricted.
+// The scan is done as one range scan for each distinct prefix of skipColumns values. Each prefix is found by
+// traversing from just past the previous one, so the cost depends on the number of distinct prefixes, not on
+// the number of keys under each.
+
+class IndexCursorSkipScan<S> extends IndexCursorUnidirectional<S>
+{
+    // Cursor interface
+
+    @Override
+    public void open()
+    {
+        prefix.reset();
+        super.open();
+        needPrefix = true;
+        firstPrefix = true;
+    }
+
+    @Override
+    public Row next()
+    {
+        while (true) {
+            if (needPrefix) {
+                if (!nextPrefix()) {
+                    close();
+                    return null;
+                }
+                needPrefix = false;
+                restart();
+            }
+            Row next = super.next();
+            // If the range for this prefix is exhausted, endOfRange has asked for the next one. Otherwise, next
+            // is either a row or, at the end of the index, null with the cursor closed.
+            if (!needPrefix) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public void jump(Row row, ColumnSelector columnSelector)
+    {
+        throw new UnsupportedOperationException(getClass().getName());
+    }
+
+    // IndexCursorUnidirectional interface
+
+    @Override
+    protected void endOfRange()
+    {
+        needPrefix = true;
+    }
+
+    // IndexCursorSkipScan interface
+
+    public static <S> IndexCursorSkipScan<S> create(QueryContext context,
+                                                    IterationHelper iterationHelper,
+                                                    IndexKeyRange keyRange,
+                                                    API.Ordering ordering,
+                                                    SortKeyAdapter<S, ?> sortKeyAdapter)
+    {
+        if (!(ordering.allAscending() || ordering.allDescending())) {
+            throw new IllegalArgumentException("Skip scan requires a uniform ordering: " + ordering);
+        }
+        Prefix prefix = new Prefix(keyRange.indexRowType(), keyRange.skipColumns());
+        IndexKeyRange prefixedRange =
+            IndexKeyRange.bounded(keyRange.indexRowType(),
+                                  prefix.bound(keyRange.lo()),
+                                  keyRange.loInclusive(),
+                                  prefix.bound(keyRange.hi()),
+                                  keyRange.hiInclusive());
+        if (keyRange.filtered()) {
+            prefixedRange = prefixedRange.filtered(keyRange.predicate(), keyRange.limit());
+        }
+        return new IndexCursorSkipScan<>(context, iterationHelper, prefixedRange, ordering, sortKeyAdapter, prefix);
+    }
+
+    // For use by this class
+
+    private IndexCursorSkipScan(QueryContext context,
+                                IterationHelper iterationHelper,
+                                IndexKeyRange keyRange,
+                                API.Ordering ordering,
+                                SortKeyAdapter<S, ?> sortKeyAdapter,
+                                Prefix prefix)
+    {
+        super(context, iterationHelper, keyRange, ordering, sortKeyAdapter);
+        this.prefix = prefix;
+        this.prefixKey = adapter.createKey();
+    }
+
+    // Position on the first key of the next distinct prefix, in the direction of the scan, and make its values
+    // the prefix of the bounds.
+    private boolean nextPrefix()
+    {
+        Key key = key();
+        if (firstPrefix) {
+            clear();
+            key.append(direction == FORWARD ? Key.BEFORE : Key.AFTER);
+            firstPrefix = false;
+        } else {
+            prefixKey.copyTo(key);
+            key.append(direction == FORWARD ? Key.AFTER : Key.BEFORE);
+        }
+        INDEX_TRAVERSE.hit();
+        if (!traverse(direction == FORWARD ? Key.GT : Key.LT, true)) {
+            return false;
+        }
+        key.copyTo(prefixKey);
+        prefixKey.setDepth(prefix.skipColumns);
+        PersistitIndexRow row = (PersistitIndexRow) row();
+        prefix.set(row);
+        adapter.returnIndexRow(row);
+        return true;
+    }
+
+    // Object state
+
+    private final Prefix prefix;
+    private final Key prefixKey;
+    private boolean needPrefix;
+    private boolean firstPrefix;
+
+    // Inner classes
+
+    // The values of the current prefix, and bounds that substitute them for the leading columns of the
+    // original bounds.
+    private static class Prefix
+    {
+        public IndexBound bound(IndexBound original)
+        {
+            UnboundExpressions expressions = new PrefixedExpressions(original);
+            return new IndexBound(expressions, original.columnSelector());
+        }
+
+        // The original bounds need to be evaluated again.
+        public void reset()
+        {
+            generation++;
+        }
+
+        public void set(Row row)
+        {
+            for (int i = 0; i < skipColumns; i++) {
+                ValueTargets.copyFrom(row.value(i), values[i]);
+            }
+        }
+
+        public Prefix(IndexRowType indexRowType, int skipColumns)
+        {
+            this.skipColumns = skipColumns;
+            this.values = new Value[skipColumns];
+            for (int i = 0; i < skipColumns; i++) {
+                values[i] = new Value(indexRowType.typeAt(i));
+                values[i].putNull();
+            }
+        }
+
+        private final int skipColumns;
+        private final Value[] values;
+        private int generation;
+
+        private class PrefixedExpressions implements UnboundExpressions, ValueRecord
+        {
+            // UnboundExpressions interface
+
+            @Override
+            public ValueRecord get(QueryContext context, QueryBindings bindings)
+            {
+                // The bounds are evaluated for every prefix, but the original ones only need to be evaluated once per open.
+                if (expressions == null || evaluatedGeneration != generation) {
+                    expressions = original.boundExpressions(context, bindings);
+                    evaluatedGeneration = generation;
+                }
+                return this;
+            }
+
+            @Override
+            public CompoundExplainer getExplainer(ExplainContext context)
+            {
+                return original.getExplainer(context);
+            }
+
+            // ValueRecord interface
+
+            @Override
+            public ValueSource value(int index)
+            {
+                return index < skipColumns ? values[index] : expressions.value(index);
+            }
+
+            // Object interface
+
+            @Override
+            public String toString()
+            {
+                return String.valueOf(original);
+            }
+
+            public PrefixedExpressions(IndexBound original)
+            {
+                this.original = original;
+            }
+
+            private final IndexBound original;
+            private ValueRecord expressions;
+            private int evaluatedGeneration;
+        }
+    }
+}
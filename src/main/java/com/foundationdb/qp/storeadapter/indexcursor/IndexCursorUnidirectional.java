@@ -31,6 +31,8 @@ import com.foundationdb.qp.storeadapter.indexrow.PersistitIndexRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.persistit.Key;
 
 import java.util.List;
@@ -48,6 +50,11 @@ class IndexCursorUnidirectional<S> extends IndexCursor
             initializeCursor();
         evaluateBoundaries(context, sortKeyAdapter);
         initializeForOpen();
+        if (predicateEvaluation != null) {
+            predicateEvaluation.with(context);
+            predicateEvaluation.with(bindings);
+        }
+        rowCount = 0;
     }
 
     @Override
@@ -57,35 +64,15 @@ class IndexCursorUnidirectional<S> extends IndexCursor
         Row next = null;
         boolean success = false;
         try {
-            INDEX_TRAVERSE.hit();
-            if (traverse(keyComparison, true)) {
-                next = row();
-                // Guard against bug 1046053
-                assert next != startKey;
-                assert next != endKey;
-                // If we're scanning a unique key index, then the row format has the declared key in the
-                // Persistit key, and undeclared hkey columns in the Persistit value. An index scan may actually
-                // restrict the entire declared key and leading hkeys fields. If this happens, then the first
-                // row found by exchange.traverse may actually not qualify -- those values may be lower than
-                // startKey. This can happen at most once per scan. pastStart indicates whether we have gotten
-                // past the startKey.
-                if (!pastStart) {
-                    while (beforeStart(next)) {
-                        next = null;
-                        if (traverse(subsequentKeyComparison, true)) {
-                            next = row();
-                        } else {
-                            close();
-                        }
-                    }
-                    pastStart = true;
-                }
-                if (next != null && pastEnd(next)) {
-                    next = null;
-                    close();
-                }
-            } else {
+            if (rowLimit >= 0 && rowCount >= rowLimit) {
                 close();
+            } else {
+                do {
+                    next = nextInRange();
+                } while (next != null && !accept(next));
+                if (next != null) {
+                    rowCount++;
+                }
             }
             success = true;
         } finally {
@@ -93,7 +80,6 @@ class IndexCursorUnidirectional<S> extends IndexCursor
                 close();
             }
         }
-        keyComparison = subsequentKeyComparison;
         return next;
     }
 
@@ -162,6 +148,9 @@ class IndexCursorUnidirectional<S> extends IndexCursor
         this.endBoundColumns = keyRange.boundColumns();
         this.endKey = endBoundColumns == 0 ? null : adapter.takeIndexRow(keyRange.indexRowType());
         this.sortKeyAdapter = sortKeyAdapter;
+        TPreparedExpression predicate = keyRange.predicate();
+        this.predicateEvaluation = predicate == null ? null : predicate.build();
+        this.rowLimit = keyRange.limit();
     }
 
     protected void evaluateBoundaries(QueryContext context, SortKeyAdapter<S, ?> keyAdapter)
@@ -327,6 +316,19 @@ class IndexCursorUnidirectional<S> extends IndexCursor
         }
     }
 
+    // Called when the scan runs past endKey. A subclass may carry on from another start.
+    protected void endOfRange()
+    {
+        close();
+    }
+
+    // Start the scan again from the current values of the bounds, without reinitializing the cursor.
+    protected void restart()
+    {
+        evaluateBoundaries(context, sortKeyAdapter);
+        initializeForOpen();
+    }
+
     protected boolean beforeStart(Row row)
     {
         boolean beforeStart = false;
@@ -351,6 +353,60 @@ class IndexCursorUnidirectional<S> extends IndexCursor
         return pastEnd;
     }
 
+    // The next index row within the range, or null if there are no more.
+    protected Row nextInRange()
+    {
+        Row next = null;
+        INDEX_TRAVERSE.hit();
+        if (traverse(keyComparison, true)) {
+            next = row();
+            // Guard against bug 1046053
+            assert next != startKey;
+            assert next != endKey;
+            // If we're scanning a unique key index, then the row format has the declared key in the
+            // Persistit key, and undeclared hkey columns in the Persistit value. An index scan may actually
+            // restrict the entire declared key and leading hkeys fields. If this happens, then the first
+            // row found by exchange.traverse may actually not qualify -- those values may be lower than
+            // startKey. This can happen at most once per scan. pastStart indicates whether we have gotten
+            // past the startKey.
+            if (!pastStart) {
+                while (beforeStart(next)) {
+                    next = null;
+                    if (traverse(subsequentKeyComparison, true)) {
+                        next = row();
+                    } else {
+                        close();
+                    }
+                }
+                pastStart = true;
+            }
+            if (next != null && pastEnd(next)) {
+                next = null;
+                endOfRange();
+            }
+        } else {
+            close();
+        }
+        keyComparison = subsequentKeyComparison;
+        return next;
+    }
+
+    // Whether row satisfies the range's predicate. A row that does not is returned to the adapter, so that
+    // the rejected entries of the scan all reuse the same row.
+    protected boolean accept(Row row)
+    {
+        if (predicateEvaluation == null) {
+            return true;
+        }
+        predicateEvaluation.with(row);
+        predicateEvaluation.evaluate();
+        if (predicateEvaluation.resultValue().getBoolean(false)) {
+            return true;
+        }
+        adapter.returnIndexRow((PersistitIndexRow) row);
+        return false;
+    }
+
     protected void clearStart()
     {
         startKeyKey.clear();
@@ -484,12 +540,14 @@ class IndexCursorUnidirectional<S> extends IndexCursor
         this.startBoundColumns = 0;
         this.endBoundColumns = 0;
         this.sortKeyAdapter = sortKeyAdapter;
+        this.predicateEvaluation = null;
+        this.rowLimit = -1;
     }
 
     // Class state
 
-    private static final int FORWARD = 1;
-    private static final int BACKWARD = -1;
+    protected static final int FORWARD = 1;
+    protected static final int BACKWARD = -1;
 
     // Object state
 
@@ -519,4 +577,8 @@ class IndexCursorUnidirectional<S> extends IndexCursor
     private Key endKeyKey;
     private boolean pastStart;
     private SortKeyAdapter<S, ?> sortKeyAdapter;
+    // Residual predicate and limit from the key range, applied to the rows within it.
+    private final TEvaluatableExpression predicateEvaluation;
+    private final int rowLimit;
+    private int rowCount;
 }
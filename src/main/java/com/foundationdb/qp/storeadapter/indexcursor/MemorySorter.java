@@ -27,52 +27,38 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.api.dml.ColumnSelector;
-import com.foundationdb.server.error.StorageKeySizeExceededException;
 import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.util.tap.InOutTap;
 import com.persistit.Key;
-import com.persistit.KeyState;
-import com.persistit.exception.KeyTooLongException;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.List;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 /**
  * <h1>Overview</h1>
  *
- * Sort rows by inserting them into a {@link TreeMap} and then reading them out in order.
+ * Sort rows by collecting them in memory along with a normalized sort key, sorting, and then reading them out
+ * in order.
  *
  * <h1>Behavior</h1>
  *
- * The rows of the input stream are written into a map that orders rows according to the ordering specification.
- * Once the input stream has been consumed, the map is iterated from beginning to end to provide rows of the output
- * stream.
+ * The sort fields of each row of the input stream are encoded into a single byte array whose unsigned order is
+ * the requested ordering, ASC or DESC (see {@link SortKeyNormalizer}). Once the input stream has been consumed,
+ * the keys and rows are sorted together (see {@link SortRun}) and read from beginning to end to provide rows of
+ * the output stream. Rows with equal sort fields keep their input order; if duplicates are suppressed, only the
+ * first is kept.
  *
  * <h1>Performance</h1>
  *
- * MemorySorter generates no IO.
+ * MemorySorter generates no IO. Comparing two rows is a single unsigned comparison of two byte arrays,
+ * and most rows are placed by radix distribution on the leading bytes of their keys without being compared at all.
  *
  * <h1>Memory Requirements</h1>
  *
- * Memory requirements are dependent on the size of the input stream. One Key is generated for each Row and each Row
- * is copied to be held in memory. All rows from the input stream are held until close.
+ * Memory requirements are dependent on the size of the input stream. One byte array is generated for each Row and
+ * each Row is copied to be held in memory. All rows from the input stream are held until close.
  */
 public class MemorySorter implements Sorter
 {
-    /*
-     * Map is a set of keys to (a copy of) the original row.
-     * Keys are encoded such that the output can be a single, forward iteration.
-     * Each "ordering chunk" results in a single key state and comparator, with key encoding being the default
-     * and the comparator inverting the result if DESC is required.
-     * For example, (ASC,ASC,DESC,DESC,ASC) would result in 3 states and 3 comparators.
-     */
-    private final NavigableMap<KeyState[], Row> navigableMap;
-    private final List<Integer> orderChanges;
+    private final SortRun run;
+    private final SortKeyNormalizer normalizer;
 
     private final QueryContext context;
     private final QueryBindings bindings;
@@ -101,50 +87,43 @@ public class MemorySorter implements Sorter
         // Note: init may change this.ordering
         sorterAdapter.init(rowType, this.ordering, this.key, null, this.context, this.bindings, sortOption);
         // Explicitly use input ordering to avoid appended field
-        this.orderChanges = new ArrayList<>();
-        List<Comparator<KeyState>> comparators = new ArrayList<>();
-        for(int i = 0; i < ordering.sortColumns(); ++i) {
-            Comparator<KeyState> c = ordering.ascending(i) ? ASC_COMPARATOR : DESC_COMPARATOR;
-            if(i == 0 || ordering.ascending(i-1) != ordering.ascending(i)) {
-                orderChanges.add(i);
-                comparators.add(c);
-            }
-        }
-        this.orderChanges.add(ordering.sortColumns());
-        this.navigableMap = new TreeMap<>(new KeyStateArrayComparator(comparators));
+        this.normalizer = new SortKeyNormalizer(sorterAdapter, key, ordering);
+        this.run = new SortRun(INITIAL_RUN_SIZE);
     }
 
     @Override
     public RowCursor sort() {
-        loadMap();
-        return new CollectionCursor(navigableMap.values());
+        loadRun();
+        return new RunCursor(run);
     }
 
     @Override
     public void close() {
-        navigableMap.clear();
+        run.clear();
     }
 
-    private void loadMap() {
+    private void loadRun() {
         boolean loaded = false;
         try {
             loadTap.in();
             try {
                 Row row;
-                int rowCount = 0;
                 while((row = input.next()) != null) {
-                    ++rowCount;
                     context.checkQueryCancelation();
-                    KeyState[] states = createKey(row, rowCount);
+                    byte[] sortKey = normalizer.encode(row);
                     // Copy instead of hold as ProjectedRow cannot be held
                     ValuesHolderRow rowCopy = new ValuesHolderRow(row.rowType());
                     for(int i = 0 ; i < row.rowType().nFields(); ++i) {
                         ValueTargets.copyFrom(row.value(i), rowCopy.valueAt(i));
                     }
-                    navigableMap.put(states, rowCopy);
+                    run.add(sortKey, rowCopy);
                     loadTap.out();
                     loadTap.in();
                 }
+                run.sort();
+                if(!sorterAdapter.preserveDuplicates()) {
+                    run.removeDuplicates();
+                }
             } finally {
                 loadTap.out();
             }
@@ -156,54 +135,28 @@ public class MemorySorter implements Sorter
         }
     }
 
-    private KeyState[] createKey(Row row, int rowCount) {
-        KeyState[] states = new KeyState[orderChanges.size() - 1];
-        for(int i = 0; i < states.length; ++i) {
-            int startOffset = orderChanges.get(i);
-            int endOffset = orderChanges.get(i + 1);
-            boolean isLast = i == states.length - 1;
-            // Loop for key growth
-            while(true) {
-                try {
-                    key.clear();
-                    for(int j = startOffset; j < endOffset; ++j) {
-                        sorterAdapter.evaluateToKey(row, j);
-                    }
-                    if(isLast && sorterAdapter.preserveDuplicates()) {
-                        key.append(rowCount);
-                    }
-                    break;
-                } catch (KeyTooLongException | StorageKeySizeExceededException e) {
-                    key.setMaximumSize(key.getMaximumSize() * 2);
-                }
-            }
-            states[i] = new KeyState(key);
-        }
-        return states;
-    }
-
-    private static final class CollectionCursor implements RowCursor {
-        private final Collection<Row> collection;
+    private static final class RunCursor implements RowCursor {
+        private final SortRun run;
         private boolean isIdle = true;
         private boolean isDestroyed = false;
-        private Iterator<Row> it;
+        private int position;
 
-        public CollectionCursor(Collection<Row> collection) {
-            this.collection = collection;
+        public RunCursor(SortRun run) {
+            this.run = run;
         }
 
         @Override
         public void open() {
             CursorLifecycle.checkIdle(this);
-            it = collection.iterator();
+            position = 0;
             isIdle = false;
         }
 
         @Override
         public Row next() {
             CursorLifecycle.checkIdleOrActive(this);
-            if(it != null && it.hasNext()) {
-                return it.next();
+            if(!isIdle && position < run.size()) {
+                return run.row(position++);
             }
             return null;
         }
@@ -217,7 +170,6 @@ public class MemorySorter implements Sorter
         public void close() {
             CursorLifecycle.checkIdleOrActive(this);
             if(!isIdle) {
-                it = null;
                 isIdle = true;
             }
         }
@@ -243,35 +195,5 @@ public class MemorySorter implements Sorter
         }
     }
 
-    private static final Comparator<KeyState> ASC_COMPARATOR = new Comparator<KeyState>() {
-        @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k1.compareTo(k2);
-        }
-    };
-
-    private static final Comparator<KeyState> DESC_COMPARATOR = new Comparator<KeyState>() {
-        @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k2.compareTo(k1);
-        }
-    };
-
-    private static final class KeyStateArrayComparator implements Comparator<KeyState[]> {
-        private final Comparator[] comparators;
-
-        private KeyStateArrayComparator(List<Comparator<KeyState>> comparators) {
-            this.comparators = comparators.toArray(new Comparator[comparators.size()]);
-        }
-
-        @SuppressWarnings("unchecked")
-        @Override
-        public int compare(KeyState[] k1, KeyState[] k2) {
-            int val = 0;
-            for(int i = 0; (i < comparators.length) && (val == 0); ++i) {
-                val = comparators[i].compare(k1[i], k2[i]);
-            }
-            return val;
-        }
-    }
+    private static final int INITIAL_RUN_SIZE = 1024;
 }
@@ -22,7 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -44,7 +44,6 @@ import com.foundationdb.server.PersistitValueValueTarget;
 import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.error.MergeSortIOException;
-import com.foundationdb.server.error.StorageKeySizeExceededException;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.common.types.TString;
 import com.foundationdb.server.types.value.ValueSource;
@@ -106,7 +105,7 @@ public class MergeJoinSorter implements Sorter {
     private InOutTap loadTap;
 
     private final SorterAdapter<?, ?, ?> sorterAdapter;
-    private final List<Integer> orderChanges;
+    private final SortKeyNormalizer normalizer;
     private IteratingSorter<SortKey> iteratingSorter;
     private Iterator<SortKey> sortIterator;
     private Key sortKey;
@@ -134,18 +133,8 @@ public class MergeJoinSorter implements Sorter {
         // Note: init may change this.ordering
         sorterAdapter.init(rowType, this.ordering, this.sortKey, null, this.context, this.bindings, sortOption);
         // Explicitly use input ordering to avoid appended field
-        this.orderChanges = new ArrayList<>();
-        List<Comparator<KeyState>> comparators = new ArrayList<>();
-        for(int i = 0; i < ordering.sortColumns(); ++i) {
-            Comparator<KeyState> c = ordering.ascending(i) ? ASC_COMPARATOR : DESC_COMPARATOR;
-            if(i == 0 || ordering.ascending(i-1) != ordering.ascending(i)) {
-                orderChanges.add(i);
-                comparators.add(c);
-            }
-        }
-        this.orderChanges.add(ordering.sortColumns());
-        this.compare = new KeySortCompare(comparators);
-        
+        this.normalizer = new SortKeyNormalizer(sorterAdapter, sortKey, ordering);
+        this.compare = new KeySortCompare();
     }
 
     @Override
@@ -189,8 +178,8 @@ public class MergeJoinSorter implements Sorter {
     }
     /*
      * Base class for reading/writing bytes - 
-     * KeyState[] is list of key segments broken by ASC/DESC ordering
-     * rowKey is the whole, unaltered row of data. 
+     * sortKeys holds the single normalized key (see SortKeyNormalizer)
+     * rowValue is the whole, unaltered row of data. 
      */
     public static class SortKey {
         public List<KeyState> sortKeys;
@@ -373,29 +362,11 @@ public class MergeJoinSorter implements Sorter {
         }
         
         private List<KeyState> createKey(Row row, int rowCount) {
-            KeyState[] states = new KeyState[orderChanges.size() - 1];
-            for(int i = 0; i < states.length; ++i) {
-                int startOffset = orderChanges.get(i);
-                int endOffset = orderChanges.get(i + 1);
-                boolean isLast = i == states.length - 1;
-                // Loop for key growth
-                while(true) {
-                    try {
-                        sortKey.clear();
-                        for(int j = startOffset; j < endOffset; ++j) {
-                            sorterAdapter.evaluateToKey(row, j);
-                        }
-                        if(isLast && sorterAdapter.preserveDuplicates()) {
-                            sortKey.append(rowCount);
-                        }
-                        break;
-                    } catch (KeyTooLongException | StorageKeySizeExceededException e) {
-                        enlargeKey(sortKey);
-                    }
-                }
-                states[i] = new KeyState(sortKey);
-            }
-            return Arrays.asList(states);
+            // The external sort is not stable, so the row count keeps duplicates in input order
+            byte[] bytes = sorterAdapter.preserveDuplicates() ?
+                normalizer.encode(row, rowCount) :
+                normalizer.encode(row);
+            return Collections.singletonList(new KeyState(bytes));
         }
 
         private static final int SIZE_GRANULARITY = 256;
@@ -462,13 +433,7 @@ public class MergeJoinSorter implements Sorter {
             }
             value.setMaximumSize(Math.min(value.getMaximumSize() *2, Value.MAXIMUM_SIZE));
         }
-        
-        private void enlargeKey (Key key) {
-            if (key.getMaximumSize() == Key.MAX_KEY_LENGTH_UPPER_BOUND) {
-                throw new KeyTooLongException("Maximum size exceeded=" + Key.MAX_KEY_LENGTH_UPPER_BOUND);
-            }
-            key.setMaximumSize(Math.min((key.getMaximumSize() * 2), Key.MAX_KEY_LENGTH_UPPER_BOUND));
-        }
+
         
         public int rowCount() {
             return rowCount;
@@ -660,37 +625,15 @@ public class MergeJoinSorter implements Sorter {
     
     /*
      * Comparison function, implemented for MergeSort to compare
-     * the KeyState lists generated by the KeyReadCursor
+     * the normalized keys generated by the KeyReadCursor
      */
     public static class KeySortCompare implements Comparator<SortKey> {
-        private final Comparator<KeyState>[] comparators;
-
-        @SuppressWarnings("unchecked")
-        private KeySortCompare (List<Comparator<KeyState>> comparators) {
-            this.comparators = comparators.toArray(new Comparator[comparators.size()]);
+        private KeySortCompare () {
         }
 
         @Override
         public int compare(SortKey o1, SortKey o2) {
-            int val = 0;
-            for (int i = 0; (i < comparators.length) && (val == 0); ++i) {
-                val = comparators[i].compare(o1.sortKeys.get(i), o2.sortKeys.get(i));
-            }
-            return val;
+            return SortKeyNormalizer.compare(o1.sortKeys.get(0).getBytes(), o2.sortKeys.get(0).getBytes());
         }
     }
-
-    private static final Comparator<KeyState> ASC_COMPARATOR = new Comparator<KeyState>() {
-        @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k1.compareTo(k2);
-        }
-    };
-
-    private static final Comparator<KeyState> DESC_COMPARATOR = new Comparator<KeyState>() {
-        @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k2.compareTo(k1);
-        }
-    };
 }
@@ -0,0 +1,535 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.CursorLifecycle;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.RowCursor;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.storeadapter.Sorter;
+import com.foundationdb.qp.util.HashSpillPartitions;
+import com.foundationdb.server.PersistitValueValueSource;
+import com.foundationdb.server.PersistitValueValueTarget;
+import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.server.error.MergeSortIOException;
+import com.foundationdb.server.service.sort.SortPoolService;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.exception.ConversionException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * <h1>Overview</h1>
+ *
+ * Sort rows in fixed-size runs on the fork-join pool of the {@link SortPoolService} while the input is still
+ * being read, then merge the runs with a loser tree.
+ *
+ * <h1>Behavior</h1>
+ *
+ * The query thread reads the input, encodes the sort fields of each row into a normalized key (see {@link
+ * SortKeyNormalizer}) and copies the row into the current run. Each time a run reaches {@link #RUN_ROWS} rows,
+ * it is handed to the pool to be sorted (see {@link SortRun}) and a new run is started.
+ *
+ * When the rows held in memory reach <code>fdbsql.sort.memory</code>, the sorted runs are merged into a
+ * temporary file in <code>fdbsql.tmp_dir</code> and dropped from memory. At most {@link #MERGE_FAN_IN} files are
+ * kept; beyond that, the oldest are merged into one.
+ *
+ * Output rows are produced by merging the remaining runs and any files (see {@link RunMerger}) as they are
+ * requested. Rows with equal sort fields keep their input order; if duplicates are suppressed, only the
+ * first is kept.
+ *
+ * <h1>Performance</h1>
+ *
+ * Run sorting uses up to <code>fdbsql.sort.threads</code> other threads and overlaps with reading the input.
+ * The merge is done on the query thread at <code>log2(runs)</code> comparisons per row. If the input fits
+ * in memory, there is no IO; otherwise each row is written and read once per file merge.
+ *
+ * <h1>Memory Requirements</h1>
+ *
+ * Up to <code>fdbsql.sort.memory</code> bytes of copied rows and keys, estimated, plus a buffer per file
+ * while merging.
+ */
+public class ParallelSorter implements Sorter
+{
+    public static final String MEMORY_PROPERTY = "fdbsql.sort.memory";
+
+    /** Rows per sorted run. */
+    public static final int RUN_ROWS = 16384;
+    /** Most files merged at once. */
+    public static final int MERGE_FAN_IN = 64;
+
+    public ParallelSorter(QueryContext context,
+                          QueryBindings bindings,
+                          RowCursor input,
+                          RowType rowType,
+                          API.Ordering ordering,
+                          API.SortOption sortOption,
+                          InOutTap loadTap,
+                          ForkJoinPool pool)
+    {
+        this.context = context;
+        this.input = input;
+        this.rowType = rowType;
+        this.loadTap = loadTap;
+        this.pool = pool;
+        this.memoryBudget = Long.parseLong(context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY));
+        Key key = context.getStore().createKey();
+        API.Ordering adapterOrdering = ordering.copy();
+        this.sorterAdapter = new ValueSorterAdapter();
+        // Note: init may change adapterOrdering
+        sorterAdapter.init(rowType, adapterOrdering, key, null, context, bindings, sortOption);
+        // Explicitly use input ordering to avoid appended field
+        this.normalizer = new SortKeyNormalizer(sorterAdapter, key, ordering);
+    }
+
+    @Override
+    public RowCursor sort() {
+        boolean loaded = false;
+        try {
+            load();
+            List<RunMerger.Source> sources = new ArrayList<>(files.size() + runs.size());
+            sources.addAll(files);
+            sources.addAll(runSources());
+            merger = new RunMerger(sources);
+            files.clear();
+            runs.clear();
+            loaded = true;
+        } finally {
+            if(!loaded) {
+                close();
+            }
+        }
+        return new MergeCursor(merger, sorterAdapter.preserveDuplicates());
+    }
+
+    @Override
+    public void close() {
+        for(PendingRun run : runs) {
+            run.task.cancel(false);
+        }
+        runs.clear();
+        current = null;
+        for(SpillFile file : files) {
+            file.close();
+        }
+        files.clear();
+        if(merger != null) {
+            merger.close();
+            merger = null;
+        }
+    }
+
+    // For use by this class
+
+    private void load() {
+        loadTap.in();
+        try {
+            Row row;
+            while((row = input.next()) != null) {
+                context.checkQueryCancelation();
+                byte[] sortKey = normalizer.encode(row);
+                // Copy instead of hold as ProjectedRow cannot be held
+                ValuesHolderRow rowCopy = new ValuesHolderRow(row.rowType());
+                for(int i = 0 ; i < row.rowType().nFields(); ++i) {
+                    ValueTargets.copyFrom(row.value(i), rowCopy.valueAt(i));
+                }
+                if(current == null) {
+                    current = new SortRun(RUN_ROWS);
+                }
+                current.add(sortKey, rowCopy);
+                memoryUsed += HashSpillPartitions.estimateSize(rowCopy) + sortKey.length + KEY_OVERHEAD;
+                if(current.size() == RUN_ROWS) {
+                    submitCurrent();
+                }
+                if(memoryUsed >= memoryBudget) {
+                    spill();
+                }
+                loadTap.out();
+                loadTap.in();
+            }
+            submitCurrent();
+        } finally {
+            loadTap.out();
+        }
+    }
+
+    private void submitCurrent() {
+        if(current != null) {
+            final SortRun run = current;
+            final boolean removeDuplicates = !sorterAdapter.preserveDuplicates();
+            ForkJoinTask<?> task = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    run.sort();
+                    if(removeDuplicates) {
+                        run.removeDuplicates();
+                    }
+                }
+            });
+            runs.add(new PendingRun(run, task));
+            current = null;
+        }
+    }
+
+    /** Wait for the submitted runs to be sorted and wrap them for merging. */
+    private List<RunMerger.Source> runSources() {
+        List<RunMerger.Source> sources = new ArrayList<>(runs.size());
+        for(PendingRun run : runs) {
+            run.task.join();
+            sources.add(new RunSource(run.run));
+        }
+        return sources;
+    }
+
+    /** Merge everything in memory into a new file. */
+    private void spill() {
+        submitCurrent();
+        SpillFile file = new SpillFile();
+        files.add(file);
+        merge(runSources(), file);
+        runs.clear();
+        memoryUsed = 0;
+        if(files.size() > MERGE_FAN_IN) {
+            List<SpillFile> oldest = new ArrayList<>(files.subList(0, MERGE_FAN_IN));
+            files.subList(0, MERGE_FAN_IN).clear();
+            // Still ahead of the newer files, to keep equal rows in input order.
+            SpillFile merged = new SpillFile();
+            files.add(0, merged);
+            merge(oldest, merged);
+        }
+    }
+
+    private void merge(List<? extends RunMerger.Source> sources, SpillFile file) {
+        RunMerger merger = new RunMerger(sources);
+        try {
+            byte[] lastKey = null;
+            while(merger.next()) {
+                context.checkQueryCancelation();
+                byte[] key = merger.key();
+                if(sorterAdapter.preserveDuplicates() ||
+                   (lastKey == null) || (SortKeyNormalizer.compare(lastKey, key) != 0)) {
+                    file.write(key, merger.row());
+                }
+                lastKey = key;
+            }
+            file.finishWriting();
+        } finally {
+            merger.close();
+        }
+    }
+
+    private static final class PendingRun {
+        private final SortRun run;
+        private final ForkJoinTask<?> task;
+
+        private PendingRun(SortRun run, ForkJoinTask<?> task) {
+            this.run = run;
+            this.task = task;
+        }
+    }
+
+    private static final class RunSource implements RunMerger.Source {
+        private final SortRun run;
+        private int position = -1;
+
+        private RunSource(SortRun run) {
+            this.run = run;
+        }
+
+        @Override
+        public boolean next() {
+            return (++position < run.size());
+        }
+
+        @Override
+        public byte[] key() {
+            return run.key(position);
+        }
+
+        @Override
+        public Row row() {
+            return run.row(position);
+        }
+
+        @Override
+        public void close() {
+            run.clear();
+        }
+    }
+
+    /* Keys and rows written in order to a temporary file, then read back once. */
+    private class SpillFile implements RunMerger.Source {
+        private File file;
+        private DataOutputStream output;
+        private DataInputStream input;
+        private byte[] key;
+        private Row row;
+
+        public SpillFile() {
+            try {
+                File directory = new File(context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
+                file = File.createTempFile("sort-" + context.getSessionId() + "-", ".tmp", directory);
+                file.deleteOnExit();
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                SPILL_TAP.hit();
+            } catch (IOException e) {
+                close();
+                throw new MergeSortIOException(e);
+            }
+        }
+
+        public void write(byte[] key, Row row) {
+            try {
+                Value value = encode(row);
+                output.writeInt(key.length);
+                output.write(key);
+                output.writeInt(value.getEncodedSize());
+                output.write(value.getEncodedBytes(), 0, value.getEncodedSize());
+            } catch (IOException e) {
+                throw new MergeSortIOException(e);
+            }
+        }
+
+        public void finishWriting() {
+            try {
+                output.close();
+                output = null;
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            } catch (IOException e) {
+                throw new MergeSortIOException(e);
+            }
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                int keySize;
+                try {
+                    keySize = input.readInt();
+                } catch (EOFException e) {
+                    return false;
+                }
+                key = new byte[keySize];
+                input.readFully(key);
+                int valueSize = input.readInt();
+                Value value = new Value((Persistit)null);
+                value.setMaximumSize(Math.max(valueSize, Value.INITIAL_SIZE));
+                value.ensureFit(valueSize);
+                input.readFully(value.getEncodedBytes(), 0, valueSize);
+                value.setEncodedSize(valueSize);
+                row = decode(value);
+                return true;
+            } catch (IOException e) {
+                throw new MergeSortIOException(e);
+            }
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+
+        @Override
+        public Row row() {
+            return row;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if(output != null) {
+                    output.close();
+                }
+                if(input != null) {
+                    input.close();
+                }
+            } catch (IOException e) {
+                // Deleting anyway.
+            }
+            output = null;
+            input = null;
+            if(file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+
+    private Value encode(Row row) {
+        if(value == null) {
+            value = new Value((Persistit)null, Value.INITIAL_SIZE, Value.DEFAULT_MAXIMUM_SIZE);
+            valueTarget = new PersistitValueValueTarget();
+        }
+        valueTarget.attach(value);
+        while(true) {
+            try {
+                value.clear();
+                value.setStreamMode(true);
+                for(int i = 0; i < rowType.nFields(); ++i) {
+                    ValueSource field = row.value(i);
+                    if(field.isNull()) {
+                        valueTarget.putNull();
+                    } else {
+                        rowType.typeAt(i).writeCanonical(field, valueTarget);
+                    }
+                }
+                return value;
+            } catch (ConversionException e) {
+                if(value.getMaximumSize() == Value.MAXIMUM_SIZE) {
+                    throw e;
+                }
+                value.setMaximumSize(Math.min(value.getMaximumSize() * 2, Value.MAXIMUM_SIZE));
+            }
+        }
+    }
+
+    private Row decode(Value value) {
+        if(valueSource == null) {
+            valueSource = new PersistitValueValueSource();
+        }
+        ValuesHolderRow row = new ValuesHolderRow(rowType);
+        valueSource.attach(value);
+        for(int i = 0; i < rowType.nFields(); ++i) {
+            valueSource.getReady(rowType.typeAt(i));
+            if(valueSource.isNull()) {
+                row.valueAt(i).putNull();
+            } else {
+                rowType.typeAt(i).writeCanonical(valueSource, row.valueAt(i));
+            }
+        }
+        return row;
+    }
+
+    private static final class MergeCursor implements RowCursor {
+        private final RunMerger merger;
+        private final boolean preserveDuplicates;
+        private boolean isIdle = true;
+        private boolean isDestroyed = false;
+        private byte[] lastKey;
+
+        public MergeCursor(RunMerger merger, boolean preserveDuplicates) {
+            this.merger = merger;
+            this.preserveDuplicates = preserveDuplicates;
+        }
+
+        @Override
+        public void open() {
+            CursorLifecycle.checkIdle(this);
+            isIdle = false;
+        }
+
+        @Override
+        public Row next() {
+            CursorLifecycle.checkIdleOrActive(this);
+            if(isIdle) {
+                return null;
+            }
+            while(merger.next()) {
+                byte[] key = merger.key();
+                boolean duplicate = !preserveDuplicates &&
+                    (lastKey != null) && (SortKeyNormalizer.compare(lastKey, key) == 0);
+                lastKey = key;
+                if(!duplicate) {
+                    return merger.row();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            CursorLifecycle.checkIdleOrActive(this);
+            if(!isIdle) {
+                isIdle = true;
+                // merger closed by ParallelSorter
+            }
+        }
+
+        @Override
+        public void destroy() {
+            isDestroyed = true;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return !isDestroyed && isIdle;
+        }
+
+        @Override
+        public boolean isActive() {
+            return !isDestroyed && !isIdle;
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return isDestroyed;
+        }
+    }
+
+    // Class state
+
+    private static final long KEY_OVERHEAD = 32;
+    private static final PointTap SPILL_TAP = Tap.createCount("sort: spill files");
+
+    // Object state
+
+    private final QueryContext context;
+    private final RowCursor input;
+    private final RowType rowType;
+    private final InOutTap loadTap;
+    private final ForkJoinPool pool;
+    private final long memoryBudget;
+    private final SorterAdapter<?, ?, ?> sorterAdapter;
+    private final SortKeyNormalizer normalizer;
+    private final List<PendingRun> runs = new ArrayList<>();
+    private final List<SpillFile> files = new ArrayList<>();
+    private SortRun current;
+    private long memoryUsed;
+    private RunMerger merger;
+    private Value value;
+    private PersistitValueValueTarget valueTarget;
+    private PersistitValueValueSource valueSource;
+}
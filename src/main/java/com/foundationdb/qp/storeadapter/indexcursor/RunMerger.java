@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.qp.row.Row;
+
+import java.util.List;
+
+/**
+ * Merge sorted sources of rows and their normalized sort keys (see {@link
+ * SortKeyNormalizer}) with a loser tree, which finds the next row with one
+ * comparison per level of the tree, <code>log2(nSources)</code> in all.
+ * <p/>
+ * Rows with equal keys come out in the order of their sources, so merging
+ * runs that were each sorted stably in input order is stable too.
+ */
+class RunMerger
+{
+    interface Source {
+        /** Advance to the next row, returning <code>false</code> at the end. */
+        boolean next();
+        byte[] key();
+        Row row();
+        void close();
+    }
+
+    public RunMerger(List<? extends Source> sources) {
+        this.sources = sources.toArray(new Source[sources.size()]);
+        int k = this.sources.length;
+        this.exhausted = new boolean[k];
+        this.tree = new int[Math.max(k, 1)];
+        for(int i = 0; i < tree.length; ++i) {
+            tree[i] = -1;
+        }
+        for(int i = 0; i < k; ++i) {
+            exhausted[i] = !this.sources[i].next();
+            adjust(i);
+        }
+    }
+
+    /** Advance to the next row in order, returning <code>false</code> at the end. */
+    public boolean next() {
+        if(sources.length == 0) {
+            return false;
+        }
+        if(started) {
+            int winner = tree[0];
+            exhausted[winner] = !sources[winner].next();
+            adjust(winner);
+        } else {
+            started = true;
+        }
+        return !exhausted[tree[0]];
+    }
+
+    public byte[] key() {
+        return sources[tree[0]].key();
+    }
+
+    public Row row() {
+        return sources[tree[0]].row();
+    }
+
+    public void close() {
+        for(Source source : sources) {
+            source.close();
+        }
+    }
+
+    // For use by this class
+
+    // Leaf i is at position k + i; internal nodes 1 .. k - 1 hold the loser of
+    // the match played there and node 0 holds the overall winner. While the
+    // tree is being built, the first source to reach a node waits there.
+    private void adjust(int source) {
+        int winner = source;
+        for(int node = (winner + sources.length) / 2; node > 0; node /= 2) {
+            int other = tree[node];
+            if(other < 0) {
+                tree[node] = winner;
+                return;
+            }
+            if(beats(other, winner)) {
+                tree[node] = winner;
+                winner = other;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private boolean beats(int s1, int s2) {
+        if(exhausted[s1]) {
+            return false;
+        }
+        if(exhausted[s2]) {
+            return true;
+        }
+        int c = SortKeyNormalizer.compare(sources[s1].key(), sources[s2].key());
+        return (c < 0) || ((c == 0) && (s1 < s2));
+    }
+
+    private final Source[] sources;
+    private final boolean[] exhausted;
+    private final int[] tree;
+    private boolean started;
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.error.StorageKeySizeExceededException;
+import com.persistit.Key;
+import com.persistit.exception.KeyTooLongException;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the sort fields of a row as a single <code>byte[]</code> whose
+ * unsigned lexicographic order is the order requested by an {@link
+ * API.Ordering}, so that comparing two rows is one pass over two arrays.
+ * <p/>
+ * The fields are appended to a Persistit {@link Key}, whose encoding is
+ * already byte-comparable (collated strings are appended as their
+ * collation keys) and ends every segment with a zero byte, so that no
+ * field's encoding is a proper prefix of another's. The bytes of each DESC
+ * field are then inverted, which reverses their order without affecting
+ * the fields around them.
+ */
+class SortKeyNormalizer
+{
+    /** The sort key of <code>row</code>. */
+    public byte[] encode(Row row) {
+        return encode(row, false, 0);
+    }
+
+    /** The sort key of <code>row</code> followed by <code>sequence</code>,
+     * which makes the key unique and orders rows with equal sort fields
+     * by <code>sequence</code>. */
+    public byte[] encode(Row row, int sequence) {
+        return encode(row, true, sequence);
+    }
+
+    /** Compare two keys as unsigned bytes. */
+    public static int compare(byte[] k1, byte[] k2) {
+        return compare(k1, k2, 0);
+    }
+
+    /** Compare two keys as unsigned bytes, given that they are known to
+     * be equal before <code>offset</code>. */
+    public static int compare(byte[] k1, byte[] k2, int offset) {
+        int n = Math.min(k1.length, k2.length);
+        for(int i = offset; i < n; ++i) {
+            int c = (k1[i] & 0xFF) - (k2[i] & 0xFF);
+            if(c != 0) {
+                return c;
+            }
+        }
+        return k1.length - k2.length;
+    }
+
+    /**
+     * @param sorterAdapter an adapter initialized to evaluate into <code>key</code>.
+     * @param ordering the ordering as given to the sorter, without any
+     * field that <code>sorterAdapter</code> appended to it.
+     */
+    public SortKeyNormalizer(SorterAdapter<?, ?, ?> sorterAdapter, Key key, API.Ordering ordering) {
+        this.sorterAdapter = sorterAdapter;
+        this.key = key;
+        this.descending = new boolean[ordering.sortColumns()];
+        boolean anyDescending = false;
+        for(int i = 0; i < descending.length; ++i) {
+            descending[i] = !ordering.ascending(i);
+            anyDescending |= descending[i];
+        }
+        this.anyDescending = anyDescending;
+        this.ends = new int[descending.length];
+    }
+
+    private byte[] encode(Row row, boolean appendSequence, int sequence) {
+        // Loop for key growth
+        while(true) {
+            try {
+                key.clear();
+                for(int i = 0; i < descending.length; ++i) {
+                    sorterAdapter.evaluateToKey(row, i);
+                    ends[i] = key.getEncodedSize();
+                }
+                if(appendSequence) {
+                    key.append(sequence);
+                }
+                break;
+            } catch (KeyTooLongException | StorageKeySizeExceededException e) {
+                enlargeKey();
+            }
+        }
+        byte[] bytes = Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize());
+        if(anyDescending) {
+            int start = 0;
+            for(int i = 0; i < descending.length; ++i) {
+                if(descending[i]) {
+                    for(int j = start; j < ends[i]; ++j) {
+                        bytes[j] = (byte)~bytes[j];
+                    }
+                }
+                start = ends[i];
+            }
+        }
+        return bytes;
+    }
+
+    private void enlargeKey() {
+        if(key.getMaximumSize() == Key.MAX_KEY_LENGTH_UPPER_BOUND) {
+            throw new KeyTooLongException("Maximum size exceeded=" + Key.MAX_KEY_LENGTH_UPPER_BOUND);
+        }
+        key.setMaximumSize(Math.min(key.getMaximumSize() * 2, Key.MAX_KEY_LENGTH_UPPER_BOUND));
+    }
+
+    private final SorterAdapter<?, ?, ?> sorterAdapter;
+    private final Key key;
+    private final boolean[] descending;
+    private final boolean anyDescending;
+    private final int[] ends;
+}
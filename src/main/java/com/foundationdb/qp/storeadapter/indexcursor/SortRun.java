@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.qp.row.Row;
+
+import java.util.Arrays;
+
+/**
+ * Rows and their normalized sort keys (see {@link SortKeyNormalizer}),
+ * held in parallel arrays and sorted in place.
+ * <p/>
+ * Sorting is a stable most-significant-byte radix sort on the leading
+ * bytes of the keys, finishing each bucket with a merge sort that starts
+ * comparing at the first byte not yet distributed on. Rows with equal keys
+ * stay in the order in which they were added.
+ */
+class SortRun
+{
+    public SortRun(int initialCapacity) {
+        keys = new byte[Math.max(initialCapacity, 1)][];
+        rows = new Row[keys.length];
+    }
+
+    public void add(byte[] key, Row row) {
+        if(size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+        keys[size] = key;
+        rows[size] = row;
+        ++size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] key(int i) {
+        return keys[i];
+    }
+
+    public Row row(int i) {
+        return rows[i];
+    }
+
+    public void sort() {
+        if(size > 1) {
+            byte[][] auxKeys = new byte[size][];
+            Row[] auxRows = new Row[size];
+            radixSort(0, size, 0, auxKeys, auxRows);
+        }
+    }
+
+    /** Keep only the first of each run of equal keys. Must follow {@link #sort}. */
+    public void removeDuplicates() {
+        if(size > 1) {
+            int n = 1;
+            for(int i = 1; i < size; ++i) {
+                if(SortKeyNormalizer.compare(keys[n - 1], keys[i]) != 0) {
+                    keys[n] = keys[i];
+                    rows[n] = rows[i];
+                    ++n;
+                }
+            }
+            Arrays.fill(keys, n, size, null);
+            Arrays.fill(rows, n, size, null);
+            size = n;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(rows, 0, size, null);
+        size = 0;
+    }
+
+    // For use by this class
+
+    // Bucket 0 holds keys that end before depth; byte b goes to bucket b + 1.
+    private static int bucket(byte[] key, int depth) {
+        return (depth < key.length) ? (key[depth] & 0xFF) + 1 : 0;
+    }
+
+    private void radixSort(int lo, int hi, int depth, byte[][] auxKeys, Row[] auxRows) {
+        int[] counts = null;
+        while(true) {
+            if(hi - lo < RADIX_MIN_SIZE || depth >= RADIX_MAX_DEPTH) {
+                mergeSort(lo, hi, depth, auxKeys, auxRows);
+                return;
+            }
+            if(counts == null) {
+                counts = new int[BUCKETS + 1];
+            } else {
+                Arrays.fill(counts, 0);
+            }
+            for(int i = lo; i < hi; ++i) {
+                ++counts[bucket(keys[i], depth) + 1];
+            }
+            int single = -1;
+            for(int b = 0; b < BUCKETS; ++b) {
+                if(counts[b + 1] == hi - lo) {
+                    single = b;
+                    break;
+                }
+            }
+            if(single < 0) {
+                break;
+            }
+            if(single == 0) {
+                // All keys equal.
+                return;
+            }
+            // Common byte: nothing to move.
+            ++depth;
+        }
+        for(int b = 0; b < BUCKETS; ++b) {
+            counts[b + 1] += counts[b];
+        }
+        for(int i = lo; i < hi; ++i) {
+            int to = lo + counts[bucket(keys[i], depth)]++;
+            auxKeys[to] = keys[i];
+            auxRows[to] = rows[i];
+        }
+        System.arraycopy(auxKeys, lo, keys, lo, hi - lo);
+        System.arraycopy(auxRows, lo, rows, lo, hi - lo);
+        // counts[b] is now the end of bucket b; bucket 0 is all equal.
+        for(int b = 1; b < BUCKETS; ++b) {
+            int start = lo + counts[b - 1];
+            int end = lo + counts[b];
+            if(end - start > 1) {
+                radixSort(start, end, depth + 1, auxKeys, auxRows);
+            }
+        }
+    }
+
+    private void mergeSort(int lo, int hi, int depth, byte[][] auxKeys, Row[] auxRows) {
+        if(hi - lo <= INSERTION_MAX_SIZE) {
+            insertionSort(lo, hi, depth);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        mergeSort(lo, mid, depth, auxKeys, auxRows);
+        mergeSort(mid, hi, depth, auxKeys, auxRows);
+        if(SortKeyNormalizer.compare(keys[mid - 1], keys[mid], depth) <= 0) {
+            return;
+        }
+        System.arraycopy(keys, lo, auxKeys, lo, hi - lo);
+        System.arraycopy(rows, lo, auxRows, lo, hi - lo);
+        int i = lo, j = mid;
+        for(int k = lo; k < hi; ++k) {
+            if((j >= hi) ||
+               ((i < mid) && (SortKeyNormalizer.compare(auxKeys[i], auxKeys[j], depth) <= 0))) {
+                keys[k] = auxKeys[i];
+                rows[k] = auxRows[i];
+                ++i;
+            } else {
+                keys[k] = auxKeys[j];
+                rows[k] = auxRows[j];
+                ++j;
+            }
+        }
+    }
+
+    private void insertionSort(int lo, int hi, int depth) {
+        for(int i = lo + 1; i < hi; ++i) {
+            byte[] key = keys[i];
+            Row row = rows[i];
+            int j = i;
+            while((j > lo) && (SortKeyNormalizer.compare(keys[j - 1], key, depth) > 0)) {
+                keys[j] = keys[j - 1];
+                rows[j] = rows[j - 1];
+                --j;
+            }
+            keys[j] = key;
+            rows[j] = row;
+        }
+    }
+
+    // Class state
+
+    private static final int BUCKETS = 257;
+    private static final int RADIX_MIN_SIZE = 64;
+    private static final int RADIX_MAX_DEPTH = 16;
+    private static final int INSERTION_MAX_SIZE = 16;
+
+    // Object state
+
+    private byte[][] keys;
+    private Row[] rows;
+    private int size;
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.PersistitValueValueSource;
+import com.foundationdb.server.PersistitValueValueTarget;
+import com.foundationdb.server.error.HashSpillIOException;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.exception.ConversionException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Rows of a single type written to temporary files, one per hash
+ * partition, for hash operators whose tables outgrow their memory
+ * budget. Files go in <code>fdbsql.tmp_dir</code> and are deleted
+ * by {@link #close}.
+ */
+public class HashSpillPartitions
+{
+    public static final int PARTITION_BITS = 4;
+    public static final int NPARTITIONS = 1 << PARTITION_BITS;
+
+    public static final String MEMORY_PROPERTY = "fdbsql.hash.memory";
+    public static final String TMP_DIR_PROPERTY = "fdbsql.tmp_dir";
+
+    /** The number of bytes a hash table may use before spilling. */
+    public static long memoryBudget(QueryContext context) {
+        String prop = context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY);
+        return Long.parseLong(prop);
+    }
+
+    /** The partition for a key with the given hash code when spilling
+     * at the given level of recursion, so that a partition that
+     * itself spills divides into different partitions the next time.
+     */
+    public static int partition(int hashCode, int level) {
+        int hash = hashCode * 0x9E3779B9;
+        return Integer.rotateRight(hash, (level * PARTITION_BITS) % Integer.SIZE) & (NPARTITIONS - 1);
+    }
+
+    /** A rough estimate of the memory held by a row once copied. */
+    public static long estimateSize(Row row) {
+        long size = ROW_OVERHEAD;
+        RowType rowType = row.rowType();
+        for (int i = 0; i < rowType.nFields(); i++) {
+            TInstance type = rowType.typeAt(i);
+            size += FIELD_OVERHEAD;
+            if ((type != null) && type.typeClass().hasFixedSerializationSize()) {
+                size += type.typeClass().fixedSerializationSize();
+            }
+            else {
+                ValueSource source = row.value(i);
+                if (!source.isNull()) {
+                    switch (TInstance.underlyingType(source.getType())) {
+                    case STRING:
+                        size += source.getString().length() * 2;
+                        break;
+                    case BYTES:
+                        size += source.getBytes().length;
+                        break;
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    public HashSpillPartitions(QueryContext context, RowType rowType) {
+        this(context, rowType, NPARTITIONS);
+    }
+
+    public HashSpillPartitions(QueryContext context, RowType rowType, int nPartitions) {
+        this.context = context;
+        this.rowType = rowType;
+        this.files = new File[nPartitions];
+        this.outputs = new DataOutputStream[nPartitions];
+        this.valueTarget = new PersistitValueValueTarget();
+        this.valueSource = new PersistitValueValueSource();
+    }
+
+    public RowType getRowType() {
+        return rowType;
+    }
+
+    public int getPartitionCount() {
+        return files.length;
+    }
+
+    public boolean isSpilled(int partition) {
+        return (files[partition] != null);
+    }
+
+    public void write(int partition, Row row) {
+        try {
+            DataOutputStream output = outputs[partition];
+            if (output == null) {
+                if (files[partition] == null) {
+                    File directory = new File(context.getServiceManager().getConfigurationService().getProperty(TMP_DIR_PROPERTY));
+                    files[partition] = File.createTempFile("hash-" + context.getSessionId() + "-", ".tmp", directory);
+                    files[partition].deleteOnExit();
+                    PARTITIONS_TAP.hit();
+                }
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[partition], true)));
+                outputs[partition] = output;
+            }
+            Value value = encode(row);
+            output.writeInt(value.getEncodedSize());
+            output.write(value.getEncodedBytes(), 0, value.getEncodedSize());
+            countBytes(4 + value.getEncodedSize());
+        }
+        catch (IOException ex) {
+            throw new HashSpillIOException(ex);
+        }
+    }
+
+    /** Read back the rows written to the given partition so far. */
+    public Reader read(int partition) {
+        try {
+            DataOutputStream output = outputs[partition];
+            if (output != null) {
+                output.close();
+                outputs[partition] = null;
+            }
+            READS_TAP.hit();
+            return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(files[partition]))));
+        }
+        catch (IOException ex) {
+            throw new HashSpillIOException(ex);
+        }
+    }
+
+    public void close() {
+        for (int i = 0; i < files.length; i++) {
+            if (outputs[i] != null) {
+                try {
+                    outputs[i].close();
+                }
+                catch (IOException ex) {
+                    // Deleting anyway.
+                }
+                outputs[i] = null;
+            }
+            if (files[i] != null) {
+                files[i].delete();
+                files[i] = null;
+            }
+        }
+    }
+
+    public class Reader {
+        public Row next() {
+            try {
+                int size;
+                try {
+                    size = input.readInt();
+                }
+                catch (EOFException ex) {
+                    return null;
+                }
+                Value value = new Value((Persistit)null);
+                value.setMaximumSize(Math.max(size, Value.INITIAL_SIZE));
+                value.ensureFit(size);
+                input.readFully(value.getEncodedBytes(), 0, size);
+                value.setEncodedSize(size);
+                return decode(value);
+            }
+            catch (IOException ex) {
+                throw new HashSpillIOException(ex);
+            }
+        }
+
+        public void close() {
+            try {
+                input.close();
+            }
+            catch (IOException ex) {
+                throw new HashSpillIOException(ex);
+            }
+        }
+
+        private Reader(DataInputStream input) {
+            this.input = input;
+        }
+
+        private final DataInputStream input;
+    }
+
+    // For use by this class
+
+    private Value encode(Row row) {
+        if (value == null) {
+            value = new Value((Persistit)null, Value.INITIAL_SIZE, Value.DEFAULT_MAXIMUM_SIZE);
+        }
+        valueTarget.attach(value);
+        while (true) {
+            try {
+                value.clear();
+                value.setStreamMode(true);
+                for (int i = 0; i < rowType.nFields(); i++) {
+                    ValueSource field = row.value(i);
+                    if (field.isNull()) {
+                        valueTarget.putNull();
+                    } else {
+                        rowType.typeAt(i).writeCanonical(field, valueTarget);
+                    }
+                }
+                return value;
+            }
+            catch (ConversionException ex) {
+                if (value.getMaximumSize() == Value.MAXIMUM_SIZE) {
+                    throw ex;
+                }
+                value.setMaximumSize(Math.min(value.getMaximumSize() * 2, Value.MAXIMUM_SIZE));
+            }
+        }
+    }
+
+    private Row decode(Value value) {
+        ValuesHolderRow row = new ValuesHolderRow(rowType);
+        valueSource.attach(value);
+        for (int i = 0; i < rowType.nFields(); i++) {
+            valueSource.getReady(rowType.typeAt(i));
+            if (valueSource.isNull()) {
+                row.valueAt(i).putNull();
+            } else {
+                rowType.typeAt(i).writeCanonical(valueSource, row.valueAt(i));
+            }
+        }
+        return row;
+    }
+
+    private void countBytes(int nbytes) {
+        bytesWritten += nbytes;
+        while (bytesWritten >= 1024) {
+            KBYTES_TAP.hit();
+            bytesWritten -= 1024;
+        }
+    }
+
+    // Class state
+
+    private static final long ROW_OVERHEAD = 64;
+    private static final long FIELD_OVERHEAD = 16;
+
+    private static final PointTap PARTITIONS_TAP = Tap.createCount("hash spill: partitions");
+    private static final PointTap KBYTES_TAP = Tap.createCount("hash spill: kbytes written");
+    private static final PointTap READS_TAP = Tap.createCount("hash spill: partitions read");
+
+    // Object state
+
+    private final QueryContext context;
+    private final RowType rowType;
+    private final File[] files;
+    private final DataOutputStream[] outputs;
+    private final PersistitValueValueTarget valueTarget;
+    private final PersistitValueValueSource valueSource;
+    private Value value;
+    private long bytesWritten;
+}
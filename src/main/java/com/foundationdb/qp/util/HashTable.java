@@ -0,0 +1,338 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/** Rows of a single type, indexed by a {@link KeyWrapper}.
+ * Loaded by <code>Using_HashTable</code> and probed by <code>HashTableLookup_Default</code>.
+ * <p/>
+ * When given a {@link QueryContext}, the table keeps within the
+ * <code>fdbsql.hash.memory</code> budget by moving whole hash
+ * partitions to temporary files, largest first. When first probed, a
+ * spilled partition that is itself over budget is divided by hashing
+ * again one level deeper, as often as needed, until each piece fits or
+ * holds just one key. Rows for a piece are read back into memory when
+ * it is probed, replacing whichever piece was last read. So that each
+ * is read just once, probes into spilled pieces should be grouped by
+ * {@link #spilledPartition}, as <code>HashTablePartition_Default</code>
+ * does.
+ */
+public class HashTable
+{
+    public HashTable(RowType rowType) {
+        this.rowType = rowType;
+        this.memoryBudget = Long.MAX_VALUE;
+    }
+
+    public HashTable(RowType rowType, QueryContext context,
+                     List<TEvaluatableExpression> keyEvaluations, List<AkCollator> collators) {
+        this.rowType = rowType;
+        this.context = context;
+        this.keyEvaluations = keyEvaluations;
+        this.collators = collators;
+        this.memoryBudget = HashSpillPartitions.memoryBudget(context);
+    }
+
+    public RowType getRowType() {
+        return rowType;
+    }
+
+    public void put(KeyWrapper key, Row row) {
+        row = ImmutableRow.ifTransient(row);
+        int partition = HashSpillPartitions.partition(key.hashCode(), 0);
+        rowCount++;
+        if ((spill != null) && spill.isSpilled(partition)) {
+            spill.write(partition, row);
+            spilledSizes[partition] += HashSpillPartitions.estimateSize(row);
+            return;
+        }
+        List<Row> rows = hashTable.get(key);
+        if (rows == null) {
+            rows = new ArrayList<>(1);
+            hashTable.put(key, rows);
+        }
+        rows.add(row);
+        long size = HashSpillPartitions.estimateSize(row);
+        partitionSizes[partition] += size;
+        memoryUsed += size;
+        if (memoryUsed > memoryBudget) {
+            spillLargestPartition();
+        }
+    }
+
+    public List<Row> getMatchingRows(KeyWrapper key) {
+        if (key.containsNull()) {
+            return Collections.emptyList();
+        }
+        Map<KeyWrapper,List<Row>> table = hashTable;
+        SpilledPartition piece = spilledPiece(key);
+        if (piece != null) {
+            table = loadSpilledPiece(piece);
+        }
+        List<Row> rows = table.get(key);
+        if (rows == null) {
+            return Collections.emptyList();
+        }
+        return rows;
+    }
+
+    /** The number of the spilled piece in which rows matching
+     * <code>key</code> would be found, less than {@link
+     * #spilledPartitionCount}, or -1 if they are in memory.
+     */
+    public int spilledPartition(KeyWrapper key) {
+        if (key.containsNull()) {
+            return -1;
+        }
+        SpilledPartition piece = spilledPiece(key);
+        if (piece == null) {
+            return -1;
+        }
+        return piece.number;
+    }
+
+    /** The number of spilled pieces, once loading is done. */
+    public int spilledPartitionCount() {
+        if (spill == null) {
+            return 0;
+        }
+        divideSpilledPartitions();
+        return pieces.size();
+    }
+
+    public int keyCount() {
+        return hashTable.size();
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return (rowCount == 0);
+    }
+
+    public void clear() {
+        hashTable.clear();
+        rowCount = 0;
+        memoryUsed = 0;
+        partitionSizes = new long[HashSpillPartitions.NPARTITIONS];
+        spilledSizes = new long[HashSpillPartitions.NPARTITIONS];
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+        for (HashSpillPartitions divided : dividedSpills) {
+            divided.close();
+        }
+        dividedSpills.clear();
+        spilledPartitions = null;
+        pieces.clear();
+        loadedTable = null;
+        loadedPiece = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HashTable(%s, %d keys, %d rows)", rowType, hashTable.size(), rowCount);
+    }
+
+    // For use by this class
+
+    private void spillLargestPartition() {
+        int largest = -1;
+        for (int i = 0; i < partitionSizes.length; i++) {
+            if ((partitionSizes[i] > 0) &&
+                ((largest < 0) || (partitionSizes[i] > partitionSizes[largest]))) {
+                largest = i;
+            }
+        }
+        if (largest < 0) return;
+        if (spill == null) {
+            spill = new HashSpillPartitions(context, rowType);
+        }
+        Iterator<Map.Entry<KeyWrapper,List<Row>>> iter = hashTable.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<KeyWrapper,List<Row>> entry = iter.next();
+            if (HashSpillPartitions.partition(entry.getKey().hashCode(), 0) == largest) {
+                for (Row row : entry.getValue()) {
+                    spill.write(largest, row);
+                }
+                iter.remove();
+            }
+        }
+        memoryUsed -= partitionSizes[largest];
+        spilledSizes[largest] += partitionSizes[largest];
+        partitionSizes[largest] = 0;
+    }
+
+    /** The spilled piece holding <code>key</code>, or null if it is in memory. */
+    private SpilledPartition spilledPiece(KeyWrapper key) {
+        if (spill == null) {
+            return null;
+        }
+        divideSpilledPartitions();
+        int hashCode = key.hashCode();
+        SpilledPartition piece = spilledPartitions[HashSpillPartitions.partition(hashCode, 0)];
+        while ((piece != null) && (piece.divisions != null)) {
+            piece = piece.divisions[HashSpillPartitions.partition(hashCode, piece.level + 1)];
+        }
+        return piece;
+    }
+
+    /** Divide the spilled partitions into pieces that fit in memory, once loading is done. */
+    private void divideSpilledPartitions() {
+        if (spilledPartitions != null) return;
+        spilledPartitions = new SpilledPartition[HashSpillPartitions.NPARTITIONS];
+        for (int i = 0; i < HashSpillPartitions.NPARTITIONS; i++) {
+            if (spill.isSpilled(i)) {
+                spilledPartitions[i] = new SpilledPartition(spill, i, 0, spilledSizes[i]);
+                divide(spilledPartitions[i]);
+            }
+        }
+    }
+
+    /** Repartition <code>partition</code> one level deeper if it is over budget and
+     * has more than one key, and so on for its divisions; otherwise number it as a piece.
+     */
+    private void divide(SpilledPartition partition) {
+        int level = partition.level + 1;
+        if ((partition.size > memoryBudget) && (level < MAX_LEVELS)) {
+            HashSpillPartitions divided = new HashSpillPartitions(context, rowType);
+            long[] sizes = new long[HashSpillPartitions.NPARTITIONS];
+            KeyWrapper firstKey = null;
+            boolean oneKey = true;
+            HashSpillPartitions.Reader reader = partition.spill.read(partition.partition);
+            try {
+                Row row;
+                while ((row = reader.next()) != null) {
+                    KeyWrapper key = new KeyWrapper(row, keyEvaluations, collators);
+                    if (firstKey == null) {
+                        firstKey = key;
+                    }
+                    else if (oneKey && !firstKey.equals(key)) {
+                        oneKey = false;
+                    }
+                    int division = HashSpillPartitions.partition(key.hashCode(), level);
+                    divided.write(division, row);
+                    sizes[division] += HashSpillPartitions.estimateSize(row);
+                }
+            }
+            finally {
+                reader.close();
+            }
+            if (!oneKey) {
+                DIVIDED_TAP.hit();
+                dividedSpills.add(divided);
+                partition.divisions = new SpilledPartition[HashSpillPartitions.NPARTITIONS];
+                for (int i = 0; i < HashSpillPartitions.NPARTITIONS; i++) {
+                    if (divided.isSpilled(i)) {
+                        partition.divisions[i] = new SpilledPartition(divided, i, level, sizes[i]);
+                        divide(partition.divisions[i]);
+                    }
+                }
+                return;
+            }
+            // All the rows have the same key, which dividing cannot separate.
+            divided.close();
+        }
+        partition.number = pieces.size();
+        pieces.add(partition);
+    }
+
+    private Map<KeyWrapper,List<Row>> loadSpilledPiece(SpilledPartition piece) {
+        if (piece != loadedPiece) {
+            loadedTable = new HashMap<>();
+            HashSpillPartitions.Reader reader = piece.spill.read(piece.partition);
+            try {
+                Row row;
+                while ((row = reader.next()) != null) {
+                    KeyWrapper key = new KeyWrapper(row, keyEvaluations, collators);
+                    List<Row> rows = loadedTable.get(key);
+                    if (rows == null) {
+                        rows = new ArrayList<>(1);
+                        loadedTable.put(key, rows);
+                    }
+                    rows.add(row);
+                }
+            }
+            finally {
+                reader.close();
+            }
+            loadedPiece = piece;
+        }
+        return loadedTable;
+    }
+
+    /** A spilled hash partition at some level, with its own divisions
+     * if it was too large to load. */
+    private static class SpilledPartition {
+        SpilledPartition(HashSpillPartitions spill, int partition, int level, long size) {
+            this.spill = spill;
+            this.partition = partition;
+            this.level = level;
+            this.size = size;
+        }
+
+        final HashSpillPartitions spill;
+        final int partition;
+        final int level;
+        final long size;
+        SpilledPartition[] divisions;
+        int number = -1;
+    }
+
+    // Class state
+
+    // Hashing a level deeper than this reuses the bits of an earlier level.
+    private static final int MAX_LEVELS = Integer.SIZE / HashSpillPartitions.PARTITION_BITS;
+    private static final PointTap DIVIDED_TAP = Tap.createCount("hash spill: partitions divided");
+
+    // Object state
+
+    private final RowType rowType;
+    private final long memoryBudget;
+    private QueryContext context;
+    private List<TEvaluatableExpression> keyEvaluations;
+    private List<AkCollator> collators;
+    private final Map<KeyWrapper,List<Row>> hashTable = new HashMap<>();
+    private long rowCount;
+    private long memoryUsed;
+    private long[] partitionSizes = new long[HashSpillPartitions.NPARTITIONS];
+    private long[] spilledSizes = new long[HashSpillPartitions.NPARTITIONS];
+    private HashSpillPartitions spill;
+    private final List<HashSpillPartitions> dividedSpills = new ArrayList<>();
+    private SpilledPartition[] spilledPartitions;
+    private final List<SpilledPartition> pieces = new ArrayList<>();
+    private Map<KeyWrapper,List<Row>> loadedTable;
+    private SpilledPartition loadedPiece;
+}
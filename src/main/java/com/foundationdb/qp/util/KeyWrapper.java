@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueTargets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The values of a list of expressions, copied out of a row, suitable for use as
+ * the key of a <code>HashMap</code>. Hashing and equality respect collation, so
+ * two keys that differ only in case are equal under a case-insensitive collator.
+ */
+public class KeyWrapper
+{
+    public KeyWrapper(Row row, List<TEvaluatableExpression> expressions, List<AkCollator> collators) {
+        int nkeys = expressions.size();
+        this.values = new ArrayList<>(nkeys);
+        this.collators = collators;
+        int hash = 0;
+        boolean anyNull = false;
+        for (int i = 0; i < nkeys; i++) {
+            TEvaluatableExpression expression = expressions.get(i);
+            if (row != null) {
+                expression.with(row);
+            }
+            expression.evaluate();
+            ValueSource source = expression.resultValue();
+            Value value = new Value(source.getType());
+            ValueTargets.copyFrom(source, value);
+            values.add(value);
+            if (value.isNull()) {
+                anyNull = true;
+            }
+            else {
+                hash = hash * 31 + ValueSources.hash(value, collator(i, value.getType()));
+            }
+        }
+        this.hashKey = hash;
+        this.containsNull = anyNull;
+    }
+
+    public List<Value> getValues() {
+        return values;
+    }
+
+    /** Whether any of the key values is <code>NULL</code>, in which case
+     * the key cannot equal any other under SQL comparison rules.
+     */
+    public boolean containsNull() {
+        return containsNull;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof KeyWrapper)) return false;
+        KeyWrapper other = (KeyWrapper)o;
+        if ((hashKey != other.hashKey) ||
+            (values.size() != other.values.size()))
+            return false;
+        for (int i = 0; i < values.size(); i++) {
+            Value x = values.get(i);
+            Value y = other.values.get(i);
+            if (x.isNull() || y.isNull()) {
+                // Nulls only group together, as for GROUP BY / DISTINCT.
+                if (x.isNull() != y.isNull())
+                    return false;
+                continue;
+            }
+            if (!valuesEqual(i, x, y))
+                return false;
+        }
+        return true;
+    }
+
+    /** Whether the two keys agree wherever neither is <code>NULL</code>,
+     * that is, whether their SQL comparison is not <code>FALSE</code>.
+     */
+    public boolean mayEqual(KeyWrapper other) {
+        if (values.size() != other.values.size())
+            return false;
+        for (int i = 0; i < values.size(); i++) {
+            Value x = values.get(i);
+            Value y = other.values.get(i);
+            if (x.isNull() || y.isNull())
+                continue;
+            if (!valuesEqual(i, x, y))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("(");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) str.append(", ");
+            ValueSources.toStringSimple(values.get(i), str);
+        }
+        str.append(")");
+        return str.toString();
+    }
+
+    // For use by this class
+
+    private boolean valuesEqual(int i, Value x, Value y) {
+        TInstance xType = x.getType();
+        TInstance yType = y.getType();
+        if (xType.typeClass() instanceof TString)
+            return collator(i, xType).compare(x, y) == 0;
+        else if (TClass.comparisonNeedsCasting(xType, yType))
+            return false;
+        else
+            return TClass.compare(xType, x, yType, y) == 0;
+    }
+
+    private AkCollator collator(int i, TInstance type) {
+        AkCollator collator = (collators == null) ? null : collators.get(i);
+        if ((collator == null) && (type.typeClass() instanceof TString)) {
+            collator = TString.getCollator(type);
+        }
+        return collator;
+    }
+
+    // Object state
+
+    private final List<Value> values;
+    private final List<AkCollator> collators;
+    private final int hashKey;
+    private final boolean containsNull;
+}
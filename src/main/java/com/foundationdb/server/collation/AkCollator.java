@@ -18,6 +18,8 @@ package com.foundationdb.server.collation;
 
 import com.foundationdb.server.PersistitKeyValueSource;
 import com.foundationdb.server.types.value.ValueSource;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.persistit.Key;
 
 public abstract class AkCollator {
@@ -118,6 +120,21 @@ public abstract class AkCollator {
      */
     abstract public int hashCode(final String string);
 
+    /**
+     * Compute a 64-bit hash of a String based on the sort keys produced by
+     * the underlying collator, for hash structures too large for
+     * {@link #hashCode(String)}.
+     * 
+     * @param string
+     *            the String
+     * @return the computed hash value
+     * @throws NullPointerException
+     *             if string is null
+     */
+    public long hashCode64(final String string) {
+        return HASH_FUNCTION_64.hashBytes(encodeSortKeyBytes(string)).asLong();
+    }
+
     @Override
     public String toString() {
         return collatorName + "(" + collatorScheme + ")";
@@ -163,4 +180,6 @@ public abstract class AkCollator {
      *             if unable to decode sort keys
      */
     abstract String decodeSortKeyBytes(byte[] bytes, int index, int length);
+
+    static final HashFunction HASH_FUNCTION_64 = Hashing.murmur3_128();
 }
@@ -16,6 +16,7 @@
  */
 package com.foundationdb.server.collation;
 
+import com.google.common.base.Charsets;
 import com.persistit.Key;
 
 public class AkCollatorBinary extends AkCollator {
@@ -72,4 +73,9 @@ public class AkCollatorBinary extends AkCollator {
     public int hashCode(String string) {
         return string.hashCode();
     }
+
+    @Override
+    public long hashCode64(String string) {
+        return HASH_FUNCTION_64.hashString(string, Charsets.UTF_8).asLong();
+    }
 }
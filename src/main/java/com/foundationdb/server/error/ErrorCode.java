@@ -426,7 +426,7 @@ public enum ErrorCode {
     //53004 *RESERVED*
     ROW_OUTPUT              ("53", "005", Importance.DEBUG, RowOutputException.class),
     SCAN_RETRY_ABANDONDED   ("53", "006", Importance.ERROR, ScanRetryAbandonedException.class),
-    //53007
+    HASH_SPILL_IO           ("53", "007", Importance.ERROR, HashSpillIOException.class),
     //53008
     TABLEDEF_MISMATCH       ("53", "009", Importance.DEBUG, TableDefinitionMismatchException.class),
     PROTOBUF_READ           ("53", "00A", Importance.ERROR, ProtobufReadException.class),
@@ -31,6 +31,7 @@ public enum Label
     PREDICATE(Category.CHILD),
     EXPRESSIONS(Category.CHILD),
     BLOOM_FILTER(Category.CHILD),
+    MEMO_KEYS(Category.CHILD), // values on which a memoized result depends
     HIGH_COMPARAND(Category.CHILD),
     LOW_COMPARAND(Category.CHILD),
     EQUAL_COMPARAND(Category.CHILD),
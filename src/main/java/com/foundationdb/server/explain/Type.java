@@ -63,6 +63,7 @@ public enum Type
     AGGREGATE(GeneralType.OPERATOR),
     ORDERED(GeneralType.OPERATOR),
     BLOOM_FILTER(GeneralType.OPERATOR),
+    HASH_JOIN(GeneralType.OPERATOR),
     BUFFER_OPERATOR(GeneralType.OPERATOR),
     HKEY_OPERATOR(GeneralType.OPERATOR),
     
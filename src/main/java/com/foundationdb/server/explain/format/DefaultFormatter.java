@@ -195,6 +195,17 @@ public class DefaultFormatter
             sb.setLength(sb.length() - 2);
         }
         sb.append(')');
+        if (atts.containsKey(Label.LIMIT)) {
+            sb.append(" MEMOIZE(");
+            if (atts.containsKey(Label.MEMO_KEYS)) {
+                for (Explainer ex : atts.get(Label.MEMO_KEYS)) {
+                    append(ex);
+                    sb.append(", ");
+                }
+                sb.setLength(sb.length() - 2);
+            }
+            sb.append(')');
+        }
         newRow();
         sb.append("  ");
         appendOperator((CompoundExplainer)atts.getAttribute(Label.OPERAND), 1);
@@ -264,6 +275,9 @@ public class DefaultFormatter
         case BLOOM_FILTER:
             appendBloomFilterOperator(name, atts);
             break;
+        case HASH_JOIN:
+            appendHashJoinOperator(name, atts);
+            break;
         case DISTINCT:
             appendDistinctOperator(name, atts);
             break;
@@ -329,7 +343,8 @@ public class DefaultFormatter
                 }
             }
         }
-        else if (name.equals("GroupScan_Default")) {
+        else if (name.equals("GroupScan_Default") ||
+                 name.equals("GroupScan_Parallel")) {
             if (levelOfDetail != LevelOfDetail.BRIEF) {
                 String opt = (String)atts.getValue(Label.SCAN_OPTION);
                 if (!opt.equals("full scan"))
@@ -356,6 +371,9 @@ public class DefaultFormatter
             int nequals = 0;
             if (atts.containsKey(Label.EQUAL_COMPARAND))
                 nequals = atts.get(Label.EQUAL_COMPARAND).size();
+            int nskips = 0;
+            if (atts.containsKey(Label.NUM_SKIP))
+                nskips = ((Number)atts.getValue(Label.NUM_SKIP)).intValue();
             if (atts.containsKey(Label.USED_COLUMNS)) {
                 // Don't display non-key columns if not used.
                 ncols = ((Number)atts.getValue(Label.USED_COLUMNS)).intValue();
@@ -426,7 +444,11 @@ public class DefaultFormatter
                 else if (isGroup || !indexTable.equals(columnTable))
                     sb.append(columnTable).append('.');
                 append(atts.get(Label.COLUMN_NAME).get(i));
-                if (i < nequals) {
+                if (i < nskips) {
+                    // Skip scan over each distinct value.
+                    sb.append(" SKIP");
+                }
+                else if (i < nequals) {
                     Explainer comparand = atts.get(Label.EQUAL_COMPARAND).get(i);
                     if (isLiteralNull(comparand))
                         sb.append(" IS NULL");
@@ -473,6 +495,13 @@ public class DefaultFormatter
                     }
                 }
             }
+            if (atts.containsKey(Label.PREDICATE)) {
+                sb.append(", WHERE ");
+                append(atts.getAttribute(Label.PREDICATE));
+            }
+            if (atts.containsKey(Label.LIMIT)) {
+                sb.append(", LIMIT ").append(atts.getValue(Label.LIMIT));
+            }
         }
     }
 
@@ -553,6 +582,15 @@ public class DefaultFormatter
 
     protected void appendOrderedOperator(String name, Attributes atts) {
         if (levelOfDetail != LevelOfDetail.BRIEF) {
+            if (name.equals("MergeJoin_Ordered")) {
+                sb.append("compare ");
+                append(atts.getAttribute(Label.NUM_COMPARE));
+                String join = (String)atts.getValue(Label.JOIN_OPTION);
+                if (!"INNER".equals(join)) {
+                    sb.append(", USING ").append(join);
+                }
+                return;
+            }
             if (atts.containsKey(Label.UNION_OPTION) &&
                 "ALL".equals(atts.getValue(Label.UNION_OPTION))) {
                 sb.append("all, ");
@@ -737,6 +775,18 @@ public class DefaultFormatter
         }
     }
 
+    protected void appendHashJoinOperator(String name, Attributes atts) {
+        if (levelOfDetail != LevelOfDetail.BRIEF) {
+            if (atts.containsKey(Label.EXPRESSIONS)) {
+                for (Explainer ex : atts.get(Label.EXPRESSIONS)) {
+                    append(ex);
+                    sb.append(", ");
+                }
+                sb.setLength(sb.length() - 2);
+            }
+        }
+    }
+
     // If all the inputs are simple columns, display their names.
     protected boolean appendProjectColumns(Attributes atts, int nfields) {
         int olen = sb.length();
@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.service.sort;
+
+import java.util.concurrent.ForkJoinPool;
+
+/** The threads on which sorts run in parallel with the query thread. */
+public interface SortPoolService
+{
+    /** The pool sized by <code>fdbsql.sort.threads</code>, or
+     * <code>null</code> if sorting is done on the query thread. */
+    ForkJoinPool getPool();
+}
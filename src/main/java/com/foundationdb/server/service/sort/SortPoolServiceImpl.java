@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.service.sort;
+
+import com.foundationdb.server.service.Service;
+import com.foundationdb.server.service.config.ConfigurationService;
+
+import com.google.inject.Inject;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class SortPoolServiceImpl implements SortPoolService, Service
+{
+    public static final String THREADS_PROPERTY = "fdbsql.sort.threads";
+
+    private final ConfigurationService config;
+    private volatile ForkJoinPool pool;
+
+    @Inject
+    public SortPoolServiceImpl(ConfigurationService config) {
+        this.config = config;
+    }
+
+    /* SortPoolService interface */
+
+    @Override
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /* Service interface */
+
+    @Override
+    public void start() {
+        int nThreads = Integer.parseInt(config.getProperty(THREADS_PROPERTY));
+        if (nThreads > 0) {
+            pool = new ForkJoinPool(nThreads);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (pool != null) {
+            // Lets any runs already submitted finish.
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    @Override
+    public void crash() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.types.common.funcs;
+
+import com.foundationdb.server.types.LazyList;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TExecutionContext;
+import com.foundationdb.server.types.TScalar;
+import com.foundationdb.server.types.TOverloadResult;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTarget;
+import com.foundationdb.server.types.texpressions.TInputSetBuilder;
+import com.foundationdb.server.types.texpressions.TScalarBase;
+import com.foundationdb.util.HyperLogLog;
+import com.foundationdb.util.TDigest;
+
+/** Called at the end of aggregation into a sketch for APPROX_ aggregates. */
+public class ApproximateCalculate extends TScalarBase
+{
+    enum Func {
+        APPROX_COUNT_DISTINCT, APPROX_PERCENTILE
+    }
+
+    public static TScalar[] create(TClass binaryType, TClass intType, TClass doubleType) {
+        return new TScalar[] {
+            new ApproximateCalculate(Func.APPROX_COUNT_DISTINCT, "_APPROX_COUNT_DISTINCT", binaryType, intType, doubleType),
+            new ApproximateCalculate(Func.APPROX_PERCENTILE, "_APPROX_PERCENTILE", binaryType, intType, doubleType)
+        };
+    }
+
+    private final Func func;
+    private final String name;
+    private final TClass binaryType, intType, doubleType;
+
+    private ApproximateCalculate(Func func, String name,
+                                 TClass binaryType, TClass intType, TClass doubleType) {
+        this.func = func;
+        this.name = name;
+        this.binaryType = binaryType;
+        this.intType = intType;
+        this.doubleType = doubleType;
+    }
+
+    @Override
+    public String displayName()
+    {
+        return name;
+    }
+
+    @Override
+    protected void buildInputSets(TInputSetBuilder builder)
+    {
+        builder.covers(binaryType, 0);
+        if (func == Func.APPROX_PERCENTILE)
+            builder.covers(doubleType, 1);
+    }
+
+    @Override
+    protected boolean nullContaminates(int inputIndex)
+    {
+        // No sketch means no input rows, which have no distinct values.
+        return !((func == Func.APPROX_COUNT_DISTINCT) && (inputIndex == 0));
+    }
+
+    @Override
+    public TOverloadResult resultType()
+    {
+        return TOverloadResult.fixed((func == Func.APPROX_COUNT_DISTINCT) ? intType : doubleType);
+    }
+
+    @Override
+    protected void doEvaluate(TExecutionContext context, LazyList<? extends ValueSource> inputs, ValueTarget output)
+    {
+        ValueSource sketch = inputs.get(0);
+        switch (func) {
+        case APPROX_COUNT_DISTINCT:
+            output.putInt64(sketch.isNull() ? 0 : HyperLogLog.estimate(sketch.getBytes()));
+            break;
+        case APPROX_PERCENTILE:
+            output.putDouble(TDigest.quantile(sketch.getBytes(), inputs.get(1).getDouble()));
+            break;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.types.mcompat.aggr;
+
+import com.foundationdb.server.error.AkibanInternalException;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TAggregatorBase;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TOverloadResult;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.mcompat.mtypes.MApproximateNumber;
+import com.foundationdb.server.types.mcompat.mtypes.MBinary;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueHasher;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTarget;
+import com.foundationdb.util.HyperLogLog;
+import com.foundationdb.util.TDigest;
+
+/**
+ * Approximate aggregates, which summarize their input in a sketch of fixed
+ * size rather than needing it sorted or all held in memory. The sketch is
+ * the <code>VARBINARY</code> state, updated in place, and a scalar turns it
+ * into the result once the aggregation is done.
+ */
+public class MApproximateAggregate extends TAggregatorBase
+{
+    enum Func {
+        // These are the actual aggregate functions. They are only
+        // here so that we can distinguish from regular functions
+        // early enough for the optimizer to transform them.
+        APPROX_COUNT_DISTINCT, APPROX_PERCENTILE,
+        // These are the partial aggregators.
+        DISTINCT_SKETCH, PERCENTILE_SKETCH
+    }
+
+    public static final TAggregator[] INSTANCES = {
+        new MApproximateAggregate(Func.APPROX_COUNT_DISTINCT, "APPROX_COUNT_DISTINCT", null),
+        new MApproximateAggregate(Func.APPROX_PERCENTILE, "APPROX_PERCENTILE", MApproximateNumber.DOUBLE),
+        new MApproximateAggregate(Func.DISTINCT_SKETCH, "_DISTINCT_SKETCH", null),
+        new MApproximateAggregate(Func.PERCENTILE_SKETCH, "_PERCENTILE_SKETCH", MApproximateNumber.DOUBLE)
+    };
+
+    // 2^14 registers, for a standard error of 0.8%
+    public static final int DISTINCT_PRECISION = 14;
+
+    private final Func func;
+
+    private MApproximateAggregate(Func func, String name, TClass inputClass) {
+        super(name, inputClass);
+        this.func = func;
+    }
+
+    @Override
+    public void input(TInstance type, ValueSource source, TInstance stateType, Value state, Object option)
+    {
+        if (source.isNull())
+            return;
+        switch (func) {
+        case DISTINCT_SKETCH:
+            if (!state.hasAnyValue())
+                state.putBytes(HyperLogLog.newSketch(DISTINCT_PRECISION));
+            // So that the high bits that pick a register are well mixed
+            HyperLogLog.add(state.getBytes(), ValueHasher.mix(ValueHasher.hash(source, TString.getCollator(type))));
+            break;
+        case PERCENTILE_SKETCH:
+            if (!state.hasAnyValue())
+                state.putBytes(TDigest.newSketch());
+            TDigest.add(state.getBytes(), source.getDouble());
+            break;
+        default:
+            throw new AkibanInternalException("Aggregator for " + displayName() + " should have been optimized out");
+        }
+    }
+
+    @Override
+    public void emptyValue(ValueTarget state)
+    {
+        state.putNull();
+    }
+
+    @Override
+    public TOverloadResult resultType()
+    {
+        switch (func) {
+        case APPROX_COUNT_DISTINCT:
+            return TOverloadResult.fixed(MNumeric.BIGINT);
+        case APPROX_PERCENTILE:
+            return TOverloadResult.fixed(MApproximateNumber.DOUBLE);
+        case DISTINCT_SKETCH:
+            return TOverloadResult.fixed(MBinary.VARBINARY, 1 << DISTINCT_PRECISION);
+        case PERCENTILE_SKETCH:
+        default:
+            return TOverloadResult.fixed(MBinary.VARBINARY, TDigest.SIZE);
+        }
+    }
+}
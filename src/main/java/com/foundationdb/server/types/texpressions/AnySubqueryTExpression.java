@@ -25,6 +25,8 @@ import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
 import com.foundationdb.server.types.value.ValueTarget;
 
+import java.util.List;
+
 public final class AnySubqueryTExpression extends SubqueryTExpression {
 
     @Override
@@ -35,7 +37,8 @@ public final class AnySubqueryTExpression extends SubqueryTExpression {
     @Override
     public TEvaluatableExpression build() {
         TEvaluatableExpression child = expression.build();
-        return new InnerEvaluatable(subquery(), child, outerRowType(), innerRowType(), bindingPosition());
+        return new InnerEvaluatable(subquery(), child, outerRowType(), innerRowType(), bindingPosition(),
+                                    memoKeys(), memoSize());
     }
 
     @Override
@@ -53,6 +56,14 @@ public final class AnySubqueryTExpression extends SubqueryTExpression {
         this.expression = expression;
     }
 
+    public AnySubqueryTExpression(Operator subquery, TPreparedExpression expression,
+                                  RowType outerRowType, RowType innerRowType, int bindingPosition,
+                                  List<? extends TPreparedExpression> memoKeys, int memoSize)
+    {
+        super(subquery, outerRowType, innerRowType, bindingPosition, memoKeys, memoSize);
+        this.expression = expression;
+    }
+
     private final TPreparedExpression expression;
 
     private static class InnerEvaluatable extends SubqueryTEvaluateble {
@@ -83,9 +94,11 @@ public final class AnySubqueryTExpression extends SubqueryTExpression {
         }
 
         private InnerEvaluatable(Operator subquery, TEvaluatableExpression evaluation, RowType outerRowType,
-                                       RowType innerRowType, int bindingPosition)
+                                       RowType innerRowType, int bindingPosition,
+                                       List<? extends TPreparedExpression> memoKeys, int memoSize)
         {
-            super(subquery, outerRowType, innerRowType, bindingPosition, AkBool.INSTANCE.instance(true));
+            super(subquery, outerRowType, innerRowType, bindingPosition, AkBool.INSTANCE.instance(true),
+                  memoKeys, memoSize);
             this.evaluation = evaluation;
         }
 
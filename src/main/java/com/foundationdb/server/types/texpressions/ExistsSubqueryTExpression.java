@@ -24,15 +24,19 @@ import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
 import com.foundationdb.server.types.value.ValueTarget;
 
+import java.util.List;
+
 public class ExistsSubqueryTExpression extends SubqueryTExpression
 {
     private static final class InnerEvaluation extends SubqueryTEvaluateble
     {
         InnerEvaluation(Operator subquery,
                         RowType outerRowType, RowType innerRowType,
-                        int bindingPosition)
+                        int bindingPosition,
+                        List<? extends TPreparedExpression> memoKeys, int memoSize)
         {
-            super(subquery, outerRowType, innerRowType, bindingPosition, AkBool.INSTANCE.instance(true));
+            super(subquery, outerRowType, innerRowType, bindingPosition, AkBool.INSTANCE.instance(true),
+                  memoKeys, memoSize);
         }
 
         @Override
@@ -47,6 +51,13 @@ public class ExistsSubqueryTExpression extends SubqueryTExpression
     {
         super(subquery, outerRowType, innerRowType, bindingPosition);
     }
+
+    public ExistsSubqueryTExpression(Operator subquery, RowType outerRowType, 
+                                     RowType innerRowType, int bindingPosition,
+                                     List<? extends TPreparedExpression> memoKeys, int memoSize)
+    {
+        super(subquery, outerRowType, innerRowType, bindingPosition, memoKeys, memoSize);
+    }
     
     @Override
     public TInstance resultType()
@@ -59,7 +70,8 @@ public class ExistsSubqueryTExpression extends SubqueryTExpression
     {
         return new InnerEvaluation(subquery(),
                                    outerRowType(), innerRowType(),
-                                   bindingPosition());
+                                   bindingPosition(),
+                                   memoKeys(), memoSize());
     }
 
     @Override
@@ -26,6 +26,8 @@ import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.value.ValueTarget;
 import com.foundationdb.server.types.value.ValueTargets;
 
+import java.util.List;
+
 public class ScalarSubqueryTExpression extends SubqueryTExpression
 {
     private static final class InnerEvaluation extends SubqueryTEvaluateble
@@ -35,9 +37,11 @@ public class ScalarSubqueryTExpression extends SubqueryTExpression
         public InnerEvaluation(Operator subquery,
                                TPreparedExpression expression,
                                RowType outerRowType, RowType innerRowType,
-                               int bindingPosition)
+                               int bindingPosition,
+                               List<? extends TPreparedExpression> memoKeys, int memoSize)
         {
-            super(subquery, outerRowType, innerRowType, bindingPosition, expression.resultType());
+            super(subquery, outerRowType, innerRowType, bindingPosition, expression.resultType(),
+                  memoKeys, memoSize);
             this.expression = expression;
         }
 
@@ -76,6 +80,16 @@ public class ScalarSubqueryTExpression extends SubqueryTExpression
         this.expression = expression;
     }
 
+    public ScalarSubqueryTExpression(Operator subquery,
+                                     TPreparedExpression expression,
+                                     RowType outerRowType, RowType innerRowType, 
+                                     int bindingPosition,
+                                     List<? extends TPreparedExpression> memoKeys, int memoSize)
+    {
+        super(subquery, outerRowType, innerRowType, bindingPosition, memoKeys, memoSize);
+        this.expression = expression;
+    }
+
     @Override
     public TInstance resultType()
     {
@@ -88,7 +102,8 @@ public class ScalarSubqueryTExpression extends SubqueryTExpression
         return new InnerEvaluation(subquery(),
                                    expression,
                                    outerRowType(), innerRowType(),
-                                   bindingPosition());
+                                   bindingPosition(),
+                                   memoKeys(), memoSize());
     }
 
     @Override
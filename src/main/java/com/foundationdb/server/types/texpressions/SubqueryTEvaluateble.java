@@ -24,10 +24,22 @@ import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.KeyWrapper;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.collation.AkCollatorFactory;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueTarget;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 abstract class SubqueryTEvaluateble implements TEvaluatableExpression {
 
@@ -38,6 +50,25 @@ abstract class SubqueryTEvaluateble implements TEvaluatableExpression {
 
     @Override
     public void evaluate() {
+        if (memo == null) {
+            evaluateSubquery();
+            return;
+        }
+        KeyWrapper key = new KeyWrapper(outerRow, memoEvaluations, memoCollators);
+        Value cached = memo.get(key);
+        if (cached != null) {
+            MEMO_HIT.hit();
+            ValueTargets.copyFrom(cached, value);
+            return;
+        }
+        MEMO_MISS.hit();
+        evaluateSubquery();
+        cached = new Value(value.getType());
+        ValueTargets.copyFrom(value, cached);
+        memo.put(key, cached);
+    }
+
+    private void evaluateSubquery() {
         bindings.setRow(bindingPosition, outerRow);
         if (cursor == null) {
             cursor = API.cursor(subquery, context, bindings);
@@ -62,14 +93,33 @@ abstract class SubqueryTEvaluateble implements TEvaluatableExpression {
 
     @Override
     public void with(QueryContext context) {
+        if ((memo != null) && (context != this.context)) {
+            memo.clear();
+        }
         this.context = context;
         cursor = null;
+        if (memoEvaluations != null) {
+            for (TEvaluatableExpression evaluation : memoEvaluations) {
+                evaluation.with(context);
+            }
+        }
     }
 
     @Override
     public void with(QueryBindings bindings) {
+        // Anything the subquery gets from the bindings other than
+        // the memoized keys, such as the contents of a hash table,
+        // is only fixed for one set of bindings.
+        if ((memo != null) && (bindings != this.bindings)) {
+            memo.clear();
+        }
         this.bindings = bindings;
         cursor = null;
+        if (memoEvaluations != null) {
+            for (TEvaluatableExpression evaluation : memoEvaluations) {
+                evaluation.with(bindings);
+            }
+        }
     }
 
     protected abstract void doEval(ValueTarget out);
@@ -94,14 +144,60 @@ abstract class SubqueryTEvaluateble implements TEvaluatableExpression {
 
     SubqueryTEvaluateble(Operator subquery, RowType outerRowType, RowType innerRowType, int bindingPosition,
                          TInstance underlying)
+    {
+        this(subquery, outerRowType, innerRowType, bindingPosition, underlying, null, 0);
+    }
+
+    /** If <code>memoKeys</code> is not <code>null</code>, it gives
+     * every value from outside the subquery on which its result
+     * depends, and up to <code>memoSize</code> results are kept by
+     * those values, so that repeated values do not run the subquery
+     * again.
+     */
+    SubqueryTEvaluateble(Operator subquery, RowType outerRowType, RowType innerRowType, int bindingPosition,
+                         TInstance underlying,
+                         List<? extends TPreparedExpression> memoKeys, int memoSize)
     {
         this.subquery = subquery;
         this.outerRowType = outerRowType;
         this.innerRowType = innerRowType;
         this.bindingPosition = bindingPosition;
         this.value = new Value(underlying);
+        if ((memoKeys != null) && (memoSize > 0)) {
+            memoEvaluations = new ArrayList<>(memoKeys.size());
+            for (TPreparedExpression memoKey : memoKeys) {
+                memoEvaluations.add(memoKey.build());
+            }
+            // Keys must be identical, not just equal under their collation,
+            // since the subquery might return them.
+            memoCollators = Collections.nCopies(memoKeys.size(), AkCollatorFactory.UCS_BINARY_COLLATOR);
+            memo = new Memo(memoSize);
+        }
+        else {
+            memoEvaluations = null;
+            memoCollators = null;
+            memo = null;
+        }
     }
 
+    // Least recently used results, by correlated values.
+    static final class Memo extends LinkedHashMap<KeyWrapper,Value> {
+        private final int maxSize;
+
+        Memo(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KeyWrapper,Value> eldest) {
+            return (size() > maxSize);
+        }
+    }
+
+    private static final PointTap MEMO_HIT = Tap.createCount("subquery: memo hit");
+    private static final PointTap MEMO_MISS = Tap.createCount("subquery: memo miss");
+
     private final Operator subquery;
     private final RowType outerRowType;
     private final RowType innerRowType;
@@ -111,4 +207,7 @@ abstract class SubqueryTEvaluateble implements TEvaluatableExpression {
     private QueryContext context;
     private QueryBindings bindings;
     private Row outerRow;
+    private final List<TEvaluatableExpression> memoEvaluations;
+    private final List<AkCollator> memoCollators;
+    private final Memo memo;
 }
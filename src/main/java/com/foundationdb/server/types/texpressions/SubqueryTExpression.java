@@ -24,6 +24,8 @@ import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.TPreptimeValue;
 import com.foundationdb.util.ArgumentValidation;
 
+import java.util.List;
+
 abstract class SubqueryTExpression implements TPreparedExpression {
     @Override
     public TPreptimeValue evaluateConstant(QueryContext queryContext) {
@@ -41,6 +43,12 @@ abstract class SubqueryTExpression implements TPreparedExpression {
                                         ? PrimitiveExplainer.getInstance("<EMPTY>") 
                                         : innerRowType.getExplainer(context));
         states.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(bindingPosition));
+        if (memoKeys != null) {
+            for (TPreparedExpression memoKey : memoKeys) {
+                states.put(Label.MEMO_KEYS, memoKey.getExplainer(context));
+            }
+            states.put(Label.LIMIT, PrimitiveExplainer.getInstance(memoSize));
+        }
         return new CompoundExplainer(Type.SUBQUERY, states);
     }
 
@@ -58,19 +66,35 @@ abstract class SubqueryTExpression implements TPreparedExpression {
     protected final int bindingPosition() {
         return bindingPosition;
     }
+    protected final List<? extends TPreparedExpression> memoKeys() {
+        return memoKeys;
+    }
+    protected final int memoSize() {
+        return memoSize;
+    }
 
     SubqueryTExpression(Operator subquery, RowType outerRowType,
                         RowType innerRowType, int bindingPosition) {
+        this(subquery, outerRowType, innerRowType, bindingPosition, null, 0);
+    }
+
+    SubqueryTExpression(Operator subquery, RowType outerRowType,
+                        RowType innerRowType, int bindingPosition,
+                        List<? extends TPreparedExpression> memoKeys, int memoSize) {
         ArgumentValidation.notNull("subquery", subquery);
         ArgumentValidation.isGTE("binding position", bindingPosition, 0);
         this.subquery = subquery;
         this.outerRowType = outerRowType;
         this.innerRowType = innerRowType;
         this.bindingPosition = bindingPosition;
+        this.memoKeys = memoKeys;
+        this.memoSize = memoSize;
     }
 
     private final Operator subquery;
     private final RowType outerRowType;
     private final RowType innerRowType;
     private final int bindingPosition;
+    private final List<? extends TPreparedExpression> memoKeys;
+    private final int memoSize;
 }
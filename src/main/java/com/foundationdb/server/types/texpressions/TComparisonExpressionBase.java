@@ -98,6 +98,18 @@ public abstract class TComparisonExpressionBase implements TPreparedExpression {
         this.right = right;
     }
 
+    TPreparedExpression getLeft() {
+        return left;
+    }
+
+    Comparison getComparison() {
+        return comparison;
+    }
+
+    TPreparedExpression getRight() {
+        return right;
+    }
+
     private boolean doEval(TInstance leftInstance, ValueSource left, TInstance rightInstance, ValueSource right) {
         int cmpI = compare(leftInstance, left, rightInstance, right);
         final Comparison actualComparison;
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+
+/**
+ * Base class of the evaluations generated by {@link TCompiledExpression}.
+ * The generated {@link #evaluate} works on primitive locals and reads
+ * fields straight from {@link #row}, calling on {@link #fallbacks} for
+ * the parts of the expression it interprets instead.
+ * <p/>
+ * Public only so that generated classes, which are defined by their own
+ * class loader, can extend it.
+ */
+public abstract class TCompiledEvaluation implements TEvaluatableExpression
+{
+    @Override
+    public ValueSource resultValue() {
+        return value;
+    }
+
+    @Override
+    public void with(Row row) {
+        this.row = row;
+        for (TEvaluatableExpression fallback : fallbacks)
+            fallback.with(row);
+    }
+
+    @Override
+    public void with(QueryContext context) {
+        for (TEvaluatableExpression fallback : fallbacks)
+            fallback.with(context);
+    }
+
+    @Override
+    public void with(QueryBindings bindings) {
+        for (TEvaluatableExpression fallback : fallbacks)
+            fallback.with(bindings);
+    }
+
+    // For use by generated subclasses
+
+    protected static int compareBooleans(boolean b1, boolean b2) {
+        return (b1 == b2) ? 0 : (b1 ? 1 : -1);
+    }
+
+    protected TCompiledEvaluation(TEvaluatableExpression[] fallbacks, TInstance resultType) {
+        this.fallbacks = fallbacks;
+        this.value = new Value(resultType);
+    }
+
+    protected final TEvaluatableExpression[] fallbacks;
+    protected final Value value;
+    protected Row row;
+}
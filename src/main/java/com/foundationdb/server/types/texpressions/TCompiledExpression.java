@@ -0,0 +1,451 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TOverload;
+import com.foundationdb.server.types.TPreptimeValue;
+import com.foundationdb.server.types.common.funcs.BoolLogic;
+import com.foundationdb.server.types.common.funcs.IsNull;
+import com.foundationdb.server.types.value.UnderlyingType;
+import com.foundationdb.server.types.value.ValueSource;
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A prepared expression whose evaluation is a generated class instead of
+ * a tree of {@link TEvaluatableExpression}s.
+ * <p/>
+ * Comparisons of primitive values (without a collator), <code>AND</code>,
+ * <code>OR</code>, <code>NOT</code> and <code>IS NULL</code> are compiled
+ * into Java source over primitive locals, with row fields and literals
+ * read inline, and the source is compiled to bytecode with javassist.
+ * Operands that are not compiled themselves are evaluated by their
+ * interpreted evaluation and read as primitives. Only the result is
+ * written to a {@link com.foundationdb.server.types.value.Value}.
+ * <p/>
+ * {@link #compile} returns the original expression unless its root is one
+ * of the compiled operators, or if compilation fails.
+ */
+public final class TCompiledExpression implements TPreparedExpression
+{
+    public static TPreparedExpression compile(TPreparedExpression expression) {
+        if (!isCompiledOperator(expression) ||
+            (underlyingType(expression.resultType()) != UnderlyingType.BOOL))
+            return expression;
+        Generator generator = new Generator();
+        String source = generator.evaluateMethod(expression);
+        try {
+            return new TCompiledExpression(expression, define(source), generator.fallbacks);
+        }
+        catch (CannotCompileException | NotFoundException | NoSuchMethodException ex) {
+            logger.warn("Could not compile {}: {}", expression, ex.toString());
+            logger.debug("Source: {}", source);
+            return expression;
+        }
+    }
+
+    // TPreparedExpression interface
+
+    @Override
+    public TPreptimeValue evaluateConstant(QueryContext queryContext) {
+        return expression.evaluateConstant(queryContext);
+    }
+
+    @Override
+    public TInstance resultType() {
+        return expression.resultType();
+    }
+
+    @Override
+    public TEvaluatableExpression build() {
+        TEvaluatableExpression[] evaluations = new TEvaluatableExpression[fallbacks.size()];
+        for (int i = 0; i < evaluations.length; i++)
+            evaluations[i] = fallbacks.get(i).build();
+        try {
+            return constructor.newInstance(evaluations, expression.resultType());
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        return expression.getExplainer(context);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    // TCompiledExpression interface
+
+    public TPreparedExpression getExpression() {
+        return expression;
+    }
+
+    // For use by this class
+
+    private TCompiledExpression(TPreparedExpression expression,
+                                Constructor<? extends TCompiledEvaluation> constructor,
+                                List<TPreparedExpression> fallbacks) {
+        this.expression = expression;
+        this.constructor = constructor;
+        this.fallbacks = fallbacks;
+    }
+
+    private static UnderlyingType underlyingType(TInstance type) {
+        return (type == null) ? null : TInstance.underlyingType(type);
+    }
+
+    /** The Java type of a primitive local holding this underlying type, or
+     * <code>null</code> if values of this type are not held in locals. */
+    private static String javaType(UnderlyingType type) {
+        if (type == null)
+            return null;
+        switch (type) {
+        case BOOL:
+            return "boolean";
+        case INT_8:
+        case INT_16:
+        case UINT_16:
+        case INT_32:
+            return "int";
+        case INT_64:
+            return "long";
+        case FLOAT:
+            return "float";
+        case DOUBLE:
+            return "double";
+        default:
+            return null;
+        }
+    }
+
+    private static String getter(UnderlyingType type) {
+        switch (type) {
+        case BOOL:
+            return "getBoolean";
+        case INT_8:
+            return "getInt8";
+        case INT_16:
+            return "getInt16";
+        case UINT_16:
+            return "getUInt16";
+        case INT_32:
+            return "getInt32";
+        case INT_64:
+            return "getInt64";
+        case FLOAT:
+            return "getFloat";
+        case DOUBLE:
+            return "getDouble";
+        default:
+            throw new AssertionError(type);
+        }
+    }
+
+    private static String defaultValue(UnderlyingType type) {
+        return (type == UnderlyingType.BOOL) ? "false" : "0";
+    }
+
+    private static String literal(UnderlyingType type, ValueSource value) {
+        switch (type) {
+        case BOOL:
+            return value.getBoolean() ? "true" : "false";
+        case INT_8:
+            return "0x" + Integer.toHexString(value.getInt8());
+        case INT_16:
+            return "0x" + Integer.toHexString(value.getInt16());
+        case UINT_16:
+            return "0x" + Integer.toHexString(value.getUInt16());
+        case INT_32:
+            return "0x" + Integer.toHexString(value.getInt32());
+        case INT_64:
+            return "0x" + Long.toHexString(value.getInt64()) + "L";
+        case FLOAT:
+            return "Float.intBitsToFloat(0x" + Integer.toHexString(Float.floatToRawIntBits(value.getFloat())) + ")";
+        case DOUBLE:
+            return "Double.longBitsToDouble(0x" + Long.toHexString(Double.doubleToRawLongBits(value.getDouble())) + "L)";
+        default:
+            throw new AssertionError(type);
+        }
+    }
+
+    private static boolean isBooleanLogic(TOverload overload) {
+        return (overload instanceof BoolLogic) &&
+            ("AND".equals(overload.displayName()) || "OR".equals(overload.displayName()));
+    }
+
+    private static boolean isBoolean(TPreparedExpression expression) {
+        return underlyingType(expression.resultType()) == UnderlyingType.BOOL;
+    }
+
+    private static boolean isCompiledOperator(TPreparedExpression expression) {
+        if (expression instanceof TComparisonExpression) {
+            TComparisonExpression comparison = (TComparisonExpression)expression;
+            if (comparison.getCollator() != null)
+                return false;
+            TInstance leftType = comparison.getLeft().resultType();
+            TInstance rightType = comparison.getRight().resultType();
+            UnderlyingType underlying = underlyingType(leftType);
+            // Cached values compare as objects in TClass.doCompare.
+            return (javaType(underlying) != null) &&
+                (underlyingType(rightType) == underlying) &&
+                (leftType.typeClass().cacher() == null) &&
+                (rightType.typeClass().cacher() == null);
+        }
+        if (expression instanceof TPreparedFunction) {
+            TPreparedFunction function = (TPreparedFunction)expression;
+            TOverload overload = function.getOverload().getUnderlying();
+            List<? extends TPreparedExpression> inputs = function.getInputs();
+            if (isBooleanLogic(overload))
+                // A constant operand is folded into a preptime value.
+                return !function.hasPreptimeValues() &&
+                    (inputs.size() == 2) && isBoolean(inputs.get(0)) && isBoolean(inputs.get(1));
+            if (overload == BoolLogic.NOT)
+                return (inputs.size() == 1) && isBoolean(inputs.get(0));
+            if (overload instanceof IsNull)
+                return (inputs.size() == 1);
+        }
+        return false;
+    }
+
+    private static synchronized Constructor<? extends TCompiledEvaluation> define(String evaluateMethod)
+            throws CannotCompileException, NotFoundException, NoSuchMethodException {
+        if (classPool == null) {
+            classPool = new ClassPool(true);
+            classPool.appendClassPath(new LoaderClassPath(TCompiledEvaluation.class.getClassLoader()));
+        }
+        String simpleName = TCompiledEvaluation.class.getSimpleName() + "_" + classCounter.incrementAndGet();
+        String name = TCompiledEvaluation.class.getPackage().getName() + "." + simpleName;
+        CtClass ctClass = classPool.makeClass(name, classPool.get(TCompiledEvaluation.class.getName()));
+        byte[] bytecode;
+        try {
+            ctClass.addConstructor(CtNewConstructor.make(
+                    "public " + simpleName + "(" +
+                    TEvaluatableExpression.class.getName() + "[] fallbacks, " +
+                    TInstance.class.getName() + " resultType) { super($1, $2); }",
+                    ctClass));
+            ctClass.addMethod(CtNewMethod.make(evaluateMethod, ctClass));
+            bytecode = ctClass.toBytecode();
+        }
+        catch (java.io.IOException ex) {
+            throw new CannotCompileException(ex);
+        }
+        finally {
+            ctClass.detach();
+        }
+        // Own loader, so that the class can be unloaded with the plan.
+        Class<?> generated = new GeneratedClassLoader().define(name, bytecode);
+        return generated.asSubclass(TCompiledEvaluation.class)
+            .getConstructor(TEvaluatableExpression[].class, TInstance.class);
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader() {
+            super(TCompiledEvaluation.class.getClassLoader());
+        }
+
+        public Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+    /* Generates the source of evaluate(). Each operand i is left in locals
+     * n<i> (whether null) and v<i> (its value, when not null). */
+    private static final class Generator {
+        private final StringBuilder source = new StringBuilder();
+        private final List<TPreparedExpression> fallbacks = new ArrayList<>();
+        private int nlocals;
+
+        public String evaluateMethod(TPreparedExpression expression) {
+            source.append("public void evaluate() {\n");
+            int result = operator(expression);
+            source.append("if (n").append(result).append(") value.putNull(); ")
+                  .append("else value.putBool(v").append(result).append(");\n");
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private int operand(TPreparedExpression expression, boolean needValue) {
+            if (isCompiledOperator(expression))
+                return operator(expression);
+            int i = nlocals++;
+            UnderlyingType type = needValue ? underlyingType(expression.resultType()) : null;
+            if (expression instanceof TPreparedLiteral) {
+                ValueSource value = ((TPreparedLiteral)expression).getValue();
+                boolean isNull = value.isNull();
+                source.append("boolean n").append(i).append(" = ").append(isNull).append(";\n");
+                if (type != null)
+                    declare(type, i, isNull ? defaultValue(type) : literal(type, value));
+                return i;
+            }
+            String valueSource = "s" + i;
+            String read;
+            if (expression instanceof TPreparedField) {
+                read = "this.row.value(" + ((TPreparedField)expression).getFieldIndex() + ")";
+            }
+            else {
+                int f = fallbacks.size();
+                fallbacks.add(expression);
+                source.append("this.fallbacks[").append(f).append("].evaluate();\n");
+                read = "this.fallbacks[" + f + "].resultValue()";
+            }
+            source.append(ValueSource.class.getName()).append(' ').append(valueSource)
+                  .append(" = ").append(read).append(";\n");
+            source.append("boolean n").append(i).append(" = ").append(valueSource).append(".isNull();\n");
+            if (type != null)
+                declare(type, i, "n" + i + " ? " + defaultValue(type) + " : " + valueSource + "." + getter(type) + "()");
+            return i;
+        }
+
+        private void declare(UnderlyingType type, int i, String value) {
+            String javaType = javaType(type);
+            source.append(javaType).append(" v").append(i).append(" = (").append(javaType).append(")(")
+                  .append(value).append(");\n");
+        }
+
+        private int operator(TPreparedExpression expression) {
+            if (expression instanceof TComparisonExpression)
+                return comparison((TComparisonExpression)expression);
+            TPreparedFunction function = (TPreparedFunction)expression;
+            TOverload overload = function.getOverload().getUnderlying();
+            List<? extends TPreparedExpression> inputs = function.getInputs();
+            if (isBooleanLogic(overload))
+                return booleanLogic("OR".equals(overload.displayName()), inputs.get(0), inputs.get(1));
+            int a;
+            int i;
+            if (overload == BoolLogic.NOT) {
+                a = operand(inputs.get(0), true);
+                i = nlocals++;
+                source.append("boolean n").append(i).append(" = n").append(a).append(";\n");
+                source.append("boolean v").append(i).append(" = !n").append(a).append(" && !v").append(a).append(";\n");
+            }
+            else {
+                // IS NULL
+                a = operand(inputs.get(0), false);
+                i = nlocals++;
+                source.append("boolean n").append(i).append(" = false;\n");
+                source.append("boolean v").append(i).append(" = n").append(a).append(";\n");
+            }
+            return i;
+        }
+
+        private int comparison(TComparisonExpression comparison) {
+            int i = nlocals++;
+            source.append("boolean n").append(i).append(" = true;\n");
+            source.append("boolean v").append(i).append(" = false;\n");
+            int a = operand(comparison.getLeft(), true);
+            source.append("if (!n").append(a).append(") {\n");
+            int b = operand(comparison.getRight(), true);
+            source.append("if (!n").append(b).append(") {\n");
+            source.append("n").append(i).append(" = false;\n");
+            String va = "v" + a, vb = "v" + b;
+            String compare;
+            switch (javaType(underlyingType(comparison.getLeft().resultType()))) {
+            case "boolean":
+                compare = TCompiledEvaluation.class.getName() + ".compareBooleans(" + va + ", " + vb + ")";
+                break;
+            case "float":
+                compare = "Float.compare(" + va + ", " + vb + ")";
+                break;
+            case "double":
+                compare = "Double.compare(" + va + ", " + vb + ")";
+                break;
+            default:
+                // Integers: compare directly.
+                compare = null;
+            }
+            String op = operator(comparison.getComparison());
+            source.append("v").append(i).append(" = ");
+            if (compare == null)
+                source.append(va).append(' ').append(op).append(' ').append(vb);
+            else
+                source.append(compare).append(' ').append(op).append(" 0");
+            source.append(";\n");
+            source.append("}\n");
+            source.append("}\n");
+            return i;
+        }
+
+        private static String operator(Comparison comparison) {
+            switch (comparison) {
+            case EQ:
+                return "==";
+            case NE:
+                return "!=";
+            case LT:
+                return "<";
+            case LE:
+                return "<=";
+            case GT:
+                return ">";
+            case GE:
+                return ">=";
+            default:
+                throw new AssertionError(comparison);
+            }
+        }
+
+        // AND is decided by the first FALSE operand and OR by the first
+        // TRUE one; otherwise NULL if either operand is.
+        private int booleanLogic(boolean isOr, TPreparedExpression left, TPreparedExpression right) {
+            String decides = isOr ? "true" : "false";
+            int i = nlocals++;
+            source.append("boolean n").append(i).append(" = false;\n");
+            source.append("boolean v").append(i).append(" = ").append(decides).append(";\n");
+            int a = operand(left, true);
+            source.append("if (n").append(a).append(" || v").append(a).append(" != ").append(decides).append(") {\n");
+            int b = operand(right, true);
+            source.append("if (n").append(b).append(" || v").append(b).append(" != ").append(decides).append(") {\n");
+            source.append("if (n").append(a).append(" || n").append(b).append(") n").append(i).append(" = true; ")
+                  .append("else v").append(i).append(" = ").append(!isOr).append(";\n");
+            source.append("}\n");
+            source.append("}\n");
+            return i;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(TCompiledExpression.class);
+    private static final AtomicInteger classCounter = new AtomicInteger();
+    private static ClassPool classPool;
+
+    private final TPreparedExpression expression;
+    private final Constructor<? extends TCompiledEvaluation> constructor;
+    private final List<TPreparedExpression> fallbacks;
+}
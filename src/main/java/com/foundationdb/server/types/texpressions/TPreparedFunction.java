@@ -106,6 +106,18 @@ public final class TPreparedFunction implements TPreparedExpression {
         this.preptimeContext = new TPreptimeContext(Arrays.asList(localInputTypes), resultType, queryContext, preptimeValues);
     }
 
+    TValidatedScalar getOverload() {
+        return overload;
+    }
+
+    List<? extends TPreparedExpression> getInputs() {
+        return inputs;
+    }
+
+    boolean hasPreptimeValues() {
+        return (preptimeContext.getValues() != null) && !preptimeContext.getValues().isEmpty();
+    }
+
     private final TValidatedScalar overload;
     private final TInstance resultType;
     private final List<? extends TPreparedExpression> inputs;
@@ -82,6 +82,10 @@ public final class TPreparedLiteral implements TPreparedExpression {
         }
     }
 
+    ValueSource getValue() {
+        return value;
+    }
+
     private final TInstance type;
     private final ValueSource value;
 
@@ -66,6 +66,12 @@ public final class TValidatedScalar extends TValidatedOverload implements TScala
         return commuted ? new ReversedLazyList<>(inputs) : inputs;
     }
 
+    /** Whether the function may give different results for the same inputs,
+     * such as <code>RAND()</code>, and so must be evaluated every time. */
+    public boolean isVolatile() {
+        return !(scalar instanceof TScalarBase) || ((TScalarBase)scalar).neverConstant();
+    }
+
     public TValidatedScalar createCommuted() {
         if (!coversExactlyNArgs(2))
             throw new IllegalStateException("commuted overloads must take exactly two arguments: " + this);
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.value;
+
+import com.foundationdb.server.collation.AkCollator;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * 64-bit hashes of single values, for hash structures such as Bloom
+ * filters and cardinality sketches for which 32 bits are too few.
+ * Values that compare equal must hash equally, even if their types
+ * differ in width, so integers are hashed as longs, floating point
+ * numbers as doubles and strings by their characters or, under a
+ * collation, by their sort key.
+ */
+public final class ValueHasher
+{
+    /** The hash of a non-null <code>value</code>. Integers and floating
+     * point numbers are their own hash, so {@link #mix} the result if
+     * all of its bits need to be well distributed.
+     */
+    public static long hash(ValueSource value, AkCollator collator) {
+        switch (ValueSources.underlyingType(value)) {
+        case BOOL:
+            return value.getBoolean() ? 1 : 0;
+        case INT_8:
+            return value.getInt8();
+        case INT_16:
+            return value.getInt16();
+        case UINT_16:
+            return value.getUInt16();
+        case INT_32:
+            return value.getInt32();
+        case INT_64:
+            return value.getInt64();
+        case FLOAT:
+            return doubleHash(value.getFloat());
+        case DOUBLE:
+            return doubleHash(value.getDouble());
+        case BYTES:
+            return HASH_FUNCTION.hashBytes(value.getBytes()).asLong();
+        case STRING:
+            {
+                String string = AkCollator.getString(value, collator);
+                if (collator == null)
+                    return HASH_FUNCTION.hashString(string, Charsets.UTF_8).asLong();
+                return collator.hashCode64(string);
+            }
+        default:
+            throw new AssertionError(value.getType());
+        }
+    }
+
+    /** The MurmurHash3 finalizer, so that every bit of <code>hash</code>
+     * depends on every other.
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long doubleHash(double d) {
+        return (d == 0) ? 0 : Double.doubleToLongBits(d); // -0.0 = 0.0
+    }
+
+    private ValueHasher() {
+    }
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+}
@@ -24,7 +24,6 @@ import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.operator.RowCursor;
 import com.foundationdb.qp.row.ImmutableRow;
-import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
 
 import org.slf4j.Logger;
@@ -116,9 +115,8 @@ class ExecutableModifyOperatorStatement extends ExecutableOperatorStatement
 
         public void add(Row row) {
             assert (state == State.FILLING);
-            if (row instanceof ProjectedRow)
-                // create a copy of this row, and hold it instead
-                row = new ImmutableRow((ProjectedRow)row);
+            // create a copy of a transient row, and hold it instead
+            row = ImmutableRow.ifTransient(row);
             rows.add(row);
         }
 
@@ -140,6 +140,9 @@ public class FunctionsTypeComputer extends AISTypeComputer
         else if (methodCall.getMethodParameters().length == 1) {
             return oneArgMethodCall(methodCall);
         }
+        else if (methodCall.getMethodParameters().length == 2) {
+            return twoArgMethodCall(methodCall);
+        }
         else {
             return null;
         }
@@ -152,17 +155,35 @@ public class FunctionsTypeComputer extends AISTypeComputer
         if (functionKind == TypesRegistryService.FunctionKind.SCALAR)
             return null;
         if (functionKind == TypesRegistryService.FunctionKind.AGGREGATE) {
-            // Mark the method call as really an aggregate function.
-            // Could do the substitution now, but that would require throwing
-            // a subclass of StandardException up to visit() or something other
-            // complicated control flow.
-            methodCall.setJavaClassName(AggregateFunctionExpression.class.getName());
-            JavaValueNode arg = methodCall.getMethodParameters()[0];
-            if (arg instanceof SQLToJavaValueNode) {
-                SQLToJavaValueNode jarg = (SQLToJavaValueNode)arg;
-                ValueNode sqlArg = jarg.getSQLValueNode();
-                return sqlArg.getType();
-            }
+            return aggregateMethodCall(methodCall);
+        }
+        return null;
+    }
+
+    protected DataTypeDescriptor twoArgMethodCall(MethodCallNode methodCall)
+            throws StandardException {
+        TypesRegistryService.FunctionKind functionKind =
+            functionsRegistry.getFunctionKind(methodCall.getMethodName());
+        if (functionKind == TypesRegistryService.FunctionKind.AGGREGATE) {
+            // Only some aggregates, such as APPROX_PERCENTILE, take a second
+            // argument, but ASTStatementLoader reports the arity for the rest.
+            return aggregateMethodCall(methodCall);
+        }
+        return null;
+    }
+
+    protected DataTypeDescriptor aggregateMethodCall(MethodCallNode methodCall)
+            throws StandardException {
+        // Mark the method call as really an aggregate function.
+        // Could do the substitution now, but that would require throwing
+        // a subclass of StandardException up to visit() or something other
+        // complicated control flow.
+        methodCall.setJavaClassName(AggregateFunctionExpression.class.getName());
+        JavaValueNode arg = methodCall.getMethodParameters()[0];
+        if (arg instanceof SQLToJavaValueNode) {
+            SQLToJavaValueNode jarg = (SQLToJavaValueNode)arg;
+            ValueNode sqlArg = jarg.getSQLValueNode();
+            return sqlArg.getType();
         }
         return null;
     }
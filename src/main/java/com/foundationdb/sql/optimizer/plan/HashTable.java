@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.optimizer.plan;
+
+import com.foundationdb.server.collation.AkCollator;
+
+import java.util.List;
+
+/** A hash table of rows from the inside of a join, keyed by the join columns. */
+public class HashTable extends BaseHashTable
+{
+    private long estimatedSize;
+    private List<AkCollator> collators;
+    private boolean preserveProbeOrder;
+
+    public HashTable(long estimatedSize, List<AkCollator> collators) {
+        this.estimatedSize = estimatedSize;
+        this.collators = collators;
+    }
+
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+    public List<AkCollator> getCollators() {
+        return collators;
+    }
+
+    /** Whether the query depends on the join delivering rows in
+     * the order of its outer side, which forbids deferring probes
+     * into spilled partitions.
+     */
+    public boolean isPreserveProbeOrder() {
+        return preserveProbeOrder;
+    }
+    public void setPreserveProbeOrder(boolean preserveProbeOrder) {
+        this.preserveProbeOrder = preserveProbeOrder;
+    }
+
+}
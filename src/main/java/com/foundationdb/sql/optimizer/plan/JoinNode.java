@@ -57,6 +57,7 @@ public class JoinNode extends BaseJoinable implements PlanWithInput
         GROUP,
         NESTED_LOOPS,
         BLOOM_FILTER, 
+        HASH_TABLE,
         MERGE                   // TODO: Not implemented. Probably needs thought.
     }
     private Joinable left, right;
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.sql.optimizer.plan;
+
+import com.foundationdb.sql.optimizer.plan.JoinNode.JoinType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A join implementation merging two inputs ordered on the join columns. */
+public class MergeJoin extends BasePlanNode implements PlanWithInput
+{
+    private JoinType joinType;
+    private PlanNode left, right;
+    private List<ExpressionNode> leftColumns, rightColumns;
+    private boolean[] ascending;
+
+    public MergeJoin(JoinType joinType, PlanNode left, PlanNode right,
+                     List<ExpressionNode> leftColumns, List<ExpressionNode> rightColumns,
+                     boolean[] ascending) {
+        this.joinType = joinType;
+        this.left = left;
+        left.setOutput(this);
+        this.right = right;
+        right.setOutput(this);
+        this.leftColumns = leftColumns;
+        this.rightColumns = rightColumns;
+        this.ascending = ascending;
+    }
+
+    public JoinType getJoinType() {
+        return joinType;
+    }
+
+    public PlanNode getLeft() {
+        return left;
+    }
+    public PlanNode getRight() {
+        return right;
+    }
+
+    public List<ExpressionNode> getLeftColumns() {
+        return leftColumns;
+    }
+    public List<ExpressionNode> getRightColumns() {
+        return rightColumns;
+    }
+    public boolean[] getAscending() {
+        return ascending;
+    }
+
+    @Override
+    public void replaceInput(PlanNode oldInput, PlanNode newInput) {
+        if (left == oldInput) {
+            left = newInput;
+            left.setOutput(this);
+        }
+        if (right == oldInput) {
+            right = newInput;
+            right.setOutput(this);
+        }
+    }
+
+    @Override
+    public boolean accept(PlanVisitor v) {
+        if (v.visitEnter(this)) {
+            if (left.accept(v) && right.accept(v)) {
+                if (v instanceof ExpressionRewriteVisitor) {
+                    for (int i = 0; i < leftColumns.size(); i++) {
+                        leftColumns.set(i, leftColumns.get(i).accept((ExpressionRewriteVisitor)v));
+                        rightColumns.set(i, rightColumns.get(i).accept((ExpressionRewriteVisitor)v));
+                    }
+                }
+                else if (v instanceof ExpressionVisitor) {
+                    for (int i = 0; i < leftColumns.size(); i++) {
+                        if (!leftColumns.get(i).accept((ExpressionVisitor)v))
+                            break;
+                        if (!rightColumns.get(i).accept((ExpressionVisitor)v))
+                            break;
+                    }
+                }
+            }
+        }
+        return v.visitLeave(this);
+    }
+
+    @Override
+    public String summaryString() {
+        StringBuilder str = new StringBuilder(super.summaryString());
+        str.append("(");
+        str.append(joinType);
+        str.append(leftColumns);
+        str.append(" = ");
+        str.append(rightColumns);
+        str.append(")");
+        return str.toString();
+    }
+
+    @Override
+    protected void deepCopy(DuplicateMap map) {
+        super.deepCopy(map);
+        left = (PlanNode)left.duplicate(map);
+        right = (PlanNode)right.duplicate(map);
+        leftColumns = duplicateList(leftColumns, map);
+        rightColumns = duplicateList(rightColumns, map);
+        ascending = Arrays.copyOf(ascending, ascending.length);
+    }
+
+}
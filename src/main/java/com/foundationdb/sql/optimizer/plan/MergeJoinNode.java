@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.sql.optimizer.plan;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A join of two inputs ordered on the join columns by merging them. */
+public class MergeJoinNode extends JoinNode
+{
+    private List<ExpressionNode> leftColumns, rightColumns;
+    private boolean[] ascending;
+
+    public MergeJoinNode(Joinable left, Joinable right, JoinType joinType, 
+                         List<ExpressionNode> leftColumns, List<ExpressionNode> rightColumns,
+                         boolean[] ascending) {
+        super(left, right, joinType);
+        this.leftColumns = leftColumns;
+        this.rightColumns = rightColumns;
+        this.ascending = ascending;
+        setImplementation(Implementation.MERGE);
+    }
+
+    public List<ExpressionNode> getLeftColumns() {
+        return leftColumns;
+    }
+    public List<ExpressionNode> getRightColumns() {
+        return rightColumns;
+    }
+    public boolean[] getAscending() {
+        return ascending;
+    }
+
+    @Override
+    public boolean accept(PlanVisitor v) {
+        if (v.visitEnter(this)) {
+            if (acceptPlans(v)) {
+                if (getJoinConditions() != null)
+                    acceptConditions(v);
+                acceptColumns(v);
+            }
+        }
+        return v.visitLeave(this);
+    }
+
+    protected void acceptColumns(PlanVisitor v) {
+        if (v instanceof ExpressionRewriteVisitor) {
+            for (int i = 0; i < leftColumns.size(); i++) {
+                leftColumns.set(i, leftColumns.get(i).accept((ExpressionRewriteVisitor)v));
+                rightColumns.set(i, rightColumns.get(i).accept((ExpressionRewriteVisitor)v));
+            }
+        }
+        else if (v instanceof ExpressionVisitor) {
+            for (int i = 0; i < leftColumns.size(); i++) {
+                if (!leftColumns.get(i).accept((ExpressionVisitor)v))
+                    break;
+                if (!rightColumns.get(i).accept((ExpressionVisitor)v))
+                    break;
+            }
+        }
+    }
+
+    @Override
+    protected void summarizeJoins(StringBuilder str) {
+        super.summarizeJoins(str);
+        str.append(leftColumns);
+        str.append(" = ");
+        str.append(rightColumns);
+    }
+
+    @Override
+    protected void deepCopy(DuplicateMap map) {
+        super.deepCopy(map);
+        leftColumns = duplicateList(leftColumns, map);
+        rightColumns = duplicateList(rightColumns, map);
+        ascending = Arrays.copyOf(ascending, ascending.length);
+    }
+
+}
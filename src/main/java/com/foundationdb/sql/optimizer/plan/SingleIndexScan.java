@@ -35,7 +35,9 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
 
     private Index index;
     private ColumnRanges conditionRange;
-    // First equalities in the order of the index.
+    // Leading columns of the index for which each distinct value is skipped to.
+    private int skipColumns;
+    // First equalities in the order of the index, following any skipped columns.
     private List<ExpressionNode> equalityComparands;
 
     // This is how the indexed result will be ordered from using this index.
@@ -102,6 +104,18 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
         internalGetConditions().addAll(range.getConditions());
     }
 
+    public int getSkipColumns() {
+        return skipColumns;
+    }
+
+    public void setSkipColumns(int skipColumns) {
+        this.skipColumns = skipColumns;
+    }
+
+    public boolean isSkipScan() {
+        return (skipColumns > 0);
+    }
+
     public List<ExpressionNode> getEqualityComparands() {
         return equalityComparands;
     }
@@ -300,6 +314,9 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
 
     @Override
     public int getNEquality() {
+        // A skip scan delivers rows in the order of the whole index.
+        if (skipColumns > 0)
+            return 0;
         int nequals = 0;
         if (equalityComparands != null)
             nequals = equalityComparands.size();
@@ -354,6 +371,9 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
 
     @Override
     protected void describeEqualityComparands(StringBuilder output) {
+        for (int i = 0; i < skipColumns; i++) {
+            output.append(", SKIP");
+        }
         if (equalityComparands != null) {
             for (ExpressionNode expression : equalityComparands) {
                 output.append(", =");
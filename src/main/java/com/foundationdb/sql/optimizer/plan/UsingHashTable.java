@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.optimizer.plan;
+
+import java.util.List;
+
+/** Load a {@link HashTable} from the loader, keyed by the given
+ * expressions, and make it available to any {@link HashTableLookup}
+ * in the input.
+ */
+public class UsingHashTable extends UsingLoaderBase
+{
+    private HashTable hashTable;
+    private List<ExpressionNode> hashExpressions;
+
+    public UsingHashTable(HashTable hashTable, PlanNode loader, PlanNode input,
+                          List<ExpressionNode> hashExpressions) {
+        super(loader, input);
+        this.hashTable = hashTable;
+        this.hashExpressions = hashExpressions;
+    }
+
+    public HashTable getHashTable() {
+        return hashTable;
+    }
+    public List<ExpressionNode> getHashExpressions() {
+        return hashExpressions;
+    }
+
+    @Override
+    public boolean accept(PlanVisitor v) {
+        if (v.visitEnter(this)) {
+            if (getLoader().accept(v) && getInput().accept(v)) {
+                if (v instanceof ExpressionRewriteVisitor) {
+                    for (int i = 0; i < hashExpressions.size(); i++) {
+                        hashExpressions.set(i, hashExpressions.get(i).accept((ExpressionRewriteVisitor)v));
+                    }
+                }
+                else if (v instanceof ExpressionVisitor) {
+                    for (ExpressionNode expr : hashExpressions) {
+                        if (!expr.accept((ExpressionVisitor)v))
+                            break;
+                    }
+                }
+            }
+        }
+        return v.visitLeave(this);
+    }
+
+    @Override
+    public String summaryString() {
+        StringBuilder str = new StringBuilder(super.summaryString());
+        str.append("(");
+        str.append(hashTable);
+        str.append(", ");
+        str.append(hashExpressions);
+        str.append(")");
+        return str.toString();
+    }
+
+    @Override
+    protected void deepCopy(DuplicateMap map) {
+        super.deepCopy(map);
+        hashExpressions = duplicateList(hashExpressions, map);
+    }
+
+}
@@ -1848,12 +1848,20 @@ public class ASTStatementLoader extends BaseRule
                                                  operands,
                             sqlType, valueNode, type);
                 else if (AggregateFunctionExpression.class.getName().equals(methodCall.getJavaClassName())) {
-                    if (operands.size() != 1)
-                        throw new WrongExpressionArityException(2, operands.size());
+                    Object option = null;
+                    if ("APPROX_PERCENTILE".equalsIgnoreCase(methodCall.getMethodName())) {
+                        // The fraction, which AggregateMapper checks is constant.
+                        if ((operands.size() == 2) && (operands.get(1) instanceof ConstantExpression))
+                            option = ((ConstantExpression)operands.get(1)).getValue();
+                        else if (operands.size() != 2)
+                            throw new WrongExpressionArityException(2, operands.size());
+                    }
+                    else if (operands.size() != 1)
+                        throw new WrongExpressionArityException(1, operands.size());
                     return new AggregateFunctionExpression(methodCall.getMethodName(),
                                                            operands.get(0), false,
                             sqlType, valueNode, type,
-                                                           null,  // *supposed* separator
+                                                           option, // such as a percentile's fraction
                                                            null); // order by list
                 }
                 else
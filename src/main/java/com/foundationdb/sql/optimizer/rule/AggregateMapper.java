@@ -259,6 +259,34 @@ public class AggregateMapper extends BaseRule
                                               noperands,
                                               expr.getSQLtype(), expr.getSQLsource(), expr.getType());
             }
+            if ("APPROX_COUNT_DISTINCT".equals(function)) {
+                ExpressionNode operand = expr.getOperand();
+                List<ExpressionNode> noperands = new ArrayList<>(1);
+                noperands.add(new AggregateFunctionExpression("_DISTINCT_SKETCH", operand, expr.isDistinct(),
+                                                              operand.getSQLtype(), null,
+                                                              operand.getType(), null, null));
+                return new FunctionExpression("_" + function,
+                                              noperands,
+                                              expr.getSQLtype(), expr.getSQLsource(), expr.getType());
+            }
+            if ("APPROX_PERCENTILE".equals(function)) {
+                Object fraction = expr.getOption();
+                if (!(fraction instanceof Number) ||
+                    !((((Number)fraction).doubleValue() >= 0) && (((Number)fraction).doubleValue() <= 1)))
+                    throw new UnsupportedSQLException("APPROX_PERCENTILE requires a constant fraction between 0 and 1", expr.getSQLsource());
+                ExpressionNode operand = expr.getOperand();
+                List<ExpressionNode> noperands = new ArrayList<>(2);
+                noperands.add(new AggregateFunctionExpression("_PERCENTILE_SKETCH", operand, expr.isDistinct(),
+                                                              operand.getSQLtype(), null,
+                                                              operand.getType(), null, null));
+                DataTypeDescriptor doubleType = new DataTypeDescriptor(TypeId.DOUBLE_ID, false);
+                TInstance doubleInst = rulesContext.getTypesTranslator().typeForSQLType(doubleType);
+                noperands.add(new ConstantExpression(((Number)fraction).doubleValue(),
+                                                     doubleType, null, doubleInst));
+                return new FunctionExpression("_" + function,
+                                              noperands,
+                                              expr.getSQLtype(), expr.getSQLsource(), expr.getType());
+            }
             return null;
         }
 
@@ -20,6 +20,7 @@ package com.foundationdb.sql.optimizer.rule;
 import com.foundationdb.sql.optimizer.rule.AggregateMapper.AggregateSourceFinder;
 import com.foundationdb.sql.optimizer.rule.AggregateMapper.AggregateSourceState;
 
+import com.foundationdb.ais.model.Column;
 import com.foundationdb.server.error.UnsupportedSQLException;
 
 import com.foundationdb.sql.optimizer.plan.*;
@@ -220,8 +221,12 @@ public class AggregateSplitter extends BaseRule
             Sort.OrderByExpression orderBy = ordering.get(i);
             if (orderBy.getExpression() == null) continue;
             if (orderBy.getExpression().equals(aggr1.getOperand())) {
+                boolean min = aggr1.getFunction().equals("MIN");
+                if ((i == nequals) && min && !skipNulls(index, aggr1.getOperand())) {
+                    return false;
+                }
                 if ((i == nequals) &&
-                    (orderBy.isAscending() != aggr1.getFunction().equals("MIN"))) {
+                    (orderBy.isAscending() != min)) {
                     // Fetching the MAX of an ascending index (or MIN
                     // of descending): reverse the scan to get it
                     // first.  (Order doesn't matter on the
@@ -244,4 +249,29 @@ public class AggregateSplitter extends BaseRule
         return false;
     }
 
+    /** <code>NULL</code> sorts before any value in an index, so the
+     * first row of a scan for the <code>MIN</code> could be one that the
+     * aggregate ignores. Unless the column cannot be null, start the
+     * scan after the nulls by giving it a low bound of <code>&gt;
+     * NULL</code>, which the index cursor takes literally. A scan with
+     * a low bound already, which no null can satisfy, is fine as it is.
+     */
+    protected boolean skipNulls(IndexScan index, ExpressionNode operand) {
+        if (operand instanceof ColumnExpression) {
+            Column column = ((ColumnExpression)operand).getColumn();
+            if ((column != null) && !column.getNullable())
+                return true;
+        }
+        if (!(index instanceof SingleIndexScan))
+            return false;
+        SingleIndexScan sindex = (SingleIndexScan)index;
+        if (sindex.isSkipScan() || (sindex.getConditionRange() != null))
+            return false;
+        if (sindex.getLowComparand() == null)
+            sindex.setLowComparand(new ConstantExpression(null, operand.getSQLtype(), null,
+                                                          operand.getType()),
+                                   false);
+        return true;
+    }
+
 }
@@ -38,6 +38,7 @@ public class DefaultRules
             new NestedLoopMapper(),
             new BranchJoiner(),
             new SelectPreponer(),
+            new LimitPreponer(),
             new AggregateSplitter(),
             new SortSplitter(),
             new MapFolder(),
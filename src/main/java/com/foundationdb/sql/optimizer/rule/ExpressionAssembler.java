@@ -393,6 +393,17 @@ class ExpressionAssembler
             aggregators.add(aggr.getResolved());
             outputInstances.add(aggr.getType());
         }
+        if (aggregateSource.getImplementation() == AggregateSource.Implementation.HASH) {
+            // Group by fields are hashed using the collation of their type.
+            return API.aggregate_Hashed(
+                    inputOperator,
+                    rowType,
+                    nkeys,
+                    aggregators,
+                    outputInstances,
+                    aggregateSource.getOptions(),
+                    null);
+        }
         return API.aggregate_Partial(
                 inputOperator,
                 rowType,
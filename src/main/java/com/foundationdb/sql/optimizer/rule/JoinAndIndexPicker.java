@@ -26,6 +26,8 @@ import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.Sort.OrderByExpression;
 import com.foundationdb.sql.optimizer.plan.JoinNode.JoinType;
 
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.texpressions.Comparison;
 
 import com.foundationdb.server.error.AkibanInternalException;
@@ -567,6 +569,22 @@ public class JoinAndIndexPicker extends BaseRule
             bestPlans.add(groupPlan);
             return groupPlan;
         }
+
+        /** A plan for this group on its own, delivering rows in order
+         * of <code>column</code>, for one side of a merge join.
+         * @return <code>null</code> if no index gives that order.
+         */
+        public GroupPlan orderedPlan(ColumnExpression column, Collection<JoinOperator> outsideJoins, boolean sortAllowed) {
+            long outerTables = JoinableBitSet.empty();
+            Collection<JoinOperator> joins = Collections.<JoinOperator>emptyList();
+            // Picked without regard to the query's ordering, which the
+            // merge does not preserve.
+            List<ConditionList> conditionSources = groupGoal.updateContext(enumerator.boundTables(outerTables), joins, joins, outsideJoins, false, getExtraConditions());
+            SingleIndexScan scan = groupGoal.pickBestOrderedIndex(column);
+            if (scan == null)
+                return null;
+            return new GroupPlan(groupGoal, outerTables, scan, scan.getCostEstimate(), conditionSources, sortAllowed, getExtraConditions());
+        }
     }
 
     static class GroupWithInPlanClass extends GroupPlanClass {
@@ -839,6 +857,120 @@ public class JoinAndIndexPicker extends BaseRule
         }
     }
 
+    static class HashTableJoinPlan extends HashJoinPlan {
+        Collection<ConditionExpression> hashConditions;
+
+        public HashTableJoinPlan(Plan loader, Plan input,
+                                 JoinType joinType, Collection<JoinOperator> joins, CostEstimate costEstimate,
+                                 HashTable hashTable, List<ExpressionNode> hashColumns, List<ExpressionNode> matchColumns,
+                                 Collection<ConditionExpression> hashConditions) {
+            super(loader, input, loader, joinType, JoinNode.Implementation.HASH_TABLE,
+                  joins, costEstimate, hashTable, hashColumns, matchColumns);
+            this.hashConditions = hashConditions;
+        }
+
+        @Override
+        public Joinable install(boolean copy) {
+            if (needDistinct)
+                left.addDistinct();
+            // The inside is only loaded, never checked, so it is
+            // installed just once.
+            Joinable loaderJoinable = loader.install(copy);
+            Joinable inputJoinable = left.install(copy);
+            List<TableSource> tables = new ArrayList<>();
+            if (loaderJoinable instanceof TableGroupJoinTree) {
+                for (TableGroupJoinTree.TableGroupJoinNode node : (TableGroupJoinTree)loaderJoinable) {
+                    tables.add(node.getTable());
+                }
+            }
+            HashTableLookup lookup = new HashTableLookup((HashTable)hashTable, matchColumns, tables);
+            // Equality conditions are enforced by the hash table
+            // itself; only the rest need to be checked.
+            ConditionList joinConditions = null;
+            for (JoinOperator joinOp : joins) {
+                if (joinOp.getJoinConditions() != null) {
+                    for (ConditionExpression cond : joinOp.getJoinConditions()) {
+                        if (!hashConditions.contains(cond)) {
+                            if (joinConditions == null)
+                                joinConditions = new ConditionList();
+                            joinConditions.add(cond);
+                        }
+                    }
+                }
+            }
+            ((HashTable)hashTable).setPreserveProbeOrder(orderedByScan(left));
+            HashJoinNode join = new HashJoinNode(loaderJoinable, inputJoinable, lookup, joinType, hashTable, hashColumns, matchColumns);
+            join.setJoinConditions(joinConditions);
+            join.setImplementation(joinImplementation);
+            return join;
+        }
+
+        /** Whether <code>plan</code>, as the outer side of nested
+         * joins, reads an index whose order saved the query a sort.
+         */
+        protected static boolean orderedByScan(Plan plan) {
+            while (plan instanceof JoinPlan) {
+                plan = ((JoinPlan)plan).left;
+            }
+            if (!(plan instanceof GroupPlan))
+                return false;
+            GroupPlan groupPlan = (GroupPlan)plan;
+            return (groupPlan.sortAllowed &&
+                    (groupPlan.scan instanceof IndexScan) &&
+                    (((IndexScan)groupPlan.scan).getOrderEffectiveness() != IndexScan.OrderEffectiveness.NONE));
+        }
+
+        @Override
+        public void redoCostWithLimit(long limit) {
+            // The hash table is loaded completely regardless of any limit.
+        }
+    }
+
+    static class MergeJoinPlan extends JoinPlan {
+        List<ExpressionNode> leftColumns, rightColumns;
+        boolean[] ascending;
+        Collection<ConditionExpression> mergeConditions;
+
+        public MergeJoinPlan(Plan left, Plan right,
+                             JoinType joinType, Collection<JoinOperator> joins, CostEstimate costEstimate,
+                             List<ExpressionNode> leftColumns, List<ExpressionNode> rightColumns, boolean[] ascending,
+                             Collection<ConditionExpression> mergeConditions) {
+            super(left, right, joinType, JoinNode.Implementation.MERGE, joins, costEstimate);
+            this.leftColumns = leftColumns;
+            this.rightColumns = rightColumns;
+            this.ascending = ascending;
+            this.mergeConditions = mergeConditions;
+        }
+
+        @Override
+        public Joinable install(boolean copy) {
+            Joinable leftJoinable = left.install(copy);
+            Joinable rightJoinable = right.install(copy);
+            // Equality conditions on the merge columns are enforced
+            // by the merge itself; only the rest need to be checked.
+            ConditionList joinConditions = null;
+            for (JoinOperator joinOp : joins) {
+                if (joinOp.getJoinConditions() != null) {
+                    for (ConditionExpression cond : joinOp.getJoinConditions()) {
+                        if (!mergeConditions.contains(cond)) {
+                            if (joinConditions == null)
+                                joinConditions = new ConditionList();
+                            joinConditions.add(cond);
+                        }
+                    }
+                }
+            }
+            MergeJoinNode join = new MergeJoinNode(leftJoinable, rightJoinable, joinType, leftColumns, rightColumns, ascending);
+            join.setJoinConditions(joinConditions);
+            return join;
+        }
+
+        @Override
+        public void redoCostWithLimit(long limit) {
+            // Both sides are scanned independently of any limit.
+        }
+    }
+
     static class JoinPlanClass extends PlanClass {
         Plan bestPlan;      // TODO: Later have separate sorted, etc.
         GroupWithInPlanClass asGroupWithIn; // If semi-joined to one or more VALUES.
@@ -951,7 +1083,7 @@ public class JoinAndIndexPicker extends BaseRule
                 outsideJoins.addAll(subqueryOutsideJoins);
             }
             outsideJoins.addAll(joins); // Total set for outer; inner must subtract.
-            // TODO: Divvy up sorting. Consider group joins. Consider merge joins.
+            // TODO: Divvy up sorting. Consider group joins.
             Plan leftPlan = left.bestPlan(outsideJoins);
             Plan rightPlan = right.bestNestedPlan(left, condJoins, outsideJoins);
             CostEstimate costEstimate = leftPlan.costEstimate.nest(rightPlan.costEstimate);
@@ -964,6 +1096,18 @@ public class JoinAndIndexPicker extends BaseRule
                 if (hashPlan != null)
                     planClass.consider(hashPlan);
             }
+            if (right instanceof GroupPlanClass) {
+                Plan loaderPlan = right.bestPlan(outsideJoins);
+                JoinPlan hashPlan = buildHashTableJoin(loaderPlan, joinPlan);
+                if (hashPlan != null)
+                    planClass.consider(hashPlan);
+                if (left instanceof GroupPlanClass) {
+                    JoinPlan mergePlan = buildMergeJoin((GroupPlanClass)left, (GroupPlanClass)right,
+                                                        joinPlan, outsideJoins);
+                    if (mergePlan != null)
+                        planClass.consider(mergePlan);
+                }
+            }
             planClass.consider(joinPlan);
             return planClass;
         }
@@ -1066,6 +1210,233 @@ public class JoinAndIndexPicker extends BaseRule
                                     JoinType.SEMI, JoinNode.Implementation.BLOOM_FILTER,
                                     joins, costEstimate, bloomFilter, hashColumns, matchColumns);
         }
+
+        long HASH_TABLE_MAX_ROW_COUNT_DEFAULT = 1000000;
+
+        /** Load the inside of the join into a hash table keyed by
+         * the columns of its equality conditions and probe it once for
+         * each outer row, rather than looking up the inside each time.
+         * Worthwhile when there is no selective index for the nested
+         * lookup.
+         */
+        public JoinPlan buildHashTableJoin(Plan loaderPlan, JoinPlan joinPlan) {
+            if (!(loaderPlan instanceof GroupPlan))
+                return null;
+            switch (joinPlan.joinType) {
+            case INNER:
+            case LEFT:
+            case SEMI:
+                break;
+            default:
+                return null;
+            }
+            long maxRowCount;
+            String prop = picker.rulesContext.getProperty("hashTableMaxRowCount");
+            if (prop != null)
+                maxRowCount = Long.valueOf(prop);
+            else
+                maxRowCount = HASH_TABLE_MAX_ROW_COUNT_DEFAULT;
+            if (maxRowCount <= 0) return null; // Feature turned off.
+            if (loaderPlan.costEstimate.getRowCount() > maxRowCount)
+                return null;
+            Plan inputPlan = joinPlan.left;
+            Collection<JoinOperator> joins = joinPlan.joins;
+            List<ExpressionNode> hashColumns = new ArrayList<>();
+            List<ExpressionNode> matchColumns = new ArrayList<>();
+            List<AkCollator> collators = new ArrayList<>();
+            Collection<ConditionExpression> hashConditions = 
+                Collections.newSetFromMap(new IdentityHashMap<ConditionExpression,Boolean>());
+            for (JoinOperator join : joins) {
+                if (join.getJoinConditions() != null) {
+                    for (ConditionExpression cond : join.getJoinConditions()) {
+                        // Anything other than a simple column
+                        // equality is checked after the lookup.
+                        if (!(cond instanceof ComparisonCondition)) continue;
+                        ComparisonCondition ccond = (ComparisonCondition)cond;
+                        if (ccond.getOperation() != Comparison.EQ) continue;
+                        ExpressionNode left = ccond.getLeft();
+                        ExpressionNode right = ccond.getRight();
+                        if (!((left instanceof ColumnExpression) &&
+                              (right instanceof ColumnExpression)))
+                            continue;
+                        if ((ccond.getKeyComparable() != null) ||
+                            TClass.comparisonNeedsCasting(left.getType(), right.getType()))
+                            continue;
+                        if (inputPlan.containsColumn((ColumnExpression)left) && 
+                            loaderPlan.containsColumn((ColumnExpression)right)) {
+                            matchColumns.add(left);
+                            hashColumns.add(right);
+                        }
+                        else if (inputPlan.containsColumn((ColumnExpression)right) && 
+                                 loaderPlan.containsColumn((ColumnExpression)left)) {
+                            matchColumns.add(right);
+                            hashColumns.add(left);
+                        }
+                        else {
+                            continue;
+                        }
+                        collators.add(left.getCollator());
+                        hashConditions.add(cond);
+                    }
+                }
+            }
+            if (hashColumns.isEmpty())
+                return null;
+            HashTable hashTable = new HashTable(loaderPlan.costEstimate.getRowCount(), collators);
+            CostEstimate costEstimate = picker.getCostEstimator()
+                .costHashJoin(loaderPlan.costEstimate, inputPlan.costEstimate,
+                              joinPlan.costEstimate.getRowCount(), hashColumns.size());
+            HashTableJoinPlan hashPlan = 
+                new HashTableJoinPlan(loaderPlan, inputPlan,
+                                      joinPlan.joinType, joins, costEstimate,
+                                      hashTable, hashColumns, matchColumns, hashConditions);
+            hashPlan.needDistinct = joinPlan.needDistinct;
+            return hashPlan;
+        }
+
+        /** Read both groups in order of the columns of their equality
+         * conditions, each from an index, and merge the two streams,
+         * rather than looking up the inside once for each outer row.
+         * Worthwhile when both sides are large and already ordered.
+         */
+        public JoinPlan buildMergeJoin(GroupPlanClass left, GroupPlanClass right,
+                                       JoinPlan joinPlan, Collection<JoinOperator> outsideJoins) {
+            switch (joinPlan.joinType) {
+            case INNER:
+            case LEFT:
+            case SEMI:
+                break;
+            default:
+                return null;
+            }
+            if (joinPlan.needDistinct)
+                return null;
+            String prop = picker.rulesContext.getProperty("mergeJoin");
+            if ((prop != null) && !Boolean.valueOf(prop))
+                return null;    // Feature turned off.
+            Plan inputPlan = joinPlan.left;
+            Plan checkPlan = joinPlan.right;
+            Collection<JoinOperator> joins = joinPlan.joins;
+            List<ExpressionNode> leftColumns = new ArrayList<>();
+            List<ExpressionNode> rightColumns = new ArrayList<>();
+            List<ConditionExpression> pairConditions = new ArrayList<>();
+            boolean otherConditions = false;
+            for (JoinOperator join : joins) {
+                if (join.getJoinConditions() != null) {
+                    for (ConditionExpression cond : join.getJoinConditions()) {
+                        ExpressionNode mleft = null, mright = null;
+                        if ((cond instanceof ComparisonCondition) &&
+                            (((ComparisonCondition)cond).getOperation() == Comparison.EQ) &&
+                            (((ComparisonCondition)cond).getKeyComparable() == null)) {
+                            ComparisonCondition ccond = (ComparisonCondition)cond;
+                            ExpressionNode cleft = ccond.getLeft();
+                            ExpressionNode cright = ccond.getRight();
+                            if ((cleft instanceof ColumnExpression) &&
+                                (cright instanceof ColumnExpression) &&
+                                !TClass.comparisonNeedsCasting(cleft.getType(), cright.getType()) &&
+                                sameCollator(cleft.getCollator(), cright.getCollator())) {
+                                if (inputPlan.containsColumn((ColumnExpression)cleft) && 
+                                    checkPlan.containsColumn((ColumnExpression)cright)) {
+                                    mleft = cleft;
+                                    mright = cright;
+                                }
+                                else if (inputPlan.containsColumn((ColumnExpression)cright) && 
+                                         checkPlan.containsColumn((ColumnExpression)cleft)) {
+                                    mleft = cright;
+                                    mright = cleft;
+                                }
+                            }
+                        }
+                        if (mleft != null) {
+                            leftColumns.add(mleft);
+                            rightColumns.add(mright);
+                            pairConditions.add(cond);
+                        }
+                        else {
+                            otherConditions = true;
+                        }
+                    }
+                }
+            }
+            if (leftColumns.isEmpty())
+                return null;
+            // Only an inner join can check other conditions afterwards.
+            boolean allPairsNeeded = (joinPlan.joinType != JoinType.INNER);
+            if (otherConditions && allPairsNeeded)
+                return null;
+            int npairs = leftColumns.size();
+            MergeJoinPlan bestPlan = null;
+            for (int i = 0; i < npairs; i++) {
+                GroupPlan leftPlan = left.orderedPlan((ColumnExpression)leftColumns.get(i), outsideJoins, true);
+                if (leftPlan == null) continue;
+                GroupPlan rightPlan = right.orderedPlan((ColumnExpression)rightColumns.get(i), outsideJoins, false);
+                if (rightPlan == null) continue;
+                IndexScan leftScan = (IndexScan)leftPlan.scan;
+                IndexScan rightScan = (IndexScan)rightPlan.scan;
+                // Take as many pairs as both indexes are ordered by
+                // together, in the same direction.
+                List<ExpressionNode> mergeLeft = new ArrayList<>();
+                List<ExpressionNode> mergeRight = new ArrayList<>();
+                List<Boolean> mergeAscending = new ArrayList<>();
+                Collection<ConditionExpression> mergeConditions = 
+                    Collections.newSetFromMap(new IdentityHashMap<ConditionExpression,Boolean>());
+                boolean[] used = new boolean[npairs];
+                int lpos = leftScan.getNEquality();
+                int rpos = rightScan.getNEquality();
+                int pair = i;
+                while (pair >= 0) {
+                    boolean ascending = leftScan.getOrdering().get(lpos).isAscending();
+                    if (ascending != rightScan.getOrdering().get(rpos).isAscending())
+                        break;
+                    mergeLeft.add(leftColumns.get(pair));
+                    mergeRight.add(rightColumns.get(pair));
+                    mergeAscending.add(ascending);
+                    mergeConditions.add(pairConditions.get(pair));
+                    used[pair] = true;
+                    lpos++;
+                    rpos++;
+                    pair = -1;
+                    if ((lpos < leftScan.getColumns().size()) &&
+                        (rpos < rightScan.getColumns().size())) {
+                        ExpressionNode nextLeft = leftScan.getColumns().get(lpos);
+                        ExpressionNode nextRight = rightScan.getColumns().get(rpos);
+                        for (int j = 0; j < npairs; j++) {
+                            if (!used[j] &&
+                                leftColumns.get(j).equals(nextLeft) &&
+                                rightColumns.get(j).equals(nextRight)) {
+                                pair = j;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (mergeLeft.isEmpty())
+                    continue;
+                if (allPairsNeeded && (mergeLeft.size() < npairs))
+                    continue;
+                boolean[] ascending = new boolean[mergeAscending.size()];
+                for (int j = 0; j < ascending.length; j++) {
+                    ascending[j] = mergeAscending.get(j);
+                }
+                CostEstimate costEstimate = picker.getCostEstimator()
+                    .costMergeJoin(leftPlan.costEstimate, rightPlan.costEstimate,
+                                   joinPlan.costEstimate.getRowCount());
+                MergeJoinPlan mergePlan = 
+                    new MergeJoinPlan(leftPlan, rightPlan,
+                                      joinPlan.joinType, joins, costEstimate,
+                                      mergeLeft, mergeRight, ascending, mergeConditions);
+                if ((bestPlan == null) || (bestPlan.compareTo(mergePlan) > 0))
+                    bestPlan = mergePlan;
+            }
+            return bestPlan;
+        }
+
+        protected static boolean sameCollator(AkCollator c1, AkCollator c2) {
+            if (c1 == null)
+                return (c2 == null);
+            else
+                return c1.equals(c2);
+        }
     }
     
     // Find top-level joins and note what query they come from; 
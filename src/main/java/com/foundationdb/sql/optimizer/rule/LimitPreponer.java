@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.sql.optimizer.rule;
+
+import com.foundationdb.sql.optimizer.plan.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/** Move a LIMIT / OFFSET below the lookup of table rows from an
+ * index, so that rows skipped by the OFFSET or beyond the LIMIT are
+ * never fetched (<i>late materialization</i>).
+ *
+ * This is only safe when every index row becomes exactly one output
+ * row: the index is on the one table looked up, and nothing between
+ * the lookup and the limit filters, sorts or multiplies rows. Any
+ * conditions the index row can answer will already have been moved
+ * below the lookup by {@link SelectPreponer}, which must run first.
+ */
+public class LimitPreponer extends BaseRule
+{
+    private static final Logger logger = LoggerFactory.getLogger(LimitPreponer.class);
+
+    @Override
+    protected Logger getLogger() {
+        return logger;
+    }
+
+    @Override
+    public void apply(PlanContext plan) {
+        String prop = plan.getRulesContext().getProperty("lateMaterialization");
+        if ((prop != null) && !Boolean.valueOf(prop))
+            return;
+        List<Limit> limits = new LimitFinder().find(plan.getPlan());
+        for (Limit limit : limits) {
+            AncestorLookup lookup = lookupBelow(limit);
+            if (lookup != null) {
+                PlanNode lookupInput = lookup.getInput();
+                limit.getOutput().replaceInput(limit, limit.getInput());
+                limit.setInput(lookupInput);
+                lookup.replaceInput(lookupInput, limit);
+            }
+        }
+    }
+
+    /** Find the lookup below <code>limit</code> that it can move
+     * before, or <code>null</code>.
+     */
+    protected AncestorLookup lookupBelow(Limit limit) {
+        PlanNode input = limit.getInput();
+        while (true) {
+            if (input instanceof Project) {
+                // One row out for each row in.
+            }
+            else if (input instanceof Select) {
+                if (!((Select)input).getConditions().isEmpty())
+                    return null;
+            }
+            else if (input instanceof Flatten) {
+                if (((Flatten)input).getTableNodes().size() != 1)
+                    return null;
+            }
+            else if (input instanceof AncestorLookup) {
+                AncestorLookup lookup = (AncestorLookup)input;
+                if (isSelfLookup(lookup))
+                    return lookup;
+                return null;
+            }
+            else {
+                return null;
+            }
+            input = ((BasePlanWithInput)input).getInput();
+        }
+    }
+
+    /** Does <code>lookup</code> get just the row of the single-table
+     * index it is fed by? */
+    protected boolean isSelfLookup(AncestorLookup lookup) {
+        List<TableNode> ancestors = lookup.getAncestors();
+        if ((ancestors.size() != 1) || (ancestors.get(0) != lookup.getDescendant()))
+            return false;
+        PlanNode input = lookup.getInput();
+        while (input instanceof Select)
+            input = ((BasePlanWithInput)input).getInput();
+        if (!(input instanceof IndexScan))
+            return false;
+        IndexScan index = (IndexScan)input;
+        return ((index.getRootMostTable() == index.getLeafMostTable()) &&
+                (index.getLeafMostTable().getTable() == lookup.getDescendant()));
+    }
+
+    static class LimitFinder implements PlanVisitor, ExpressionVisitor {
+        List<Limit> result = new ArrayList<>();
+
+        public List<Limit> find(PlanNode root) {
+            root.accept(this);
+            return result;
+        }
+
+        @Override
+        public boolean visitEnter(PlanNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(PlanNode n) {
+            return true;
+        }
+
+        @Override
+        public boolean visit(PlanNode n) {
+            if (n instanceof Limit)
+                result.add((Limit)n);
+            return true;
+        }
+
+        @Override
+        public boolean visitEnter(ExpressionNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(ExpressionNode n) {
+            return true;
+        }
+
+        @Override
+        public boolean visit(ExpressionNode n) {
+            return true;
+        }
+    }
+
+}
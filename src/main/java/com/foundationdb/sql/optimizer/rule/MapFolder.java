@@ -110,6 +110,9 @@ public class MapFolder extends BaseRule
             else if (n instanceof IndexScan) {
                 result.addAll(((IndexScan)n).getTables());
             }
+            else if (n instanceof HashTableLookup) {
+                result.addAll(((HashTableLookup)n).getTables());
+            }
             return true;
         }
     }
@@ -166,6 +169,15 @@ public class MapFolder extends BaseRule
     // actually doing that would mess up the depth nesting for the
     // next pass.
     protected void foldOuterMap(MapJoin map) {
+        while ((map.getOuter() instanceof UsingHashTable) &&
+               (((UsingHashTable)map.getOuter()).getInput() instanceof MapJoin)) {
+            // The hash table only needs to be loaded once, so it can
+            // go around the whole loop.
+            UsingHashTable usingHashTable = (UsingHashTable)map.getOuter();
+            map.setOuter(usingHashTable.getInput());
+            map.getOutput().replaceInput(map, usingHashTable);
+            usingHashTable.setInput(map);
+        }
         if (map.getOuter() instanceof MapJoin) {
             MapJoin otherMap = (MapJoin)map.getOuter();
             foldOuterMap(otherMap);
@@ -182,6 +194,26 @@ public class MapFolder extends BaseRule
     // Also add Project where the nesting still needs an actual join
     // on the outer side.
     protected void fold(MapJoin map, List<MapJoinProject> mapJoinProjects) {
+        // A hash table around the loop must stay outside of it, so
+        // take it out of the way and put it back around the result.
+        List<UsingHashTable> hashTables = null;
+        while (map.getOutput() instanceof UsingHashTable) {
+            UsingHashTable usingHashTable = (UsingHashTable)map.getOutput();
+            usingHashTable.getOutput().replaceInput(usingHashTable, map);
+            if (hashTables == null)
+                hashTables = new ArrayList<>(1);
+            hashTables.add(usingHashTable);
+        }
+        foldInner(map, mapJoinProjects);
+        if (hashTables != null) {
+            for (UsingHashTable usingHashTable : hashTables) {
+                map.getOutput().replaceInput(map, usingHashTable);
+                usingHashTable.setInput(map);
+            }
+        }
+    }
+
+    protected void foldInner(MapJoin map, List<MapJoinProject> mapJoinProjects) {
         PlanWithInput parent = map;
         PlanNode child;
         do {
@@ -62,6 +62,8 @@ public class NestedLoopMapper extends BaseRule
                 switch (j.getImplementation()) {
                 case NESTED_LOOPS:
                 case BLOOM_FILTER:
+                case HASH_TABLE:
+                case MERGE:
                     result.add(j);
                 }
             }
@@ -91,7 +93,8 @@ public class NestedLoopMapper extends BaseRule
         for (JoinNode join : joins) {
             PlanNode outer = join.getLeft();
             PlanNode inner = join.getRight();
-            if (join.hasJoinConditions())
+            if (join.hasJoinConditions() &&
+                (join.getImplementation() != JoinNode.Implementation.MERGE))
                 inner = new Select(inner, join.getJoinConditions());
             PlanNode map;
             switch (join.getImplementation()) {
@@ -109,6 +112,30 @@ public class NestedLoopMapper extends BaseRule
                     map = new UsingBloomFilter(bf, loader, map);
                 }
                 break;
+            case HASH_TABLE:
+                {
+                    HashJoinNode hjoin = (HashJoinNode)join;
+                    HashTable ht = (HashTable)hjoin.getHashTable();
+                    // The inner side is the lookup into the hash
+                    // table, which can then be filtered by any other
+                    // join conditions.
+                    map = new MapJoin(join.getJoinType(), outer, inner);
+                    map = new UsingHashTable(ht, hjoin.getLoader(), map,
+                                             hjoin.getHashColumns());
+                }
+                break;
+            case MERGE:
+                {
+                    MergeJoinNode mjoin = (MergeJoinNode)join;
+                    map = new MergeJoin(join.getJoinType(), outer, inner,
+                                        mjoin.getLeftColumns(), mjoin.getRightColumns(),
+                                        mjoin.getAscending());
+                    // Any other conditions need both sides, so they
+                    // are checked on the joined rows.
+                    if (join.hasJoinConditions())
+                        map = new Select(map, join.getJoinConditions());
+                }
+                break;
             default:
                 assert false : join;
                 map = join;
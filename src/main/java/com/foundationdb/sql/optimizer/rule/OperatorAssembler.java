@@ -52,13 +52,16 @@ import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.TPreptimeValue;
 import com.foundationdb.server.types.common.types.TypesTranslator;
 import com.foundationdb.server.types.texpressions.AnySubqueryTExpression;
+import com.foundationdb.server.types.texpressions.Comparison;
 import com.foundationdb.server.types.texpressions.ExistsSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.ResultSetSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.ScalarSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.TCastExpression;
+import com.foundationdb.server.types.texpressions.TCompiledExpression;
 import com.foundationdb.server.types.texpressions.TNullExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.server.types.texpressions.TPreparedField;
+import com.foundationdb.server.types.texpressions.TValidatedScalar;
 import com.foundationdb.server.types.value.ValueSource;
 
 import com.foundationdb.server.error.AkibanInternalException;
@@ -99,7 +102,8 @@ public class OperatorAssembler extends BaseRule
     private static final PointTap UPDATE_COUNT = Tap.createCount("sql: update");
     private static final PointTap DELETE_COUNT = Tap.createCount("sql: delete");
 
-    public static final int INSERTION_SORT_MAX_LIMIT = 100;
+    // Sort_InsertionLimited keeps this many rows in memory at most.
+    public static final int INSERTION_SORT_MAX_LIMIT = 10000;
 
     public OperatorAssembler() {
     }
@@ -122,6 +126,12 @@ public class OperatorAssembler extends BaseRule
         private final Schema schema;
         private final ExpressionAssembler expressionAssembler;
         private final Set<Table> affectedTables;
+        private final int subqueryMemoSize;
+        private boolean memoizeSubqueries = true;
+        private boolean parallelGroupScans = true;
+        // Nodes whose output goes straight to the client, and so can reuse row objects.
+        private Project resultProject;
+        private Flatten resultFlatten;
 
         public Assembler(PlanContext planContext) {
             this.planContext = planContext;
@@ -133,6 +143,11 @@ public class OperatorAssembler extends BaseRule
                 explainContext = null;
             schema = rulesContext.getSchema();
             expressionAssembler = new ExpressionAssembler(planContext);
+            String prop = rulesContext.getProperty("subqueryMemoSize");
+            if (prop != null)
+                subqueryMemoSize = Integer.valueOf(prop);
+            else
+                subqueryMemoSize = SUBQUERY_MEMO_SIZE_DEFAULT;
             initializeBindings();
         }
 
@@ -152,6 +167,8 @@ public class OperatorAssembler extends BaseRule
 
         protected PhysicalSelect selectQuery(SelectQuery selectQuery) {
             PlanNode planQuery = selectQuery.getQuery();
+            if (rulesContext.getPipelineConfiguration().isRowsReuse())
+                findResultRowNodes(planQuery);
             RowStream stream = assembleQuery(planQuery);
             List<PhysicalResultColumn> resultColumns;
             if (planQuery instanceof ResultSet) {
@@ -170,6 +187,20 @@ public class OperatorAssembler extends BaseRule
                                       affectedTables);
         }
 
+        // The client consumes the result one row at a time, so a
+        // projection at the top of the plan and a flatten right
+        // under it can hand out the same row objects each time.
+        protected void findResultRowNodes(PlanNode planQuery) {
+            if (!(planQuery instanceof ResultSet))
+                return;
+            PlanNode input = ((ResultSet)planQuery).getInput();
+            if (!(input instanceof Project))
+                return;
+            resultProject = (Project)input;
+            if (resultProject.getInput() instanceof Flatten)
+                resultFlatten = (Flatten)resultProject.getInput();
+        }
+
         protected void explainSelectQuery(Operator plan, SelectQuery selectQuery) {
             Attributes atts = new Attributes();
             explainCostEstimate(atts, selectQuery.getCostEstimate());
@@ -178,6 +209,10 @@ public class OperatorAssembler extends BaseRule
 
         protected PhysicalUpdate dmlStatement (DMLStatement statement) {
             
+            // A subquery might see rows that the statement itself changes.
+            memoizeSubqueries = false;
+            // Parallel scan workers read in transactions of their own, so would not see them.
+            parallelGroupScans = false;
             PlanNode planQuery = statement.getInput();
             RowStream stream = assembleStream(planQuery);
             
@@ -402,6 +437,8 @@ public class OperatorAssembler extends BaseRule
                 return assembleBranchLookup((BranchLookup) node);
             else if (node instanceof MapJoin)
                 return assembleMapJoin((MapJoin) node);
+            else if (node instanceof MergeJoin)
+                return assembleMergeJoin((MergeJoin) node);
             else if (node instanceof Product)
                 return assembleProduct((Product) node);
             else if (node instanceof AggregateSource)
@@ -428,6 +465,10 @@ public class OperatorAssembler extends BaseRule
                 return assembleUsingBloomFilter((UsingBloomFilter) node);
             else if (node instanceof BloomFilterFilter)
                 return assembleBloomFilterFilter((BloomFilterFilter) node);
+            else if (node instanceof UsingHashTable)
+                return assembleUsingHashTable((UsingHashTable) node);
+            else if (node instanceof HashTableLookup)
+                return assembleHashTableLookup((HashTableLookup) node);
             else if (node instanceof FullTextScan)
                 return assembleFullTextScan((FullTextScan) node);
             else if (node instanceof InsertStatement) 
@@ -510,6 +551,15 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected RowStream assembleSingleIndexScan(SingleIndexScan indexScan, IntersectionMode forIntersection) {
+            return assembleSingleIndexScan(indexScan, forIntersection, null, -1);
+        }
+
+        /** Assemble an index scan, having the index cursor evaluate
+         * <code>filter</code> and stop after <code>limit</code> rows.
+         * Only valid for a scan accepted by {@link #filterableIndexScan}.
+         */
+        protected RowStream assembleSingleIndexScan(SingleIndexScan indexScan, IntersectionMode forIntersection,
+                                                    ConditionExpression filter, int limit) {
             RowStream stream = new RowStream();
             Index index = indexScan.getIndex();
             IndexRowType indexRowType = schema.indexRowType(index);
@@ -539,16 +589,29 @@ public class OperatorAssembler extends BaseRule
                                                         assembleSpatialIndexKeyRange(indexScan, null),
                                                         API.ordering(), // TODO: what ordering?
                                                         selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum(),
+                                                        rulesContext.getPipelineConfiguration().isIndexScanBatchProbes());
                 indexRowType = indexRowType.physicalRowType();
                 stream.rowType = indexRowType;
             }
             else if (indexScan.getConditionRange() == null) {
+                IndexKeyRange keyRange = assembleIndexKeyRange(indexScan, null);
+                // Intersection inputs are jumped, which batched probes cannot do cheaply.
+                // A filter may depend on outer bindings, so equal keys need not mean equal rows.
+                boolean batchProbes = rulesContext.getPipelineConfiguration().isIndexScanBatchProbes() &&
+                    (forIntersection == IntersectionMode.NONE) && (filter == null);
+                if ((filter != null) || (limit >= 0)) {
+                    TPreparedExpression predicate = null;
+                    if (filter != null)
+                        predicate = compileExpression(assembleExpression(filter, new IndexFieldOffsets(indexScan, indexRowType)));
+                    keyRange = keyRange.filtered(predicate, limit);
+                }
                 stream.operator = API.indexScan_Default(indexRowType,
-                                                        assembleIndexKeyRange(indexScan, null),
+                                                        keyRange,
                                                         assembleIndexOrdering(indexScan, indexRowType),
                                                         selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum(),
+                                                        batchProbes);
                 stream.rowType = indexRowType;
             }
             else {
@@ -575,33 +638,53 @@ public class OperatorAssembler extends BaseRule
                         unionOrderedAll = unionOrdered = true;
                     }
                 }
+                List<Operator> unionInputs = new ArrayList<>();
                 for (RangeSegment rangeSegment : range.getSegments()) {
                     Operator scan = API.indexScan_Default(indexRowType,
                                                           assembleIndexKeyRange(indexScan, null, rangeSegment),
                                                           assembleIndexOrdering(indexScan, indexRowType),
                                                           selector,
-                                                          rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
-                    if (stream.operator == null) {
+                                                          rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum(),
+                                                          false); // Union branches may be jumped.
+                    if (unionOrdered) {
+                        unionInputs.add(scan);
+                    }
+                    else if (stream.operator == null) {
                         stream.operator = scan;
                         stream.rowType = indexRowType;
                     }
-                    else if (unionOrdered) {
-                        int nequals = indexScan.getNEquality();
-                        List<OrderByExpression> ordering = indexScan.getOrdering();
-                        int nordering = ordering.size() - nequals;
-                        boolean[] ascending = new boolean[nordering];
-                        for (int i = 0; i < nordering; i++) {
-                            ascending[i] = ordering.get(nequals + i).isAscending();
-                        }
-                        stream.operator = API.union_Ordered(stream.operator, scan,
-                                                            (IndexRowType)stream.rowType, indexRowType,
+                    else {
+                        stream.operator = API.unionAll_Default(stream.operator, stream.rowType, scan, indexRowType, rulesContext.getPipelineConfiguration().isUnionAllOpenBoth());
+                        stream.rowType = stream.operator.rowType();
+                    }
+                }
+                if (unionInputs.size() == 1) {
+                    stream.operator = unionInputs.get(0);
+                    stream.rowType = indexRowType;
+                }
+                else if (unionInputs.size() > 1) {
+                    int nequals = indexScan.getNEquality();
+                    List<OrderByExpression> ordering = indexScan.getOrdering();
+                    int nordering = ordering.size() - nequals;
+                    boolean[] ascending = new boolean[nordering];
+                    for (int i = 0; i < nordering; i++) {
+                        ascending[i] = ordering.get(nequals + i).isAscending();
+                    }
+                    if (unionInputs.size() == 2) {
+                        stream.operator = API.union_Ordered(unionInputs.get(0), unionInputs.get(1),
+                                                            indexRowType, indexRowType,
                                                             nordering, nordering, 
                                                             ascending, unionOrderedAll);
                     }
                     else {
-                        stream.operator = API.unionAll_Default(stream.operator, stream.rowType, scan, indexRowType, rulesContext.getPipelineConfiguration().isUnionAllOpenBoth());
-                        stream.rowType = stream.operator.rowType();
+                        // Merge all the branches at once, rather than
+                        // through a chain of binary unions.
+                        stream.operator = API.union_Ordered(unionInputs,
+                                                            Collections.nCopies(unionInputs.size(), indexRowType),
+                                                            nordering,
+                                                            ascending, unionOrderedAll);
                     }
+                    stream.rowType = indexRowType;
                 }
                 if (stream.operator == null) {
                     stream.operator = API.valuesScan_Default(Collections.<BindableRow>emptyList(), 
@@ -668,7 +751,11 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleGroupScan(GroupScan groupScan) {
             RowStream stream = new RowStream();
             Group group = groupScan.getGroup().getGroup();
-            stream.operator = API.groupScan_Default(group);
+            int nThreads = rulesContext.getPipelineConfiguration().getGroupScanParallelThreads();
+            if ((nThreads > 1) && parallelGroupScans)
+                stream.operator = API.groupScan_Parallel(group, nThreads);
+            else
+                stream.operator = API.groupScan_Default(group);
             stream.unknownTypesPresent = true;
             return stream;
         }
@@ -715,6 +802,12 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected RowStream assembleSelect(Select select) {
+            if (isFilterableSelect(select)) {
+                SingleIndexScan indexScan = filterableIndexScan(select.getInput(), false);
+                if (indexScan != null)
+                    return assembleSingleIndexScan(indexScan, IntersectionMode.NONE,
+                                                   select.getConditions().get(0), -1);
+            }
             RowStream stream = assembleStream(select.getInput());
             ConditionDependencyAnalyzer dependencies = null;
             for (ConditionExpression condition : select.getConditions()) {
@@ -730,14 +823,169 @@ public class OperatorAssembler extends BaseRule
                     rowType = tableRowType(table);
                     fieldOffsets = new ColumnSourceFieldOffsets(table, rowType);
                 }
+                else if (assembleHashedSubquery(condition, stream)) {
+                    continue;
+                }
                 stream.operator = API.select_HKeyOrdered(stream.operator,
                         rowType,
-                        assembleExpression(condition,
-                                fieldOffsets));
+                        compileExpression(assembleExpression(condition,
+                                fieldOffsets)));
             }
             return stream;
         }
 
+        /** A scan of a single index in one direction can evaluate the
+         * condition that {@link SelectPreponer} has put right above it
+         * and stop after a limit in the index cursor itself, so that
+         * rejected entries are skipped as the index is traversed.
+         * A limit counts index entries, so it is only possible for a
+         * table index. Returns the scan, or <code>null</code>.
+         */
+        protected SingleIndexScan filterableIndexScan(PlanNode input, boolean limited) {
+            String prop = rulesContext.getProperty("indexScanFilter");
+            if ((prop != null) && !Boolean.valueOf(prop))
+                return null;
+            if (!(input instanceof SingleIndexScan))
+                return null;
+            SingleIndexScan indexScan = (SingleIndexScan)input;
+            Index index = indexScan.getIndex();
+            if (index.isSpatial() || (indexScan.getConditionRange() != null))
+                return null;
+            if (limited && !index.isTableIndex())
+                return null;
+            API.Ordering ordering = assembleIndexOrdering(indexScan, schema.indexRowType(index));
+            if (!(ordering.allAscending() || ordering.allDescending()))
+                return null;
+            return indexScan;
+        }
+
+        // ExpressionCompactor will have combined all the conditions on
+        // the index into one.
+        protected boolean isFilterableSelect(Select select) {
+            return ((select.getConditions().size() == 1) &&
+                    !HasSubquery.of(select.getConditions().get(0)));
+        }
+
+        /** Assemble <code>input</code> as an index scan that stops
+         * after <code>limit</code> rows, or return <code>null</code>.
+         */
+        protected RowStream assembleLimitedIndexScan(PlanNode input, int limit) {
+            ConditionExpression filter = null;
+            if (input instanceof Select) {
+                Select select = (Select)input;
+                if (!select.getConditions().isEmpty()) {
+                    if (!isFilterableSelect(select))
+                        return null;
+                    filter = select.getConditions().get(0);
+                }
+                input = select.getInput();
+            }
+            SingleIndexScan indexScan = filterableIndexScan(input, true);
+            if (indexScan == null)
+                return null;
+            return assembleSingleIndexScan(indexScan, IntersectionMode.NONE, filter, limit);
+        }
+
+        public static final boolean HASH_SUBQUERIES_DEFAULT = true;
+
+        /** An uncorrelated <code>IN</code> / <code>EXISTS</code>
+         * subquery, possibly negated, that could not be turned into
+         * a join gets no use from any index on its inside, since it
+         * is evaluated without reference to the outer row. Rather
+         * than evaluate it again for each row, load it once into a
+         * hash set with {@link API#semiJoin_Hashed} or {@link
+         * API#antiJoin_Hashed}.
+         */
+        protected boolean assembleHashedSubquery(ConditionExpression condition, RowStream stream) {
+            boolean negated = false;
+            ExpressionNode node = condition;
+            if ((node instanceof LogicalFunctionCondition) &&
+                ((LogicalFunctionCondition)node).getFunction().equals("not")) {
+                negated = true;
+                node = ((LogicalFunctionCondition)node).getOperand();
+            }
+            if (!((node instanceof AnyCondition) || (node instanceof ExistsCondition)))
+                return false;
+            String prop = rulesContext.getProperty("hashSubqueries");
+            if (!((prop != null) ? Boolean.valueOf(prop) : HASH_SUBQUERIES_DEFAULT))
+                return false;
+            boolean any = (node instanceof AnyCondition);
+            PlanNode subquery = ((SubqueryExpression)node).getSubquery().getQuery();
+            List<ComparisonCondition> comparisons = new ArrayList<>();
+            if (any) {
+                if (subquery instanceof ResultSet)
+                    subquery = ((ResultSet)subquery).getInput();
+                if (!(subquery instanceof Project))
+                    return false;
+                Project project = (Project)subquery;
+                if ((project.getFields().size() != 1) ||
+                    !addHashComparisons(project.getFields().get(0), comparisons))
+                    return false;
+                subquery = project.getInput();
+            }
+            RowReferenceFinder outerRow = new RowReferenceFinder(stream.fieldOffsets);
+            if (outerRow.referencedBy(subquery))
+                return false;
+            List<ExpressionNode> outerNodes = new ArrayList<>(comparisons.size());
+            List<ExpressionNode> innerNodes = new ArrayList<>(comparisons.size());
+            List<AkCollator> collators = new ArrayList<>(comparisons.size());
+            for (ComparisonCondition comparison : comparisons) {
+                ExpressionNode left = comparison.getLeft();
+                ExpressionNode right = comparison.getRight();
+                if ((comparison.getKeyComparable() != null) ||
+                    (left.getType() == null) || (right.getType() == null) ||
+                    TClass.comparisonNeedsCasting(left.getType(), right.getType()))
+                    return false;
+                if (outerRow.onlyReferencedBy(left) && !outerRow.referencedBy(right)) {
+                    outerNodes.add(left);
+                    innerNodes.add(right);
+                }
+                else if (outerRow.onlyReferencedBy(right) && !outerRow.referencedBy(left)) {
+                    outerNodes.add(right);
+                    innerNodes.add(left);
+                }
+                else {
+                    return false;
+                }
+                collators.add(left.getCollator());
+            }
+            ColumnExpressionToIndex fieldOffsets = stream.fieldOffsets;
+            RowStream sstream = assembleQuery(subquery);
+            columnBoundRows.current = fieldOffsets;
+            List<TPreparedExpression> outerExpressions = assembleExpressions(outerNodes, stream.fieldOffsets);
+            List<TPreparedExpression> innerExpressions = assembleExpressions(innerNodes, sstream.fieldOffsets);
+            if (negated)
+                stream.operator = API.antiJoin_Hashed(stream.operator, sstream.operator,
+                                                      outerExpressions, innerExpressions,
+                                                      collators, any);
+            else
+                stream.operator = API.semiJoin_Hashed(stream.operator, sstream.operator,
+                                                      outerExpressions, innerExpressions,
+                                                      collators);
+            return true;
+        }
+
+        // The projected condition of an ANY, which must be equality
+        // comparisons, possibly combined with AND.
+        private boolean addHashComparisons(ExpressionNode node, List<ComparisonCondition> comparisons) {
+            if (node instanceof ComparisonCondition) {
+                ComparisonCondition comparison = (ComparisonCondition)node;
+                if (comparison.getOperation() != Comparison.EQ)
+                    return false;
+                comparisons.add(comparison);
+                return true;
+            }
+            else if ((node instanceof LogicalFunctionCondition) &&
+                     ((LogicalFunctionCondition)node).getFunction().equals("and")) {
+                LogicalFunctionCondition and = (LogicalFunctionCondition)node;
+                return (addHashComparisons(and.getLeft(), comparisons) &&
+                        addHashComparisons(and.getRight(), comparisons));
+            }
+            else {
+                return false;
+            }
+        }
+
         protected RowStream assembleFlatten(Flatten flatten) {
             RowStream stream = assembleStream(flatten.getInput());
             List<TableNode> tableNodes = flatten.getTableNodes();
@@ -773,10 +1021,15 @@ public class OperatorAssembler extends BaseRule
                         flattenType = API.JoinType.FULL_JOIN;
                         break;
                     }
+                    EnumSet<API.FlattenOption> flattenOptions = EnumSet.noneOf(API.FlattenOption.class);
+                    if ((flatten == resultFlatten) && (i == ntables - 1))
+                        // Only the last can reuse, since each holds its parent rows.
+                        flattenOptions.add(API.FlattenOption.REUSE_ROWS);
                     stream.operator = API.flatten_HKeyOrdered(stream.operator, 
                                                               stream.rowType,
                                                               tableRowType,
-                                                              flattenType);
+                                                              flattenType,
+                                                              flattenOptions);
                     stream.rowType = stream.operator.rowType();
                 }
                 flattened.setRowType(stream.rowType);
@@ -930,6 +1183,13 @@ public class OperatorAssembler extends BaseRule
                     API.unionAll_Default(leftStream.operator, leftStream.rowType, 
                             rightStream.operator, rightStream.rowType, 
                             rulesContext.getPipelineConfiguration().isUnionAllOpenBoth());
+            } else if (hashUnion()) {
+                // Concatenate and remember rows seen, rather than sort.
+                leftStream.operator = 
+                    API.unionAll_Default(leftStream.operator, leftStream.rowType, 
+                            rightStream.operator, rightStream.rowType, 
+                            rulesContext.getPipelineConfiguration().isUnionAllOpenBoth());
+                leftStream.operator = API.distinct_Hashed(leftStream.operator, leftStream.operator.rowType());
             } else {
                 
                 //Union ordered assumes sorted order, so sort the input streams. 
@@ -959,6 +1219,21 @@ public class OperatorAssembler extends BaseRule
             
         }
         
+        public static final boolean HASH_UNION_DEFAULT = false;
+
+        /** There are no estimates of how many rows the two sides of
+         * a <code>UNION</code> have in common, so whether to remove
+         * duplicates by hashing rather than by sorting both sides is
+         * left to the <code>hashUnion</code> property.
+         */
+        protected boolean hashUnion() {
+            String prop = rulesContext.getProperty("hashUnion");
+            if (prop != null)
+                return Boolean.valueOf(prop);
+            else
+                return HASH_UNION_DEFAULT;
+        }
+
         protected API.Ordering assembleUnionOrdering(RowType rowType) {
             API.Ordering ordering = createOrdering();
             for (int i = 0; i < rowType.nFields(); i++) {
@@ -976,6 +1251,9 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleMapJoin(MapJoin mapJoin) {
             PlanNode outer = mapJoin.getOuter();
             RowStream ostream = assembleStream(outer);
+            HashTableLookup hashTableLookup = partitionableLookup(mapJoin);
+            if (hashTableLookup != null)
+                assembleHashTablePartition(ostream, hashTableLookup);
             int pos = pushBoundRow(ostream.fieldOffsets);
             nestedBindingsDepth++;
             RowStream stream = assembleStream(mapJoin.getInner());
@@ -989,6 +1267,49 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        protected RowStream assembleMergeJoin(MergeJoin mergeJoin) {
+            RowStream lstream = assembleStream(mergeJoin.getLeft());
+            RowStream rstream = assembleStream(mergeJoin.getRight());
+            List<ExpressionNode> leftColumns = mergeJoin.getLeftColumns();
+            List<ExpressionNode> rightColumns = mergeJoin.getRightColumns();
+            int ncols = leftColumns.size();
+            int[] leftFields = new int[ncols];
+            int[] rightFields = new int[ncols];
+            for (int i = 0; i < ncols; i++) {
+                leftFields[i] = lstream.fieldOffsets.getIndex((ColumnExpression)leftColumns.get(i));
+                rightFields[i] = rstream.fieldOffsets.getIndex((ColumnExpression)rightColumns.get(i));
+            }
+            RowStream stream = new RowStream();
+            API.JoinType joinType;
+            switch (mergeJoin.getJoinType()) {
+            case SEMI:
+                stream.operator = API.semiJoin_Ordered(lstream.operator, rstream.operator,
+                                                       lstream.rowType, rstream.rowType,
+                                                       leftFields, rightFields,
+                                                       mergeJoin.getAscending());
+                stream.rowType = lstream.rowType;
+                stream.fieldOffsets = lstream.fieldOffsets;
+                return stream;
+            case INNER:
+                joinType = API.JoinType.INNER_JOIN;
+                break;
+            case LEFT:
+                joinType = API.JoinType.LEFT_JOIN;
+                break;
+            default:
+                throw new UnsupportedSQLException("complex join type " + mergeJoin, null);
+            }
+            stream.operator = API.mergeJoin_Ordered(lstream.operator, rstream.operator,
+                                                    lstream.rowType, rstream.rowType,
+                                                    leftFields, rightFields,
+                                                    mergeJoin.getAscending(),
+                                                    joinType);
+            stream.rowType = stream.operator.rowType();
+            stream.fieldOffsets = new Joined(lstream.fieldOffsets, rstream.fieldOffsets,
+                                             lstream.rowType.nFields(), stream.rowType);
+            return stream;
+        }
+
         protected RowStream assembleProduct(Product product) {
             TableRowType ancestorRowType = null;
             if (product.getAncestor() != null)
@@ -1079,6 +1400,7 @@ public class OperatorAssembler extends BaseRule
             switch (impl) {
             case PRESORTED:
             case UNGROUPED:
+            case HASH:
                 break;
             case FIRST_FROM_INDEX:
                 {
@@ -1129,6 +1451,9 @@ public class OperatorAssembler extends BaseRule
                         "Can't use Distinct_Partial except following a projection. Try again when types3 is in place"));
                 }
                 break;
+            case HASH:
+                stream.operator = API.distinct_Hashed(stream.operator, stream.rowType);
+                break;
             default:
                 assembleSort(stream, stream.rowType.nFields(), distinct.getInput(),
                              API.SortOption.SUPPRESS_DUPLICATES);
@@ -1225,8 +1550,18 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected RowStream assembleLimit(Limit limit) {
-            RowStream stream = assembleStream(limit.getInput());
+            int offset = limit.getOffset();
             int nlimit = limit.getLimit();
+            if (!limit.isOffsetParameter() && !limit.isLimitParameter() &&
+                (nlimit >= 0) && ((long)offset + nlimit <= Integer.MAX_VALUE)) {
+                RowStream stream = assembleLimitedIndexScan(limit.getInput(), offset + nlimit);
+                if (stream != null) {
+                    if (offset > 0)
+                        stream.operator = API.limit_Default(stream.operator, offset, false, nlimit, false);
+                    return stream;
+                }
+            }
+            RowStream stream = assembleStream(limit.getInput());
             if ((nlimit < 0) && !limit.isLimitParameter())
                 nlimit = Integer.MAX_VALUE; // Slight disagreement in saying unlimited.
             stream.operator = API.limit_Default(stream.operator, 
@@ -1246,8 +1581,11 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected RowStream assembleOnlyIfEmpty(OnlyIfEmpty onlyIfEmpty) {
-            RowStream stream = assembleStream(onlyIfEmpty.getInput());
-            stream.operator = API.limit_Default(stream.operator, 0, false, 1, false);
+            RowStream stream = assembleLimitedIndexScan(onlyIfEmpty.getInput(), 1);
+            if (stream == null) {
+                stream = assembleStream(onlyIfEmpty.getInput());
+                stream.operator = API.limit_Default(stream.operator, 0, false, 1, false);
+            }
             // Nulls here have no semantic meaning, but they're easier than trying to
             // figure out an interesting non-null value for each
             // type in the row. All that really matters is that the
@@ -1304,13 +1642,88 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        protected RowStream assembleUsingHashTable(UsingHashTable usingHashTable) {
+            HashTable hashTable = usingHashTable.getHashTable();
+            int pos = assignBindingPosition(hashTable);
+            RowStream lstream = assembleStream(usingHashTable.getLoader());
+            hashTableStreams.put(hashTable, lstream);
+            List<TPreparedExpression> tFields = assembleExpressions(usingHashTable.getHashExpressions(),
+                    lstream.fieldOffsets);
+            RowStream stream = assembleStream(usingHashTable.getInput());
+            stream.operator = API.using_HashTable(lstream.operator,
+                                                  lstream.rowType,
+                                                  tFields,
+                                                  pos,
+                                                  stream.operator,
+                                                  hashTable.getCollators());
+            return stream;
+        }
+
+        /** The lookup into a hash table loaded around this map that
+         * is all its inner side does with the outer row, so that
+         * outer rows can be grouped by spilled partition of the table.
+         */
+        protected HashTableLookup partitionableLookup(MapJoin mapJoin) {
+            PlanNode inner = mapJoin.getInner();
+            while ((inner instanceof Select) ||
+                   (inner instanceof Project) ||
+                   (inner instanceof NullIfEmpty) ||
+                   (inner instanceof Limit)) {
+                inner = ((BasePlanWithInput)inner).getInput();
+            }
+            if (!(inner instanceof HashTableLookup))
+                return null;
+            HashTableLookup hashTableLookup = (HashTableLookup)inner;
+            HashTable hashTable = hashTableLookup.getHashTable();
+            if (hashTable.isPreserveProbeOrder() ||
+                !hashTableStreams.containsKey(hashTable))
+                return null;
+            return hashTableLookup;
+        }
+
+        protected void assembleHashTablePartition(RowStream ostream, HashTableLookup hashTableLookup) {
+            if (ostream.fieldOffsets == null)
+                return;
+            // Only when the keys can be taken from the outer row itself.
+            for (ExpressionNode expression : hashTableLookup.getLookupExpressions()) {
+                if (!(expression instanceof ColumnExpression) ||
+                    (ostream.fieldOffsets.getIndex((ColumnExpression)expression) < 0))
+                    return;
+            }
+            HashTable hashTable = hashTableLookup.getHashTable();
+            List<TPreparedExpression> tFields = assembleExpressions(hashTableLookup.getLookupExpressions(),
+                    ostream.fieldOffsets);
+            ostream.operator = API.hashTablePartition_Default(ostream.operator,
+                                                              ostream.rowType,
+                                                              tFields,
+                                                              getBindingPosition(hashTable),
+                                                              hashTable.getCollators());
+        }
+
+        protected RowStream assembleHashTableLookup(HashTableLookup hashTableLookup) {
+            HashTable hashTable = hashTableLookup.getHashTable();
+            RowStream lstream = hashTableStreams.get(hashTable);
+            // Lookup expressions all come from outer bindings.
+            List<TPreparedExpression> tFields = assembleExpressions(hashTableLookup.getLookupExpressions(),
+                    new NullBoundRow());
+            RowStream stream = new RowStream();
+            stream.rowType = lstream.rowType;
+            stream.fieldOffsets = lstream.fieldOffsets;
+            stream.operator = API.hashTableLookup_Default(lstream.rowType,
+                                                          tFields,
+                                                          getBindingPosition(hashTable),
+                                                          hashTable.getCollators());
+            return stream;
+        }
+
         protected RowStream assembleProject(Project project) {
             RowStream stream = assembleStream(project.getInput());
             List<? extends TPreparedExpression> pExpressions;
-            pExpressions = assembleExpressions(project.getFields(), stream.fieldOffsets);
+            pExpressions = compileExpressions(assembleExpressions(project.getFields(), stream.fieldOffsets));
             stream.operator = API.project_Default(stream.operator,
                                                   stream.rowType,
-                                                  pExpressions);
+                                                  pExpressions,
+                                                  (project == resultProject));
             stream.rowType = stream.operator.rowType();
             stream.fieldOffsets = new ColumnSourceFieldOffsets(project,
                                                                stream.rowType);
@@ -1376,14 +1789,16 @@ public class OperatorAssembler extends BaseRule
                     (lowComparand == null) && (highComparand == null))
                 return IndexKeyRange.unbounded(indexRowType);
 
-            int nkeys = 0;
+            // Skipped columns are left null in the bounds; the cursor fills them in.
+            int skipColumns = index.getSkipColumns();
+            int nkeys = skipColumns;
             if (equalityComparands != null)
-                nkeys = equalityComparands.size();
+                nkeys += equalityComparands.size();
             if ((lowComparand != null) || (highComparand != null))
                 nkeys++;
             TPreparedExpression[] pkeys = new TPreparedExpression[nkeys];
 
-            int kidx = 0;
+            int kidx = skipColumns;
             if (equalityComparands != null) {
                 for (ExpressionNode comp : equalityComparands) {
                     if (!(comp instanceof IsNullIndexKey)) { // Java null means IS NULL; Null expression wouldn't match.
@@ -1395,6 +1810,8 @@ public class OperatorAssembler extends BaseRule
 
             if ((lowComparand == null) && (highComparand == null)) {
                 IndexBound eq = getIndexBound(index.getIndex(), pkeys, kidx);
+                if (skipColumns > 0)
+                    return IndexKeyRange.skipScan(indexRowType, skipColumns, eq, true, eq, true);
                 return IndexKeyRange.bounded(indexRowType, eq, true, eq, true);
             }
             else {
@@ -1431,6 +1848,8 @@ public class OperatorAssembler extends BaseRule
                 if (hi == null) {
                     hi = getNullIndexBound(index.getIndex(), lidx);
                 }
+                if (skipColumns > 0)
+                    return IndexKeyRange.skipScan(indexRowType, skipColumns, lo, lowInc, hi, highInc);
                 return IndexKeyRange.bounded(indexRowType, lo, lowInc, hi, highInc);
             }
         }
@@ -1705,6 +2124,23 @@ public class OperatorAssembler extends BaseRule
             return expressionAssembler.assembleExpression(expr, context, this);
         }
 
+        // Replace by a compiled evaluation if configured and possible.
+        protected TPreparedExpression compileExpression(TPreparedExpression expression) {
+            if (!rulesContext.getPipelineConfiguration().isExpressionsCompile())
+                return expression;
+            return TCompiledExpression.compile(expression);
+        }
+
+        protected List<TPreparedExpression> compileExpressions(List<TPreparedExpression> expressions) {
+            if (!rulesContext.getPipelineConfiguration().isExpressionsCompile())
+                return expressions;
+            List<TPreparedExpression> result = new ArrayList<>(expressions.size());
+            for (TPreparedExpression expression : expressions) {
+                result.add(TCompiledExpression.compile(expression));
+            }
+            return result;
+        }
+
         // Assemble an aggregate operator
         public Operator assembleAggregates(Operator inputOperator, RowType inputRowType, int inputsIndex,
                                            AggregateSource aggregateSource) {
@@ -1725,6 +2161,7 @@ public class OperatorAssembler extends BaseRule
             RowType outerRowType = null;
             if (fieldOffsets != null)
                 outerRowType = fieldOffsets.getRowType();
+            List<TPreparedExpression> memoKeys = assembleMemoKeys(sexpr, fieldOffsets);
             int pos = pushBoundRow(fieldOffsets);
             PlanNode subquery = sexpr.getSubquery().getQuery();
             ExpressionNode expression = null;
@@ -1753,7 +2190,8 @@ public class OperatorAssembler extends BaseRule
                                                   innerExpression,
                                                   outerRowType,
                                                   stream.rowType,
-                                                  pos);
+                                                  pos,
+                                                  memoKeys);
             popBoundRow();
             columnBoundRows.current = fieldOffsets;
             return result;
@@ -1764,17 +2202,21 @@ public class OperatorAssembler extends BaseRule
                                              TPreparedExpression innerExpression,
                                              RowType outerRowType,
                                              RowType innerRowType,
-                                             int bindingPosition) {
+                                             int bindingPosition,
+                                             List<TPreparedExpression> memoKeys) {
             if (sexpr instanceof ExistsCondition)
                 return existsExpression(operator, outerRowType,
-                                        innerRowType, bindingPosition);
+                                        innerRowType, bindingPosition,
+                                        memoKeys);
             else if (sexpr instanceof AnyCondition)
                 return anyExpression(operator, innerExpression,
-                                     outerRowType, innerRowType, bindingPosition);
+                                     outerRowType, innerRowType, bindingPosition,
+                                     memoKeys);
             else if (sexpr instanceof SubqueryValueExpression)
                 return scalarSubqueryExpression(operator, innerExpression,
                                                 outerRowType, innerRowType,
-                                                bindingPosition);
+                                                bindingPosition,
+                                                memoKeys);
             else if (sexpr instanceof SubqueryResultSetExpression)
                 return resultSetSubqueryExpression(operator, sexpr.getPreptimeValue(),
                                                    outerRowType, innerRowType, 
@@ -1821,20 +2263,52 @@ public class OperatorAssembler extends BaseRule
 
         protected TPreparedExpression existsExpression(Operator operator, RowType outerRowType,
                                                        RowType innerRowType,
-                                                       int bindingPosition) {
-            return new ExistsSubqueryTExpression(operator, outerRowType, innerRowType, bindingPosition);
+                                                       int bindingPosition,
+                                                       List<TPreparedExpression> memoKeys) {
+            return new ExistsSubqueryTExpression(operator, outerRowType, innerRowType, bindingPosition,
+                                                 memoKeys, subqueryMemoSize);
         }
 
         protected TPreparedExpression anyExpression(Operator operator, TPreparedExpression innerExpression,
                                                     RowType outerRowType,
-                                                    RowType innerRowType, int bindingPosition) {
-            return new AnySubqueryTExpression(operator, innerExpression, outerRowType, innerRowType, bindingPosition);
+                                                    RowType innerRowType, int bindingPosition,
+                                                    List<TPreparedExpression> memoKeys) {
+            return new AnySubqueryTExpression(operator, innerExpression, outerRowType, innerRowType, bindingPosition,
+                                              memoKeys, subqueryMemoSize);
         }
         
         protected TPreparedExpression scalarSubqueryExpression(Operator operator, TPreparedExpression innerExpression,
                                                                RowType outerRowType, RowType innerRowType,
-                                                               int bindingPosition) {
-            return new ScalarSubqueryTExpression(operator, innerExpression, outerRowType, innerRowType, bindingPosition);
+                                                               int bindingPosition,
+                                                               List<TPreparedExpression> memoKeys) {
+            return new ScalarSubqueryTExpression(operator, innerExpression, outerRowType, innerRowType, bindingPosition,
+                                                 memoKeys, subqueryMemoSize);
+        }
+
+        public static final int SUBQUERY_MEMO_SIZE_DEFAULT = 1024;
+
+        /** A subquery expression is evaluated again for every outer
+         * row, but its result only depends on the values from outside
+         * that it references, which often repeat. If all of those are
+         * visible as columns, and it does nothing volatile, return
+         * them as the key under which results can be remembered;
+         * otherwise <code>null</code>.
+         */
+        protected List<TPreparedExpression> assembleMemoKeys(SubqueryExpression sexpr,
+                                                             ColumnExpressionToIndex fieldOffsets) {
+            if (!memoizeSubqueries || (sexpr instanceof SubqueryResultSetExpression))
+                return null;
+            if (subqueryMemoSize <= 0)
+                return null;
+            List<ColumnExpressionToIndex> outerRows = new ArrayList<>();
+            if (fieldOffsets != null)
+                outerRows.add(fieldOffsets);
+            outerRows.addAll(boundRows);
+            SubqueryCorrelations correlations = new SubqueryCorrelations(outerRows);
+            if (!correlations.find(sexpr.getSubquery().getQuery()))
+                return null;
+            List<ExpressionNode> columns = new ArrayList<ExpressionNode>(correlations.getColumns());
+            return assembleExpressions(columns, fieldOffsets);
         }
 
         protected TPreparedExpression resultSetSubqueryExpression(Operator operator, TPreptimeValue preptimeValue,
@@ -1877,6 +2351,8 @@ public class OperatorAssembler extends BaseRule
         // bindings is complete list of assignments; bindingPositions its inverse.
         protected List<Object> bindings = new ArrayList<>();
         protected Map<Object,Integer> bindingPositions = new HashMap<>();
+        // Loaded hash tables, whose rows are returned by lookups.
+        protected Map<HashTable,RowStream> hashTableStreams = new HashMap<>();
 
         protected int assignBindingPosition(Object binding) {
             int position = bindings.size();
@@ -2060,6 +2536,220 @@ public class OperatorAssembler extends BaseRule
         }
     }
 
+    // Left and right rows of a merge join side by side.
+    static class Joined extends BaseColumnExpressionToIndex {
+        private ColumnExpressionToIndex left, right;
+        private int rightOffset;
+
+        public Joined(ColumnExpressionToIndex left, ColumnExpressionToIndex right,
+                      int rightOffset, RowType rowType) {
+            super(rowType);
+            this.left = left;
+            this.right = right;
+            this.rightOffset = rightOffset;
+        }
+
+        @Override
+        public int getIndex(ColumnExpression column) {
+            int index = left.getIndex(column);
+            if (index < 0) {
+                index = right.getIndex(column);
+                if (index >= 0)
+                    index += rightOffset;
+            }
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "(" + left + ", " + right + ")";
+        }
+    }
+
+    // Does the expression include any subqueries?
+    static class HasSubquery implements ExpressionVisitor {
+        private boolean found = false;
+
+        @Override
+        public boolean visitEnter(ExpressionNode n) {
+            return visit(n);
+        }
+        @Override
+        public boolean visitLeave(ExpressionNode n) {
+            return !found;
+        }
+        @Override
+        public boolean visit(ExpressionNode n) {
+            if (n instanceof SubqueryExpression) {
+                found = true;
+                return false;
+            }
+            return true;
+        }
+
+        static boolean of(ExpressionNode expr) {
+            HasSubquery hs = new HasSubquery();
+            expr.accept(hs);
+            return hs.found;
+        }
+    }
+
+    // Whether plans or expressions use the columns of a given row.
+    static class RowReferenceFinder implements PlanVisitor, ExpressionVisitor {
+        private final ColumnExpressionToIndex row;
+        private boolean onlyRow;
+        private boolean found;
+
+        public RowReferenceFinder(ColumnExpressionToIndex row) {
+            this.row = row;
+        }
+
+        /** Whether any column of the row is used. */
+        public boolean referencedBy(PlanNode n) {
+            onlyRow = false;
+            found = false;
+            n.accept(this);
+            return found;
+        }
+
+        public boolean referencedBy(ExpressionNode n) {
+            onlyRow = false;
+            found = false;
+            n.accept(this);
+            return found;
+        }
+
+        /** Whether the expression uses no columns except those of the row. */
+        public boolean onlyReferencedBy(ExpressionNode n) {
+            onlyRow = true;
+            found = false;
+            n.accept(this);
+            return !found;
+        }
+
+        @Override
+        public boolean visitEnter(PlanNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(PlanNode n) {
+            return !found;
+        }
+
+        @Override
+        public boolean visit(PlanNode n) {
+            return !found;
+        }
+
+        @Override
+        public boolean visitEnter(ExpressionNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(ExpressionNode n) {
+            return !found;
+        }
+
+        @Override
+        public boolean visit(ExpressionNode n) {
+            if (onlyRow) {
+                if (n instanceof SubqueryExpression)
+                    found = true;
+                else if (n instanceof ColumnExpression)
+                    found = (row.getIndex((ColumnExpression)n) < 0);
+            }
+            else if (n instanceof ColumnExpression) {
+                found = (row.getIndex((ColumnExpression)n) >= 0);
+            }
+            return !found;
+        }
+    }
+
+    /** The columns from outside a subquery that it references,
+     * provided that nothing else about its result depends on the
+     * outer rows and that it has no volatile functions.
+     */
+    static class SubqueryCorrelations implements PlanVisitor, ExpressionVisitor {
+        private final List<ColumnExpressionToIndex> outerRows;
+        private final Set<ColumnExpression> columns = new LinkedHashSet<>();
+        private final Set<HashTable> loadedHashTables = new HashSet<>();
+        private final Set<HashTable> usedHashTables = new HashSet<>();
+        private boolean memoizable;
+
+        public SubqueryCorrelations(List<ColumnExpressionToIndex> outerRows) {
+            this.outerRows = outerRows;
+        }
+
+        public boolean find(PlanNode subquery) {
+            memoizable = true;
+            subquery.accept(this);
+            return memoizable && loadedHashTables.containsAll(usedHashTables);
+        }
+
+        public Set<ColumnExpression> getColumns() {
+            return columns;
+        }
+
+        @Override
+        public boolean visitEnter(PlanNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(PlanNode n) {
+            return memoizable;
+        }
+
+        @Override
+        public boolean visit(PlanNode n) {
+            // These get their rows from outside by binding position,
+            // rather than through any column expression.
+            if ((n instanceof GroupLoopScan) ||
+                ((n instanceof BaseLookup) && (((BaseLookup)n).getInput() == null)))
+                memoizable = false;
+            else if (n instanceof UsingHashTable)
+                loadedHashTables.add(((UsingHashTable)n).getHashTable());
+            else if (n instanceof HashTableLookup)
+                usedHashTables.add(((HashTableLookup)n).getHashTable());
+            return memoizable;
+        }
+
+        @Override
+        public boolean visitEnter(ExpressionNode n) {
+            return visit(n);
+        }
+
+        @Override
+        public boolean visitLeave(ExpressionNode n) {
+            return memoizable;
+        }
+
+        @Override
+        public boolean visit(ExpressionNode n) {
+            if (n instanceof ColumnExpression) {
+                ColumnExpression column = (ColumnExpression)n;
+                for (ColumnExpressionToIndex outerRow : outerRows) {
+                    if (outerRow.getIndex(column) >= 0) {
+                        columns.add(column);
+                        break;
+                    }
+                }
+            }
+            else if (n instanceof FunctionExpression) {
+                TValidatedScalar function = ((FunctionExpression)n).getResolved();
+                if ((function == null) || function.isVolatile())
+                    memoizable = false;
+            }
+            else if (n instanceof RoutineExpression) {
+                if (!((RoutineExpression)n).getRoutine().isDeterministic())
+                    memoizable = false;
+            }
+            return memoizable;
+        }
+    }
+
     // Flattened row.
     static class Flattened extends BaseColumnExpressionToIndex {
         Map<TableSource,Integer> tableOffsets = new HashMap<>();
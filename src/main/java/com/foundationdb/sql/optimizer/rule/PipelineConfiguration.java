@@ -23,9 +23,13 @@ public class PipelineConfiguration
 {
     private boolean mapEnabled = false;
     private int indexScanLookaheadQuantum = 1;
+    private boolean indexScanBatchProbes = false;
     private int groupLookupLookaheadQuantum = 1;
     private boolean unionAllOpenBoth = false;
     private boolean selectBloomFilterEnabled = false;
+    private int groupScanParallelThreads = 1;
+    private boolean expressionsCompile = false;
+    private boolean rowsReuse = false;
 
     public PipelineConfiguration() {
     }
@@ -42,6 +46,10 @@ public class PipelineConfiguration
         return indexScanLookaheadQuantum;
     }
 
+    public boolean isIndexScanBatchProbes() {
+        return indexScanBatchProbes;
+    }
+
     public int getGroupLookupLookaheadQuantum() {
         return groupLookupLookaheadQuantum;
     }
@@ -54,6 +62,18 @@ public class PipelineConfiguration
         return selectBloomFilterEnabled;
     }
 
+    public int getGroupScanParallelThreads() {
+        return groupScanParallelThreads;
+    }
+
+    public boolean isExpressionsCompile() {
+        return expressionsCompile;
+    }
+
+    public boolean isRowsReuse() {
+        return rowsReuse;
+    }
+
     public void load(Properties properties) {
         for (String prop : properties.stringPropertyNames()) {
             String val = properties.getProperty(prop);
@@ -61,12 +81,20 @@ public class PipelineConfiguration
                 mapEnabled = Boolean.parseBoolean(val);
             else if ("indexScan.lookaheadQuantum".equals(prop))
                 indexScanLookaheadQuantum = Integer.parseInt(val);
+            else if ("indexScan.batchProbes".equals(prop))
+                indexScanBatchProbes = Boolean.parseBoolean(val);
             else if ("groupLookup.lookaheadQuantum".equals(prop))
                 groupLookupLookaheadQuantum = Integer.parseInt(val);
             else if ("unionAll.openBoth".equals(prop))
                 unionAllOpenBoth = Boolean.parseBoolean(val);
             else if ("selectBloomFilter.enabled".equals(prop))
                 selectBloomFilterEnabled = Boolean.parseBoolean(val);
+            else if ("groupScan.parallelThreads".equals(prop))
+                groupScanParallelThreads = Integer.parseInt(val);
+            else if ("expressions.compile".equals(prop))
+                expressionsCompile = Boolean.parseBoolean(val);
+            else if ("rows.reuse".equals(prop))
+                rowsReuse = Boolean.parseBoolean(val);
             else
                 throw new IllegalArgumentException("Unknown property " + prop);
         }
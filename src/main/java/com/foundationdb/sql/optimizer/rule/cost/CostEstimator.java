@@ -26,6 +26,7 @@ import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.TableGroupJoinTree.TableGroupJoinNode;
 
 import com.foundationdb.ais.model.*;
+import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.InternalIndexTypes;
 import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.qp.rowtype.TableRowType;
@@ -191,7 +192,48 @@ public abstract class CostEstimator implements TableRowCounts
                               List<ExpressionNode> equalityComparands,
                               ExpressionNode lowComparand, boolean lowInclusive,
                               ExpressionNode highComparand, boolean highInclusive) {
-        if (index.isUnique()) {
+        return sizeIndexScan(index, 0, equalityComparands,
+                             lowComparand, lowInclusive,
+                             highComparand, highInclusive);
+    }
+
+    /** Estimate cost of a skip scan of this index: a scan of the
+     * given range under each distinct value of the first
+     * <code>skipColumns</code> columns.
+     * @return <code>null</code> if there are no statistics for
+     * those columns, without which a skip scan cannot be costed.
+     */
+    public CostEstimate costSkipScan(Index index, int skipColumns,
+                                     List<ExpressionNode> equalityComparands,
+                                     ExpressionNode lowComparand, boolean lowInclusive,
+                                     ExpressionNode highComparand, boolean highInclusive) {
+        IndexStatistics stats = getIndexStatistics(index);
+        if (stats == null)
+            return null;
+        Histogram histogram = stats.getHistogram(0, skipColumns);
+        if ((histogram == null) || histogram.getEntries().isEmpty())
+            return null;
+        long nprefixes = histogram.totalDistinctCount();
+        long nrows = sizeIndexScan(index, skipColumns, equalityComparands,
+                                   lowComparand, lowInclusive,
+                                   highComparand, highInclusive);
+        // For each prefix, one random access to find it and another
+        // to get to the start of its range.
+        IndexRowType rowType = schema.indexRowType(index);
+        return new CostEstimate(nrows,
+                                model.indexScan(rowType, (int)nrows) +
+                                nprefixes * 2 * model.indexScan(rowType, 1));
+    }
+
+    /** Estimate number of rows returned from this index when the
+     * comparands start at <code>firstColumn</code> and any columns
+     * before that are unrestricted. */
+    protected long sizeIndexScan(Index index,
+                                 int firstColumn,
+                                 List<ExpressionNode> equalityComparands,
+                                 ExpressionNode lowComparand, boolean lowInclusive,
+                                 ExpressionNode highComparand, boolean highInclusive) {
+        if (index.isUnique() && (firstColumn == 0)) {
             if ((equalityComparands != null) &&
                 (equalityComparands.size() >= index.getKeyColumns().size())) {
                 // Exact match from unique index; probably one row.
@@ -209,12 +251,12 @@ public abstract class CostEstimator implements TableRowCounts
         Index[] indexColumnsIndexes = new Index[nidxcols];
         Histogram[] histograms = new Histogram[nidxcols];
         getIndexColumnStatistics(index, indexColumnsIndexes, histograms);
-        int columnCount = 0;
+        int columnCount = firstColumn;
         if (equalityComparands != null)
-            columnCount = equalityComparands.size();
+            columnCount += equalityComparands.size();
         if ((lowComparand != null) || (highComparand != null))
             columnCount++;
-        if (columnCount == 0) {
+        if (columnCount == firstColumn) {
             // Index just used for ordering.
             return rowCount;
         }
@@ -224,6 +266,7 @@ public abstract class CostEstimator implements TableRowCounts
             selectivity = fractionEqual(index,
                                         indexColumnsIndexes,
                                         histograms,
+                                        firstColumn,
                                         equalityComparands);
         }
         if (lowComparand != null || highComparand != null) {
@@ -284,11 +327,13 @@ public abstract class CostEstimator implements TableRowCounts
     protected double fractionEqual(Index index, 
                                    Index[] indexColumnsIndexes,
                                    Histogram[] histograms,
+                                   int firstColumn,
                                    List<ExpressionNode> eqExpressions) {
         double selectivity = 1.0;
         keyPTarget.attach(key);
-        for (int column = 0; column < eqExpressions.size(); column++) {
-            ExpressionNode node = eqExpressions.get(column);
+        for (int i = 0; i < eqExpressions.size(); i++) {
+            ExpressionNode node = eqExpressions.get(i);
+            int column = firstColumn + i;
             Histogram histogram = histograms[column];
             selectivity *= fractionEqual(index.getAllColumns().get(column).getColumn(),
                                          indexColumnsIndexes[column],
@@ -982,6 +1027,38 @@ public abstract class CostEstimator implements TableRowCounts
                                 model.sortWithLimit((int)size, nfields));
     }
 
+    /** Estimate the number of distinct combinations of values of
+     * the given expressions among <code>rowCount</code> rows, or -1 if
+     * that cannot be known from statistics.
+     */
+    public long estimateDistinctCount(List<ExpressionNode> expressions, long rowCount) {
+        double distinct = 1.0;
+        for (ExpressionNode expression : expressions) {
+            if (!(expression instanceof ColumnExpression))
+                return -1;
+            Column column = ((ColumnExpression)expression).getColumn();
+            if (column == null)
+                return -1;
+            Histogram histogram = null;
+            for (TableIndex index : column.getTable().getIndexes()) {
+                if (index.getKeyColumns().get(0).getColumn() == column) {
+                    IndexStatistics stats = getIndexStatistics(index);
+                    if (stats != null) {
+                        histogram = stats.getHistogram(0, 1);
+                        if (histogram != null)
+                            break;
+                    }
+                }
+            }
+            if ((histogram == null) || histogram.getEntries().isEmpty())
+                return -1;
+            distinct *= histogram.totalDistinctCount();
+            if (distinct >= rowCount)
+                return rowCount;
+        }
+        return Math.round(distinct);
+    }
+
     /** Estimate cost of scanning the whole group. */
     // TODO: Need to account for tables actually wanted?
     public CostEstimate costGroupScan(Group group) {
@@ -1080,6 +1157,38 @@ public abstract class CostEstimator implements TableRowCounts
         return adjustCostEstimate(estimate);
     }
 
+    public CostEstimate costHashJoin(CostEstimate loaderCost,
+                                     CostEstimate inputCost,
+                                     long matchCount,
+                                     int nFields) {
+        // Scan to load plus scan input plus table build and one
+        // probe for each input row.
+        CostEstimate estimate =
+               new CostEstimate(matchCount,
+                                loaderCost.getCost() +
+                                inputCost.getCost() +
+                                model.hashTableJoin((int)loaderCost.getRowCount(),
+                                                    (int)inputCost.getRowCount(),
+                                                    (int)matchCount,
+                                                    nFields));
+        return adjustCostEstimate(estimate);
+    }
+
+    public CostEstimate costMergeJoin(CostEstimate leftCost,
+                                      CostEstimate rightCost,
+                                      long matchCount) {
+        // Scan both sides once in join order plus comparing as they
+        // are merged.
+        CostEstimate estimate =
+               new CostEstimate(matchCount,
+                                leftCost.getCost() +
+                                rightCost.getCost() +
+                                model.mergeJoin((int)leftCost.getRowCount(),
+                                                (int)rightCost.getRowCount(),
+                                                (int)matchCount));
+        return adjustCostEstimate(estimate);
+    }
+
     protected void missingStats(Index index, Column column) {
     }
 
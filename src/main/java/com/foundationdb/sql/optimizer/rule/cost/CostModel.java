@@ -146,6 +146,21 @@ public abstract class CostModel
             inputRows * (BLOOM_FILTER_SCAN_PER_ROW + selectivity * BLOOM_FILTER_SCAN_SELECTIVITY_COEFFICIENT);
     }
 
+    public double hashTableJoin(int loadRows, int probeRows, int matchRows, int nFields)
+    {
+        return
+            loadRows * (HASH_TABLE_LOAD_PER_ROW + nFields * HASH_TABLE_LOAD_PER_FIELD) +
+            probeRows * HASH_TABLE_PROBE_PER_ROW +
+            matchRows * HASH_TABLE_MATCH_PER_ROW;
+    }
+
+    public double mergeJoin(int nLeftRows, int nRightRows, int matchRows)
+    {
+        return
+            (nLeftRows + nRightRows) * MERGE_JOIN_PER_ROW +
+            matchRows * MERGE_JOIN_MATCH_PER_ROW;
+    }
+
     private double hKeyBoundGroupScanSingleRow(TableRowType rootTableRowType)
     {
         TreeStatistics treeStatistics = treeStatistics(rootTableRowType);
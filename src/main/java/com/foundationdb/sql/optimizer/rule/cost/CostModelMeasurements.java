@@ -51,4 +51,13 @@ public interface CostModelMeasurements
     final double BLOOM_FILTER_LOAD_PER_ROW = 0.24;
     final double BLOOM_FILTER_SCAN_PER_ROW = 0.39;
     final double BLOOM_FILTER_SCAN_SELECTIVITY_COEFFICIENT = 7.41;
+    // From Using_HashTableCT.
+    final double HASH_TABLE_LOAD_PER_ROW = 0.61;
+    final double HASH_TABLE_LOAD_PER_FIELD = 0.12;
+    final double HASH_TABLE_PROBE_PER_ROW = 0.43;
+    final double HASH_TABLE_MATCH_PER_ROW = 0.18;
+    // Based on IntersectCT, since MergeJoin_Ordered merges like Intersect_Ordered,
+    // plus the cost of joining up a matched pair.
+    final double MERGE_JOIN_PER_ROW = 0.25;
+    final double MERGE_JOIN_MATCH_PER_ROW = 0.18;
 }
@@ -414,7 +414,21 @@ public class PlanCostEstimator
         if (result == null) {
             if (index instanceof SingleIndexScan) {
                 SingleIndexScan singleIndex = (SingleIndexScan) index;
-                if (singleIndex.getConditionRange() == null) {
+                if (singleIndex.isSkipScan()) {
+                    result = costEstimator.costSkipScan(singleIndex.getIndex(),
+                            singleIndex.getSkipColumns(),
+                            singleIndex.getEqualityComparands(),
+                            singleIndex.getLowComparand(),
+                            singleIndex.isLowInclusive(),
+                            singleIndex.getHighComparand(),
+                            singleIndex.isHighInclusive());
+                    if (result == null) {
+                        // No statistics: no better than the whole index.
+                        result = costEstimator.costIndexScan(singleIndex.getIndex(),
+                                null, null, false, null, false);
+                    }
+                }
+                else if (singleIndex.getConditionRange() == null) {
                     result = costEstimator.costIndexScan(singleIndex.getIndex(),
                             singleIndex.getEqualityComparands(),
                             singleIndex.getLowComparand(),
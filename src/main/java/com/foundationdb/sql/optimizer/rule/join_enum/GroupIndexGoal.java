@@ -262,12 +262,75 @@ public class GroupIndexGoal implements Comparator<BaseScan>
      * @return <code>false</code> if the index is useless.
      */
     public boolean usable(SingleIndexScan index) {
+        return usable(index, false);
+    }
+
+    /** Populate given index usage according to goal.
+     * @param forOrdering <code>true</code> if the index is wanted for
+     * the order in which it delivers rows, even if it does nothing for
+     * the query's own ordering, conditions, or columns.
+     * @return <code>false</code> if the index is useless.
+     */
+    protected boolean usable(SingleIndexScan index, boolean forOrdering) {
         setColumnsAndOrdering(index);
         int nequals = insertLeadingEqualities(index, conditions);
         if (index.getIndex().isSpatial()) return spatialUsable(index, nequals);
+        insertInequalities(index, nequals, true);
+        index.setOrderEffectiveness(determineOrderEffectiveness(index));
+        index.setCovering(determineCovering(index));
+        if ((index.getOrderEffectiveness() == IndexScan.OrderEffectiveness.NONE) &&
+            !index.hasConditions() &&
+            !index.isCovering() &&
+            !forOrdering)
+            return false;
+        index.setCostEstimate(estimateCost(index));
+        return true;
+    }
+
+    /** Populate given index usage as a skip scan over its first
+     * column, for when it has no conditions of its own but does on
+     * the following columns and the first column has few distinct
+     * values.
+     * @return <code>false</code> if the index cannot be skip scanned
+     * or the statistics to cost doing so are missing.
+     */
+    protected boolean skipScanUsable(SingleIndexScan index) {
+        Index aisIndex = index.getIndex();
+        if (aisIndex.isSpatial() || (aisIndex.getAllColumns().size() < 2))
+            return false;
+        String prop = queryGoal.getRulesContext().getProperty("indexSkipScan");
+        if ((prop != null) && !Boolean.valueOf(prop))
+            return false;       // Feature turned off.
+        int skipColumns = 1;
+        setColumnsAndOrdering(index);
+        index.setSkipColumns(skipColumns);
+        int nequals = insertLeadingEqualities(index, conditions, skipColumns);
+        insertInequalities(index, skipColumns + nequals, false);
+        if (!index.hasConditions())
+            return false;
+        index.setOrderEffectiveness(determineOrderEffectiveness(index));
+        // The cursor skips from prefix to prefix in a single direction.
+        List<OrderByExpression> ordering = index.getOrdering();
+        for (OrderByExpression orderBy : ordering) {
+            if (orderBy.isAscending() != ordering.get(0).isAscending())
+                return false;
+        }
+        CostEstimate scanCost = queryGoal.getCostEstimator()
+            .costSkipScan(aisIndex, skipColumns, index.getEqualityComparands(),
+                          index.getLowComparand(), index.isLowInclusive(),
+                          index.getHighComparand(), index.isHighInclusive());
+        if (scanCost == null)
+            return false;
+        index.setScanCostEstimate(scanCost);
+        index.setCovering(determineCovering(index));
+        index.setCostEstimate(estimateCost(index));
+        return true;
+    }
+
+    private void insertInequalities(SingleIndexScan index, int column, boolean allowRange) {
         List<ExpressionNode> indexExpressions = index.getColumns();
-        if (nequals < indexExpressions.size()) {
-            ExpressionNode indexExpression = indexExpressions.get(nequals);
+        if (column < indexExpressions.size()) {
+            ExpressionNode indexExpression = indexExpressions.get(column);
             if (indexExpression != null) {
                 boolean foundInequalityCondition = false;
                 for (ConditionExpression condition : conditions) {
@@ -285,29 +348,26 @@ public class GroupIndexGoal implements Comparator<BaseScan>
                         }
                     }
                 }
-                if (!foundInequalityCondition) {
+                if (!foundInequalityCondition && allowRange) {
                     ColumnRanges range = rangeForIndex(indexExpression);
                     if (range != null)
                         index.addRangeCondition(range);
                 }
             }
         }
-        index.setOrderEffectiveness(determineOrderEffectiveness(index));
-        index.setCovering(determineCovering(index));
-        if ((index.getOrderEffectiveness() == IndexScan.OrderEffectiveness.NONE) &&
-            !index.hasConditions() &&
-            !index.isCovering())
-            return false;
-        index.setCostEstimate(estimateCost(index));
-        return true;
     }
 
     private int insertLeadingEqualities(EqualityColumnsScan index, List<ConditionExpression> localConds) {
+        return insertLeadingEqualities(index, localConds, 0);
+    }
+
+    private int insertLeadingEqualities(EqualityColumnsScan index, List<ConditionExpression> localConds,
+                                        int firstColumn) {
         int nequals = 0;
         List<ExpressionNode> indexExpressions = index.getColumns();
         int ncols = indexExpressions.size();
-        while (nequals < ncols) {
-            ExpressionNode indexExpression = indexExpressions.get(nequals);
+        while (firstColumn + nequals < ncols) {
+            ExpressionNode indexExpression = indexExpressions.get(firstColumn + nequals);
             if (indexExpression == null) break;
             ConditionExpression equalityCondition = null;
             ExpressionNode otherComparand = null;
@@ -872,6 +932,17 @@ public class GroupIndexGoal implements Comparator<BaseScan>
             for (TableIndex index : table.getTable().getTable().getIndexes()) {
                 SingleIndexScan candidate = new SingleIndexScan(index, table, queryContext);
                 bestIndex = betterIndex(bestIndex, candidate, enumerator);
+                if (!candidate.hasConditions()) {
+                    // Nothing on the first column; maybe on the ones after it.
+                    SingleIndexScan skipCandidate = new SingleIndexScan(index, table, queryContext);
+                    if (skipScanUsable(skipCandidate)) {
+                        // Not a leaf for intersection, which needs equalities in front.
+                        if ((bestIndex == null) || (compare(skipCandidate, bestIndex) > 0)) {
+                            logger.debug("Preferring skip scan {}", skipCandidate);
+                            bestIndex = skipCandidate;
+                        }
+                    }
+                }
             }
         }
         if ((table.getGroup() != null) && !hasOuterJoinNonGroupConditions(node)) {
@@ -948,6 +1019,41 @@ public class GroupIndexGoal implements Comparator<BaseScan>
         return bestIndex;
     }
 
+    /** Find the best index that delivers the rows of this group in
+     * order of the given column, following any leading equalities, so
+     * that it can be an input to a merge join.
+     * @return <code>null</code> if there is no such index.
+     */
+    public SingleIndexScan pickBestOrderedIndex(ColumnExpression column) {
+        if (!(column.getTable() instanceof TableSource))
+            return null;
+        TableSource table = (TableSource)column.getTable();
+        if (!tables.containsTable(table) || !tables.getRequired().contains(table))
+            return null;
+        SingleIndexScan bestIndex = null;
+        for (TableIndex index : table.getTable().getTable().getIndexes()) {
+            if (index.isSpatial())
+                continue;
+            SingleIndexScan candidate = new SingleIndexScan(index, table, queryContext);
+            if (!usable(candidate, true))
+                continue;
+            // Several range segments are unioned together in their
+            // own order, not necessarily the scan's.
+            if (candidate.getConditionRange() != null)
+                continue;
+            int nequals = candidate.getNEquality();
+            List<ExpressionNode> indexExpressions = candidate.getColumns();
+            if ((nequals >= indexExpressions.size()) ||
+                !column.equals(indexExpressions.get(nequals)))
+                continue;
+            if ((bestIndex == null) || (compare(candidate, bestIndex) > 0)) {
+                logger.debug("Preferring {} for ordering by {}", candidate, column);
+                bestIndex = candidate;
+            }
+        }
+        return bestIndex;
+    }
+
     // If a LEFT join has more conditions, they won't be included in an index, so
     // can't use it.
     protected boolean hasOuterJoinNonGroupConditions(TableGroupJoinNode node) {
@@ -1343,7 +1449,7 @@ public class GroupIndexGoal implements Comparator<BaseScan>
     // Does this scan return at most one row?
     protected boolean isUnique(SingleIndexScan indexScan) {
         List<ExpressionNode> equalityComparands = indexScan.getEqualityComparands();
-        if (equalityComparands == null)
+        if ((equalityComparands == null) || indexScan.isSkipScan())
             return false;
         int nequals = equalityComparands.size();
         Index index = indexScan.getIndex();
@@ -1387,7 +1493,8 @@ public class GroupIndexGoal implements Comparator<BaseScan>
             }
             installConditions(indexScan.getConditions(), conditionSources);
             if (sortAllowed)
-                queryGoal.installOrderEffectiveness(indexScan.getOrderEffectiveness());
+                queryGoal.installOrderEffectiveness(indexScan.getOrderEffectiveness(),
+                                                    indexScan.getCostEstimate());
         }
         else {
             if (scan instanceof GroupLoopScan) {
@@ -1406,7 +1513,8 @@ public class GroupIndexGoal implements Comparator<BaseScan>
                                   conditionSources);
             }
             if (sortAllowed)
-                queryGoal.installOrderEffectiveness(IndexScan.OrderEffectiveness.NONE);
+                queryGoal.installOrderEffectiveness(IndexScan.OrderEffectiveness.NONE,
+                                                    scan.getCostEstimate());
         }
         return result;
     }
@@ -118,6 +118,15 @@ public class QueryIndexGoal
      * a consequence of <code>orderEffectiveness</code> being used.
      */
     public void installOrderEffectiveness(OrderEffectiveness orderEffectiveness) {
+        installOrderEffectiveness(orderEffectiveness, null);
+    }
+
+    /** Change GROUP BY, and ORDER BY upstream of <code>node</code> as
+     * a consequence of <code>orderEffectiveness</code> being used,
+     * with <code>inputCost</code> the estimated cost of the scan.
+     */
+    public void installOrderEffectiveness(OrderEffectiveness orderEffectiveness,
+                                          CostEstimate inputCost) {
         if (grouping != null) {
             AggregateSource.Implementation implementation;
             switch (orderEffectiveness) {
@@ -129,7 +138,10 @@ public class QueryIndexGoal
                 implementation = AggregateSource.Implementation.PREAGGREGATE_RESORT;
                 break;
             default:
-                implementation = AggregateSource.Implementation.SORT;
+                if (hashGroupingBetter(inputCost))
+                    implementation = AggregateSource.Implementation.HASH;
+                else
+                    implementation = AggregateSource.Implementation.SORT;
                 break;
             }
             grouping.setImplementation(implementation);
@@ -148,7 +160,10 @@ public class QueryIndexGoal
                 implementation = Distinct.Implementation.PRESORTED;
                 break;
             default:
-                implementation = Distinct.Implementation.SORT;
+                if (hashDistinctBetter(inputCost))
+                    implementation = Distinct.Implementation.HASH;
+                else
+                    implementation = Distinct.Implementation.SORT;
                 break;
             }
             distinct.setImplementation(implementation);
@@ -162,4 +177,53 @@ public class QueryIndexGoal
         return (limit.getOffset() + limit.getLimit());
     }
 
+
+    public static final long HASH_GROUPING_MAX_GROUPS_DEFAULT = 100000;
+    public static final long HASH_GROUPING_MIN_ROWS_PER_GROUP = 10;
+
+    /** Is the number of groups expected to be small enough relative
+     * to the input that aggregating in a hash table beats sorting?
+     */
+    protected boolean hashGroupingBetter(CostEstimate inputCost) {
+        if ((ordering != null) || (inputCost == null))
+            return false;       // Sort needed anyway.
+        long maxGroups;
+        String prop = rulesContext.getProperty("hashGroupingMaxGroups");
+        if (prop != null)
+            maxGroups = Long.valueOf(prop);
+        else
+            maxGroups = HASH_GROUPING_MAX_GROUPS_DEFAULT;
+        if (maxGroups <= 0) return false; // Feature turned off.
+        long inputRows = inputCost.getRowCount();
+        long groups = getCostEstimator().estimateDistinctCount(grouping.getGroupBy(), inputRows);
+        if (groups < 0)
+            return false;       // Unknown.
+        return ((groups <= maxGroups) &&
+                (groups * HASH_GROUPING_MIN_ROWS_PER_GROUP <= inputRows));
+    }
+
+    public static final long HASH_DISTINCT_MAX_ROWS_DEFAULT = 100000;
+    public static final long HASH_DISTINCT_MIN_ROWS_PER_VALUE = 2;
+
+    /** Is the number of distinct rows expected to be small enough
+     * to remember them all in a hash table instead of sorting?
+     * Unlike a sort, this also outputs each row as soon as it is seen.
+     */
+    protected boolean hashDistinctBetter(CostEstimate inputCost) {
+        if ((ordering != null) || (inputCost == null))
+            return false;       // Sort needed anyway.
+        long maxRows;
+        String prop = rulesContext.getProperty("hashDistinctMaxRows");
+        if (prop != null)
+            maxRows = Long.valueOf(prop);
+        else
+            maxRows = HASH_DISTINCT_MAX_ROWS_DEFAULT;
+        if (maxRows <= 0) return false; // Feature turned off.
+        long inputRows = inputCost.getRowCount();
+        long rows = getCostEstimator().estimateDistinctCount(projectDistinct.getFields(), inputRows);
+        if (rows < 0)
+            return false;       // Unknown.
+        return ((rows <= maxRows) &&
+                (rows * HASH_DISTINCT_MIN_ROWS_PER_VALUE <= inputRows));
+    }
 }
@@ -103,6 +103,11 @@ public class ServerQueryContext<T extends ServerSession> extends QueryContextBas
         return server.isTransactionPeriodicallyCommit();
     }
 
+    @Override
+    public boolean isTransactionExplicit() {
+        return server.isTransactionExplicit();
+    }
+
     public TypesTranslator getTypesTranslator() {
         return server.typesTranslator();
     }
@@ -115,6 +115,9 @@ public interface ServerSession
     /** Is a transaction open? */
     public boolean isTransactionActive();
 
+    /** Is a transaction open that was begun explicitly, rather than for a single statement? */
+    public boolean isTransactionExplicit();
+
     /** Is a transaction marked rollback-only? */
     public boolean isTransactionRollbackPending();
 
@@ -64,6 +64,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
     protected Map<StoreAdapter.AdapterType, StoreAdapter> adapters = 
         new HashMap<>();
     protected ServerTransaction transaction;
+    protected boolean transactionExplicit;
     protected boolean transactionDefaultReadOnly = false;
     protected boolean transactionPeriodicallyCommit = false;
     protected ServerSessionMonitor sessionMonitor;
@@ -225,6 +226,11 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
         return (transaction != null);
     }
 
+    @Override
+    public boolean isTransactionExplicit() {
+        return (transaction != null) && transactionExplicit;
+    }
+
     @Override
     public boolean isTransactionRollbackPending() {
         return ((transaction != null) && transaction.isRollbackPending());
@@ -235,6 +241,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
         if (transaction != null)
             throw new TransactionInProgressException();
         transaction = new ServerTransaction(this, transactionDefaultReadOnly, transactionPeriodicallyCommit);
+        transactionExplicit = true;
     }
 
     @Override
@@ -375,6 +382,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
             case READ:
             case NEW:
                 transaction = new ServerTransaction(this, true, false);
+                transactionExplicit = false;
                 localTransaction = true;
                 break;
             case WRITE:
@@ -382,6 +390,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
                 if (transactionDefaultReadOnly)
                     throw new TransactionReadOnlyException();
                 transaction = new ServerTransaction(this, false, false);
+                transactionExplicit = false;
                 transaction.beforeUpdate();
                 localTransaction = true;
                 break;
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.util;
+
+/**
+ * A split-block Bloom filter. The filter is an array of 512-bit blocks,
+ * each the size of a cache line and made of eight 64-bit words. A key's
+ * hash selects one block with its high 32 bits and sets one bit in each of
+ * the block's words using its low 32 bits, so adding or probing a key
+ * touches a single cache line and needs only multiplies, shifts and masks.
+ * <p/>
+ * The number of blocks is a power of two, chosen as the smallest for which
+ * the expected false positive rate is within the requested rate. Hashes
+ * must be well mixed 64-bit values.
+ */
+public class BlockedBloomFilter
+{
+    public void add(long hash)
+    {
+        int block = block(hash);
+        int h = (int) hash;
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            filter[block + w] |= 1L << ((h * SALT[w]) >>> WORD_SHIFT);
+        }
+    }
+
+    public boolean maybePresent(long hash)
+    {
+        int block = block(hash);
+        int h = (int) hash;
+        for (int w = 0; w < WORDS_PER_BLOCK; w++) {
+            if ((filter[block + w] & (1L << ((h * SALT[w]) >>> WORD_SHIFT))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The size of the filter, in bytes. */
+    public long sizeInBytes()
+    {
+        return filter.length * 8L;
+    }
+
+    public BlockedBloomFilter(long maxKeys, double errorRate)
+    {
+        ArgumentValidation.isGTE("maxKeys", maxKeys, 0);
+        int blocks = 1;
+        while (blocks < MAX_BLOCKS && falsePositiveRate((double) maxKeys / blocks) > errorRate) {
+            blocks <<= 1;
+        }
+        blockMask = blocks - 1;
+        filter = new long[blocks * WORDS_PER_BLOCK];
+    }
+
+    // For use by this class
+
+    private int block(long hash)
+    {
+        return ((int) (hash >>> 32) & blockMask) << BLOCK_SHIFT;
+    }
+
+    // The chance that a key not in the filter finds all eight of its bits set in a block
+    // holding a Poisson-distributed number of keys averaging keysPerBlock.
+    private static double falsePositiveRate(double keysPerBlock)
+    {
+        if (keysPerBlock > MAX_KEYS_PER_BLOCK) {
+            return 1.0;
+        }
+        double bitClear = 1.0 - 1.0 / BITS;
+        double probability = Math.exp(-keysPerBlock);
+        double total = 0;
+        int maxKeysInBlock = (int) (keysPerBlock + 10 * Math.sqrt(keysPerBlock) + 10);
+        for (int k = 0; k <= maxKeysInBlock; k++) {
+            if (k > 0) {
+                probability *= keysPerBlock / k;
+            }
+            total += probability * Math.pow(1.0 - Math.pow(bitClear, k), WORDS_PER_BLOCK);
+        }
+        return total;
+    }
+
+    // Class state
+
+    private static final int BITS = 64;
+    private static final int WORD_SHIFT = 32 - 6; // Top log2(BITS) bits of an int select a bit in a word
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_SHIFT = 3; // log2(WORDS_PER_BLOCK)
+    private static final int MAX_BLOCKS = 1 << 24; // 1GB
+    private static final double MAX_KEYS_PER_BLOCK = 500; // Well past any useful error rate
+    // Odd constants from which each word's bit is derived by multiplicative hashing
+    private static final int[] SALT = {
+        0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+        0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31,
+    };
+
+    // Object state
+
+    private final int blockMask;
+    private final long[] filter;
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.util;
+
+/**
+ * A HyperLogLog sketch, for estimating the number of distinct values in a
+ * stream in constant memory. The sketch is simply its array of one-byte
+ * registers, so that it can be held as a <code>VARBINARY</code> value and
+ * updated in place by an aggregator. A hash's high <i>p</i> bits select a
+ * register, which keeps the largest position of the first one bit seen in
+ * the remaining bits. With 2<sup><i>p</i></sup> registers the standard
+ * error is about 1.04 / 2<sup><i>p</i>/2</sup>.
+ * <p/>
+ * Sketches of the same precision can be merged, giving the sketch of the
+ * union of their streams. Hashes must be well mixed 64-bit values.
+ */
+public class HyperLogLog
+{
+    public static byte[] newSketch(int precision)
+    {
+        ArgumentValidation.isBetween("precision", MIN_PRECISION, precision, MAX_PRECISION + 1);
+        return new byte[1 << precision];
+    }
+
+    public static void add(byte[] sketch, long hash)
+    {
+        int precision = precision(sketch);
+        int register = (int) (hash >>> (64 - precision));
+        // The guard bit bounds the rank if the remaining bits are all zero
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (sketch[register] < rank) {
+            sketch[register] = rank;
+        }
+    }
+
+    /** Add the values counted by <code>from</code> to <code>into</code>. */
+    public static void merge(byte[] into, byte[] from)
+    {
+        if (into.length != from.length) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precisions: " +
+                                               precision(into) + ", " + precision(from));
+        }
+        for (int i = 0; i < into.length; i++) {
+            if (into[i] < from[i]) {
+                into[i] = from[i];
+            }
+        }
+    }
+
+    public static long estimate(byte[] sketch)
+    {
+        int m = 1 << precision(sketch);
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : sketch) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if ((estimate <= 2.5 * m) && (zeros > 0)) {
+            // Small range: linear counting of the empty registers is more accurate
+            estimate = m * Math.log((double) m / zeros);
+        }
+        // 64-bit hashes do not need the large range correction
+        return Math.round(estimate);
+    }
+
+    public static int precision(byte[] sketch)
+    {
+        int precision = Integer.numberOfTrailingZeros(sketch.length);
+        if ((sketch.length != 1 << precision) || (precision < MIN_PRECISION) || (precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException("Not a HyperLogLog sketch: " + sketch.length + " bytes");
+        }
+        return precision;
+    }
+
+    // For use by this class
+
+    private static double alpha(int m)
+    {
+        return 0.7213 / (1 + 1.079 / m);
+    }
+
+    // Class state
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.util;
+
+import java.util.Arrays;
+
+/**
+ * A merging t-digest, for estimating quantiles of a stream of numbers in
+ * constant memory. Like {@link HyperLogLog}, the sketch is a byte array of
+ * fixed size, so that it can be held as a <code>VARBINARY</code> value and
+ * updated in place by an aggregator.
+ * <p/>
+ * The sketch holds a sorted list of centroids (a mean and a weight each)
+ * and a buffer of values not yet summarized. When the buffer fills, it is
+ * sorted and merged into the centroids, which are then compressed so that
+ * centroids near the tails stay small and those near the median may grow
+ * large. Quantiles therefore have small relative error at the extremes and
+ * an error of well under one percent of rank in the middle.
+ * <p/>
+ * Sketches can be merged, giving the sketch of the union of their streams.
+ */
+public class TDigest
+{
+    public static byte[] newSketch()
+    {
+        byte[] sketch = new byte[SIZE];
+        putDouble(sketch, MIN, Double.POSITIVE_INFINITY);
+        putDouble(sketch, MAX, Double.NEGATIVE_INFINITY);
+        return sketch;
+    }
+
+    public static void add(byte[] sketch, double x)
+    {
+        if (Double.isNaN(x)) {
+            return;
+        }
+        int buffered = getInt(sketch, BUFFERED);
+        putDouble(sketch, BUFFER + buffered * 8, x);
+        putInt(sketch, BUFFERED, ++buffered);
+        if (x < getDouble(sketch, MIN)) {
+            putDouble(sketch, MIN, x);
+        }
+        if (x > getDouble(sketch, MAX)) {
+            putDouble(sketch, MAX, x);
+        }
+        if (buffered == BUFFER_CAPACITY) {
+            store(sketch, new Centroids(sketch));
+        }
+    }
+
+    /** Add the values summarized by <code>from</code> to <code>into</code>. */
+    public static void merge(byte[] into, byte[] from)
+    {
+        Centroids merged = Centroids.merge(new Centroids(into), new Centroids(from));
+        merged.compress();
+        store(into, merged);
+        putDouble(into, MIN, Math.min(getDouble(into, MIN), getDouble(from, MIN)));
+        putDouble(into, MAX, Math.max(getDouble(into, MAX), getDouble(from, MAX)));
+    }
+
+    /** The total weight, which is the number of values added. */
+    public static long count(byte[] sketch)
+    {
+        return Math.round(new Centroids(sketch).totalWeight());
+    }
+
+    /** Estimate the value of the quantile <code>q</code>, which must be
+     * between 0 and 1, or <code>NaN</code> if no values were added. */
+    public static double quantile(byte[] sketch, double q)
+    {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        Centroids centroids = new Centroids(sketch);
+        int n = centroids.count;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double min = getDouble(sketch, MIN);
+        double max = getDouble(sketch, MAX);
+        double[] means = centroids.means;
+        double[] weights = centroids.weights;
+        double index = q * centroids.totalWeight();
+        // Each centroid's mean is taken to be at the middle of its weight; between
+        // the middles of neighbours, and between the extremes and the outermost
+        // middles, interpolate linearly.
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        double cumulative = weights[0] / 2;
+        for (int i = 1; i < n; i++) {
+            double step = (weights[i - 1] + weights[i]) / 2;
+            if (index < cumulative + step) {
+                return means[i - 1] + (means[i] - means[i - 1]) * (index - cumulative) / step;
+            }
+            cumulative += step;
+        }
+        double tail = weights[n - 1] / 2;
+        return (tail == 0) ? max : means[n - 1] + (max - means[n - 1]) * Math.min(1, (index - cumulative) / tail);
+    }
+
+    // For use by this class
+
+    private static void store(byte[] sketch, Centroids centroids)
+    {
+        assert centroids.count <= CENTROID_CAPACITY : centroids.count;
+        for (int i = 0; i < centroids.count; i++) {
+            putDouble(sketch, CENTROIDS + i * 16, centroids.means[i]);
+            putDouble(sketch, CENTROIDS + i * 16 + 8, centroids.weights[i]);
+        }
+        putInt(sketch, CENTROID_COUNT, centroids.count);
+        putInt(sketch, BUFFERED, 0);
+    }
+
+    private static int getInt(byte[] bytes, int position)
+    {
+        return ((bytes[position] & 0xff) << 24) |
+               ((bytes[position + 1] & 0xff) << 16) |
+               ((bytes[position + 2] & 0xff) << 8) |
+               (bytes[position + 3] & 0xff);
+    }
+
+    private static void putInt(byte[] bytes, int position, int value)
+    {
+        bytes[position] = (byte) (value >>> 24);
+        bytes[position + 1] = (byte) (value >>> 16);
+        bytes[position + 2] = (byte) (value >>> 8);
+        bytes[position + 3] = (byte) value;
+    }
+
+    private static double getDouble(byte[] bytes, int position)
+    {
+        long bits = ((long) getInt(bytes, position) << 32) | (getInt(bytes, position + 4) & 0xffffffffL);
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static void putDouble(byte[] bytes, int position, double value)
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        putInt(bytes, position, (int) (bits >>> 32));
+        putInt(bytes, position + 4, (int) bits);
+    }
+
+    // Class state
+
+    static final int COMPRESSION = 100;
+    // Compression keeps at most about COMPRESSION centroids
+    static final int CENTROID_CAPACITY = 2 * COMPRESSION;
+    static final int BUFFER_CAPACITY = 5 * COMPRESSION;
+    private static final int CENTROID_COUNT = 0;
+    private static final int BUFFERED = 4;
+    private static final int MIN = 8;
+    private static final int MAX = 16;
+    private static final int CENTROIDS = 24;
+    private static final int BUFFER = CENTROIDS + CENTROID_CAPACITY * 16;
+    public static final int SIZE = BUFFER + BUFFER_CAPACITY * 8;
+
+    // Inner classes
+
+    /** The sketch's centroids, with any buffered values merged in as
+     * centroids of weight one, sorted by mean. */
+    private static class Centroids
+    {
+        Centroids(byte[] sketch)
+        {
+            int stored = getInt(sketch, CENTROID_COUNT);
+            int buffered = getInt(sketch, BUFFERED);
+            double[] values = new double[buffered];
+            for (int i = 0; i < buffered; i++) {
+                values[i] = getDouble(sketch, BUFFER + i * 8);
+            }
+            Arrays.sort(values);
+            means = new double[stored + buffered];
+            weights = new double[stored + buffered];
+            int s = 0;
+            int b = 0;
+            while (s < stored || b < buffered) {
+                double storedMean = (s < stored) ? getDouble(sketch, CENTROIDS + s * 16) : Double.NaN;
+                if ((b == buffered) || ((s < stored) && (storedMean <= values[b]))) {
+                    means[count] = storedMean;
+                    weights[count] = getDouble(sketch, CENTROIDS + s * 16 + 8);
+                    s++;
+                }
+                else {
+                    means[count] = values[b];
+                    weights[count] = 1;
+                    b++;
+                }
+                count++;
+            }
+            if (buffered > 0) {
+                compress();
+            }
+        }
+
+        Centroids(int capacity)
+        {
+            means = new double[capacity];
+            weights = new double[capacity];
+        }
+
+        static Centroids merge(Centroids x, Centroids y)
+        {
+            Centroids merged = new Centroids(x.count + y.count);
+            int i = 0;
+            int j = 0;
+            while (i < x.count || j < y.count) {
+                if ((j == y.count) || ((i < x.count) && (x.means[i] <= y.means[j]))) {
+                    merged.add(x.means[i], x.weights[i]);
+                    i++;
+                }
+                else {
+                    merged.add(y.means[j], y.weights[j]);
+                    j++;
+                }
+            }
+            return merged;
+        }
+
+        double totalWeight()
+        {
+            double total = 0;
+            for (int i = 0; i < count; i++) {
+                total += weights[i];
+            }
+            return total;
+        }
+
+        // Combine neighbouring centroids in order, so long as a combined centroid spans
+        // no more than one unit of the scale function k(q) = COMPRESSION / (2 pi) * asin(2q - 1).
+        void compress()
+        {
+            double total = totalWeight();
+            int n = count;
+            count = 0;
+            double before = 0;
+            double limit = total * limit(0);
+            for (int i = 0; i < n; i++) {
+                double mean = means[i];
+                double weight = weights[i];
+                if ((count > 0) && (before + weights[count - 1] + weight <= limit)) {
+                    double combined = weights[count - 1] + weight;
+                    means[count - 1] += (mean - means[count - 1]) * weight / combined;
+                    weights[count - 1] = combined;
+                }
+                else {
+                    if (count > 0) {
+                        before += weights[count - 1];
+                        limit = total * limit(before / total);
+                    }
+                    add(mean, weight);
+                }
+            }
+        }
+
+        private void add(double mean, double weight)
+        {
+            means[count] = mean;
+            weights[count] = weight;
+            count++;
+        }
+
+        // The quantile one unit of k beyond q
+        private static double limit(double q)
+        {
+            double k = COMPRESSION / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+            return (k >= COMPRESSION / 4.0) ? 1 : (Math.sin(k * (2 * Math.PI) / COMPRESSION) + 1) / 2;
+        }
+
+        final double[] means;
+        final double[] weights;
+        int count;
+    }
+}
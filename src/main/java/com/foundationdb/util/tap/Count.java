@@ -50,6 +50,15 @@ class Count extends Tap
         }
     }
 
+    @Override
+    public void inOut(long count)
+    {
+        justEnabled = false;
+        checkNesting();
+        inCount += count;
+        outCount += count;
+    }
+
     public long getDuration()
     {
         return 0;
@@ -43,6 +43,12 @@ class Dispatch extends Tap
     {
         currentTap.out();
     }
+
+    @Override
+    public void inOut(long count)
+    {
+        currentTap.inOut(count);
+    }
     
     public long getDuration()
     {
@@ -39,6 +39,12 @@ class Null extends Tap
         // do nothing
     }
 
+    @Override
+    public void inOut(long count)
+    {
+        // do nothing
+    }
+
     public long getDuration()
     {
         return 0;
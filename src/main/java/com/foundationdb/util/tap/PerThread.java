@@ -54,6 +54,12 @@ abstract class PerThread extends Tap
         threadTap().out();
     }
 
+    @Override
+    public void inOut(long count)
+    {
+        threadTap().inOut(count);
+    }
+
     @Override
     public long getDuration()
     {
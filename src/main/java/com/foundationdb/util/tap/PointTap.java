@@ -25,6 +25,10 @@ public class PointTap
         internal.out();
     }
 
+    public void hit(long count) {
+        internal.inOut(count);
+    }
+
     PointTap(Tap internal) {
         this.internal = internal;
     }
@@ -342,6 +342,15 @@ public abstract class Tap
 
     abstract void out();
 
+    // Record count in / out pairs at once.
+    void inOut(long count)
+    {
+        for (long i = 0; i < count; i++) {
+            in();
+            out();
+        }
+    }
+
     abstract void appendReport(String label, StringBuilder buffer);
 
     abstract TapReport[] getReports();
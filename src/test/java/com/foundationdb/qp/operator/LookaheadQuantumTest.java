@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class LookaheadQuantumTest {
+
+    @Test
+    public void startsAtOne() {
+        LookaheadQuantum quantum = new LookaheadQuantum(16);
+        assertEquals(1, quantum.current());
+        assertEquals(16, quantum.maximum());
+    }
+
+    @Test
+    public void growsToMaximum() {
+        LookaheadQuantum quantum = new LookaheadQuantum(10);
+        quantum.consumed();
+        assertEquals(2, quantum.current());
+        quantum.consumed();
+        assertEquals(2, quantum.current());
+        quantum.consumed();
+        assertEquals(4, quantum.current());
+        for (int i = 0; i < 4; i++) {
+            quantum.consumed();
+        }
+        assertEquals(8, quantum.current());
+        for (int i = 0; i < 8; i++) {
+            quantum.consumed();
+        }
+        assertEquals(10, quantum.current());
+        for (int i = 0; i < 100; i++) {
+            quantum.consumed();
+        }
+        assertEquals(10, quantum.current());
+    }
+
+    @Test
+    public void shrinksWhenAbandoned() {
+        LookaheadQuantum quantum = new LookaheadQuantum(8);
+        for (int i = 0; i < 7; i++) {
+            quantum.consumed();
+        }
+        assertEquals(8, quantum.current());
+        quantum.abandoned();
+        assertEquals(4, quantum.current());
+        quantum.abandoned();
+        quantum.abandoned();
+        quantum.abandoned();
+        assertEquals(1, quantum.current());
+    }
+
+    @Test
+    public void abandonRestartsGrowth() {
+        LookaheadQuantum quantum = new LookaheadQuantum(8);
+        quantum.consumed();
+        quantum.consumed();
+        assertEquals(2, quantum.current());
+        quantum.abandoned();
+        assertEquals(1, quantum.current());
+        // Partial progress toward the next doubling was lost.
+        quantum.consumed();
+        assertEquals(2, quantum.current());
+        quantum.consumed();
+        assertEquals(2, quantum.current());
+    }
+
+    @Test
+    public void maximumAtLeastOne() {
+        LookaheadQuantum quantum = new LookaheadQuantum(0);
+        quantum.consumed();
+        assertEquals(1, quantum.current());
+    }
+}
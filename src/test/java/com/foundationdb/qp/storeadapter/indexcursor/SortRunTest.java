@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SortRunTest {
+
+    @Test
+    public void unsignedCompare() {
+        assertTrue(SortKeyNormalizer.compare(bytes(0x01), bytes(0xFF)) < 0);
+        assertTrue(SortKeyNormalizer.compare(bytes(0x7F), bytes(0x80)) < 0);
+        assertTrue(SortKeyNormalizer.compare(bytes(0x01), bytes(0x01, 0x00)) < 0);
+        assertEquals(0, SortKeyNormalizer.compare(bytes(0x01, 0x02), bytes(0x01, 0x02)));
+    }
+
+    @Test
+    public void empty() {
+        SortRun run = new SortRun(0);
+        run.sort();
+        run.removeDuplicates();
+        assertEquals(0, run.size());
+    }
+
+    @Test
+    public void smallRuns() {
+        for (int n = 1; n < 100; n++) {
+            checkSort(n, 4, 1);
+        }
+    }
+
+    @Test
+    public void largeRuns() {
+        checkSort(10000, 30, 256);
+        checkSort(10000, 30, 2);
+    }
+
+    @Test
+    public void longCommonPrefix() {
+        checkSort(5000, 200, 1);
+    }
+
+    @Test
+    public void removeDuplicates() {
+        SortRun run = new SortRun(1);
+        for (int i = 0; i < 1000; i++) {
+            run.add(bytes(i % 10), null);
+        }
+        run.sort();
+        run.removeDuplicates();
+        assertEquals(10, run.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(bytes(i), run.key(i));
+        }
+    }
+
+    private void checkSort(int n, int maxLength, int alphabet) {
+        final List<byte[]> keys = new ArrayList<>(n);
+        SortRun run = new SortRun(16);
+        for (int i = 0; i < n; i++) {
+            byte[] key = new byte[random.nextInt(maxLength + 1)];
+            for (int j = 0; j < key.length; j++) {
+                // Mostly shared leading bytes, to exercise deep buckets.
+                key[j] = (byte)((j < maxLength / 2 && random.nextBoolean()) ? 0x40 : random.nextInt(alphabet) * 0x61);
+            }
+            keys.add(key);
+            run.add(key, null);
+        }
+        // Arrays.sort of objects is stable, as SortRun must be.
+        Integer[] expected = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(expected, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return SortKeyNormalizer.compare(keys.get(i1), keys.get(i2));
+            }
+        });
+        run.sort();
+        assertEquals(n, run.size());
+        for (int i = 0; i < n; i++) {
+            assertSame("position " + i, keys.get(expected[i]), run.key(i));
+        }
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte)values[i];
+        }
+        return result;
+    }
+
+    private final Random random = new Random(100);
+}
@@ -53,6 +53,10 @@ import com.foundationdb.server.types.texpressions.TPreparedLiteral;
 import com.foundationdb.server.types.texpressions.TPreparedParameter;
 import com.foundationdb.sql.optimizer.rule.TypeResolver;
 
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.generateNew;
+
 public final class ExpressionGenerators {
     public static ExpressionGenerator field(final Column column, final int position)
     {
@@ -130,6 +134,18 @@ public final class ExpressionGenerators {
         };
     }
 
+    public static ExpressionGenerator scalarSubquery(final Operator innerPlan, final ExpressionGenerator expression, final RowType outer, final RowType inner, final int pos,
+                                                     final List<? extends ExpressionGenerator> memoKeys, final int memoSize) {
+        return new ExpressionGenerator() {
+            @Override
+            public TPreparedExpression getTPreparedExpression() {
+                return new ScalarSubqueryTExpression(innerPlan, expression.getTPreparedExpression(), outer, inner, pos,
+                                                     (memoKeys == null) ? null : generateNew(memoKeys),
+                                                     memoSize);
+            }
+        };
+    }
+
     public static ExpressionGenerator anySubquery(final Operator innerPlan, final ExpressionGenerator expression, final RowType outer, final RowType inner, final int pos) {
         return new ExpressionGenerator() {
             @Override
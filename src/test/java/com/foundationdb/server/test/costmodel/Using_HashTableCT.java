@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.costmodel;
+
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.TimeOperator;
+import com.foundationdb.qp.row.BindableRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.error.InvalidOperationException;
+import com.foundationdb.server.test.ExpressionGenerators;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+
+public class Using_HashTableCT extends CostModelBase
+{
+    @Test
+    public void run() throws Exception
+    {
+        createSchema();
+        populateDB();
+        // Load-only
+        run(WARMUP_RUNS, true, false);
+        run(MEASURED_RUNS, true, true);
+        // Load and probe once for each driving row.
+        run(WARMUP_RUNS, false, false);
+        run(MEASURED_RUNS, false, true);
+    }
+
+    private void createSchema() throws InvalidOperationException
+    {
+        String schemaName = schemaName();
+        String dTableName = newTableName(); // Driving table
+        String hTableName = newTableName(); // Hashed table
+        d = createTable(
+            schemaName, dTableName,
+            "x int");
+        h = createTable(
+            schemaName, hTableName,
+            "x int");
+        schema = new Schema(ais());
+        dRowType = schema.tableRowType(table(d));
+        hRowType = schema.tableRowType(table(h));
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+    }
+
+    protected void populateDB()
+    {
+        for (int x = 0; x < HASHED_ROWS; x++) {
+            dml().writeRow(session(), createNewRow(h, x, x)); // x, hidden_pk
+        }
+        for (int x = 0; x < DRIVING_ROWS; x++) {
+            dml().writeRow(session(), createNewRow(d, x, x)); // x, hidden_pk
+        }
+    }
+
+    private void run(int runs, boolean loadOnly, boolean report)
+    {
+        Operator plan = loadOnly ? planLoadOnly() : planLoadAndProbe();
+        long start = System.nanoTime();
+        for (int r = 0; r < runs; r++) {
+            Cursor cursor = cursor(plan, queryContext, queryBindings);
+            cursor.openTopLevel();
+            Row row;
+            while ((row = cursor.next()) != null) {
+                // System.out.println(row);
+            }
+        }
+        long stop = System.nanoTime();
+        long planNsec = stop - start;
+        if (loadOnly) {
+            planNsec -= timeHashInput.elapsedNsec();
+            if (report) {
+                double averageUsecPerRow = planNsec / (1000.0 * runs * HASHED_ROWS);
+                System.out.println(String.format("load only: %s usec/row", averageUsecPerRow));
+            }
+        } else {
+            planNsec -= (timeHashInput.elapsedNsec() + timeScanInput.elapsedNsec());
+            if (report) {
+                double averageUsecPerRow = planNsec / (1000.0 * runs * DRIVING_ROWS);
+                System.out.println(String.format("load and probe: %s usec/row", averageUsecPerRow));
+            }
+        }
+    }
+
+    public Operator planLoadOnly()
+    {
+        Operator hashInput = groupScan_Default(group(h));
+        timeHashInput = new TimeOperator(hashInput);
+        Operator plan =
+            using_HashTable(
+                // hashInput
+                timeHashInput,
+                // hashedRowType
+                hRowType,
+                // comparisonFields
+                generateNew(Arrays.<ExpressionGenerator>asList(ExpressionGenerators.field(hRowType, 0))),
+                // tableBindingPosition
+                1,
+                // joinedInput
+                valuesScan_Default(Collections.<BindableRow>emptyList(), dRowType),
+                // collators
+                null);
+        return plan;
+    }
+
+    public Operator planLoadAndProbe()
+    {
+        Operator hashInput = groupScan_Default(group(h));
+        timeHashInput = new TimeOperator(hashInput);
+        Operator scanInput = groupScan_Default(group(d));
+        timeScanInput = new TimeOperator(scanInput);
+        Operator plan =
+            using_HashTable(
+                // hashInput
+                timeHashInput,
+                // hashedRowType
+                hRowType,
+                // comparisonFields
+                generateNew(Arrays.<ExpressionGenerator>asList(ExpressionGenerators.field(hRowType, 0))),
+                // tableBindingPosition
+                1,
+                // joinedInput
+                map_NestedLoops(
+                    timeScanInput,
+                    hashTableLookup_Default(
+                        hRowType,
+                        generateNew(Arrays.<ExpressionGenerator>asList(ExpressionGenerators.boundField(dRowType, 0, 0))),
+                        1,
+                        null),
+                    0, false, 1),
+                // collators
+                null);
+        return plan;
+    }
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final long HASHED_ROWS = 100000;
+    private static final long DRIVING_ROWS = 200000;
+
+    private int d;
+    private int h;
+    private TableRowType dRowType;
+    private TableRowType hRowType;
+    private TimeOperator timeHashInput;
+    private TimeOperator timeScanInput;
+}
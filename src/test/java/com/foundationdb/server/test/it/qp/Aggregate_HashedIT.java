@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.aggr.MMinMaxAggregation;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.Comparison;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class Aggregate_HashedIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "s", "t",
+            "id int not null primary key",
+            "g int",
+            "cs varchar(10)", // case sensitive
+            "ci varchar(10) collate latin1_swedish_ci", // case insensitive
+            "v int");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        tRowType = schema.tableRowType(table(t));
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        group = group(t);
+        caseInsensitiveCollator = tRowType.table().getColumn("ci").getCollator();
+        db = new NewRow[]{
+            createNewRow(t, 0L, 1L, "a", "a", 10L),
+            createNewRow(t, 1L, 2L, "A", "A", 20L),
+            createNewRow(t, 2L, null, "b", "b", 5L),
+            createNewRow(t, 3L, 1L, "B", "B", null),
+            createNewRow(t, 4L, null, null, null, 7L),
+            createNewRow(t, 5L, 2L, null, null, 1L),
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInputNull()
+    {
+        aggregate_Hashed(null, tRowType, 1,
+                         countAndMax(), countAndMaxTypes(tRowType, 4), options(2), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInputsIndexMismatch()
+    {
+        aggregate_Hashed(groupScan_Default(group), tRowType, 4,
+                         countAndMax(), countAndMaxTypes(tRowType, 4), options(2), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCollatorsWrongSize()
+    {
+        Operator project = project(1, 4, 4);
+        aggregate_Hashed(project, project.rowType(), 1,
+                         countAndMax(), countAndMaxTypes(project.rowType(), 2), options(2),
+                         Collections.<AkCollator>emptyList());
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testNullKeys()
+    {
+        // NULL GROUP BY values form a single group of their own.
+        Operator project = project(1, 4, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         null);
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(outputRowType, 1L, 1L, 10L),
+            row(outputRowType, 2L, 2L, 20L),
+            row(outputRowType, null, 2L, 7L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCaseSensitiveKeys()
+    {
+        Operator project = project(2, 0, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         null);
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(outputRowType, "a", 1L, 10L),
+            row(outputRowType, "A", 1L, 20L),
+            row(outputRowType, "b", 1L, 5L),
+            row(outputRowType, "B", 1L, null),
+            row(outputRowType, null, 2L, 7L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCaseInsensitiveKeysFromType()
+    {
+        // Without explicit collators, the collation of the key's type applies.
+        Operator project = project(3, 0, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         null);
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(outputRowType, "a", 2L, 20L),
+            row(outputRowType, "b", 2L, 5L),
+            row(outputRowType, null, 2L, 7L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCaseInsensitiveKeysFromCollator()
+    {
+        // A case sensitive column grouped with a case insensitive collator.
+        Operator project = project(2, 0, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         Arrays.asList(caseInsensitiveCollator));
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(outputRowType, "a", 2L, 20L),
+            row(outputRowType, "b", 2L, 5L),
+            row(outputRowType, null, 2L, 7L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyInputWithGroupBy()
+    {
+        Operator project = project(emptyInput(), 1, 4, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         null);
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyInputWithoutGroupBy()
+    {
+        // As for Aggregate_Partial, a single row of empty aggregate values.
+        Operator project = project(emptyInput(), 4, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 0,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 1), options(2),
+                                         null);
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(outputRowType, 0L, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testRebinding()
+    {
+        // Aggregate the rows sharing each outer row's g: the groups
+        // of one binding must not carry over into the next.
+        Operator project =
+            project_DefaultTest(
+                select_HKeyOrdered(
+                    groupScan_Default(group),
+                    tRowType,
+                    compare(field(tRowType, 1) /* t.g */,
+                            Comparison.EQ,
+                            boundField(tRowType, 0, 1) /* outer t.g */, castResolver())),
+                tRowType,
+                Arrays.asList(field(tRowType, 3), field(tRowType, 4), field(tRowType, 4)));
+        RowType projectRowType = project.rowType();
+        Operator aggregate = aggregate_Hashed(project, projectRowType, 1,
+                                              countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                              null);
+        Operator plan = map_NestedLoops(groupScan_Default(group), aggregate,
+                                        0, pipelineMap(), 1);
+        RowType outputRowType = aggregate.rowType();
+        Row[] expected = new Row[]{
+            // t.id = 0, g = 1
+            row(outputRowType, "a", 1L, 10L),
+            row(outputRowType, "B", 0L, null),
+            // t.id = 1, g = 2
+            row(outputRowType, "A", 1L, 20L),
+            row(outputRowType, null, 1L, 1L),
+            // t.id = 2, g = NULL: nothing
+            // t.id = 3, g = 1
+            row(outputRowType, "a", 1L, 10L),
+            row(outputRowType, "B", 0L, null),
+            // t.id = 4, g = NULL: nothing
+            // t.id = 5, g = 2
+            row(outputRowType, "A", 1L, 20L),
+            row(outputRowType, null, 1L, 1L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator project = project(1, 4, 4);
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         countAndMax(), countAndMaxTypes(projectRowType, 2), options(2),
+                                         null);
+        final RowType outputRowType = plan.rowType();
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(outputRowType, 1L, 1L, 10L),
+                    row(outputRowType, 2L, 2L, 20L),
+                    row(outputRowType, null, 2L, 7L),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    // For use by this class
+
+    private Operator project(int... fields)
+    {
+        return project(groupScan_Default(group), fields);
+    }
+
+    private Operator project(Operator input, int... fields)
+    {
+        ExpressionGenerator[] expressions = new ExpressionGenerator[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            expressions[i] = field(tRowType, fields[i]);
+        }
+        return project_DefaultTest(input, tRowType, Arrays.asList(expressions));
+    }
+
+    private Operator emptyInput()
+    {
+        return select_HKeyOrdered(
+            groupScan_Default(group),
+            tRowType,
+            compare(field(tRowType, 0) /* t.id */, Comparison.LT, literal(0L), castResolver()));
+    }
+
+    /** COUNT and MAX of the (non-null) values. */
+    private static List<TAggregator> countAndMax()
+    {
+        return Arrays.asList(MCount.INSTANCES[3], MMinMaxAggregation.MAX);
+    }
+
+    /** Types of {@link #countAndMax} whose MAX input is at <code>maxIndex</code>. */
+    private static List<TInstance> countAndMaxTypes(RowType rowType, int maxIndex)
+    {
+        return Arrays.asList(MNumeric.BIGINT.instance(false), rowType.typeAt(maxIndex));
+    }
+
+    private static List<Object> options(int naggregators)
+    {
+        return Collections.<Object>nCopies(naggregators, null);
+    }
+
+    private int t;
+    private TableRowType tRowType;
+    private Group group;
+    private AkCollator caseInsensitiveCollator;
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.texpressions.Comparison;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class Distinct_HashedIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "northbridge"),
+            createNewRow(order, 100L, 1L, "ori"),
+            createNewRow(order, 101L, 1L, "david"),
+            createNewRow(customer, 2L, "foundation"),
+            createNewRow(order, 200L, 2L, "ori"),
+            createNewRow(order, 201L, 2L, "tom"),
+            createNewRow(customer, 3L, "matrix"),
+            createNewRow(order, 300L, 3L, "david"),
+            createNewRow(order, 301L, 3L, null),
+            createNewRow(order, 302L, 3L, null),
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInputNull()
+    {
+        distinct_Hashed(null, orderRowType);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistinctTypeNull()
+    {
+        distinct_Hashed(orders(), null);
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testSingleColumn()
+    {
+        // Unsorted input: rows come out in the order they are first seen.
+        Operator project = project_DefaultTest(orders(), orderRowType,
+                                               Arrays.<ExpressionGenerator>asList(field(orderRowType, 2)));
+        RowType projectRowType = project.rowType();
+        Operator plan = distinct_Hashed(project, projectRowType);
+        Row[] expected = new Row[]{
+            row(projectRowType, "ori"),
+            row(projectRowType, "david"),
+            row(projectRowType, "tom"),
+            row(projectRowType, new Object[]{null}),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testMultipleColumns()
+    {
+        Operator project = project_DefaultTest(orders(), orderRowType,
+                                               Arrays.<ExpressionGenerator>asList(field(orderRowType, 1),
+                                                                                  field(orderRowType, 2)));
+        RowType projectRowType = project.rowType();
+        Operator plan = distinct_Hashed(project, projectRowType);
+        Row[] expected = new Row[]{
+            row(projectRowType, 1L, "ori"),
+            row(projectRowType, 1L, "david"),
+            row(projectRowType, 2L, "ori"),
+            row(projectRowType, 2L, "tom"),
+            row(projectRowType, 3L, "david"),
+            row(projectRowType, 3L, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyInput()
+    {
+        Operator input = select_HKeyOrdered(
+            orders(),
+            orderRowType,
+            compare(field(orderRowType, 0) /* order.oid */, Comparison.LT, literal(0L), castResolver()));
+        Operator plan = distinct_Hashed(input, orderRowType);
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testOtherRowTypesPassThrough()
+    {
+        Operator plan = distinct_Hashed(groupScan_Default(coi), customerRowType);
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(orderRowType, 100L, 1L, "ori"),
+            row(orderRowType, 101L, 1L, "david"),
+            row(customerRowType, 2L, "foundation"),
+            row(orderRowType, 200L, 2L, "ori"),
+            row(orderRowType, 201L, 2L, "tom"),
+            row(customerRowType, 3L, "matrix"),
+            row(orderRowType, 300L, 3L, "david"),
+            row(orderRowType, 301L, 3L, null),
+            row(orderRowType, 302L, 3L, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator project = project_DefaultTest(orders(), orderRowType,
+                                               Arrays.<ExpressionGenerator>asList(field(orderRowType, 2)));
+        final RowType projectRowType = project.rowType();
+        Operator plan = distinct_Hashed(project, projectRowType);
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(projectRowType, "ori"),
+                    row(projectRowType, "david"),
+                    row(projectRowType, "tom"),
+                    row(projectRowType, new Object[]{null}),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator orders()
+    {
+        return filter_Default(
+            groupScan_Default(coi),
+            Collections.singleton(orderRowType));
+    }
+}
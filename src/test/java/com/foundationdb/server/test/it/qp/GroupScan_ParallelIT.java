@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.GroupCursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.SimpleQueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.store.statistics.HistogramEntry;
+import com.foundationdb.server.store.statistics.IndexStatistics;
+import com.foundationdb.server.store.statistics.IndexStatisticsService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class GroupScan_ParallelIT extends OperatorITBase
+{
+    // Workers read in transactions of their own, so the rows must be committed first.
+    @Override
+    protected boolean doAutoTransaction()
+    {
+        return false;
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        final List<NewRow> rows = new ArrayList<>();
+        for (long cid = 1; cid <= 40; cid++) {
+            rows.add(createNewRow(customer, cid, "customer " + cid));
+            for (long oid = cid * 10; oid < cid * 10 + 2; oid++) {
+                rows.add(createNewRow(order, oid, cid, "salesman " + oid));
+                for (long iid = oid * 10; iid < oid * 10 + 2; iid++) {
+                    rows.add(createNewRow(item, iid, oid));
+                }
+            }
+            rows.add(createNewRow(address, cid * 100, cid, "address " + cid));
+        }
+        transactionallyUnchecked(new Runnable() {
+            @Override
+            public void run() {
+                use(rows.toArray(new NewRow[rows.size()]));
+            }
+        });
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullGroup()
+    {
+        groupScan_Parallel(null, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroThreads()
+    {
+        groupScan_Parallel(coi, 0);
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testWithoutStatistics()
+    {
+        compareRows(scan(groupScan_Default(coi)), scan(groupScan_Parallel(coi, 4)));
+    }
+
+    @Test
+    public void testScan()
+    {
+        analyze();
+        compareRows(scan(groupScan_Default(coi)), scan(groupScan_Parallel(coi, 4)));
+    }
+
+    @Test
+    public void testFewerThreadsThanRanges()
+    {
+        analyze();
+        compareRows(scan(groupScan_Default(coi)), scan(groupScan_Parallel(coi, 3)));
+    }
+
+    @Test
+    public void testExplicitTransaction()
+    {
+        analyze();
+        QueryContext explicitContext = new SimpleQueryContext(adapter, serviceManager()) {
+            @Override
+            public boolean isTransactionExplicit() {
+                return true;
+            }
+        };
+        txnService().beginTransaction(session());
+        try {
+            writeRows(createNewRow(customer, 41L, "customer 41"));
+            List<Row> expected = collect(groupScan_Default(coi), queryContext);
+            // Workers cannot see the uncommitted row, so the scan stays on this thread.
+            compareRows(expected, collect(groupScan_Parallel(coi, 4), explicitContext));
+            assertEquals(expected.size() - 1, collect(groupScan_Parallel(coi, 4), queryContext).size());
+        }
+        finally {
+            txnService().rollbackTransactionIfOpen(session());
+        }
+    }
+
+    @Test
+    public void testCloseEarly()
+    {
+        analyze();
+        final Operator plan = groupScan_Parallel(coi, 4);
+        transactionallyUnchecked(new Runnable() {
+            @Override
+            public void run() {
+                Cursor cursor = cursor(plan, queryContext, queryBindings);
+                cursor.openTopLevel();
+                for (int i = 0; i < 3; i++) {
+                    assertNotNull(cursor.next());
+                }
+                assertTrue(cursor.isActive());
+                cursor.closeTopLevel();
+                assertTrue(cursor.isIdle());
+            }
+        });
+        compareRows(scan(groupScan_Default(coi)), scan(plan));
+    }
+
+    @Test
+    public void testRepeated()
+    {
+        analyze();
+        final Operator plan = groupScan_Parallel(coi, 2);
+        List<Row> expected = scan(groupScan_Default(coi));
+        List<Row> actual = transactionallyUnchecked(new Callable<List<Row>>() {
+            @Override
+            public List<Row> call() {
+                List<Row> rows = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    rows = collect(plan);
+                }
+                return rows;
+            }
+        });
+        compareRows(expected, actual);
+    }
+
+    @Test
+    public void testSplitRanges()
+    {
+        final List<byte[]> splitKeys = new ArrayList<>();
+        for (HistogramEntry entry : analyze().getHistogram(0, 1).getEntries()) {
+            splitKeys.add(entry.getKeyBytes());
+        }
+        assertTrue(splitKeys.size() > 1);
+        final List<Row> expected = scan(groupScan_Default(coi));
+        transactionallyUnchecked(new Runnable() {
+            @Override
+            public void run() {
+                List<GroupCursor> cursors = adapter.newGroupCursors(coi, splitKeys);
+                assertTrue(cursors.size() > 1);
+                assertEquals(cursors.size(), adapter.countGroupRanges(coi, splitKeys));
+                List<Row> all = new ArrayList<>();
+                List<Row> each = new ArrayList<>();
+                for (int range = 0; range < cursors.size(); range++) {
+                    collect(cursors.get(range), all);
+                    collect(adapter.newGroupCursor(coi, splitKeys, range), each);
+                }
+                compareRows(expected, all);
+                compareRows(expected, each);
+            }
+        });
+    }
+
+    // For use by this class
+
+    private IndexStatistics analyze()
+    {
+        final Index index = table(customer).getPrimaryKey().getIndex();
+        final IndexStatisticsService statisticsService = serviceManager().getServiceByClass(IndexStatisticsService.class);
+        transactionallyUnchecked(new Runnable() {
+            @Override
+            public void run() {
+                statisticsService.updateIndexStatistics(session(), Collections.singleton(index));
+            }
+        });
+        return transactionallyUnchecked(new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                return statisticsService.getIndexStatistics(session(), index);
+            }
+        });
+    }
+
+    private List<Row> scan(final Operator plan)
+    {
+        return transactionallyUnchecked(new Callable<List<Row>>() {
+            @Override
+            public List<Row> call() {
+                return collect(plan);
+            }
+        });
+    }
+
+    private List<Row> collect(Operator plan)
+    {
+        return collect(plan, queryContext);
+    }
+
+    private List<Row> collect(Operator plan, QueryContext context)
+    {
+        List<Row> rows = new ArrayList<>();
+        Cursor cursor = cursor(plan, context, context.createBindings());
+        cursor.openTopLevel();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            rows.add(row);
+        }
+        cursor.closeTopLevel();
+        return rows;
+    }
+
+    private static void collect(GroupCursor cursor, List<Row> rows)
+    {
+        cursor.open();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            rows.add(row);
+        }
+        cursor.close();
+        cursor.destroy();
+    }
+}
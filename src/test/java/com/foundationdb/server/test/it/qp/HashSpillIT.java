@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashSpillPartitions;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.util.tap.Tap;
+import com.foundationdb.util.tap.TapReport;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+import static org.junit.Assert.assertTrue;
+
+/** Hash operators run with so small a memory budget that everything spills. */
+public class HashSpillIT extends OperatorITBase
+{
+    @Override
+    protected Map<String, String> startupConfigProperties()
+    {
+        return Collections.singletonMap(HashSpillPartitions.MEMORY_PROPERTY, "1");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        List<NewRow> db = new ArrayList<>();
+        for (long cid = 1; cid <= NCUSTOMERS; cid++) {
+            db.add(createNewRow(customer, cid, "customer " + cid));
+            if (cid < NCUSTOMERS) { // last has no orders
+                db.add(createNewRow(order, cid * 100, cid, "ori"));
+                db.add(createNewRow(order, cid * 100 + 1, cid, "david"));
+            }
+        }
+        db.add(createNewRow(order, 99900L, 999L, "jack")); // no customer
+        db.add(createNewRow(order, 99901L, null, "tom")); // null key
+        use(db.toArray(new NewRow[db.size()]));
+    }
+
+    @Test
+    public void testHashJoinPartitioned()
+    {
+        Operator project = lookupProject();
+        Operator plan = joinPlan(
+            hashTablePartition_Default(customers(), customerRowType, customerCidField(), 1, null),
+            project);
+        startMonitoringSpills();
+        List<Row> actual = scan(plan);
+        List<Row> expected = expectedJoin(project.rowType());
+        sortByValues(expected);
+        sortByValues(actual);
+        compareRows(expected, actual);
+        long written = spillCount("hash spill: partitions");
+        assertTrue("spilled", written > 0);
+        // Grouping probes by partition reads each spill file just once.
+        assertTrue("read each spilled partition once", spillCount("hash spill: partitions read") <= written);
+    }
+
+    @Test
+    public void testHashJoinDividesPartitions()
+    {
+        // Each spilled partition is itself over the budget, so it is
+        // hashed again into pieces until they hold just one key.
+        Operator project = lookupProject();
+        Operator plan = joinPlan(
+            hashTablePartition_Default(customers(), customerRowType, customerCidField(), 1, null),
+            project);
+        startMonitoringSpills();
+        List<Row> actual = scan(plan);
+        List<Row> expected = expectedJoin(project.rowType());
+        sortByValues(expected);
+        sortByValues(actual);
+        compareRows(expected, actual);
+        assertTrue("divided", spillCount("hash spill: partitions divided") > 0);
+    }
+
+    @Test
+    public void testHashJoinInProbeOrder()
+    {
+        // Without partitioning the probes, a spilled partition is read
+        // back whenever it is probed, but output keeps the outer order.
+        Operator project = lookupProject();
+        Operator plan = joinPlan(customers(), project);
+        startMonitoringSpills();
+        List<Row> expected = expectedJoin(project.rowType());
+        compareRows(expected, scan(plan));
+        assertTrue("spilled", spillCount("hash spill: partitions") > 0);
+    }
+
+    @Test
+    public void testAggregate()
+    {
+        Operator project = project_DefaultTest(orders(), orderRowType,
+                                               Arrays.asList(field(orderRowType, 1) /* order.cid */,
+                                                             field(orderRowType, 0) /* order.oid */));
+        RowType projectRowType = project.rowType();
+        Operator plan = aggregate_Hashed(project, projectRowType, 1,
+                                         Arrays.<TAggregator>asList(MCount.INSTANCES[3]),
+                                         Arrays.<TInstance>asList(MNumeric.BIGINT.instance(false)),
+                                         Collections.<Object>singletonList(null),
+                                         null);
+        RowType outputRowType = plan.rowType();
+        startMonitoringSpills();
+        List<Row> actual = scan(plan);
+        List<Row> expected = new ArrayList<>();
+        for (long cid = 1; cid < NCUSTOMERS; cid++) {
+            expected.add(row(outputRowType, cid, 2L));
+        }
+        expected.add(row(outputRowType, 999L, 1L));
+        expected.add(row(outputRowType, null, 1L));
+        sortByValues(expected);
+        sortByValues(actual);
+        compareRows(expected, actual);
+        assertTrue("spilled", spillCount("hash spill: partitions") > 0);
+    }
+
+    // For use by this class
+
+    private Operator joinPlan(Operator outer, Operator inner)
+    {
+        // Load orders keyed by cid, then look up each customer's orders.
+        return using_HashTable(
+            orders(),
+            orderRowType,
+            generateNew(Arrays.<ExpressionGenerator>asList(field(orderRowType, 1) /* order.cid */)),
+            1,
+            map_NestedLoops(outer, inner, 0, pipelineMap(), 1),
+            null);
+    }
+
+    private Operator lookupProject()
+    {
+        return project_DefaultTest(
+            hashTableLookup_Default(orderRowType,
+                                    generateNew(Arrays.<ExpressionGenerator>asList(boundField(customerRowType, 0, 0))),
+                                    1, null),
+            orderRowType,
+            Arrays.asList(boundField(customerRowType, 0, 0) /* customer.cid */, field(orderRowType, 0) /* order.oid */));
+    }
+
+    private List<Row> expectedJoin(RowType projectRowType)
+    {
+        List<Row> expected = new ArrayList<>();
+        for (long cid = 1; cid < NCUSTOMERS; cid++) {
+            expected.add(row(projectRowType, cid, cid * 100));
+            expected.add(row(projectRowType, cid, cid * 100 + 1));
+        }
+        return expected;
+    }
+
+    private List<TPreparedExpression> customerCidField()
+    {
+        return generateNew(Arrays.<ExpressionGenerator>asList(field(customerRowType, 0) /* customer.cid */));
+    }
+
+    private Operator customers()
+    {
+        return filter_Default(groupScan_Default(coi), Collections.singleton(customerRowType));
+    }
+
+    private Operator orders()
+    {
+        return filter_Default(groupScan_Default(coi), Collections.singleton(orderRowType));
+    }
+
+    private List<Row> scan(Operator plan)
+    {
+        List<Row> rows = new ArrayList<>();
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            rows.add(ImmutableRow.ifTransient(row));
+        }
+        cursor.closeTopLevel();
+        return rows;
+    }
+
+    private static void startMonitoringSpills()
+    {
+        Tap.setEnabled(SPILL_TAP_PATTERN, true);
+        Tap.reset(SPILL_TAP_PATTERN);
+    }
+
+    private static long spillCount(String tapName)
+    {
+        for (TapReport report : Tap.getReport(SPILL_TAP_PATTERN)) {
+            if (report.getName().equals(tapName)) {
+                return report.getInCount();
+            }
+        }
+        return 0;
+    }
+
+    private static void sortByValues(List<Row> rows)
+    {
+        Collections.sort(rows, new Comparator<Row>() {
+            @Override
+            public int compare(Row x, Row y) {
+                return valuesString(x).compareTo(valuesString(y));
+            }
+        });
+    }
+
+    private static String valuesString(Row row)
+    {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < row.rowType().nFields(); i++) {
+            str.append(ValueSources.toStringSimple(row.value(i))).append('|');
+        }
+        return str.toString();
+    }
+
+    private static final int NCUSTOMERS = 40;
+    private static final String SPILL_TAP_PATTERN = "hash spill.*";
+}
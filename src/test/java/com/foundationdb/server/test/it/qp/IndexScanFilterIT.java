@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import org.junit.Test;
+
+import static com.foundationdb.qp.operator.API.cursor;
+import static com.foundationdb.qp.operator.API.indexScan_Default;
+import static com.foundationdb.server.test.ExpressionGenerators.compare;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static com.foundationdb.server.test.ExpressionGenerators.literal;
+
+// Index scans whose key range carries a residual predicate and / or a limit.
+
+public class IndexScanFilterIT extends IndexScanITBase
+{
+    // IndexKeyRange argument checking
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit()
+    {
+        IndexKeyRange.unbounded(idxRowType).filtered(null, -2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedOrdering()
+    {
+        API.Ordering ordering = API.ordering();
+        ordering.append(field(idxRowType, 0), true);
+        ordering.append(field(idxRowType, 1), false);
+        test(IndexKeyRange.unbounded(idxRowType).filtered(bEquals(20), -1), ordering);
+    }
+
+    // Predicate only
+
+    @Test
+    public void testPredicate()
+    {
+        IndexKeyRange keyRange = IndexKeyRange.unbounded(idxRowType).filtered(bEquals(20), -1);
+        test(keyRange, ordering(ASC),
+             1006, 1001, 1002, 1005);
+        test(keyRange, ordering(DESC),
+             1005, 1002, 1001, 1006);
+    }
+
+    @Test
+    public void testPredicateWithinRange()
+    {
+        IndexKeyRange keyRange = aRange(1, 3).filtered(bEquals(20), -1);
+        test(keyRange, ordering(ASC),
+             1001, 1002, 1005);
+        test(keyRange, ordering(DESC),
+             1005, 1002, 1001);
+    }
+
+    @Test
+    public void testPredicateRejectsAll()
+    {
+        IndexKeyRange keyRange = IndexKeyRange.unbounded(idxRowType).filtered(bEquals(99), -1);
+        test(keyRange, ordering(ASC));
+        test(keyRange, ordering(DESC));
+    }
+
+    // Limit only
+
+    @Test
+    public void testLimit()
+    {
+        IndexKeyRange keyRange = IndexKeyRange.unbounded(idxRowType).filtered(null, 3);
+        test(keyRange, ordering(ASC),
+             1006, 1000, 1001);
+        test(keyRange, ordering(DESC),
+             1007, 1005, 1004);
+    }
+
+    @Test
+    public void testLimitZero()
+    {
+        test(IndexKeyRange.unbounded(idxRowType).filtered(null, 0), ordering(ASC));
+    }
+
+    @Test
+    public void testLimitBeyondRange()
+    {
+        test(aRange(1, 1).filtered(null, 10), ordering(ASC),
+             1000, 1001, 1002);
+    }
+
+    // Both
+
+    @Test
+    public void testPredicateAndLimit()
+    {
+        IndexKeyRange keyRange = IndexKeyRange.unbounded(idxRowType).filtered(bEquals(20), 2);
+        test(keyRange, ordering(ASC),
+             1006, 1001);
+        test(keyRange, ordering(DESC),
+             1005, 1002);
+    }
+
+    @Test
+    public void testSkipScan()
+    {
+        IndexKeyRange keyRange =
+            IndexKeyRange.skipScan(idxRowType, 1,
+                                   new IndexBound(row(idxRowType, null, 20), new SetColumnSelector(0, 1)), true,
+                                   new IndexBound(row(idxRowType, null, null), new SetColumnSelector(0, 1)), false)
+            .filtered(compare(field(idxRowType, 2), Comparison.GT, literal(200), castResolver())
+                      .getTPreparedExpression(),
+                      2);
+        test(keyRange, ordering(ASC),
+             1006, 1002);
+    }
+
+    // The count starts again when the cursor is reopened
+
+    @Test
+    public void testReopen()
+    {
+        Operator plan = indexScan_Default(idxRowType,
+                                          IndexKeyRange.unbounded(idxRowType).filtered(bEquals(20), 2),
+                                          ordering(ASC));
+        Row[] expected = rows(1006, 1001);
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    // For use by this class
+
+    private IndexKeyRange aRange(int lo, int hi)
+    {
+        return IndexKeyRange.bounded(idxRowType,
+                                     new IndexBound(row(idxRowType, lo), new SetColumnSelector(0)), true,
+                                     new IndexBound(row(idxRowType, hi), new SetColumnSelector(0)), true);
+    }
+
+    private TPreparedExpression bEquals(int b)
+    {
+        ExpressionGenerator predicate = compare(field(idxRowType, 1), Comparison.EQ, literal(b), castResolver());
+        return predicate.getTPreparedExpression();
+    }
+}
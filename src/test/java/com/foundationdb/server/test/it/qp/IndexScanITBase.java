@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.api.dml.scan.NewRow;
+
+import static com.foundationdb.qp.operator.API.cursor;
+import static com.foundationdb.qp.operator.API.indexScan_Default;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.fail;
+
+// Scans of an index on (a, b, c) with a few repeated values in each column.
+
+public abstract class IndexScanITBase extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "schema", "t",
+            "id int not null primary key",
+            "a int",
+            "b int",
+            "c int");
+        createIndex("schema", "t", "a", "a", "b", "c", "id");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        idxRowType = indexType(t, "a", "b", "c", "id");
+        db = new NewRow[]{
+            createNewRow(t, 1000L, 1L, 10L, 100L),
+            createNewRow(t, 1001L, 1L, 20L, 200L),
+            createNewRow(t, 1002L, 1L, 20L, 201L),
+            createNewRow(t, 1003L, 2L, 30L, 300L),
+            createNewRow(t, 1004L, 3L, 10L, 101L),
+            createNewRow(t, 1005L, 3L, 20L, 202L),
+            createNewRow(t, 1006L, null, 20L, 203L),
+            createNewRow(t, 1007L, 4L, 5L, 50L),
+        };
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        use(db);
+    }
+
+    // For use by subclasses
+
+    protected void test(IndexKeyRange keyRange, API.Ordering ordering, int ... expectedIds)
+    {
+        Operator plan = indexScan_Default(idxRowType, keyRange, ordering);
+        compareRows(rows(expectedIds), cursor(plan, queryContext, queryBindings));
+    }
+
+    protected API.Ordering ordering(boolean direction)
+    {
+        API.Ordering ordering = API.ordering();
+        ordering.append(field(idxRowType, 0), direction);
+        ordering.append(field(idxRowType, 1), direction);
+        ordering.append(field(idxRowType, 2), direction);
+        return ordering;
+    }
+
+    protected Row[] rows(int ... ids)
+    {
+        Row[] rows = new Row[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            rows[i] = dbRow(ids[i]);
+        }
+        return rows;
+    }
+
+    private Row dbRow(long id)
+    {
+        for (NewRow newRow : db) {
+            if (newRow.get(0).equals(id)) {
+                return row(idxRowType, newRow.get(1), newRow.get(2), newRow.get(3), newRow.get(0));
+            }
+        }
+        fail();
+        return null;
+    }
+
+    protected static final boolean ASC = true;
+    protected static final boolean DESC = false;
+
+    private int t;
+    protected IndexRowType idxRowType;
+}
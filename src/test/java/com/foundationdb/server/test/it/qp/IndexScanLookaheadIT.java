@@ -25,6 +25,8 @@ import com.foundationdb.qp.operator.Cursor;
 import com.foundationdb.qp.operator.ExpressionGenerator;
 import com.foundationdb.qp.operator.IndexScanSelector;
 import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryBindingsCursor;
 import com.foundationdb.qp.row.BindableRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.IndexRowType;
@@ -33,11 +35,13 @@ import com.foundationdb.server.api.dml.SetColumnSelector;
 import com.foundationdb.server.api.dml.scan.NewRow;
 import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
 import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.texpressions.Comparison;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.server.types.texpressions.TPreparedLiteral;
 
 import static com.foundationdb.qp.operator.API.*;
 import static com.foundationdb.server.test.ExpressionGenerators.*;
+import static org.junit.Assert.*;
 
 import org.junit.Test;
 
@@ -57,6 +61,10 @@ public class IndexScanLookaheadIT extends OperatorITBase
         return 4;
     }
 
+    protected boolean batchProbes() {
+        return false;
+    }
+
     @Override
     protected void setupPostCreateSchema() {
         super.setupPostCreateSchema();
@@ -92,7 +100,7 @@ public class IndexScanLookaheadIT extends OperatorITBase
     @Test
     public void testCursor()
     {
-        Operator indexScan = indexScan_Default(itemIidIndexRowType, iidKeyRange(100, false, 125, false), ordering(itemIidIndexRowType), IndexScanSelector.leftJoinAfter(itemIidIndexRowType.index(), itemRowType.table()), lookaheadQuantum());
+        Operator indexScan = indexScan_Default(itemIidIndexRowType, iidKeyRange(100, false, 125, false), ordering(itemIidIndexRowType), IndexScanSelector.leftJoinAfter(itemIidIndexRowType.index(), itemRowType.table()), lookaheadQuantum(), batchProbes());
         CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
         {
             @Override
@@ -113,7 +121,7 @@ public class IndexScanLookaheadIT extends OperatorITBase
     @Test
     public void testSingle()
     {
-        Operator indexScan = indexScan_Default(itemIidIndexRowType, iidKeyRange(212, true, 212, true), ordering(itemIidIndexRowType), IndexScanSelector.leftJoinAfter(itemIidIndexRowType.index(), itemRowType.table()), lookaheadQuantum());
+        Operator indexScan = indexScan_Default(itemIidIndexRowType, iidKeyRange(212, true, 212, true), ordering(itemIidIndexRowType), IndexScanSelector.leftJoinAfter(itemIidIndexRowType.index(), itemRowType.table()), lookaheadQuantum(), batchProbes());
         Cursor cursor = cursor(indexScan, queryContext, queryBindings);
         String[] expected = new String[]{hkey(2, 21, 212)};
         compareRenderedHKeys(expected, cursor);
@@ -136,13 +144,69 @@ public class IndexScanLookaheadIT extends OperatorITBase
                                         intRow(cidValueRowType, 4),
                                         intRow(cidValueRowType, 6)),
                     cidValueRowType),
-                indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum()),
+                indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum(), batchProbes()),
                 1, pipelineMap(), 1);
         Cursor cursor = cursor(plan, queryContext, queryBindings);
         String[] expected = new String[]{hkey(2, 21),hkey(2, 22),hkey(2, 23),hkey(2, 24),hkey(2, 25),hkey(2, 26),hkey(2, 27),hkey(2, 28),hkey(2, 29),hkey(4, 41)};
         compareRenderedHKeys(expected, cursor);
     }
 
+    @Test
+    public void testMapOutOfOrder()
+    {
+        RowType cidValueRowType = schema.newValuesType(MNumeric.INT.instance(true));
+        List<ExpressionGenerator> cidExprs = Arrays.asList(boundField(cidValueRowType, 1, 0));
+        IndexBound cidBound =
+            new IndexBound(
+                new RowBasedUnboundExpressions(orderCidIndexRowType, cidExprs, true),
+                new SetColumnSelector(0));
+        IndexKeyRange cidRange = IndexKeyRange.bounded(orderCidIndexRowType, cidBound, true, cidBound, true);
+        Operator plan =
+            map_NestedLoops(
+                valuesScan_Default(
+                    bindableExpressions(intRow(cidValueRowType, 4),
+                                        intRow(cidValueRowType, 6),
+                                        intRow(cidValueRowType, 1),
+                                        intRow(cidValueRowType, 4),
+                                        intRow(cidValueRowType, 2)),
+                    cidValueRowType),
+                indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum(), batchProbes()),
+                1, pipelineMap(), 1);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        String[] expected = new String[]{hkey(4, 41),hkey(1, 11),hkey(1, 12),hkey(4, 41),hkey(2, 21),hkey(2, 22),hkey(2, 23),hkey(2, 24),hkey(2, 25),hkey(2, 26),hkey(2, 27),hkey(2, 28),hkey(2, 29)};
+        compareRenderedHKeys(expected, cursor);
+    }
+
+    @Test
+    public void testMapFiltered()
+    {
+        // The predicate depends on the outer row, not just the key range.
+        RowType outerRowType = schema.newValuesType(MNumeric.INT.instance(true), MNumeric.INT.instance(true));
+        List<ExpressionGenerator> cidExprs = Arrays.asList(boundField(outerRowType, 1, 0));
+        IndexBound cidBound =
+            new IndexBound(
+                new RowBasedUnboundExpressions(orderCidIndexRowType, cidExprs, true),
+                new SetColumnSelector(0));
+        TPreparedExpression otherOrder =
+            compare(field(orderCidIndexRowType, 1), Comparison.NE, boundField(outerRowType, 1, 1), castResolver())
+            .getTPreparedExpression();
+        IndexKeyRange cidRange = IndexKeyRange.bounded(orderCidIndexRowType, cidBound, true, cidBound, true)
+            .filtered(otherOrder, -1);
+        Operator plan =
+            map_NestedLoops(
+                valuesScan_Default(
+                    bindableExpressions(intRow(outerRowType, 2, 21),
+                                        intRow(outerRowType, 2, 22),
+                                        intRow(outerRowType, 4, 41)),
+                    outerRowType),
+                indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum(), batchProbes()),
+                1, pipelineMap(), 1);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        String[] expected = new String[]{hkey(2, 22),hkey(2, 23),hkey(2, 24),hkey(2, 25),hkey(2, 26),hkey(2, 27),hkey(2, 28),hkey(2, 29),
+                                         hkey(2, 21),hkey(2, 23),hkey(2, 24),hkey(2, 25),hkey(2, 26),hkey(2, 27),hkey(2, 28),hkey(2, 29)};
+        compareRenderedHKeys(expected, cursor);
+    }
+
     @Test
     public void testNested()
     {
@@ -167,8 +231,8 @@ public class IndexScanLookaheadIT extends OperatorITBase
                                         intRow(cidValueRowType, 6)),
                     cidValueRowType),
                 map_NestedLoops(
-                    indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum()),
-                    indexScan_Default(itemOidIndexRowType, oidRange, ordering(itemOidIndexRowType), IndexScanSelector.leftJoinAfter(itemOidIndexRowType.index(), itemRowType.table()), lookaheadQuantum()),
+                    indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum(), batchProbes()),
+                    indexScan_Default(itemOidIndexRowType, oidRange, ordering(itemOidIndexRowType), IndexScanSelector.leftJoinAfter(itemOidIndexRowType.index(), itemRowType.table()), lookaheadQuantum(), batchProbes()),
                     2, pipelineMap(), 2),
                 1, pipelineMap(), 1);
         Cursor cursor = cursor(plan, queryContext, queryBindings);
@@ -176,6 +240,45 @@ public class IndexScanLookaheadIT extends OperatorITBase
         compareRenderedHKeys(expected, cursor);
     }
 
+    @Test
+    public void testMapJump()
+    {
+        RowType cidValueRowType = schema.newValuesType(MNumeric.INT.instance(true));
+        List<ExpressionGenerator> cidExprs = Arrays.asList(boundField(cidValueRowType, 1, 0));
+        IndexBound cidBound =
+            new IndexBound(
+                new RowBasedUnboundExpressions(orderCidIndexRowType, cidExprs, true),
+                new SetColumnSelector(0));
+        IndexKeyRange cidRange = IndexKeyRange.bounded(orderCidIndexRowType, cidBound, true, cidBound, true);
+        Operator indexScan = indexScan_Default(orderCidIndexRowType, cidRange, ordering(orderCidIndexRowType), IndexScanSelector.leftJoinAfter(orderCidIndexRowType.index(), orderRowType.table()), lookaheadQuantum(), batchProbes());
+        List<QueryBindings> bindingsList = new ArrayList<>();
+        for (int cid : new int[]{2, 4}) {
+            QueryBindings bindings = queryBindings.createBindings();
+            bindings.setRow(1, intRow(cidValueRowType, cid));
+            bindingsList.add(bindings);
+        }
+        Cursor cursor = cursor(indexScan, queryContext, new ListBindingsCursor(bindingsList));
+        cursor.openBindings();
+        assertSame(bindingsList.get(0), cursor.nextBindings());
+        cursor.open();
+        assertEquals(hkey(2, 21), cursor.next().hKey().toString());
+        cursor.jump(row(orderCidIndexRowType, 2L, 27L), new SetColumnSelector(0, 1));
+        List<String> actual = new ArrayList<>();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            actual.add(row.hKey().toString());
+        }
+        assertEquals(Arrays.asList(hkey(2, 27), hkey(2, 28), hkey(2, 29)), actual);
+        cursor.close();
+        assertSame(bindingsList.get(1), cursor.nextBindings());
+        cursor.open();
+        assertEquals(hkey(4, 41), cursor.next().hKey().toString());
+        assertNull(cursor.next());
+        cursor.close();
+        assertNull(cursor.nextBindings());
+        cursor.closeBindings();
+    }
+
     // For use by this class
 
     private IndexKeyRange iidKeyRange(int lo, boolean loInclusive, int hi, boolean hiInclusive)
@@ -188,9 +291,12 @@ public class IndexScanLookaheadIT extends OperatorITBase
         return new IndexBound(row(itemIidIndexRowType, iid), new SetColumnSelector(0));
     }
 
-    private Row intRow(RowType rowType, int x)
+    private Row intRow(RowType rowType, int... xs)
     {
-        List<TPreparedExpression> pExpressions = Arrays.<TPreparedExpression>asList(new TPreparedLiteral(MNumeric.INT.instance(false), new Value(MNumeric.INT.instance(false), x)));
+        List<TPreparedExpression> pExpressions = new ArrayList<>(xs.length);
+        for (int x : xs) {
+            pExpressions.add(new TPreparedLiteral(MNumeric.INT.instance(false), new Value(MNumeric.INT.instance(false), x)));
+        }
         return new ExpressionRow(rowType, queryContext, queryBindings, pExpressions);
     }
 
@@ -202,6 +308,37 @@ public class IndexScanLookaheadIT extends OperatorITBase
         return result;
     }
 
+    private static class ListBindingsCursor implements QueryBindingsCursor
+    {
+        @Override
+        public void openBindings() {
+            position = 0;
+        }
+
+        @Override
+        public QueryBindings nextBindings() {
+            return (position < bindingsList.size()) ? bindingsList.get(position++) : null;
+        }
+
+        @Override
+        public void closeBindings() {
+        }
+
+        @Override
+        public void cancelBindings(QueryBindings ancestor) {
+            while ((position < bindingsList.size()) && bindingsList.get(position).isAncestor(ancestor)) {
+                position++;
+            }
+        }
+
+        public ListBindingsCursor(List<QueryBindings> bindingsList) {
+            this.bindingsList = bindingsList;
+        }
+
+        private final List<QueryBindings> bindingsList;
+        private int position;
+    }
+
     private String hkey(int cid, int oid)
     {
         return String.format("{1,(long)%s,2,(long)%s}", cid, oid);
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import org.junit.Test;
+
+import static com.foundationdb.qp.operator.API.cursor;
+import static com.foundationdb.qp.operator.API.indexScan_Default;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+
+// Skip scans restrict columns after the first, which is unrestricted.
+
+public class IndexScanSkipScanIT extends IndexScanITBase
+{
+    // IndexKeyRange argument checking
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSkipNothing()
+    {
+        IndexKeyRange.skipScan(idxRowType, 0, bBound(20), true, bBound(20), true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSkipEverything()
+    {
+        IndexKeyRange.skipScan(idxRowType, 2, bBound(20), true, bBound(20), true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedOrdering()
+    {
+        API.Ordering ordering = API.ordering();
+        ordering.append(field(idxRowType, 0), true);
+        ordering.append(field(idxRowType, 1), false);
+        test(skipRange(bBound(20), true, bBound(20), true), ordering);
+    }
+
+    // Equality on the column after the prefix
+
+    @Test
+    public void testEquals()
+    {
+        test(skipRange(bBound(20), true, bBound(20), true), ordering(ASC),
+             1006, 1001, 1002, 1005);
+        test(skipRange(bBound(20), true, bBound(20), true), ordering(DESC),
+             1005, 1002, 1001, 1006);
+    }
+
+    @Test
+    public void testEqualsMissingFromSomePrefixes()
+    {
+        // For a = 2 the search lands on (2, 30), which is past the end; the next prefix must still be seen.
+        test(skipRange(bBound(10), true, bBound(10), true), ordering(ASC),
+             1000, 1004);
+        test(skipRange(bBound(10), true, bBound(10), true), ordering(DESC),
+             1004, 1000);
+    }
+
+    @Test
+    public void testEqualsAbsent()
+    {
+        test(skipRange(bBound(99), true, bBound(99), true), ordering(ASC));
+        test(skipRange(bBound(99), true, bBound(99), true), ordering(DESC));
+    }
+
+    // Inequality on the column after the prefix
+
+    @Test
+    public void testHalfOpen()
+    {
+        test(skipRange(bBound(20), true, bBound(null), false), ordering(ASC),
+             1006, 1001, 1002, 1003, 1005);
+        test(skipRange(bBound(20), true, bBound(null), false), ordering(DESC),
+             1005, 1003, 1002, 1001, 1006);
+    }
+
+    @Test
+    public void testExclusive()
+    {
+        test(skipRange(bBound(10), false, bBound(30), false), ordering(ASC),
+             1006, 1001, 1002, 1005);
+        test(skipRange(bBound(10), false, bBound(30), false), ordering(DESC),
+             1005, 1002, 1001, 1006);
+    }
+
+    @Test
+    public void testInclusive()
+    {
+        test(skipRange(bBound(5), true, bBound(10), true), ordering(ASC),
+             1000, 1004, 1007);
+        test(skipRange(bBound(5), true, bBound(10), true), ordering(DESC),
+             1007, 1004, 1000);
+    }
+
+    // Equality followed by inequality
+
+    @Test
+    public void testEqualsThenRange()
+    {
+        test(skipRange(bcBound(20, 201), true, bcBound(20, null), false), ordering(ASC),
+             1006, 1002, 1005);
+        test(skipRange(bcBound(20, 201), true, bcBound(20, null), false), ordering(DESC),
+             1005, 1002, 1006);
+    }
+
+    // The cursor can be reopened
+
+    @Test
+    public void testReopen()
+    {
+        Operator plan = indexScan_Default(idxRowType,
+                                          skipRange(bBound(20), true, bBound(20), true),
+                                          ordering(ASC));
+        Row[] expected = rows(1006, 1001, 1002, 1005);
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    // For use by this class
+
+    private IndexKeyRange skipRange(IndexBound lo, boolean loInclusive, IndexBound hi, boolean hiInclusive)
+    {
+        return IndexKeyRange.skipScan(idxRowType, 1, lo, loInclusive, hi, hiInclusive);
+    }
+
+    // The value given for a is a placeholder.
+
+    private IndexBound bBound(Integer b)
+    {
+        return new IndexBound(row(idxRowType, null, b), new SetColumnSelector(0, 1));
+    }
+
+    private IndexBound bcBound(Integer b, Integer c)
+    {
+        return new IndexBound(row(idxRowType, null, b, c), new SetColumnSelector(0, 1, 2));
+    }
+}
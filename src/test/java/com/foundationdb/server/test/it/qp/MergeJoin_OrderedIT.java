@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import org.junit.Test;
+
+import static com.foundationdb.qp.operator.API.*;
+
+public class MergeJoin_OrderedIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "alice"),
+            createNewRow(customer, 2L, "bob"),
+            createNewRow(customer, 3L, "carol"),
+            createNewRow(customer, 4L, null),
+            createNewRow(customer, 5L, "alice"),
+            createNewRow(order, 100L, 1L, "alice"),
+            createNewRow(order, 101L, 2L, "alice"),
+            createNewRow(order, 200L, 2L, "bob"),
+            createNewRow(order, 300L, 3L, "dave"),
+            createNewRow(order, 400L, 4L, null),
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLeftNull()
+    {
+        mergeJoin_Ordered(null, orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          NAME, SALESMAN, ASCENDING, JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRightNull()
+    {
+        mergeJoin_Ordered(customers(false), null, customerNameIndexRowType, orderSalesmanIndexRowType,
+                          NAME, SALESMAN, ASCENDING, JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoJoinFields()
+    {
+        mergeJoin_Ordered(customers(false), orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          new int[0], new int[0], new boolean[0], JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinFieldsMismatch()
+    {
+        mergeJoin_Ordered(customers(false), orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          NAME, new int[]{0, 1}, ASCENDING, JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinFieldOutOfRange()
+    {
+        mergeJoin_Ordered(customers(false), orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          new int[]{2}, SALESMAN, ASCENDING, JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinFieldsNeedCasting()
+    {
+        // customer.name = order.cid
+        mergeJoin_Ordered(customers(false), orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          NAME, new int[]{1}, ASCENDING, JoinType.INNER_JOIN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFullJoin()
+    {
+        mergeJoin_Ordered(customers(false), orders(false), customerNameIndexRowType, orderSalesmanIndexRowType,
+                          NAME, SALESMAN, ASCENDING, JoinType.FULL_JOIN);
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testInnerJoin()
+    {
+        // Duplicate names on both sides give every pair.
+        Operator plan = mergeJoin_Ordered(customers(false), orders(false),
+                                          customerNameIndexRowType, orderSalesmanIndexRowType,
+                                          NAME, SALESMAN, ASCENDING, JoinType.INNER_JOIN);
+        RowType joinedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(joinedRowType, "alice", 1L, "alice", 1L, 100L),
+            row(joinedRowType, "alice", 1L, "alice", 2L, 101L),
+            row(joinedRowType, "alice", 5L, "alice", 1L, 100L),
+            row(joinedRowType, "alice", 5L, "alice", 2L, 101L),
+            row(joinedRowType, "bob", 2L, "bob", 2L, 200L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testLeftJoin()
+    {
+        // A null name never matches, even the order with a null salesman.
+        Operator plan = mergeJoin_Ordered(customers(false), orders(false),
+                                          customerNameIndexRowType, orderSalesmanIndexRowType,
+                                          NAME, SALESMAN, ASCENDING, JoinType.LEFT_JOIN);
+        RowType joinedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(joinedRowType, null, 4L, null, null, null),
+            row(joinedRowType, "alice", 1L, "alice", 1L, 100L),
+            row(joinedRowType, "alice", 1L, "alice", 2L, 101L),
+            row(joinedRowType, "alice", 5L, "alice", 1L, 100L),
+            row(joinedRowType, "alice", 5L, "alice", 2L, 101L),
+            row(joinedRowType, "bob", 2L, "bob", 2L, 200L),
+            row(joinedRowType, "carol", 3L, null, null, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testSemiJoin()
+    {
+        Operator plan = semiJoin_Ordered(customers(false), orders(false),
+                                         customerNameIndexRowType, orderSalesmanIndexRowType,
+                                         NAME, SALESMAN, ASCENDING);
+        Row[] expected = new Row[]{
+            row(customerNameIndexRowType, "alice", 1L),
+            row(customerNameIndexRowType, "alice", 5L),
+            row(customerNameIndexRowType, "bob", 2L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testDescending()
+    {
+        Operator plan = mergeJoin_Ordered(customers(true), orders(true),
+                                          customerNameIndexRowType, orderSalesmanIndexRowType,
+                                          NAME, SALESMAN, new boolean[]{false}, JoinType.LEFT_JOIN);
+        RowType joinedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(joinedRowType, "carol", 3L, null, null, null),
+            row(joinedRowType, "bob", 2L, "bob", 2L, 200L),
+            row(joinedRowType, "alice", 5L, "alice", 2L, 101L),
+            row(joinedRowType, "alice", 5L, "alice", 1L, 100L),
+            row(joinedRowType, "alice", 1L, "alice", 2L, 101L),
+            row(joinedRowType, "alice", 1L, "alice", 1L, 100L),
+            row(joinedRowType, null, 4L, null, null, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testMultipleJoinFields()
+    {
+        // customer.name = order.salesman AND customer.cid = order.cid
+        Operator plan = mergeJoin_Ordered(customers(false), orders(false),
+                                          customerNameIndexRowType, orderSalesmanIndexRowType,
+                                          new int[]{0, 1}, new int[]{0, 1}, new boolean[]{true, true},
+                                          JoinType.INNER_JOIN);
+        RowType joinedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(joinedRowType, "alice", 1L, "alice", 1L, 100L),
+            row(joinedRowType, "bob", 2L, "bob", 2L, 200L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator plan = mergeJoin_Ordered(customers(false), orders(false),
+                                          customerNameIndexRowType, orderSalesmanIndexRowType,
+                                          NAME, SALESMAN, ASCENDING, JoinType.INNER_JOIN);
+        final RowType joinedRowType = plan.rowType();
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(joinedRowType, "alice", 1L, "alice", 1L, 100L),
+                    row(joinedRowType, "alice", 1L, "alice", 2L, 101L),
+                    row(joinedRowType, "alice", 5L, "alice", 1L, 100L),
+                    row(joinedRowType, "alice", 5L, "alice", 2L, 101L),
+                    row(joinedRowType, "bob", 2L, "bob", 2L, 200L),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator customers(boolean reverse)
+    {
+        return indexScan_Default(customerNameIndexRowType, reverse);
+    }
+
+    private Operator orders(boolean reverse)
+    {
+        return indexScan_Default(orderSalesmanIndexRowType, reverse);
+    }
+
+    private static final int[] NAME = new int[]{0};
+    private static final int[] SALESMAN = new int[]{0};
+    private static final boolean[] ASCENDING = new boolean[]{true};
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.error.SetWrongNumColumns;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static junit.framework.Assert.fail;
+
+public class MultiUnion_OrderedIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "schema", "t",
+            "pid int not null primary key",
+            "x int");
+        createIndex("schema", "t", "idx_x", "x");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        tRowType = schema.tableRowType(table(t));
+        tPidIndexRowType = indexType(t, "pid");
+        tXIndexRowType = indexType(t, "x");
+        coi = group(t);
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        db = new NewRow[] {
+            createNewRow(t, 1000L, 1L),
+            createNewRow(t, 1001L, 2L),
+            createNewRow(t, 1002L, 3L),
+            createNewRow(t, 1003L, 1L),
+            createNewRow(t, 1004L, 2L),
+            createNewRow(t, 1005L, 3L),
+            createNewRow(t, 1006L, 1L),
+        };
+        use(db);
+    }
+
+    private int t;
+    private RowType tRowType;
+    private IndexRowType tPidIndexRowType;
+    private IndexRowType tXIndexRowType;
+
+    // IllegalArumentException tests
+
+    @Test
+    public void testInputs()
+    {
+        // Too few inputs
+        try {
+            union_Ordered(Arrays.asList(groupScan_Default(coi)),
+                          Arrays.<RowType>asList(tXIndexRowType),
+                          1,
+                          ascending(true),
+                          false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        // Not as many types as inputs
+        try {
+            union_Ordered(Arrays.asList(groupScan_Default(coi), groupScan_Default(coi), groupScan_Default(coi)),
+                          Arrays.<RowType>asList(tXIndexRowType, tXIndexRowType),
+                          1,
+                          ascending(true),
+                          false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        // Input type null
+        try {
+            union_Ordered(Arrays.asList(groupScan_Default(coi), groupScan_Default(coi), groupScan_Default(coi)),
+                          Arrays.<RowType>asList(tXIndexRowType, null, tXIndexRowType),
+                          1,
+                          ascending(true),
+                          false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test (expected = SetWrongNumColumns.class)
+    public void testDifferentInputTypes()
+    {
+        union_Ordered(Arrays.asList(groupScan_Default(coi), groupScan_Default(coi), groupScan_Default(coi)),
+                      Arrays.<RowType>asList(tXIndexRowType, tXIndexRowType, tPidIndexRowType),
+                      1,
+                      ascending(true),
+                      false);
+    }
+
+    @Test
+    public void testOrderingColumns()
+    {
+        // Ordering fields negative
+        try {
+            union_Ordered(Arrays.asList(groupScan_Default(coi), groupScan_Default(coi), groupScan_Default(coi)),
+                          Collections.nCopies(3, tXIndexRowType),
+                          -1,
+                          ascending(),
+                          false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        // Ordering fields too high
+        try {
+            union_Ordered(Arrays.asList(groupScan_Default(coi), groupScan_Default(coi), groupScan_Default(coi)),
+                          Collections.nCopies(3, tXIndexRowType),
+                          3,
+                          ascending(true),
+                          false);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // Runtime tests
+
+    @Test
+    public void testAllInputsEmpty()
+    {
+        Operator plan = unionPlan(true, false, 0, 0, 0);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testSomeInputsEmpty()
+    {
+        Operator plan = unionPlan(true, false, 0, 3, 0, 2);
+        Row[] expected = new Row[] {
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 3L, 1002L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 3L, 1005L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testInterleaved()
+    {
+        Operator plan = unionPlan(true, false, 1, 2, 3);
+        Row[] expected = new Row[] {
+            row(tRowType, 1L, 1000L),
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 3L, 1002L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 3L, 1005L),
+            row(tRowType, 1L, 1006L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        plan = unionPlan(false, false, 3, 1, 2);
+        expected = new Row[] {
+            row(tRowType, 1L, 1006L),
+            row(tRowType, 3L, 1005L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 3L, 1002L),
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 1L, 1000L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testDuplicates()
+    {
+        Operator plan = unionPlan(true, false, 1, 2, 1);
+        Row[] expected = new Row[] {
+            row(tRowType, 1L, 1000L),
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 1L, 1006L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        plan = unionPlan(true, true, 1, 2, 1);
+        expected = new Row[] {
+            row(tRowType, 1L, 1000L),
+            row(tRowType, 1L, 1000L),
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 1L, 1006L),
+            row(tRowType, 1L, 1006L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testManyInputs()
+    {
+        long[] xs = new long[100];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = (i % 4);
+        }
+        Operator plan = unionPlan(true, false, xs);
+        Row[] expected = new Row[] {
+            row(tRowType, 1L, 1000L),
+            row(tRowType, 2L, 1001L),
+            row(tRowType, 3L, 1002L),
+            row(tRowType, 1L, 1003L),
+            row(tRowType, 2L, 1004L),
+            row(tRowType, 3L, 1005L),
+            row(tRowType, 1L, 1006L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator plan = unionPlan(true, false, 3, 1, 2);
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(tRowType, 1L, 1000L),
+                    row(tRowType, 2L, 1001L),
+                    row(tRowType, 3L, 1002L),
+                    row(tRowType, 1L, 1003L),
+                    row(tRowType, 2L, 1004L),
+                    row(tRowType, 3L, 1005L),
+                    row(tRowType, 1L, 1006L),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator unionPlan(boolean ascending, boolean outputEqual, long... xs)
+    {
+        List<Operator> inputs = new ArrayList<>();
+        for (long x : xs) {
+            inputs.add(indexScan_Default(
+                           tXIndexRowType,
+                           parentXEq(x),
+                           ordering(ascending)));
+        }
+        return union_Ordered(inputs,
+                             Collections.nCopies(inputs.size(), tXIndexRowType),
+                             1,
+                             ascending(ascending),
+                             outputEqual);
+    }
+
+    private IndexKeyRange parentXEq(long x)
+    {
+        IndexBound xBound = new IndexBound(row(tXIndexRowType, x), new SetColumnSelector(0));
+        return IndexKeyRange.bounded(tXIndexRowType, xBound, true, xBound, true);
+    }
+
+    private Ordering ordering(boolean ascending)
+    {
+        Ordering ordering = API.ordering();
+        ordering.append(field(tXIndexRowType, 1), ascending);
+        return ordering;
+    }
+
+    private boolean[] ascending(boolean... ascending)
+    {
+        return ascending;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.RowBatch;
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertTrue;
+
+public class RowBatchIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        List<NewRow> db = new ArrayList<>();
+        for (long cid = 1; cid <= 5; cid++) {
+            db.add(createNewRow(customer, cid, "customer " + cid));
+            for (long oid = cid * 10; oid < cid * 10 + 4; oid++) {
+                db.add(createNewRow(order, oid, cid, "salesman " + oid));
+                db.add(createNewRow(item, oid * 10, oid));
+            }
+        }
+        use(db.toArray(new NewRow[db.size()]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity()
+    {
+        new RowBatch(0);
+    }
+
+    @Test
+    public void testGroupScan()
+    {
+        compareBatched(groupScan_Default(coi));
+    }
+
+    @Test
+    public void testIndexScan()
+    {
+        compareBatched(indexScan_Default(orderCidIndexRowType, false, IndexKeyRange.unbounded(orderCidIndexRowType)));
+    }
+
+    @Test
+    public void testFilter()
+    {
+        compareBatched(filter_Default(groupScan_Default(coi), Arrays.asList(orderRowType)));
+    }
+
+    @Test
+    public void testProject()
+    {
+        compareBatched(project_DefaultTest(groupScan_Default(coi),
+                                           orderRowType,
+                                           Arrays.asList(field(orderRowType, 2), field(orderRowType, 0))));
+    }
+
+    @Test
+    public void testFilterProject()
+    {
+        Operator project = project_DefaultTest(groupScan_Default(coi),
+                                               orderRowType,
+                                               Arrays.asList(field(orderRowType, 2), field(orderRowType, 0)));
+        compareBatched(filter_Default(project, Arrays.asList(project.rowType())));
+    }
+
+    @Test
+    public void testAggregate()
+    {
+        Operator project = project_DefaultTest(groupScan_Default(coi),
+                                               orderRowType,
+                                               Arrays.asList(field(orderRowType, 1), field(orderRowType, 0)));
+        compareBatched(aggregate_Partial(project, project.rowType(), 1,
+                                         Arrays.asList(MCount.INSTANCES[3]),
+                                         Arrays.asList(MNumeric.BIGINT.instance(false)),
+                                         Collections.<Object>singletonList(null)));
+    }
+
+    @Test
+    public void testAdapter()
+    {
+        compareBatched(limit_Default(filter_Default(groupScan_Default(coi), Arrays.asList(itemRowType)), 7));
+    }
+
+    // For use by this class
+
+    private void compareBatched(Operator plan)
+    {
+        List<Row> expected = new ArrayList<>();
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            expected.add(ImmutableRow.ifTransient(row));
+        }
+        cursor.closeTopLevel();
+        for (int capacity : new int[] { 1, 3, 1000 }) {
+            List<Row> actual = new ArrayList<>();
+            RowBatch batch = new RowBatch(capacity);
+            cursor = cursor(plan, queryContext, queryBindings);
+            cursor.openTopLevel();
+            boolean more;
+            do {
+                batch.clear();
+                more = cursor.nextBatch(batch);
+                assertTrue(batch.size() <= capacity);
+                for (int i = 0; i < batch.size(); i++) {
+                    actual.add(ImmutableRow.ifTransient(batch.get(i)));
+                }
+            } while (more);
+            cursor.closeTopLevel();
+            compareRows(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.RowBatch;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.qp.operator.API.FlattenOption.REUSE_ROWS;
+import static com.foundationdb.qp.operator.API.JoinType.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RowReuseIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "northbridge"),
+            createNewRow(customer, 2L, "foundation"),
+            createNewRow(customer, 4L, "highland"),
+            createNewRow(order, 11L, 1L, "ori"),
+            createNewRow(order, 12L, 1L, "david"),
+            createNewRow(order, 21L, 2L, "tom"),
+            createNewRow(order, 22L, 2L, "jack"),
+            createNewRow(order, 31L, 3L, "peter"),
+        };
+        use(db);
+    }
+
+    @Test
+    public void testProjectReusesRow()
+    {
+        Operator plan = project_Default(customers(),
+                                        customerRowType,
+                                        API.generateNew(Arrays.asList(field(customerRowType, 1))),
+                                        true);
+        RowType projectedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(projectedRowType, "northbridge"),
+            row(projectedRowType, "foundation"),
+            row(projectedRowType, "highland"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        Row first = cursor.next();
+        assertTrue(first.isTransient());
+        assertSame(first, cursor.next());
+        cursor.closeTopLevel();
+    }
+
+    @Test
+    public void testFlattenReusesRows()
+    {
+        Operator plan = flatten_HKeyOrdered(customersAndOrders(),
+                                            customerRowType,
+                                            orderRowType,
+                                            FULL_JOIN,
+                                            EnumSet.of(REUSE_ROWS));
+        RowType coRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(oKey(1L, 11L), coRowType, 1L, "northbridge", 11L, 1L, "ori"),
+            row(oKey(1L, 12L), coRowType, 1L, "northbridge", 12L, 1L, "david"),
+            row(oKey(2L, 21L), coRowType, 2L, "foundation", 21L, 2L, "tom"),
+            row(oKey(2L, 22L), coRowType, 2L, "foundation", 22L, 2L, "jack"),
+            row(oKey(3L, 31L), coRowType, null, null, 31L, 3L, "peter"),
+            row(oKey(4L, null), coRowType, 4L, "highland", null, null, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testFlattenRowsNotReusedInBatch()
+    {
+        Operator plan = flatten_HKeyOrdered(customersAndOrders(),
+                                            customerRowType,
+                                            orderRowType,
+                                            INNER_JOIN,
+                                            EnumSet.of(REUSE_ROWS));
+        RowType coRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(coRowType, 1L, "northbridge", 11L, 1L, "ori"),
+            row(coRowType, 1L, "northbridge", 12L, 1L, "david"),
+            row(coRowType, 2L, "foundation", 21L, 2L, "tom"),
+            row(coRowType, 2L, "foundation", 22L, 2L, "jack"),
+        };
+        // Batched rows are all held at once, so must not be recycled.
+        RowBatch batch = new RowBatch(expected.length + 1);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        assertFalse(cursor.nextBatch(batch));
+        cursor.closeTopLevel();
+        Row[] actual = new Row[batch.size()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = batch.get(i);
+            assertFalse(actual[i].isTransient());
+        }
+        compareRows(expected, actual);
+    }
+
+    @Test
+    public void testProjectFlatten()
+    {
+        Operator flatten = flatten_HKeyOrdered(customersAndOrders(),
+                                               customerRowType,
+                                               orderRowType,
+                                               LEFT_JOIN,
+                                               EnumSet.of(REUSE_ROWS));
+        RowType coRowType = flatten.rowType();
+        Operator plan = project_Default(flatten,
+                                        coRowType,
+                                        API.generateNew(Arrays.asList(field(coRowType, 1), field(coRowType, 4))),
+                                        true);
+        RowType projectedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(projectedRowType, "northbridge", "ori"),
+            row(projectedRowType, "northbridge", "david"),
+            row(projectedRowType, "foundation", "tom"),
+            row(projectedRowType, "foundation", "jack"),
+            row(projectedRowType, "highland", null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testSortCopiesReusedRows()
+    {
+        Operator project = project_Default(customers(),
+                                           customerRowType,
+                                           API.generateNew(Arrays.asList(field(customerRowType, 1))),
+                                           true);
+        RowType projectedRowType = project.rowType();
+        Ordering ordering = API.ordering();
+        ordering.append(field(projectedRowType, 0), true);
+        Operator plan = sort_InsertionLimited(project, projectedRowType, ordering, SortOption.PRESERVE_DUPLICATES, 2);
+        Row[] expected = new Row[]{
+            row(projectedRowType, "foundation"),
+            row(projectedRowType, "highland"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        Row first = cursor.next();
+        assertFalse(first.isTransient());
+        assertNotSame(first, cursor.next());
+        cursor.closeTopLevel();
+    }
+
+    private Operator customers()
+    {
+        return filter_Default(groupScan_Default(coi), Collections.singleton(customerRowType));
+    }
+
+    private Operator customersAndOrders()
+    {
+        return filter_Default(groupScan_Default(coi), Arrays.asList(customerRowType, orderRowType));
+    }
+
+    private String oKey(Long cid, Long oid)
+    {
+        return String.format("{%d,%s,%d,%s}", customerOrdinal, hKeyValue(cid), orderOrdinal, hKeyValue(oid));
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.texpressions.Comparison;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class ScalarSubqueryIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "northbridge"),
+            createNewRow(order, 100L, 1L, "ori"),
+            createNewRow(order, 101L, 1L, "ori"),
+            createNewRow(customer, 2L, "foundation"),
+            createNewRow(order, 200L, 2L, "david"),
+            createNewRow(order, 201L, 1L, "david"),
+            createNewRow(order, 400L, 4L, "jack"), // no customer
+            createNewRow(order, 500L, null, "tom"), // null key
+        };
+        use(db);
+    }
+
+    @Test
+    public void testNotMemoized()
+    {
+        compareRows(expected(), cursor(plan(null, 0), queryContext, queryBindings));
+    }
+
+    @Test
+    public void testMemoized()
+    {
+        compareRows(expected(), cursor(plan(orderCid(), 100), queryContext, queryBindings));
+    }
+
+    @Test
+    public void testMemoEviction()
+    {
+        compareRows(expected(), cursor(plan(orderCid(), 1), queryContext, queryBindings));
+    }
+
+    // (SELECT name FROM customer WHERE customer.cid = order.cid)
+    private Operator plan(ExpressionGenerator memoKey, int memoSize)
+    {
+        Operator inner =
+            project_DefaultTest(
+                select_HKeyOrdered(
+                    filter_Default(
+                        groupScan_Default(coi),
+                        Collections.singleton(customerRowType)),
+                    customerRowType,
+                    compare(field(customerRowType, 0) /* customer.cid */,
+                            Comparison.EQ,
+                            boundField(orderRowType, 1, 1) /* order.cid */, castResolver())),
+                customerRowType,
+                Arrays.asList(field(customerRowType, 1) /* customer.name */));
+        ExpressionGenerator subquery =
+            scalarSubquery(inner, field(inner.rowType(), 0), orderRowType, inner.rowType(), 1,
+                           (memoKey == null) ? null : Collections.singletonList(memoKey), memoSize);
+        return project_DefaultTest(
+            filter_Default(
+                groupScan_Default(coi),
+                Collections.singleton(orderRowType)),
+            orderRowType,
+            Arrays.asList(field(orderRowType, 0) /* order.oid */, subquery));
+    }
+
+    private Row[] expected()
+    {
+        RowType projectRowType = projectRowType();
+        return new Row[]{
+            row(projectRowType, 500L, null), // null hkey sorts first
+            row(projectRowType, 100L, "northbridge"),
+            row(projectRowType, 101L, "northbridge"),
+            row(projectRowType, 201L, "northbridge"),
+            row(projectRowType, 200L, "foundation"),
+            row(projectRowType, 400L, null),
+        };
+    }
+
+    private RowType projectRowType()
+    {
+        return plan(null, 0).rowType();
+    }
+
+    private ExpressionGenerator orderCid()
+    {
+        return field(orderRowType, 1);
+    }
+}
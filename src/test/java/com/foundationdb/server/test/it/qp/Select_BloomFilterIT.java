@@ -30,12 +30,16 @@ import com.foundationdb.server.api.dml.SetColumnSelector;
 import com.foundationdb.server.api.dml.scan.NewRow;
 import com.foundationdb.server.test.ExpressionGenerators;
 import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.util.tap.Tap;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class Select_BloomFilterIT extends OperatorITBase
@@ -228,6 +232,26 @@ public class Select_BloomFilterIT extends OperatorITBase
         compareRows(expected, cursor(plan, queryContext, queryBindings));
     }
 
+    @Test
+    public void testMostlyPassing()
+    {
+        // Nearly every D row has a match, so the filter stops being consulted partway through.
+        long testId = 9;
+        Operator plan = plan(testId);
+        List<Row> expected = new ArrayList<>();
+        for (long i = 0; i < MOSTLY_PASSING_ROWS; i++) {
+            writeRow(d, testId, i, i);
+            if (i % 100 != 0) {
+                writeRow(f, testId, i, i);
+                expected.add(row(outputRowType, testId, i, i));
+            }
+        }
+        Tap.setEnabled(DISABLE_TAP, true);
+        Tap.reset(DISABLE_TAP);
+        compareRows(expected.toArray(new Row[expected.size()]), cursor(plan, queryContext, queryBindings));
+        assertTrue("filter disabled", Tap.getReport(DISABLE_TAP)[0].getInCount() > 0);
+    }
+
     @Test
     public void testCursor()
     {
@@ -321,6 +345,9 @@ public class Select_BloomFilterIT extends OperatorITBase
         return plan;
     }
 
+    private static final int MOSTLY_PASSING_ROWS = 10000;
+    private static final String DISABLE_TAP = "operator: Select_BloomFilter disable";
+
     private int d;
     private int f;
     private TableRowType fRowType;
@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class SemiJoin_HashedIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "northbridge"), // two orders
+            createNewRow(order, 100L, 1L, "ori"),
+            createNewRow(order, 101L, 1L, "ori"),
+            createNewRow(customer, 2L, "foundation"), // one order
+            createNewRow(order, 200L, 2L, "david"),
+            createNewRow(customer, 3L, "matrix"), // no orders
+            createNewRow(order, 400L, 4L, "jack"), // no customer
+            createNewRow(order, 500L, null, "tom"), // null key
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInputNull()
+    {
+        semiJoin_Hashed(null, orders(), customerCid(), orderCid(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubqueryNull()
+    {
+        semiJoin_Hashed(customers(), null, customerCid(), orderCid(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpressionsMismatch()
+    {
+        semiJoin_Hashed(customers(), orders(), customerCid(), Collections.<TPreparedExpression>emptyList(), null);
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testSemiJoin()
+    {
+        // cid IN (SELECT cid FROM order)
+        Operator plan = semiJoin_Hashed(customers(), orders(), customerCid(), orderCid(), null);
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(customerRowType, 2L, "foundation"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testAntiJoin()
+    {
+        // NOT EXISTS (SELECT * FROM order WHERE order.cid = customer.cid)
+        Operator plan = antiJoin_Hashed(customers(), orders(), customerCid(), orderCid(), null, false);
+        Row[] expected = new Row[]{
+            row(customerRowType, 3L, "matrix"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testNotInWithNull()
+    {
+        // cid NOT IN (SELECT cid FROM order): the NULL cid makes every result UNKNOWN.
+        Operator plan = antiJoin_Hashed(customers(), orders(), customerCid(), orderCid(), null, true);
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testNotInWithoutNull()
+    {
+        // cid NOT IN (SELECT cid FROM order WHERE oid < 500)
+        Operator plan = antiJoin_Hashed(customers(), orders(500L), customerCid(), orderCid(), null, true);
+        Row[] expected = new Row[]{
+            row(customerRowType, 3L, "matrix"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testNotInEmpty()
+    {
+        // cid NOT IN (empty set) is true for every row.
+        Operator plan = antiJoin_Hashed(customers(), orders(0L), customerCid(), orderCid(), null, true);
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(customerRowType, 2L, "foundation"),
+            row(customerRowType, 3L, "matrix"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testExists()
+    {
+        // Uncorrelated EXISTS: no keys, only whether the subquery is empty.
+        List<TPreparedExpression> none = Collections.emptyList();
+        Operator plan = semiJoin_Hashed(customers(), orders(0L), none, none, null);
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+        plan = antiJoin_Hashed(customers(), orders(0L), none, none, null, false);
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(customerRowType, 2L, "foundation"),
+            row(customerRowType, 3L, "matrix"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator plan = semiJoin_Hashed(customers(), orders(), customerCid(), orderCid(), null);
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(customerRowType, 1L, "northbridge"),
+                    row(customerRowType, 2L, "foundation"),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator customers()
+    {
+        return filter_Default(
+            groupScan_Default(coi),
+            Collections.singleton(customerRowType));
+    }
+
+    private Operator orders()
+    {
+        return filter_Default(
+            groupScan_Default(coi),
+            Collections.singleton(orderRowType));
+    }
+
+    private Operator orders(long oidLimit)
+    {
+        return select_HKeyOrdered(
+            orders(),
+            orderRowType,
+            compare(field(orderRowType, 0) /* order.oid */, Comparison.LT, literal(oidLimit), castResolver()));
+    }
+
+    private List<TPreparedExpression> customerCid()
+    {
+        return generateNew(Arrays.<ExpressionGenerator>asList(field(customerRowType, 0)));
+    }
+
+    private List<TPreparedExpression> orderCid()
+    {
+        return generateNew(Arrays.<ExpressionGenerator>asList(field(orderRowType, 1)));
+    }
+}
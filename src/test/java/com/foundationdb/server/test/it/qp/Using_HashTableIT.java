@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.ExpressionGenerator;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+
+public class Using_HashTableIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        NewRow[] db = new NewRow[]{
+            createNewRow(customer, 1L, "northbridge"), // two orders
+            createNewRow(order, 100L, 1L, "ori"),
+            createNewRow(order, 101L, 1L, "ori"),
+            createNewRow(customer, 2L, "foundation"), // one order
+            createNewRow(order, 200L, 2L, "david"),
+            createNewRow(customer, 3L, "matrix"), // no orders
+            createNewRow(order, 400L, 4L, "jack"), // no customer
+            createNewRow(order, 500L, null, "tom"), // null key
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHashInputNull()
+    {
+        using_HashTable(null, orderRowType, orderCid(), 1, groupScan_Default(coi), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHashedRowTypeNull()
+    {
+        using_HashTable(groupScan_Default(coi), null, orderCid(), 1, groupScan_Default(coi), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testComparisonFieldsEmpty()
+    {
+        using_HashTable(groupScan_Default(coi), orderRowType, Collections.<TPreparedExpression>emptyList(), 1, groupScan_Default(coi), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTableBindingPosition()
+    {
+        using_HashTable(groupScan_Default(coi), orderRowType, orderCid(), -1, groupScan_Default(coi), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinedInputNull()
+    {
+        using_HashTable(groupScan_Default(coi), orderRowType, orderCid(), 1, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLookupRowTypeNull()
+    {
+        hashTableLookup_Default(null, customerCid(), 1, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLookupNegativeTableBindingPosition()
+    {
+        hashTableLookup_Default(orderRowType, customerCid(), -1, null);
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testInnerJoin()
+    {
+        Operator project = project_DefaultTest(
+            hashTableLookup_Default(orderRowType, customerCid(), 1, null),
+            orderRowType,
+            Arrays.asList(boundField(customerRowType, 0, 0) /* customer.cid */, field(orderRowType, 0) /* order.oid */));
+        Operator plan = joinPlan(project);
+        RowType projectRowType = project.rowType();
+        Row[] expected = new Row[]{
+            row(projectRowType, 1L, 100L),
+            row(projectRowType, 1L, 101L),
+            row(projectRowType, 2L, 200L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testOuterJoin()
+    {
+        Operator project = project_DefaultTest(
+            hashTableLookup_Default(orderRowType, customerCid(), 1, null),
+            orderRowType,
+            Arrays.asList(boundField(customerRowType, 0, 0) /* customer.cid */, field(orderRowType, 0) /* order.oid */));
+        RowType projectRowType = project.rowType();
+        Operator plan = joinPlan(
+            ifEmpty_DefaultTest(project, projectRowType,
+                                Arrays.asList(boundField(customerRowType, 0, 0), literal(null)),
+                                InputPreservationOption.KEEP_INPUT));
+        Row[] expected = new Row[]{
+            row(projectRowType, 1L, 100L),
+            row(projectRowType, 1L, 101L),
+            row(projectRowType, 2L, 200L),
+            row(projectRowType, 3L, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testSemiJoin()
+    {
+        Operator plan = joinPlan(
+            project_DefaultTest(
+                limit_Default(hashTableLookup_Default(orderRowType, customerCid(), 1, null), 1),
+                orderRowType,
+                Arrays.asList(boundField(customerRowType, 0, 0) /* customer.cid */)));
+        RowType projectRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(projectRowType, 1L),
+            row(projectRowType, 2L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator project = project_DefaultTest(
+            hashTableLookup_Default(orderRowType, customerCid(), 1, null),
+            orderRowType,
+            Arrays.asList(boundField(customerRowType, 0, 0) /* customer.cid */, field(orderRowType, 0) /* order.oid */));
+        Operator plan = joinPlan(project);
+        final RowType projectRowType = project.rowType();
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(projectRowType, 1L, 100L),
+                    row(projectRowType, 1L, 101L),
+                    row(projectRowType, 2L, 200L),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator joinPlan(Operator inner)
+    {
+        // Load orders keyed by cid, then look up each customer's orders.
+        return using_HashTable(
+            filter_Default(
+                groupScan_Default(coi),
+                Collections.singleton(orderRowType)),
+            orderRowType,
+            orderCid(),
+            1,
+            map_NestedLoops(
+                filter_Default(
+                    groupScan_Default(coi),
+                    Collections.singleton(customerRowType)),
+                inner,
+                0, pipelineMap(), 1),
+            null);
+    }
+
+    private List<TPreparedExpression> orderCid()
+    {
+        return generateNew(Arrays.<ExpressionGenerator>asList(field(orderRowType, 1)));
+    }
+
+    private List<TPreparedExpression> customerCid()
+    {
+        return generateNew(Arrays.<ExpressionGenerator>asList(boundField(customerRowType, 0, 0)));
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.API.Ordering;
+import com.foundationdb.qp.operator.API.SortOption;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.storeadapter.Sorter;
+import com.foundationdb.qp.storeadapter.indexcursor.ParallelSorter;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.service.sort.SortPoolService;
+import com.foundationdb.server.service.sort.SortPoolServiceImpl;
+import com.foundationdb.util.tap.InOutTap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ParallelSorterIT extends SorterITBase {
+    // Enough for a full run or two, so that the large sorts below also spill.
+    private static final String SORT_MEMORY = "4194304";
+    private static final int LARGE_ROWS = 40000;
+    private static final String SORT_THREADS = "4";
+
+    @Override
+    public Map<String,String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+
+        props.put("fdbsql.tmp_dir", TestConfigService.dataDirectory().getAbsolutePath());
+        props.put(ParallelSorter.MEMORY_PROPERTY, SORT_MEMORY);
+        props.put(SortPoolServiceImpl.THREADS_PROPERTY, SORT_THREADS);
+        return props;
+    }
+
+    @Override
+    public Sorter createSorter(QueryContext context, QueryBindings bindings,
+            Cursor input, RowType rowType, Ordering ordering,
+            SortOption sortOption, InOutTap loadTap) {
+        return new ParallelSorter(context, bindings, input, rowType, ordering, sortOption, loadTap, sortPool());
+    }
+
+    @Test
+    public void poolSizedFromConfiguration() {
+        assertEquals(Integer.parseInt(SORT_THREADS), sortPool().getParallelism());
+        assertSame(sortPool(), sortPool());
+    }
+
+    @Test
+    public void largeAscending() {
+        List<String[]> input = largeInput();
+        List<String[]> expected = new ArrayList<>();
+        for (int i = 0; i < LARGE_ROWS; i++) {
+            expected.add(new String[] { key(i), group(i) });
+        }
+        runTest(API.SortOption.PRESERVE_DUPLICATES, input, expected, true);
+    }
+
+    @Test
+    public void largeDescendingAscending() {
+        List<String[]> input = largeInput();
+        List<String[]> expected = new ArrayList<>();
+        for (int g = GROUPS - 1; g >= 0; g--) {
+            for (int i = g; i < LARGE_ROWS; i += GROUPS) {
+                expected.add(new String[] { key(i), group(i) });
+            }
+        }
+        runTest(API.SortOption.PRESERVE_DUPLICATES, swap(input), swap(expected), false, true);
+    }
+
+    @Test
+    public void largeDuplicatesKeepInputOrder() {
+        // Sorting only on the group must leave each group's rows in input order.
+        List<String[]> input = largeInput();
+        List<String[]> expected = new ArrayList<>();
+        for (int g = 0; g < GROUPS; g++) {
+            for (String[] row : input) {
+                if (row[1].equals(group(g))) {
+                    expected.add(row);
+                }
+            }
+        }
+        List<String[]> swapped = swap(input);
+        runTest(API.SortOption.PRESERVE_DUPLICATES, swapped, swap(expected), true);
+    }
+
+    private static final int GROUPS = 7;
+
+    private static String key(int i) {
+        return String.format("%06d", i);
+    }
+
+    private static String group(int i) {
+        return String.valueOf(i % GROUPS);
+    }
+
+    private static List<String[]> largeInput() {
+        List<Integer> order = new ArrayList<>(LARGE_ROWS);
+        for (int i = 0; i < LARGE_ROWS; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(100));
+        List<String[]> input = new ArrayList<>(LARGE_ROWS);
+        for (int i : order) {
+            input.add(new String[] { key(i), group(i) });
+        }
+        return input;
+    }
+
+    private static List<String[]> swap(List<String[]> rows) {
+        List<String[]> swapped = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            swapped.add(new String[] { row[1], row[0] });
+        }
+        return swapped;
+    }
+
+    private ForkJoinPool sortPool() {
+        return serviceManager().getServiceByClass(SortPoolService.class).getPool();
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.pt.qp;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.StoreAdapter;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.error.InvalidOperationException;
+import com.foundationdb.server.test.ExpressionGenerators;
+import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.Tap;
+import com.foundationdb.util.tap.TapReport;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.foundationdb.qp.operator.API.*;
+
+public class SortInsertionLimitedPT extends QPProfilePTBase
+{
+    @Before
+    public void before() throws InvalidOperationException
+    {
+        t = createTable(
+            "schema", "t",
+            "id int not null key",
+            "rand int",
+            "filler varchar(20)");
+        group = group(t);
+        schema = new Schema(ais());
+        tRowType = schema.tableRowType(table(t));
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+    }
+
+    @Test
+    public void profileSortLimited()
+    {
+        InOutTap tap = Operator.OPERATOR_TAP; // Force loading of class and registration of tap.
+        Tap.setEnabled(OPERATOR_TAPS, true);
+        populateDB(ROWS);
+        // Warmup
+        profileSort(1000, 1, true, false);
+        profileSort(1000, 1, false, false);
+        profileSort(1000, 1, true, false);
+        profileSort(1000, 1, false, false);
+        // Measure ordered input, where every row is kept at first
+        // and then rejected.
+        for (int limit : LIMITS) {
+            profileSort(limit, 0, true, true);
+        }
+        // Measure unordered input, compared with a full sort and limit.
+        for (int limit : LIMITS) {
+            profileSort(limit, 1, true, true);
+            profileSort(limit, 1, false, true);
+        }
+    }
+
+    public void profileSort(int limit, int field, boolean insertion, boolean print)
+    {
+        Tap.reset(OPERATOR_TAPS);
+        Ordering ordering = ordering();
+        ordering.append(ExpressionGenerators.field(tRowType, field), true);
+        Operator plan;
+        if (insertion) {
+            plan = sort_InsertionLimited(groupScan_Default(group), tRowType,
+                                         ordering, SortOption.PRESERVE_DUPLICATES, limit);
+        }
+        else {
+            plan = limit_Default(sort_General(groupScan_Default(group), tRowType,
+                                              ordering, SortOption.PRESERVE_DUPLICATES),
+                                 limit);
+        }
+        long start = System.nanoTime();
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        cursor.openTopLevel();
+        while (cursor.next() != null) {
+        }
+        cursor.closeTopLevel();
+        long stop = System.nanoTime();
+        if (print) {
+            System.out.println("---------------------------------------------------------------------");
+            System.out.println(String.format("%s limit %s on field %s: %s msec",
+                                             insertion ? "Sort_InsertionLimited" : "Sort_General",
+                                             limit, field == 0 ? "id" : "rand",
+                                             (stop - start) / 1000000));
+            TapReport[] reports = Tap.getReport(OPERATOR_TAPS);
+            for (TapReport report : reports) {
+                System.out.println(report);
+            }
+        }
+    }
+
+    private void populateDB(int n)
+    {
+        for (int id = 0; id < n; id++) {
+            dml().writeRow(session(), createNewRow(t, id, random.nextInt(), FILLER));
+        }
+    }
+
+    private static final String OPERATOR_TAPS = ".*operator.*";
+    private static final String FILLER = "xxxxxxxxxxxxxxxxxxxx";
+    private static final int ROWS = 1000000;
+    private static final int[] LIMITS = { 10, 100, 1000, 5000, 10000, 100000 };
+
+    private final Random random = new Random();
+    private int t;
+    private Group group;
+    private Schema schema;
+    private RowType tRowType;
+    private StoreAdapter adapter;
+}
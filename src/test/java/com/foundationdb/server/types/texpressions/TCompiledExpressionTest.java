@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.RowsBuilder;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TScalar;
+import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.common.funcs.BoolLogic;
+import com.foundationdb.server.types.common.funcs.IsNull;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.mcompat.mtypes.MString;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public final class TCompiledExpressionTest
+{
+    @Test
+    public void intComparisons() {
+        for (Comparison comparison : Comparison.values()) {
+            check(new TComparisonExpression(field(0), comparison, literal(5)));
+            check(new TComparisonExpression(field(0), comparison, field(1)));
+        }
+    }
+
+    @Test
+    public void andOr() {
+        TPreparedExpression lt = new TComparisonExpression(field(0), Comparison.LT, literal(5));
+        TPreparedExpression ge = new TComparisonExpression(field(1), Comparison.GE, literal(3));
+        check(function(BoolLogic.BINARIES[0], lt, ge));
+        check(function(BoolLogic.BINARIES[1], lt, ge));
+        check(function(BoolLogic.BINARIES[0], lt, function(BoolLogic.BINARIES[1], ge, field(2))));
+    }
+
+    @Test
+    public void notIsNull() {
+        check(function(BoolLogic.NOT, new TComparisonExpression(field(0), Comparison.EQ, field(1))));
+        check(function(BoolLogic.NOT, field(2)));
+        check(function(IsNull.create(AkBool.INSTANCE), field(2)));
+    }
+
+    @Test
+    public void stringsNotCompiled() {
+        TPreparedExpression expression = new TComparisonExpression(field(3), Comparison.EQ, field(3));
+        assertSame(expression, TCompiledExpression.compile(expression));
+    }
+
+    private static void check(TPreparedExpression expression) {
+        TPreparedExpression compiled = TCompiledExpression.compile(expression);
+        assertNotSame(expression.toString(), expression, compiled);
+        TEvaluatableExpression interpreted = expression.build();
+        TEvaluatableExpression generated = compiled.build();
+        for (Row row : rows()) {
+            interpreted.with(row);
+            interpreted.evaluate();
+            generated.with(row);
+            generated.evaluate();
+            assertEquals(expression + " on " + row,
+                         asBoolean(interpreted.resultValue()), asBoolean(generated.resultValue()));
+        }
+    }
+
+    private static Boolean asBoolean(ValueSource value) {
+        return value.isNull() ? null : value.getBoolean();
+    }
+
+    private static Iterable<Row> rows() {
+        RowsBuilder rows = new RowsBuilder(INT, INT, BOOL, VARCHAR);
+        Integer[] ints = { null, -1, 3, 5, 7 };
+        Boolean[] bools = { null, false, true };
+        for (Integer a : ints) {
+            for (Integer b : ints) {
+                for (Boolean c : bools) {
+                    rows.row(a, b, c, "x");
+                }
+            }
+        }
+        return rows.rows();
+    }
+
+    private static TPreparedExpression field(int index) {
+        return new TPreparedField(TYPES[index], index);
+    }
+
+    private static TPreparedExpression literal(int value) {
+        TInstance type = MNumeric.INT.instance(false);
+        return new TPreparedLiteral(type, new Value(type, value));
+    }
+
+    private static TPreparedExpression function(TScalar scalar, TPreparedExpression... inputs) {
+        return new TPreparedFunction(new TValidatedScalar(scalar), AkBool.INSTANCE.instance(true),
+                                     Arrays.asList(inputs), null);
+    }
+
+    private static final TInstance INT = MNumeric.INT.instance(true);
+    private static final TInstance BOOL = AkBool.INSTANCE.instance(true);
+    private static final TInstance VARCHAR = MString.varchar();
+    private static final TInstance[] TYPES = { INT, INT, BOOL, VARCHAR };
+}
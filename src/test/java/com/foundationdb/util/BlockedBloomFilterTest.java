@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockedBloomFilterTest
+{
+    @Test
+    public void test()
+    {
+        for (double errorRate : ERROR_RATES) {
+            for (int count : COUNTS) {
+                test("dense longs", errorRate, count, denseLongs(0, count), denseLongs(count, 2 * count));
+                test("sparse longs", errorRate, count, sparseLongs(count), sparseLongs(count));
+            }
+        }
+    }
+
+    @Test
+    public void powerOfTwoBlocks()
+    {
+        for (int count : COUNTS) {
+            long size = new BlockedBloomFilter(count, 0.01).sizeInBytes();
+            assertEquals(0, size % 64);
+            assertEquals(1, Long.bitCount(size / 64));
+        }
+        assertEquals(64, new BlockedBloomFilter(0, 0.01).sizeInBytes());
+    }
+
+    private void test(String label, double errorRate, int count, long[] keys, long[] missingKeys)
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(count, errorRate);
+        for (long key : keys) {
+            filter.add(mix(key));
+        }
+        // Check that all keys are found
+        for (long key : keys) {
+            assertTrue(label, filter.maybePresent(mix(key)));
+        }
+        // Check false positives for missing keys
+        int falsePositives = 0;
+        for (long missingKey : missingKeys) {
+            if (filter.maybePresent(mix(missingKey))) {
+                falsePositives++;
+            }
+        }
+        double actualErrorRate = ((double) falsePositives) / count;
+        double maxAcceptableErrorRate = errorRate * 10;
+        assertTrue(label, actualErrorRate <= maxAcceptableErrorRate);
+    }
+
+    private long[] denseLongs(int start, int end)
+    {
+        long[] keys = new long[end - start];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = start + i;
+        }
+        return keys;
+    }
+
+    private long[] sparseLongs(int count)
+    {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+
+    // The filter expects well mixed hashes, as BloomFilterHasher provides
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final Random random = new Random(419);
+    private static final double[] ERROR_RATES = { 0.1d, 0.01d, 0.001d, 0.0001d };
+    private static final int[] COUNTS = { 100, 1000, 10000, 100000 };
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest
+{
+    @Test
+    public void empty()
+    {
+        assertEquals(0, HyperLogLog.estimate(HyperLogLog.newSketch(PRECISION)));
+    }
+
+    @Test
+    public void estimate()
+    {
+        for (int count : COUNTS) {
+            byte[] sketch = HyperLogLog.newSketch(PRECISION);
+            for (int i = 0; i < count; i++) {
+                HyperLogLog.add(sketch, mix(i));
+            }
+            assertWithin(count, count, HyperLogLog.estimate(sketch));
+        }
+    }
+
+    @Test
+    public void duplicates()
+    {
+        byte[] sketch = HyperLogLog.newSketch(PRECISION);
+        for (int repeat = 0; repeat < 10; repeat++) {
+            for (int i = 0; i < 1000; i++) {
+                HyperLogLog.add(sketch, mix(i));
+            }
+        }
+        assertWithin("duplicates", 1000, HyperLogLog.estimate(sketch));
+    }
+
+    @Test
+    public void merge()
+    {
+        // Overlapping halves merge to the sketch of the whole
+        byte[] whole = HyperLogLog.newSketch(PRECISION);
+        byte[] low = HyperLogLog.newSketch(PRECISION);
+        byte[] high = HyperLogLog.newSketch(PRECISION);
+        for (int i = 0; i < 100000; i++) {
+            HyperLogLog.add(whole, mix(i));
+            HyperLogLog.add((i < 60000) ? low : high, mix(i));
+            if ((i >= 40000) && (i < 60000)) {
+                HyperLogLog.add(high, mix(i));
+            }
+        }
+        HyperLogLog.merge(low, high);
+        assertArrayEquals(whole, low);
+        assertWithin("merge", 100000, HyperLogLog.estimate(low));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mergeDifferentPrecisions()
+    {
+        HyperLogLog.merge(HyperLogLog.newSketch(PRECISION), HyperLogLog.newSketch(PRECISION - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notASketch()
+    {
+        HyperLogLog.estimate(new byte[1000]);
+    }
+
+    private static void assertWithin(Object label, long expected, long actual)
+    {
+        // Four standard errors
+        double error = 4 * 1.04 / Math.sqrt(1 << PRECISION);
+        assertTrue(label + ": " + actual, Math.abs(actual - expected) <= Math.max(1, expected * error));
+    }
+
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final int PRECISION = 14;
+    private static final int[] COUNTS = { 1, 10, 100, 1000, 10000, 40000, 100000, 1000000 };
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TDigestTest
+{
+    @Test
+    public void empty()
+    {
+        byte[] sketch = TDigest.newSketch();
+        assertEquals(0, TDigest.count(sketch));
+        assertTrue(Double.isNaN(TDigest.quantile(sketch, 0.5)));
+    }
+
+    @Test
+    public void small()
+    {
+        // Few values are kept exactly
+        byte[] sketch = TDigest.newSketch();
+        for (int i = 5; i >= 1; i--) {
+            TDigest.add(sketch, i);
+        }
+        assertEquals(5, TDigest.count(sketch));
+        assertEquals(1.0, TDigest.quantile(sketch, 0), 0);
+        assertEquals(3.0, TDigest.quantile(sketch, 0.5), 0);
+        assertEquals(5.0, TDigest.quantile(sketch, 1), 0);
+    }
+
+    @Test
+    public void uniform()
+    {
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = random.nextDouble();
+        }
+        check("uniform", values);
+    }
+
+    @Test
+    public void skewed()
+    {
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        check("skewed", values);
+    }
+
+    @Test
+    public void repeated()
+    {
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++) {
+            values[i] = random.nextInt(10);
+        }
+        check("repeated", values);
+    }
+
+    @Test
+    public void merge()
+    {
+        double[] values = new double[N];
+        byte[] merged = TDigest.newSketch();
+        for (int part = 0; part < 10; part++) {
+            byte[] sketch = TDigest.newSketch();
+            for (int i = part * N / 10; i < (part + 1) * N / 10; i++) {
+                // Parts differ in distribution
+                values[i] = random.nextGaussian() + part;
+                TDigest.add(sketch, values[i]);
+            }
+            TDigest.merge(merged, sketch);
+        }
+        check("merge", values, merged);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badQuantile()
+    {
+        TDigest.quantile(TDigest.newSketch(), 1.5);
+    }
+
+    private void check(String label, double[] values)
+    {
+        byte[] sketch = TDigest.newSketch();
+        for (double value : values) {
+            TDigest.add(sketch, value);
+        }
+        check(label, values, sketch);
+    }
+
+    // The rank of each estimate must be within 1% of the rank asked for
+    private void check(String label, double[] values, byte[] sketch)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertEquals(label, sorted.length, TDigest.count(sketch));
+        assertEquals(label, sorted[0], TDigest.quantile(sketch, 0), 0);
+        assertEquals(label, sorted[sorted.length - 1], TDigest.quantile(sketch, 1), 0);
+        for (double q : QUANTILES) {
+            double estimate = TDigest.quantile(sketch, q);
+            int lo = lowerBound(sorted, estimate);
+            int hi = upperBound(sorted, estimate);
+            double target = q * sorted.length;
+            double error = (target < lo) ? lo - target : (target > hi) ? target - hi : 0;
+            assertTrue(label + " " + q + ": " + estimate, error <= 0.01 * sorted.length);
+        }
+    }
+
+    private static int lowerBound(double[] sorted, double x)
+    {
+        int i = Arrays.binarySearch(sorted, x);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while ((i > 0) && (sorted[i - 1] == x)) {
+            i--;
+        }
+        return i;
+    }
+
+    private static int upperBound(double[] sorted, double x)
+    {
+        int i = Arrays.binarySearch(sorted, x);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while ((i < sorted.length) && (sorted[i] == x)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final Random random = new Random(419);
+    private static final int N = 100000;
+    private static final double[] QUANTILES = { 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999 };
+}
@@ -0,0 +1 @@
+SELECT MIN(state) FROM addresses
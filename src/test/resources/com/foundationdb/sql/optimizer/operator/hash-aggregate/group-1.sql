@@ -0,0 +1 @@
+SELECT b, MAX(c) AS m FROM t1 WHERE a = 5 GROUP BY b
\ No newline at end of file
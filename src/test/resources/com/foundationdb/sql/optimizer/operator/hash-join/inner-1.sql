@@ -0,0 +1 @@
+SELECT t1.name, t2.z FROM t1 INNER JOIN t2 ON t1.x = t2.y
\ No newline at end of file
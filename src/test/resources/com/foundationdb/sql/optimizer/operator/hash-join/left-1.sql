@@ -0,0 +1 @@
+SELECT t1.name, t2.z FROM t1 LEFT JOIN t2 ON t1.x = t2.y AND t2.z > t1.id
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT name FROM t1 WHERE EXISTS (SELECT * FROM t2 WHERE t2.y = t1.x)
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE b = 5
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT name, sku FROM customers INNER JOIN orders ON customers.cid = orders.cid INNER JOIN items ON orders.oid = items.oid ORDER BY sku LIMIT 10
@@ -0,0 +1 @@
+SELECT * FROM items WHERE sku > '1' AND sku <> '1234' ORDER BY sku LIMIT 10
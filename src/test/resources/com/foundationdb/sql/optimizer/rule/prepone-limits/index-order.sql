@@ -0,0 +1 @@
+SELECT * FROM items WHERE sku > '1' ORDER BY sku LIMIT 10 OFFSET 100
@@ -0,0 +1 @@
+SELECT * FROM items WHERE quan > 100 ORDER BY sku LIMIT 10